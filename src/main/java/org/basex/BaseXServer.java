@@ -4,7 +4,9 @@ import static org.basex.core.Text.*;
 
 import java.io.*;
 import java.net.*;
+import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.basex.core.*;
 import org.basex.io.*;
@@ -17,6 +19,12 @@ import org.basex.util.list.*;
  * This is the starter class for running the database server. It handles
  * concurrent requests from multiple users.
  *
+ * A single thread waits for new connections and incoming requests. Requests are
+ * processed by a bounded pool of worker threads as soon as they have been
+ * completely received. If all workers are busy and the
+ * maximum number of queued requests has been reached, no further requests and
+ * connections will be accepted until a worker gets available.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  * @author Andreas Weiler
@@ -24,21 +32,31 @@ import org.basex.util.list.*;
 public final class BaseXServer extends Main implements Runnable {
   /** Flag for server activity. */
   volatile boolean running;
-  /** Event server socket. */
-  ServerSocket esocket;
   /** Stop file. */
   IOFile stop;
 
-  /** New sessions. */
-  private final HashSet<ClientListener> auth = new HashSet<ClientListener>();
+  /** New sessions and their authentication timeouts. */
+  private final HashMap<ClientListener, TimerTask> auth =
+      new HashMap<ClientListener, TimerTask>();
+  /** Sessions that wait for further input. */
+  private final ConcurrentLinkedQueue<ClientListener> idle =
+      new ConcurrentLinkedQueue<ClientListener>();
+  /** Tasks that could not be passed on to the workers yet. */
+  private final ArrayDeque<Runnable> pending = new ArrayDeque<Runnable>();
   /** Stopped flag. */
   private volatile boolean stopped;
-  /** EventsListener. */
-  private EventListener events;
   /** Initial commands. */
   private StringList commands;
+  /** Selector for new connections and incoming requests. */
+  private Selector selector;
   /** Server socket. */
-  private ServerSocket socket;
+  private ServerSocketChannel socket;
+  /** Event server socket. */
+  private ServerSocketChannel esocket;
+  /** Worker threads. */
+  private ThreadPoolExecutor workers;
+  /** Timer for authentication timeouts and inactive sessions. */
+  private Timer timer;
   /** Start as daemon. */
   private boolean service;
 
@@ -100,15 +118,31 @@ public final class BaseXServer extends Main implements Runnable {
       // execute command-line arguments
       for(final String c : commands) execute(c);
 
-      socket = new ServerSocket();
-      // reuse address (on non-Windows machines: !Prop.WIN);
-      socket.setReuseAddress(true);
-      socket.bind(new InetSocketAddress(addr, port));
-      esocket = new ServerSocket();
-      esocket.setReuseAddress(true);
-      esocket.bind(new InetSocketAddress(addr, eport));
+      socket = bind(addr, port);
+      esocket = bind(addr, eport);
+      selector = Selector.open();
+      socket.register(selector, SelectionKey.OP_ACCEPT);
+      esocket.register(selector, SelectionKey.OP_ACCEPT);
       stop = stopFile(port);
 
+      final int wk = Math.max(1, mprop.num(MainProp.WORKERS));
+      final int mq = Math.max(1, mprop.num(MainProp.MAXQUEUE));
+      workers = new Workers(wk, mq);
+      timer = new Timer(true);
+      timer.schedule(new TimerTask() {
+        @Override
+        public void run() {
+          // drop inactive connections
+          final long ka = context.mprop.num(MainProp.KEEPALIVE) * 1000L;
+          if(ka > 0) {
+            final long ms = System.currentTimeMillis();
+            for(final ClientListener cs : context.sessions) {
+              if(ms - cs.last > ka) cs.timeout();
+            }
+          }
+        }
+      }, 1000, 1000);
+
       // show info when server is aborted
       context.log.writeServer(OK, SRV_STARTED);
       Runtime.getRuntime().addShutdownHook(new Thread() {
@@ -137,38 +171,31 @@ public final class BaseXServer extends Main implements Runnable {
   @Override
   public void run() {
     running = true;
+    final ArrayList<ClientListener> ready = new ArrayList<ClientListener>();
     while(running) {
       try {
-        final Socket s = socket.accept();
-        if(stop.exists()) {
-          if(!stop.delete()) {
-            context.log.writeServer(ERROR_C + Util.info(FILE_NOT_DELETED_X, stop));
-          }
-          quit();
-        } else {
-          // drop inactive connections
-          final long ka = context.mprop.num(MainProp.KEEPALIVE) * 1000L;
-          if(ka > 0) {
-            final long ms = System.currentTimeMillis();
-            for(final ClientListener cs : context.sessions) {
-              if(ms - cs.last > ka) cs.quit();
+        // wait for further input of sessions that have been processed
+        // (must be done before each blocking call: selectNow() resets wakeups)
+        for(ClientListener cl; (cl = idle.poll()) != null;) register(cl);
+        selector.select();
+        select(ready);
+        while(!ready.isEmpty()) {
+          // complete the deregistration of the selected sessions
+          selector.selectNow();
+          for(final ClientListener cl : ready) {
+            try {
+              cl.channel().configureBlocking(true);
+              dispatch(cl);
+            } catch(final IOException ex) {
+              // session has been closed in the meantime
+              Util.debug(ex);
             }
           }
-          final ClientListener cl = new ClientListener(s, context, this);
-          // start authentication timeout
-          final long to = context.mprop.num(MainProp.KEEPALIVE) * 1000L;
-          if(to > 0) {
-            cl.auth.schedule(new TimerTask() {
-              @Override
-              public void run() {
-                cl.quitAuth();
-              }
-            }, to);
-            auth.add(cl);
-          }
-          cl.start();
+          ready.clear();
+          select(ready);
         }
-      } catch(final SocketException ex) {
+        dispatch();
+      } catch(final ClosedSelectorException ex) {
         break;
       } catch(final Throwable ex) {
         // socket may have been unexpectedly closed
@@ -178,6 +205,151 @@ public final class BaseXServer extends Main implements Runnable {
     }
   }
 
+  /**
+   * Processes the selected keys. Sessions with incoming requests are removed from
+   * the selector and added to the specified list.
+   * @param ready sessions with incoming requests
+   * @throws IOException I/O exception
+   */
+  private void select(final ArrayList<ClientListener> ready) throws IOException {
+    final Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+    while(running && it.hasNext()) {
+      final SelectionKey key = it.next();
+      it.remove();
+      if(!key.isValid()) continue;
+      if(key.attachment() != null) {
+        // wait until a complete request has been received
+        final ClientListener cl = (ClientListener) key.attachment();
+        if(cl.receive()) {
+          key.cancel();
+          ready.add(cl);
+        }
+      } else if(key.channel() == socket) {
+        accept();
+      } else {
+        acceptEvents();
+      }
+    }
+  }
+
+  /**
+   * Accepts a new connection.
+   * @throws IOException I/O exception
+   */
+  private void accept() throws IOException {
+    final SocketChannel ch = socket.accept();
+    if(ch == null) return;
+    if(stop.exists()) {
+      if(!stop.delete()) {
+        context.log.writeServer(ERROR_C + Util.info(FILE_NOT_DELETED_X, stop));
+      }
+      ch.close();
+      quit();
+      return;
+    }
+
+    final ClientListener cl = new ClientListener(ch.socket(), context, this);
+    // start authentication timeout
+    final long to = context.mprop.num(MainProp.KEEPALIVE) * 1000L;
+    if(to > 0) {
+      final TimerTask tt = new TimerTask() {
+        @Override
+        public void run() {
+          remove(cl);
+          cl.quitAuth();
+        }
+      };
+      synchronized(auth) {
+        auth.put(cl, tt);
+      }
+      timer.schedule(tt, to);
+    }
+    dispatch(cl);
+  }
+
+  /**
+   * Accepts a new connection for sending events.
+   * @throws IOException I/O exception
+   */
+  private void acceptEvents() throws IOException {
+    final SocketChannel ch = esocket.accept();
+    if(ch == null) return;
+    if(stop.exists()) {
+      ch.close();
+      return;
+    }
+    dispatch(new Runnable() {
+      @Override
+      public void run() {
+        final Socket es = ch.socket();
+        try {
+          final BufferInput bi = new BufferInput(es.getInputStream());
+          final long id = Token.toLong(bi.readString());
+          for(final ClientListener s : context.sessions) {
+            if(s.getId() == id) {
+              s.register(es);
+              return;
+            }
+          }
+          es.close();
+        } catch(final IOException ex) {
+          Util.debug(ex);
+        }
+      }
+    });
+  }
+
+  /**
+   * Registers a session that waits for further input.
+   * @param cl session
+   */
+  private void register(final ClientListener cl) {
+    try {
+      final SocketChannel ch = cl.channel();
+      ch.configureBlocking(false);
+      ch.register(selector, SelectionKey.OP_READ, cl);
+    } catch(final IOException ex) {
+      // session has been closed in the meantime
+      Util.debug(ex);
+    }
+  }
+
+  /**
+   * Passes on a task to the workers.
+   * @param task task
+   */
+  private void dispatch(final Runnable task) {
+    context.sessions.queued.incrementAndGet();
+    pending.add(task);
+    dispatch();
+  }
+
+  /**
+   * Passes on pending tasks to the workers. As long as tasks are pending,
+   * no new connections will be accepted.
+   */
+  private void dispatch() {
+    while(!pending.isEmpty()) {
+      try {
+        workers.execute(pending.peek());
+      } catch(final RejectedExecutionException ex) {
+        break;
+      }
+      pending.poll();
+    }
+    final SelectionKey key = socket.keyFor(selector);
+    if(key != null) key.interestOps(pending.isEmpty() ? SelectionKey.OP_ACCEPT : 0);
+  }
+
+  /**
+   * Passes back a session that has processed all incoming requests.
+   * @param client client
+   */
+  public void idle(final ClientListener client) {
+    idle.add(client);
+    selector.wakeup();
+  }
+
   /**
    * Generates a stop file for the specified port.
    * @param port server port
@@ -187,12 +359,33 @@ public final class BaseXServer extends Main implements Runnable {
     return new IOFile(Prop.TMP, Util.name(BaseXServer.class) + port);
   }
 
+  /**
+   * Binds a server socket to the specified address and port.
+   * @param addr address ({@code null} for wildcard address)
+   * @param port port
+   * @return server socket
+   * @throws IOException I/O exception
+   */
+  private static ServerSocketChannel bind(final InetAddress addr, final int port)
+      throws IOException {
+    final ServerSocketChannel ch = ServerSocketChannel.open();
+    // reuse address (on non-Windows machines: !Prop.WIN);
+    ch.socket().setReuseAddress(true);
+    ch.socket().bind(new InetSocketAddress(addr, port));
+    ch.configureBlocking(false);
+    return ch;
+  }
+
   @Override
   protected synchronized void quit() throws IOException {
     if(!running) return;
     running = false;
 
-    for(final ClientListener cs : auth) {
+    final ArrayList<ClientListener> al;
+    synchronized(auth) {
+      al = new ArrayList<ClientListener>(auth.keySet());
+    }
+    for(final ClientListener cs : al) {
       remove(cs);
       cs.quitAuth();
     }
@@ -201,9 +394,12 @@ public final class BaseXServer extends Main implements Runnable {
     }
     super.quit();
 
+    timer.cancel();
+    workers.shutdown();
     try {
       // close interactive input if server was stopped by another process
       if(console) System.in.close();
+      selector.close();
       esocket.close();
       socket.close();
     } catch(final IOException ex) {
@@ -340,49 +536,42 @@ public final class BaseXServer extends Main implements Runnable {
    */
   public void remove(final ClientListener client) {
     synchronized(auth) {
-      auth.remove(client);
-      client.auth.cancel();
+      final TimerTask tt = auth.remove(client);
+      if(tt != null) tt.cancel();
     }
   }
 
   /**
-   * Initializes the event listener.
+   * Worker threads, which keep track of the number of queued requests.
    */
-  public void initEvents() {
-    if(events == null) {
-      events = new EventListener();
-      events.start();
+  private final class Workers extends ThreadPoolExecutor {
+    /**
+     * Constructor.
+     * @param threads maximum number of threads
+     * @param queue maximum number of queued tasks
+     */
+    Workers(final int threads, final int queue) {
+      super(threads, threads, 60, TimeUnit.SECONDS,
+          new ArrayBlockingQueue<Runnable>(queue), new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+          final Thread t = new Thread(r);
+          t.setDaemon(true);
+          return t;
+        }
+      });
+      allowCoreThreadTimeOut(true);
     }
-  }
 
-  /**
-   * Inner class to listen for event registrations.
-   *
-   * @author BaseX Team 2005-12, BSD License
-   * @author Andreas Weiler
-   */
-  final class EventListener extends Thread {
     @Override
-    public void run() {
-      while(running) {
-        try {
-          final Socket es = esocket.accept();
-          if(stop.exists()) {
-            esocket.close();
-            break;
-          }
-          final BufferInput bi = new BufferInput(es.getInputStream());
-          final long id = Token.toLong(bi.readString());
-          for(final ClientListener s : context.sessions) {
-            if(s.getId() == id) {
-              s.register(es);
-              break;
-            }
-          }
-        } catch(final IOException ex) {
-          break;
-        }
-      }
+    protected void beforeExecute(final Thread t, final Runnable r) {
+      context.sessions.queued.decrementAndGet();
+    }
+
+    @Override
+    protected void afterExecute(final Runnable r, final Throwable t) {
+      // resume pending tasks
+      if(context.sessions.queued.get() > getQueue().size()) selector.wakeup();
     }
   }
 }
@@ -42,13 +42,21 @@ public final class DirParser extends Parser {
   private final boolean rawParser;
   /** Database path for storing binary files. */
   private final IOFile rawPath;
+  /** Number of threads for parsing files. */
+  private final int threads;
 
   /** Last source. */
   private IO lastSrc;
   /** Parser reference. */
   private Parser parser;
+  /** Worker threads (can be {@code null}). */
+  private DirWorkers workers;
   /** Element counter. */
   private int c;
+  /** Number of parsed files. */
+  private int files;
+  /** Parsing time (nanoseconds). */
+  private long time;
 
   /**
    * Constructor.
@@ -70,13 +78,30 @@ public final class DirParser extends Parser {
     // choose binary storage if (disk-based) database path is known and
     // if raw parser or "add raw" option were chosen
     rawPath = path != null && (addRaw || rawParser) ? new IOFile(path, M_RAW) : null;
+    final int t = prop.num(Prop.PARSETHREADS);
+    threads = t > 0 ? t : Runtime.getRuntime().availableProcessors();
   }
 
   @Override
   public void parse(final Builder build) throws IOException {
     build.meta.filesize = 0;
     build.meta.original = src.path();
-    parse(build, src);
+    final Performance perf = new Performance();
+    // parse files of directories in parallel
+    if(threads > 1 && !rawParser && src instanceof IOFile && src.isDir()) {
+      workers = new DirWorkers(build, prop, skipCorrupt ? skipped : null, threads);
+    }
+    try {
+      parse(build, src);
+      if(workers != null) {
+        workers.finish();
+        files += workers.parsed;
+      }
+    } finally {
+      if(workers != null) workers.close();
+      workers = null;
+    }
+    time = perf.time();
   }
 
   /**
@@ -153,7 +178,12 @@ public final class DirParser extends Parser {
         if(rawPath != null) {
           Store.store(src.inputSource(), new IOFile(rawPath, targ + name));
         }
+      } else if(workers != null && src instanceof IOFile && l <= DirWorkers.MAXSIZE) {
+        // parse small file in a worker thread
+        workers.add(src, targ);
       } else {
+        // append files that have been parsed by worker threads
+        if(workers != null) workers.finish();
         // store input as XML
         boolean ok = true;
         IO in = src;
@@ -178,6 +208,7 @@ public final class DirParser extends Parser {
         if(ok) {
           parser = Parser.singleParser(in, prop, targ);
           parser.parse(b);
+          ++files;
         }
         parser = null;
         // dump debug data
@@ -189,6 +220,10 @@ public final class DirParser extends Parser {
   @Override
   public String info() {
     final TokenBuilder tb = new TokenBuilder();
+    if(filter != null && files > 0) {
+      final long fps = files * 1000000000L / Math.max(1, time);
+      tb.addExt(FILES_PARSED_X_X, files, fps).add(NL);
+    }
     if(!skipped.isEmpty()) {
       tb.add(SKIPPED).add(COL).add(NL);
       final int s = skipped.size();
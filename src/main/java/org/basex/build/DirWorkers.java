@@ -0,0 +1,242 @@
+package org.basex.build;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.core.*;
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * Parses the files of a directory in parallel. Each file is parsed by one of the
+ * worker threads into a main memory fragment. The fragments are appended to the
+ * builder by the calling thread, in the order in which the files were added.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+final class DirWorkers {
+  /** Maximum size of a file that will be parsed in a worker thread. */
+  static final long MAXSIZE = 1 << 22;
+  /** Maximum number of pending files per thread. */
+  private static final int PENDING = 8;
+  /** Task that stops a worker thread. */
+  private static final Task STOP = new Task(null, null);
+
+  /** Builder. */
+  private final Builder build;
+  /** Database properties. */
+  private final Prop prop;
+  /** Skipped corrupt files (if {@code null}, parse errors will be raised). */
+  private final StringList skipped;
+  /** Attribute cache. */
+  private final Atts atts = new Atts();
+  /** Pre values after the currently opened elements. */
+  private final IntList ends = new IntList();
+  /** Files to be parsed by the worker threads. */
+  private final BlockingQueue<Task> tasks;
+  /** Files in the order in which they have been added. */
+  private final ArrayDeque<Task> pending = new ArrayDeque<Task>();
+  /** Worker threads. */
+  private final Thread[] threads;
+  /** Maximum number of pending files. */
+  private final int max;
+  /** Number of files that have been parsed and appended. */
+  int parsed;
+
+  /**
+   * Constructor, starting the worker threads.
+   * @param b builder
+   * @param pr database properties
+   * @param skip list for skipped corrupt files (if {@code null}, parse errors
+   *   will be raised)
+   * @param ts number of threads
+   */
+  DirWorkers(final Builder b, final Prop pr, final StringList skip, final int ts) {
+    build = b;
+    prop = pr;
+    skipped = skip;
+    max = ts * PENDING;
+    tasks = new ArrayBlockingQueue<Task>(max + ts);
+    threads = new Thread[ts];
+    for(int t = 0; t < ts; t++) {
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for(Task task; (task = tasks.take()) != STOP;) task.parse(prop);
+          } catch(final InterruptedException ex) {
+            Util.debug(ex);
+          }
+        }
+      };
+      threads[t].setDaemon(true);
+      threads[t].start();
+    }
+  }
+
+  /**
+   * Adds a file to be parsed. Fragments of files that have already been parsed
+   * are appended to the builder.
+   * @param in input
+   * @param target target path
+   * @throws IOException I/O exception
+   */
+  void add(final IO in, final String target) throws IOException {
+    final Task task = new Task(in, target);
+    pending.add(task);
+    tasks.add(task);
+    while(!pending.isEmpty() && (pending.size() >= max || pending.peek().done())) {
+      append(pending.poll());
+    }
+  }
+
+  /**
+   * Waits until all pending files have been parsed, and appends them to the builder.
+   * @throws IOException I/O exception
+   */
+  void finish() throws IOException {
+    while(!pending.isEmpty()) append(pending.poll());
+  }
+
+  /**
+   * Stops the worker threads. Files that are currently parsed will be finished.
+   */
+  void close() {
+    pending.clear();
+    tasks.clear();
+    for(int t = 0; t < threads.length; t++) tasks.add(STOP);
+  }
+
+  /**
+   * Waits until the specified file has been parsed, and appends its fragment
+   * to the builder.
+   * @param task task
+   * @throws IOException I/O exception
+   */
+  private void append(final Task task) throws IOException {
+    final Throwable ex = task.result();
+    if(ex != null) {
+      if(skipped != null && ex instanceof IOException) {
+        skipped.add(task.input.path());
+        return;
+      }
+      if(ex instanceof IOException) throw (IOException) ex;
+      if(ex instanceof RuntimeException) throw (RuntimeException) ex;
+      throw (Error) ex;
+    }
+    build.checkStop();
+    parsed++;
+    final MemData data = task.data;
+    final int size = data.meta.size;
+    build.startDoc(data.text(0, true));
+    for(int pre = 1; pre < size;) {
+      while(!ends.isEmpty() && ends.peek() <= pre) {
+        ends.pop();
+        build.endElem();
+      }
+      final int kind = data.kind(pre);
+      if(kind == Data.ELEM) {
+        if(data.nsFlag(pre)) {
+          final Atts ns = data.ns(pre);
+          for(int n = 0; n < ns.size(); n++) build.startNS(ns.name(n), ns.string(n));
+        }
+        final int as = data.attSize(pre, kind);
+        atts.reset();
+        for(int a = 1; a < as; a++) {
+          atts.add(data.name(pre + a, Data.ATTR), data.text(pre + a, false));
+        }
+        final int s = data.size(pre, kind);
+        if(s == as) {
+          build.emptyElem(data.name(pre, kind), atts);
+        } else {
+          build.startElem(data.name(pre, kind), atts);
+          ends.push(pre + s);
+        }
+        pre += as;
+      } else {
+        final byte[] value = data.text(pre, true);
+        if(kind == Data.TEXT) build.text(value);
+        else if(kind == Data.COMM) build.comment(value);
+        else build.pi(value);
+        pre++;
+      }
+    }
+    while(!ends.isEmpty()) {
+      ends.pop();
+      build.endElem();
+    }
+    build.endDoc();
+    build.encoding(data.meta.encoding);
+  }
+
+  /**
+   * File to be parsed.
+   */
+  private static final class Task {
+    /** Input. */
+    final IO input;
+    /** Target path. */
+    final String target;
+    /** Parsed fragment. */
+    MemData data;
+    /** Error. */
+    Throwable error;
+    /** Indicates if the file has been parsed. */
+    private boolean done;
+
+    /**
+     * Constructor.
+     * @param in input
+     * @param targ target path
+     */
+    Task(final IO in, final String targ) {
+      input = in;
+      target = targ;
+    }
+
+    /**
+     * Parses the file.
+     * @param prop database properties
+     */
+    void parse(final Prop prop) {
+      MemData md = null;
+      Throwable ex = null;
+      try {
+        md = MemBuilder.build("", Parser.singleParser(input, prop, target));
+      } catch(final Throwable th) {
+        ex = th;
+      }
+      synchronized(this) {
+        data = md;
+        error = ex;
+        done = true;
+        notifyAll();
+      }
+    }
+
+    /**
+     * Indicates if the file has been parsed.
+     * @return result of check
+     */
+    synchronized boolean done() {
+      return done;
+    }
+
+    /**
+     * Waits until the file has been parsed.
+     * @return error, or {@code null}
+     * @throws InterruptedIOException interrupted waiting
+     */
+    synchronized Throwable result() throws InterruptedIOException {
+      try {
+        while(!done) wait();
+      } catch(final InterruptedException ex) {
+        throw new InterruptedIOException(ex.getMessage());
+      }
+      return error;
+    }
+  }
+}
@@ -543,11 +543,15 @@ public final class MAB2Parser extends SingleParser {
   private void index(final TokenMap hash, final String fn) {
     try {
       final DataAccess in = new DataAccess(new IOFile(fn + ".dat"));
-      while(true) {
-        final byte[] key = find(in, (byte) '\t');
-        final byte[] val = find(in, (byte) '\n');
-        if(key == null) break;
-        hash.add(key, val);
+      try {
+        while(true) {
+          final byte[] key = find(in, (byte) '\t');
+          final byte[] val = find(in, (byte) '\n');
+          if(key == null) break;
+          hash.add(key, val);
+        }
+      } finally {
+        in.close();
       }
     } catch(final IOException ex) {
       Util.debug(ex);
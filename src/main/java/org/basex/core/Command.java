@@ -280,6 +280,7 @@ public abstract class Command extends Progress {
    * @return closed flag
    */
   protected static boolean close(final Context ctx, final String db) {
+    ctx.queries.release(db);
     final boolean close = ctx.data() != null &&
         db.equals(ctx.data().meta.name) && ctx.dbs.pins(db) == 1;
     return close && new Close().run(ctx);
@@ -4,6 +4,7 @@ import static org.basex.core.Text.*;
 
 import org.basex.data.*;
 import org.basex.io.random.*;
+import org.basex.query.*;
 import org.basex.query.util.pkg.*;
 import org.basex.server.*;
 import org.basex.util.list.*;
@@ -33,6 +34,8 @@ public final class Context {
   public final Events events;
   /** Opened databases. */
   public final Datas dbs;
+  /** Cached queries. */
+  public final QueryCache queries;
   /** Users. */
   public final Users users;
   /** Package repository. */
@@ -85,6 +88,7 @@ public final class Context {
     listener = cl;
     mprop = ctx.mprop;
     dbs = ctx.dbs;
+    queries = ctx.queries;
     events = ctx.events;
     sessions = ctx.sessions;
     databases = ctx.databases;
@@ -102,12 +106,14 @@ public final class Context {
   private Context(final MainProp mp) {
     mprop = mp;
     dbs = new Datas();
+    queries = new QueryCache();
     events = new Events();
     sessions = new Sessions();
     blocker = new ClientBlocker();
     databases = new Databases(this);
     locks = mp.is(MainProp.GLOBALLOCK) || Prop.gui ?
       new ProcessLocking(this) : new DBLocking(mp);
+    BufferPool.size(mp.num(MainProp.BUFFERPOOL));
     users = new Users(this);
     repo = new Repo(this);
     log = new Log(this);
@@ -204,6 +210,7 @@ public final class Context {
    * @return result of check
    */
   public boolean pinned(final String db) {
+    queries.release(db);
     return dbs.pinned(db) || TableDiskAccess.locked(db, this);
   }
 
@@ -215,23 +222,48 @@ public final class Context {
     // administrators will not be affected by the timeout
     if(!user.has(Perm.ADMIN)) pr.startTimeout(mprop.num(MainProp.TIMEOUT));
 
-    // get touched databases
-    StringList sl = new StringList(1);
-    if(!pr.databases(sl)) {
-      // databases cannot be determined... pass null reference
-      sl = null;
-    } else {
-      // replace empty string with currently opened database and return array
-      for(int d = 0; d < sl.size(); d++) {
-        if(sl.get(d).isEmpty())
-          if(null == data) sl.deleteAt(d);
-          else sl.set(d, data.meta.name);
-      }
-    }
+    final StringList sl = locked(pr);
     locks.acquire(pr, pr.updating ? new StringList(0) : sl,
                                   pr.updating ? sl : new StringList(0));
   }
 
+  /**
+   * Returns the names of the databases that will be locked by the specified process.
+   * @param pr process
+   * @return database names, or {@code null} if the databases cannot be determined
+   */
+  public StringList locked(final Progress pr) {
+    // get touched databases
+    final StringList sl = new StringList(1);
+    // databases cannot be determined... pass null reference
+    if(!pr.databases(sl)) return null;
+    // replace empty string with currently opened database and return array
+    for(int d = sl.size() - 1; d >= 0; d--) {
+      if(sl.get(d).isEmpty())
+        if(null == data) sl.deleteAt(d);
+        else sl.set(d, data.meta.name);
+    }
+    return sl;
+  }
+
+  /**
+   * Checks if two processes will block each other if they are run at the same time.
+   * @param db1 databases locked by the first process ({@code null}: all databases)
+   * @param upd1 updating flag of the first process
+   * @param db2 databases locked by the second process ({@code null}: all databases)
+   * @param upd2 updating flag of the second process
+   * @return result of check
+   */
+  public boolean conflicts(final StringList db1, final boolean upd1,
+      final StringList db2, final boolean upd2) {
+    // readers never block each other
+    if(!upd1 && !upd2) return false;
+    // global locking: writers block all other processes
+    if(locks instanceof ProcessLocking || db1 == null || db2 == null) return true;
+    for(final String db : db1) if(db2.contains(db)) return true;
+    return false;
+  }
+
   /**
    * Unlocks the process and stops the timeout.
    * @param pr process
@@ -32,6 +32,8 @@ public final class MainProp extends AProp {
   public static final Object[] LANGKEYS = { "LANGKEYS", false };
   /** Applied locking algorithm: local (database) vs. global (process) locking. */
   public static final Object[] GLOBALLOCK = { "GLOBALLOCK", false };
+  /** Size of the buffer pool shared by all opened database files (MB). */
+  public static final Object[] BUFFERPOOL = { "BUFFERPOOL", 64 };
 
   /** Comment: written to property file. */
   public static final Object[] C_CLIENT = { "Client/Server Architecture" };
@@ -62,8 +64,16 @@ public final class MainProp extends AProp {
   public static final Object[] TIMEOUT = { "TIMEOUT", 30 };
   /** Keep alive time of clients; deactivated if set to 0. */
   public static final Object[] KEEPALIVE = { "KEEPALIVE", 600 };
+  /** Timeout (seconds) for idle query cursors; deactivated if set to 0. */
+  public static final Object[] CURSORTIMEOUT = { "CURSORTIMEOUT", 5 };
   /** Defines the number of parallel readers. */
   public static final Object[] PARALLEL = { "PARALLEL", 8 };
+  /** Server: maximum number of threads for processing client requests. */
+  public static final Object[] WORKERS = { "WORKERS", 64 };
+  /** Server: maximum number of queued client requests. */
+  public static final Object[] MAXQUEUE = { "MAXQUEUE", 1024 };
+  /** Server: maximum number of cached compiled queries. */
+  public static final Object[] QUERYCACHE = { "QUERYCACHE", 100 };
   /** Logging flag. */
   public static final Object[] LOG = { "LOG", true };
   /** Log message cut-off. */
@@ -73,6 +73,8 @@ public final class Prop extends AProp {
   public static final Object[] MAINMEM = { "MAINMEM", false };
   /** Flag for opening a database after creating it. */
   public static final Object[] CREATEONLY = { "CREATEONLY", false };
+  /** Flag for reading database tables via memory-mapped files. */
+  public static final Object[] MMAP = { "MMAP", false };
 
   // Parsing
 
@@ -84,6 +86,8 @@ public final class Prop extends AProp {
   public static final Object[] SKIPCORRUPT = { "SKIPCORRUPT", false };
   /** Flag for adding remaining files as raw files. */
   public static final Object[] ADDRAW = { "ADDRAW", false };
+  /** Number of threads for parsing files in directories (0: number of processors). */
+  public static final Object[] PARSETHREADS = { "PARSETHREADS", 1 };
   /** Define import parser. */
   public static final Object[] PARSER = { "PARSER", "xml" };
   /** Define parser options. */
@@ -124,6 +128,10 @@ public final class Prop extends AProp {
   public static final Object[] MAXCATS = { "MAXCATS", 100 };
   /** Flag for automatic index update. */
   public static final Object[] UPDINDEX = { "UPDINDEX", false };
+  /** Flag for building value indexes from sorted buffers instead of value trees. */
+  public static final Object[] INDEXSORT = { "INDEXSORT", true };
+  /** Number of threads for building indexes (0: number of available processors). */
+  public static final Object[] INDEXTHREADS = { "INDEXTHREADS", 0 };
 
   // Full-Text
 
@@ -154,8 +162,16 @@ public final class Prop extends AProp {
   public static final Object[] FORCECREATE = { "FORCECREATE", false };
   /** Levenshtein default error. */
   public static final Object[] LSERROR = { "LSERROR", 0 };
+  /** Flag for scoring full-text index results with the BM25 model. */
+  public static final Object[] BM25 = { "BM25", false };
   /** Number of query executions. */
   public static final Object[] RUNS = { "RUNS", 1 };
+  /** Maximum number of tuples sorted in main memory (0: no limit). */
+  public static final Object[] SORTBUFFER = { "SORTBUFFER", 1000000 };
+  /** Maximum number of aggregated groups kept in main memory (0: no limit). */
+  public static final Object[] GROUPBUFFER = { "GROUPBUFFER", 1000000 };
+  /** Number of threads for evaluating for clauses (0: number of processors). */
+  public static final Object[] QUERYTHREADS = { "QUERYTHREADS", 1 };
 
   // Serialize
 
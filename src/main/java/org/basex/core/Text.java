@@ -163,6 +163,8 @@ public interface Text {
   String CONNECTION_ERROR = lang("connection_error");
   /** Query has already been executed. */
   String ALREADY_EXECUTED = lang("already_executed");
+  /** Conflict with the locks of an open cursor. */
+  String CURSOR_CONFLICT_X = lang("cursor_conflict_%");
   /** Access denied. */
   String ACCESS_DENIED = lang("access_denied");
   /** User name. */
@@ -497,6 +499,8 @@ public interface Text {
   String RES_NOT_FOUND_X = lang("res_not_found_%");
   /** Resource "%" not found. */
   String RES_NOT_FOUND = lang("res_not_found");
+  /** Resources added, replaced or stored. */
+  String RES_BATCH_X_X = lang("res_batch_%_%");
   /** Resource deleted. */
   String RES_DELETED_X_X = lang("res_deleted_%_%");
   /** Resource renamed. */
@@ -510,6 +514,8 @@ public interface Text {
   String SKIPPED = lang("skipped");
   /** Info on skipped corrupt files. */
   String MORE_SKIPPED_X = lang("more_skipped_%");
+  /** Parsed files. */
+  String FILES_PARSED_X_X = lang("files_parsed_%_%");
   /** Missing database name. */
   String ENTER_DB_NAME = lang("enter_db_name");
   /** No tokenizer found. */
@@ -805,6 +811,18 @@ public interface Text {
 
   /** "Database Properties". */
   String DB_PROPS = lang("db_props");
+  /** "Buffers". */
+  String BUFFERS = lang("buffers");
+  /** "Buffer Pool". */
+  String BUFFER_POOL = lang("buffer_pool");
+  /** "% hits, % misses, % buffers". */
+  String BUFFER_STATS_X_X_X = lang("buffer_stats_%_%_%");
+  /** "Queued Requests". */
+  String QUEUED_REQUESTS = lang("queued_requests");
+  /** "Query Cache". */
+  String QUERY_CACHE = lang("query_cache");
+  /** "% queries, % hits, % misses (% hit rate)". */
+  String QUERY_CACHE_X_X_X_X = lang("query_cache_%_%_%_%");
   /** "General Information". */
   String GENERAL_INFO = lang("general_info");
   /** "Main Options". */
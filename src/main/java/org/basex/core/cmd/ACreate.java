@@ -4,6 +4,7 @@ import static org.basex.core.Text.*;
 import static org.basex.data.DataText.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.basex.core.*;
 import org.basex.data.*;
@@ -113,15 +114,72 @@ public abstract class ACreate extends Command {
 
     if(data.inMemory()) return;
 
-    final IndexBuilder ib;
+    final IndexBuilder ib = builder(index, data);
+    data.closeIndex(index);
+    data.setIndex(index, (cmd == null ? ib : cmd.progress(ib)).build());
+  }
+
+  /**
+   * Builds the specified indexes. If more than one thread is available, the indexes
+   * are built in parallel, and the threads are distributed among them.
+   * @param data data reference
+   * @param cmd calling command (can be {@code null})
+   * @param indexes indexes to be built
+   * @throws IOException I/O exception
+   */
+  protected static void create(final Data data, final ACreate cmd,
+      final IndexType... indexes) throws IOException {
+
+    final int t = data.meta.prop.num(Prop.INDEXTHREADS);
+    final int threads = t > 0 ? t : Runtime.getRuntime().availableProcessors();
+    final int is = indexes.length;
+    if(data.inMemory() || is < 2 || threads < 2) {
+      for(final IndexType index : indexes) create(index, data, cmd);
+      return;
+    }
+
+    final IndexBuilder[] ibs = new IndexBuilder[is];
+    for(int i = 0; i < is; i++) {
+      final int bt = threads / is + (i < threads % is ? 1 : 0);
+      ibs[i] = builder(indexes[i], data).threads(bt, true);
+      data.closeIndex(indexes[i]);
+    }
+    if(cmd != null) cmd.progress(ibs[0]);
+    final Index[] idx = IndexBuilder.build(cmd, ibs);
+    for(int i = 0; i < is; i++) data.setIndex(indexes[i], idx[i]);
+  }
+
+  /**
+   * Returns the value and full-text indexes whose flags are set.
+   * @param text text index
+   * @param attr attribute index
+   * @param ftxt full-text index
+   * @return indexes
+   */
+  protected static IndexType[] indexes(final boolean text, final boolean attr,
+      final boolean ftxt) {
+    final ArrayList<IndexType> il = new ArrayList<IndexType>();
+    if(text) il.add(IndexType.TEXT);
+    if(attr) il.add(IndexType.ATTRIBUTE);
+    if(ftxt) il.add(IndexType.FULLTEXT);
+    return il.toArray(new IndexType[il.size()]);
+  }
+
+  /**
+   * Returns a builder for the specified index.
+   * @param index index to be built
+   * @param data data reference
+   * @return builder
+   * @throws IOException I/O exception
+   */
+  private static IndexBuilder builder(final IndexType index, final Data data)
+      throws IOException {
     switch(index) {
-      case TEXT:      ib = new ValueIndexBuilder(data, true); break;
-      case ATTRIBUTE: ib = new ValueIndexBuilder(data, false); break;
-      case FULLTEXT:  ib = new FTBuilder(data); break;
+      case TEXT:      return new ValueIndexBuilder(data, true);
+      case ATTRIBUTE: return new ValueIndexBuilder(data, false);
+      case FULLTEXT:  return new FTBuilder(data);
       default:        throw Util.notexpected();
     }
-    data.closeIndex(index);
-    data.setIndex(index, (cmd == null ? ib : cmd.progress(ib)).build());
   }
 
   /**
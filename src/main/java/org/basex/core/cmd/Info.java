@@ -5,6 +5,8 @@ import static org.basex.core.Text.*;
 import java.io.*;
 
 import org.basex.core.*;
+import org.basex.io.*;
+import org.basex.io.random.*;
 import org.basex.util.*;
 import org.basex.util.list.*;
 
@@ -45,6 +47,15 @@ public final class Info extends AInfo {
     if(context.user.has(Perm.CREATE)) {
       Performance.gc(2);
       info(tb, USED_MEM, Performance.getMemory());
+      info(tb, BUFFER_POOL, Performance.format((long) BufferPool.used() * IO.BLOCKSIZE) +
+          " / " + Performance.format((long) BufferPool.max() * IO.BLOCKSIZE));
+      if(context.listener != null) {
+        info(tb, QUEUED_REQUESTS, context.sessions.queued);
+        final long[] qc = context.queries.stats();
+        final long all = qc[1] + qc[2];
+        info(tb, QUERY_CACHE, Util.info(QUERY_CACHE_X_X_X_X, qc[0], qc[1], qc[2],
+            (all == 0 ? 0 : qc[1] * 100 / all) + "%"));
+      }
     }
     if(context.user.has(Perm.ADMIN)) {
       final AProp prop = context.mprop;
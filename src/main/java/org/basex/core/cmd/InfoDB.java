@@ -8,6 +8,8 @@ import org.basex.core.*;
 import org.basex.core.parse.*;
 import org.basex.core.parse.Commands.*;
 import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.io.random.*;
 import org.basex.util.*;
 import org.basex.util.list.*;
 
@@ -85,6 +87,18 @@ public final class InfoDB extends AInfo {
         info(tb, Prop.MAXCATS[0], meta.maxcats);
         info(tb, Prop.MAXLEN[0], meta.maxlen);
       }
+      if(meta.path != null) {
+        // statistics on the buffers of opened database files
+        boolean first = true;
+        for(final IOFile f : meta.path.children()) {
+          final long[] stats = BufferPool.stats(f);
+          if(stats == null) continue;
+          if(first) tb.add(NL).addExt(header, BUFFERS);
+          first = false;
+          final String s = Util.info(BUFFER_STATS_X_X_X, stats[0], stats[1], stats[2]);
+          info(tb, f.name(), s);
+        }
+      }
     }
     return tb.toString();
   }
@@ -7,6 +7,7 @@ import java.io.*;
 import org.basex.core.*;
 import org.basex.data.*;
 import org.basex.index.*;
+import org.basex.index.ft.*;
 import org.basex.util.*;
 import org.basex.util.list.*;
 
@@ -118,30 +119,16 @@ public final class Optimize extends ACreate {
       md.uptodate = true;
     }
 
-    // rebuild value indexes
-    optimize(IndexType.ATTRIBUTE, data, md.createattr, md.attrindex, c);
-    optimize(IndexType.TEXT,      data, md.createtext, md.textindex, c);
-    optimize(IndexType.FULLTEXT,  data, md.createftxt, md.ftxtindex, c);
-  }
-
-  /**
-   * Optimizes the specified index.
-   * @param type index type
-   * @param d data reference
-   * @param create create flag
-   * @param old old flag
-   * @param c calling command
-   * @throws IOException I/O exception
-   *
-   */
-  private static void optimize(final IndexType type, final Data d,
-      final boolean create, final boolean old, final Optimize c) throws IOException {
-
-    // check if flags are nothing has changed
-    if(create == old) return;
-
-    // create or drop index
-    if(create) create(type, d, c);
-    else drop(type, d);
+    // drop obsolete value indexes
+    if(!md.createattr && md.attrindex) drop(IndexType.ATTRIBUTE, data);
+    if(!md.createtext && md.textindex) drop(IndexType.TEXT, data);
+    if(!md.createftxt && md.ftxtindex) drop(IndexType.FULLTEXT, data);
+    // merge changes into the full-text index structures
+    if(md.ftxtindex && data.ftxindex instanceof UpdatableFTIndex) {
+      data.setIndex(IndexType.FULLTEXT, ((UpdatableFTIndex) data.ftxindex).flush(true));
+    }
+    // create missing value indexes
+    create(data, c, indexes(md.createtext && !md.textindex,
+        md.createattr && !md.attrindex, md.createftxt && !md.ftxtindex));
   }
 }
@@ -138,6 +138,14 @@ public abstract class Data {
    */
   public abstract void finishUpdate();
 
+  /**
+   * Turns the bulk mode on or off. In bulk mode, updates of the value indexes
+   * are buffered and merged at once when the mode is turned off.
+   * Must be called within an update operation.
+   * @param on on/off flag
+   */
+  public void bulk(final boolean on) { }
+
   /**
    * Returns the indexed pre references for the specified token.
    * @param token index token reference
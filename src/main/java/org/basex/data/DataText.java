@@ -16,7 +16,7 @@ public interface DataText {
   String STORAGE = "7.1";
   /** Index version; if it's modified, new indexes can't be parsed anymore
    * by older versions. */
-  String ISTORAGE = "7.1";
+  String ISTORAGE = "7.6";
 
   /** Database version. */
   String DBSTR = "STORAGE";
@@ -38,6 +38,8 @@ public final class DiskData extends Data {
       return new Compress();
     }
   };
+  /** Maximum number of ids that are buffered in bulk mode. */
+  private static final int BULKSIZE = 1 << 22;
 
   /** Texts access file. */
   private DataAccess texts;
@@ -47,6 +49,10 @@ public final class DiskData extends Data {
   private TokenObjMap<IntList> txts;
   /** Attribute values buffered for subsequent index updates. */
   private TokenObjMap<IntList> atvs;
+  /** Number of buffered ids. */
+  private int buffered;
+  /** Bulk mode: buffered index updates are merged when the mode is turned off. */
+  private boolean bulk;
   /** Closed flag. */
   private boolean closed;
 
@@ -88,7 +94,7 @@ public final class DiskData extends Data {
       if(meta.textindex) txtindex = new DiskValues(this, true);
       if(meta.attrindex) atvindex = new DiskValues(this, false);
     }
-    if(meta.ftxtindex) ftxindex = new FTIndex(this);
+    if(meta.ftxtindex) ftxindex = FTIndex.get(this);
     init();
   }
 
@@ -156,6 +162,7 @@ public final class DiskData extends Data {
     if(closed) return;
     closed = true;
     try {
+      indexFlush();
       write();
       table.close();
       texts.close();
@@ -177,6 +184,7 @@ public final class DiskData extends Data {
 
     // invalidate index reference
     meta.dirty = true;
+    meta.changes++;
     switch(type) {
       case TEXT:      txtindex = null; break;
       case ATTRIBUTE: atvindex = null; break;
@@ -188,6 +196,7 @@ public final class DiskData extends Data {
   @Override
   public void setIndex(final IndexType type, final Index index) {
     meta.dirty = true;
+    meta.changes++;
     switch(type) {
       case TEXT:      txtindex = index; break;
       case ATTRIBUTE: atvindex = index; break;
@@ -202,6 +211,12 @@ public final class DiskData extends Data {
     return (uf.exists() || uf.touch()) && table.lock(true);
   }
 
+  @Override
+  public void bulk(final boolean on) {
+    if(!on) indexFlush();
+    bulk = on;
+  }
+
   @Override
   public synchronized void finishUpdate() {
     // skip all flush operations if auto flush is off, or file has already been closed
@@ -214,6 +229,9 @@ public final class DiskData extends Data {
       values.flush();
       if(txtindex != null) ((DiskValues) txtindex).flush();
       if(atvindex != null) ((DiskValues) atvindex).flush();
+      if(ftxindex instanceof UpdatableFTIndex) {
+        ftxindex = ((UpdatableFTIndex) ftxindex).flush(false);
+      }
     } catch(final IOException ex) {
       Util.stack(ex);
     } finally {
@@ -252,9 +270,10 @@ public final class DiskData extends Data {
     final long o = textOff(pre);
     if(num(o)) return numDigits((int) o);
     final DataAccess da = text ? texts : values;
-    final int l = da.readNum(o & IO.OFFCOMP - 1);
+    final long p = o & IO.OFFCOMP - 1;
+    final int l = da.readNum(p);
     // compressed: next number contains number of compressed bytes
-    return cpr(o) ? da.readNum() : l;
+    return cpr(o) ? da.readNum(p + Num.length(l)) : l;
   }
 
   /**
@@ -302,11 +321,17 @@ public final class DiskData extends Data {
 
     if(meta.updindex) {
       // update indexes
+      indexFlush();
       final int id = id(pre);
       final byte[] oldval = text(pre, text);
       final DiskValues index = (DiskValues) (text ? txtindex : atvindex);
       // don't index document names
       if(index != null && kind != DOC) index.replace(oldval, value, id);
+      final UpdatableFTIndex ft = kind == TEXT ? ftindex() : null;
+      if(ft != null) {
+        ft.delete(id, oldval);
+        ft.add(id, value);
+      }
     }
 
     // reference to text store
@@ -346,14 +371,29 @@ public final class DiskData extends Data {
 
   @Override
   protected void indexBegin() {
+    ftindex();
+    // in bulk mode, keep texts that have been buffered by previous operations
+    if(bulk && txts != null) return;
     txts = new TokenObjMap<IntList>();
     atvs = new TokenObjMap<IntList>();
+    buffered = 0;
   }
 
   @Override
   protected void indexEnd() {
+    if(!bulk || buffered >= BULKSIZE) indexFlush();
+  }
+
+  /**
+   * Merges all buffered texts into the value indexes.
+   */
+  private void indexFlush() {
+    if(txts == null) return;
     if(!txts.isEmpty()) ((DiskValues) txtindex).index(txts);
     if(!atvs.isEmpty()) ((DiskValues) atvindex).index(atvs);
+    txts = null;
+    atvs = null;
+    buffered = 0;
   }
 
   @Override
@@ -370,6 +410,12 @@ public final class DiskData extends Data {
       m = meta.textindex && kind != DOC ? txts : null;
     }
 
+    // add text to full-text index
+    if(kind == TEXT && meta.updindex) {
+      final UpdatableFTIndex ft = ftindex();
+      if(ft != null) ft.add(id, value);
+    }
+
     // add text to map to index later
     if(meta.updindex && m != null && value.length <= meta.maxlen) {
       final IntList ids;
@@ -381,6 +427,7 @@ public final class DiskData extends Data {
         ids = m.value(hash);
       }
       ids.add(id);
+      buffered++;
     }
 
     // add text to text file
@@ -397,22 +444,26 @@ public final class DiskData extends Data {
 
   @Override
   protected void indexDelete(final int pre, final int size) {
-    if(!(meta.textindex || meta.attrindex)) return;
+    final UpdatableFTIndex ft = ftindex();
+    if(!(meta.textindex || meta.attrindex || ft != null)) return;
+    // buffered texts may refer to the nodes to be deleted
+    indexFlush();
 
     // collect all keys and ids
-    txts = new TokenObjMap<IntList>();
-    atvs = new TokenObjMap<IntList>();
+    final TokenObjMap<IntList> dtxts = new TokenObjMap<IntList>();
+    final TokenObjMap<IntList> datvs = new TokenObjMap<IntList>();
     final int l = pre + size;
     for(int p = pre; p < l; ++p) {
       final int k = kind(p);
       final boolean isAttr = k == ATTR;
+      if(ft != null && k == TEXT) ft.delete(id(p), text(p, true));
       // consider nodes which are attribute, text, comment, or proc. instruction
       if(meta.attrindex && isAttr ||
          meta.textindex && (k == TEXT || k == COMM || k == PI)) {
         final byte[] key = text(p, !isAttr);
         if(key.length <= meta.maxlen) {
           final IntList ids;
-          final TokenObjMap<IntList> m = isAttr ? atvs : txts;
+          final TokenObjMap<IntList> m = isAttr ? datvs : dtxts;
           final int hash = m.id(key);
           if(hash == 0) {
             ids = new IntList();
@@ -424,7 +475,19 @@ public final class DiskData extends Data {
         }
       }
     }
-    if(!txts.isEmpty()) ((DiskValues) txtindex).delete(txts);
-    if(!atvs.isEmpty()) ((DiskValues) atvindex).delete(atvs);
+    if(!dtxts.isEmpty()) ((DiskValues) txtindex).delete(dtxts);
+    if(!datvs.isEmpty()) ((DiskValues) atvindex).delete(datvs);
+  }
+
+  /**
+   * Returns the full-text index if it can be updated. Index structures of older
+   * versions, which reference pre values, are invalidated.
+   * @return updatable index, or {@code null}
+   */
+  private UpdatableFTIndex ftindex() {
+    if(!meta.ftxtindex) return null;
+    if(ftxindex instanceof UpdatableFTIndex) return (UpdatableFTIndex) ftxindex;
+    meta.ftxtindex = false;
+    return null;
   }
 }
@@ -87,6 +87,8 @@ public final class MetaData {
   public volatile int size;
   /** Last (highest) id assigned to a node. */
   public volatile int lastid = -1;
+  /** Number of updates and index changes since the database has been opened. */
+  public volatile int changes;
 
   /** Flag for out-of-date indexes. */
   private volatile boolean oldindex;
@@ -373,11 +375,12 @@ public final class MetaData {
     time = System.currentTimeMillis();
     uptodate = false;
     dirty = true;
+    changes++;
     if(!updindex) {
       textindex = false;
       attrindex = false;
+      ftxtindex = false;
     }
-    ftxtindex = false;
   }
 
   // PRIVATE METHODS ==========================================================
@@ -3,19 +3,28 @@ package org.basex.index;
 import static org.basex.core.Text.*;
 
 import java.io.*;
+import java.util.concurrent.atomic.*;
 
 import org.basex.core.*;
 import org.basex.data.*;
 import org.basex.util.*;
+import org.basex.util.list.*;
 
 /**
  * This interface defines the functions which are needed for building
  * new index structures.
  *
+ * If more than one thread is available, the nodes of a database will be split into
+ * partitions, which are indexed in parallel by separate builders. The partitions
+ * write their results to temporary index structures, which are finally merged.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
 public abstract class IndexBuilder extends Progress {
+  /** Minimum number of nodes of a partition. */
+  private static final int PARTITION = 1 << 12;
+
   /** Data reference. */
   protected final Data data;
   /** Total parsing value. */
@@ -28,6 +37,25 @@ public abstract class IndexBuilder extends Progress {
   protected boolean merge;
   /** Number of cached index structures. */
   protected int csize;
+  /** Ids of the temporary index structures, in the order of their pre values. */
+  protected final IntList runs = new IntList();
+
+  /** First pre value to be indexed. */
+  protected final int start;
+  /** Pre value after the last node to be indexed. */
+  protected final int end;
+  /** Parent builder ({@code null} if this builder indexes the whole database). */
+  private final IndexBuilder parent;
+  /** Calling process ({@code null} if not assigned). */
+  private Progress caller;
+  /** Counter for ids of temporary index structures (shared by all partitions). */
+  private final AtomicInteger ids;
+  /** Partitions that are currently indexed. */
+  private volatile IndexBuilder[] parts;
+  /** Number of threads that may be used for building the index. */
+  private int threads;
+  /** Indicates if main memory is shared with other builders. */
+  private boolean shared;
 
   /** Runtime for memory consumption. */
   private final Runtime rt = Runtime.getRuntime();
@@ -44,14 +72,39 @@ public abstract class IndexBuilder extends Progress {
    */
   public abstract Index build() throws IOException;
 
+  /**
+   * Indexes the nodes of the specified partition, and writes the results to
+   * temporary index structures.
+   * @throws IOException I/O Exception
+   */
+  protected abstract void partition() throws IOException;
+
+  /**
+   * Creates a builder for the specified partition.
+   * @param s first pre value
+   * @param e pre value after the last node
+   * @return builder
+   * @throws IOException I/O Exception
+   */
+  protected abstract IndexBuilder partition(final int s, final int e) throws IOException;
+
   /**
    * Checks if the command was interrupted, and prints some debug output.
    */
   protected final void check() {
-    checkStop();
+    stopped();
     if(Prop.debug && (pre & 0x1FFFFF) == 0) Util.err(".");
   }
 
+  /**
+   * Checks if this builder, its parent or the calling process was interrupted.
+   */
+  private void stopped() {
+    checkStop();
+    if(caller != null) caller.checkStop();
+    if(parent != null) parent.stopped();
+  }
+
   /**
    * Checks if enough memory is left to continue index building.
    * @return result of check
@@ -60,7 +113,9 @@ public abstract class IndexBuilder extends Progress {
   protected final boolean memFull() throws IOException {
     final boolean full = rt.totalMemory() - rt.freeMemory() >= maxMem;
     if(full) {
-      if(cc >= 0 && !singlegc) throw new BaseXException(OUT_OF_MEM + H_OUT_OF_MEM);
+      // memory that is shared with other builders may not be freed by this builder
+      if(cc >= 0 && !singlegc && !shared)
+        throw new BaseXException(OUT_OF_MEM + H_OUT_OF_MEM);
       if(Prop.debug) Util.err("!");
       merge = true;
       cc = 30;
@@ -80,6 +135,149 @@ public abstract class IndexBuilder extends Progress {
     singlegc = d.meta.prop.is(Prop.SINGLEGC);
     if(rt.totalMemory() - rt.freeMemory() >= rt.maxMemory() >> 1 && !singlegc)
       Performance.gc(1);
+
+    start = 0;
+    end = size;
+    parent = null;
+    ids = new AtomicInteger();
+    final int t = d.meta.prop.num(Prop.INDEXTHREADS);
+    threads = t > 0 ? t : Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Constructor for partitions.
+   * @param p parent builder
+   * @param s first pre value
+   * @param e pre value after the last node
+   */
+  protected IndexBuilder(final IndexBuilder p, final int s, final int e) {
+    data = p.data;
+    size = p.size;
+    singlegc = p.singlegc;
+    start = s;
+    end = e;
+    parent = p;
+    ids = p.ids;
+    threads = 1;
+    shared = true;
+    merge = true;
+  }
+
+  /**
+   * Assigns the number of threads that may be used for building the index.
+   * @param t number of threads
+   * @param sh indicates if other indexes are built at the same time
+   * @return self reference
+   */
+  public final IndexBuilder threads(final int t, final boolean sh) {
+    threads = Math.max(1, t);
+    shared = sh;
+    return this;
+  }
+
+  /**
+   * Returns the number of partitions that will be indexed in parallel.
+   * @return number of partitions
+   */
+  protected final int partitions() {
+    return parent != null ? 1 : Math.max(1, Math.min(threads, size / PARTITION));
+  }
+
+  /**
+   * Returns a new id for a temporary index structure.
+   * @return id
+   */
+  protected final int id() {
+    final int id = ids.getAndIncrement();
+    runs.add(id);
+    return id;
+  }
+
+  /**
+   * Indexes the database in the specified number of partitions, which are processed
+   * in parallel. The ids of all temporary index structures will be assigned to
+   * {@link #runs}, sorted by the pre values of their entries.
+   * @param ps number of partitions
+   * @throws IOException I/O exception
+   */
+  protected final void parallel(final int ps) throws IOException {
+    final IndexBuilder[] ibs = new IndexBuilder[ps];
+    for(int p = 0; p < ps; p++) {
+      ibs[p] = partition((int) ((long) size * p / ps),
+          (int) ((long) size * (p + 1) / ps));
+    }
+    merge = true;
+    parts = ibs;
+    try {
+      run(ibs, false);
+    } finally {
+      pre = size;
+      parts = null;
+    }
+    for(final IndexBuilder ib : ibs) runs.insert(runs.size(), ib.runs.toArray());
+    csize = runs.size();
+  }
+
+  /**
+   * Builds the specified indexes in parallel.
+   * @param prog calling process (can be {@code null})
+   * @param ibs index builders
+   * @return indexes
+   * @throws IOException I/O exception
+   */
+  public static Index[] build(final Progress prog, final IndexBuilder... ibs)
+      throws IOException {
+    for(final IndexBuilder ib : ibs) ib.caller = prog;
+    return run(ibs, true);
+  }
+
+  /**
+   * Runs the specified builders in separate threads. If one of them fails, the others
+   * will be stopped, and the first exception will be thrown.
+   * @param ibs index builders
+   * @param build build indexes (or index partitions)
+   * @return indexes, or {@code null} if partitions were indexed
+   * @throws IOException I/O exception
+   */
+  private static Index[] run(final IndexBuilder[] ibs, final boolean build)
+      throws IOException {
+
+    final int is = ibs.length;
+    final Index[] indexes = new Index[is];
+    final Throwable[] errors = new Throwable[1];
+    final Thread[] threads = new Thread[is];
+    for(int i = 0; i < is; i++) {
+      final int n = i;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            if(build) indexes[n] = ibs[n].build();
+            else ibs[n].partition();
+          } catch(final Throwable ex) {
+            synchronized(errors) {
+              if(errors[0] == null) errors[0] = ex;
+            }
+            for(final IndexBuilder ib : ibs) ib.stop();
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for(final Thread t : threads) {
+      try {
+        t.join();
+      } catch(final InterruptedException ex) {
+        for(final IndexBuilder ib : ibs) ib.stop();
+        Util.debug(ex);
+      }
+    }
+
+    final Throwable ex = errors[0];
+    if(ex instanceof IOException) throw (IOException) ex;
+    if(ex instanceof RuntimeException) throw (RuntimeException) ex;
+    if(ex instanceof Error) throw (Error) ex;
+    return indexes;
   }
 
   @Override
@@ -89,6 +287,12 @@ public abstract class IndexBuilder extends Progress {
 
   @Override
   public final double prog() {
-    return (double) pre / (size + (merge  ? size / 50 : 0));
+    int p = pre;
+    final IndexBuilder[] ibs = parts;
+    if(ibs != null) {
+      p = 0;
+      for(final IndexBuilder ib : ibs) p += Math.max(0, ib.pre - ib.start);
+    }
+    return (double) p / (size + (merge  ? size / 50 : 0));
   }
 }
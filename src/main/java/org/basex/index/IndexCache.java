@@ -3,25 +3,33 @@ package org.basex.index;
 import static org.basex.util.Token.*;
 
 import java.lang.ref.*;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.*;
 
 import org.basex.util.list.*;
 
 /**
  * This class caches sizes and pointers from index results.
  *
+ * The cache is split into segments, which are selected by the hash values of
+ * the keys. Entries are read without locking; concurrent updates are only
+ * synchronized within a single segment. As readers may not see the most
+ * recent state, they may miss entries that have just been added or moved.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Dimitar Popov
  */
 public final class IndexCache {
-  /** Queue used to collect unused keys. */
-  private final ReferenceQueue<IndexEntry> queue = new ReferenceQueue<IndexEntry>();
-  /** Read-write lock. */
-  private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock(true);
-  /** Hash table buckets. */
-  private BucketEntry[] buckets = new BucketEntry[ElementList.CAP];
-  /** Number of entries in the cache. */
-  private int size;
+  /** Number of segments (must be a power of two). */
+  private static final int SEGMENTS = 16;
+  /** Segments. */
+  private final Segment[] segments = new Segment[SEGMENTS];
+
+  /**
+   * Constructor.
+   */
+  public IndexCache() {
+    for(int s = 0; s < SEGMENTS; s++) segments[s] = new Segment();
+  }
 
   /**
    * Gets cached entry for the specified key.
@@ -30,21 +38,7 @@ public final class IndexCache {
    */
   public IndexEntry get(final byte[] key) {
     final int hash = hash(key);
-    rwl.readLock().lock();
-
-    try {
-      final int i = indexFor(hash, buckets.length);
-      BucketEntry e = buckets[i];
-      while(e != null) {
-        final IndexEntry entry = e.get();
-        if(entry != null && e.hash == hash && eq(entry.key, key)) return entry;
-        e = e.next;
-      }
-    } finally {
-      rwl.readLock().unlock();
-    }
-
-    return null;
+    return segment(hash).get(key, hash);
   }
 
   /**
@@ -57,20 +51,94 @@ public final class IndexCache {
    */
   public IndexEntry add(final byte[] key, final int s, final long p) {
     final int hash = hash(key);
-    rwl.writeLock().lock();
+    return segment(hash).add(key, hash, s, p);
+  }
+
+  /**
+   * Deletes a cached entry.
+   * @param key key
+   */
+  public void delete(final byte[] key) {
+    final int hash = hash(key);
+    segment(hash).delete(key, hash);
+  }
+
+  /**
+   * Returns the segment for a hash code. The upper bits of the hash code are
+   * chosen, as the lower bits are used to find the buckets.
+   * @param h hash code
+   * @return segment
+   */
+  private Segment segment(final int h) {
+    return segments[h * 0x9E3779B9 >>> 28 & SEGMENTS - 1];
+  }
+
+  /**
+   * Returns buckets index for a hash code.
+   * @param h hash code
+   * @param n number of available buckets
+   * @return index of a buckets
+   */
+  private static int indexFor(final int h, final int n) {
+    return h & n - 1;
+  }
+
+  /**
+   * Segment of the cache. Modifications are synchronized, whereas entries are
+   * read without locking.
+   */
+  private static final class Segment {
+    /** Queue used to collect unused keys. */
+    private final ReferenceQueue<IndexEntry> queue = new ReferenceQueue<IndexEntry>();
+    /** Hash table buckets. */
+    private volatile AtomicReferenceArray<BucketEntry> buckets =
+        new AtomicReferenceArray<BucketEntry>(ElementList.CAP);
+    /** Number of entries in the segment. */
+    private int size;
+
+    /**
+     * Gets cached entry for the specified key.
+     * @param key key
+     * @param hash hash of the key
+     * @return cached entry or {@code null} if the entry is stale
+     */
+    IndexEntry get(final byte[] key, final int hash) {
+      final AtomicReferenceArray<BucketEntry> b = buckets;
+      BucketEntry e = b.get(indexFor(hash, b.length()));
+      while(e != null) {
+        final IndexEntry entry = e.get();
+        if(entry != null && e.hash == hash && eq(entry.key, key)) return entry;
+        e = e.next;
+      }
+      return null;
+    }
+
+    /**
+     * Adds a new cache entry. If an entry with the specified key already exists,
+     * it will be updated.
+     * @param key key
+     * @param hash hash of the key
+     * @param s number of index hits
+     * @param p pointer to id list
+     * @return cache entry
+     */
+    synchronized IndexEntry add(final byte[] key, final int hash, final int s,
+        final long p) {
 
-    try {
       purge();
 
-      final int i = indexFor(hash, buckets.length);
+      final int i = indexFor(hash, buckets.length());
 
-      BucketEntry current = buckets[i];
+      BucketEntry current = buckets.get(i);
       BucketEntry prev = current;
       while(current != null) {
         final BucketEntry next = current.next;
         final IndexEntry entry = current.get();
         if(entry == null) {
           delete(i, current, prev, next);
+          // previous entry remains the same
+          current = next;
+          continue;
         } else if(current.hash == hash && eq(entry.key, key)) {
           update(entry, s, p);
           return entry;
@@ -82,31 +150,27 @@ public final class IndexCache {
       final IndexEntry entry = new IndexEntry(key, s, p);
       add(i, hash, entry);
       return entry;
-    } finally {
-      rwl.writeLock().unlock();
     }
-  }
-
-  /**
-   * Deletes a cached entry.
-   * @param key key
-   */
-  public void delete(final byte[] key) {
-    final int hash = hash(key);
-    rwl.writeLock().lock();
 
-    try {
+    /**
+     * Deletes a cached entry.
+     * @param key key
+     * @param hash hash of the key
+     */
+    synchronized void delete(final byte[] key, final int hash) {
       purge();
 
-      final int i = indexFor(hash, buckets.length);
+      final int i = indexFor(hash, buckets.length());
 
-      BucketEntry e = buckets[i];
+      BucketEntry e = buckets.get(i);
       BucketEntry prev = e;
       while(e != null) {
         final BucketEntry next = e.next;
         final IndexEntry entry = e.get();
         if(entry == null) {
           delete(i, e, prev, next);
+          e = next;
+          continue;
         } else if(e.hash == hash && eq(entry.key, key)) {
           delete(i, e, prev, next);
           break;
@@ -114,102 +178,94 @@ public final class IndexCache {
         prev = e;
         e = next;
       }
-    } finally {
-      rwl.writeLock().unlock();
     }
-  }
 
-  /**
-   * Purges stale entries from the cache.
-   */
-  private void purge() {
-    for(Object x; (x = queue.poll()) != null;) {
-      final BucketEntry e = (BucketEntry) x;
-      final int i = indexFor(e.hash, buckets.length);
-
-      BucketEntry prev = buckets[i];
-      BucketEntry p = prev;
-      while(p != null) {
-        final BucketEntry next = p.next;
-        if(p == e) {
-          delete(i, e, prev, next);
-          break;
+    /**
+     * Purges stale entries from the cache.
+     */
+    private void purge() {
+      for(Object x; (x = queue.poll()) != null;) {
+        final BucketEntry e = (BucketEntry) x;
+        final int i = indexFor(e.hash, buckets.length());
+
+        BucketEntry prev = buckets.get(i);
+        BucketEntry p = prev;
+        while(p != null) {
+          final BucketEntry next = p.next;
+          if(p == e) {
+            delete(i, e, prev, next);
+            break;
+          }
+          prev = p;
+          p = next;
         }
-        prev = p;
-        p = next;
       }
     }
-  }
 
-  /**
-   * Add a new index entry to the bucket with the specified index.
-   * @param i bucket index
-   * @param hash hash of the new index key
-   * @param entry index entry
-   */
-  private void add(final int i, final int hash, final IndexEntry entry) {
-    buckets[i] = new BucketEntry(hash, buckets[i], entry, queue);
-    if(++size == buckets.length) rehash();
-  }
+    /**
+     * Add a new index entry to the bucket with the specified index.
+     * @param i bucket index
+     * @param hash hash of the new index key
+     * @param entry index entry
+     */
+    private void add(final int i, final int hash, final IndexEntry entry) {
+      buckets.set(i, new BucketEntry(hash, buckets.get(i), entry, queue));
+      if(++size == buckets.length()) rehash();
+    }
 
-  /**
-   * Update an existing index entry.
-   * @param entry index entry to update
-   * @param sz new size
-   * @param poi new pointer
-   */
-  private static void update(final IndexEntry entry, final int sz, final long poi) {
-    entry.size = sz;
-    entry.pointer = poi;
-  }
+    /**
+     * Update an existing index entry.
+     * @param entry index entry to update
+     * @param sz new size
+     * @param poi new pointer
+     */
+    private static void update(final IndexEntry entry, final int sz, final long poi) {
+      entry.size = sz;
+      entry.pointer = poi;
+    }
 
-  /**
-   * Deletes a cached entry from the buckets with the specified index.
-   * @param i buckets index
-   * @param e cached entry to delete
-   * @param p previous cache entry
-   * @param n next cache entry
-   */
-  private void delete(final int i, final BucketEntry e, final BucketEntry p,
-      final BucketEntry n) {
-    if(p == e) buckets[i] = n;
-    else p.next = n;
-    e.next = null;
-    --size;
-  }
+    /**
+     * Deletes a cached entry from the buckets with the specified index.
+     * The link to the next entry is kept, as the entry may currently be
+     * visited by a reader.
+     * @param i buckets index
+     * @param e cached entry to delete
+     * @param p previous cache entry
+     * @param n next cache entry
+     */
+    private void delete(final int i, final BucketEntry e, final BucketEntry p,
+        final BucketEntry n) {
+      if(p == e) buckets.set(i, n);
+      else p.next = n;
+      --size;
+    }
 
-  /**
-   * Resizes the hash table.
-   */
-  private void rehash() {
-    purge();
+    /**
+     * Resizes the hash table. Entries are copied, as the old table may still
+     * be visited by readers.
+     */
+    private void rehash() {
+      purge();
 
-    final int s = size << 1;
-    final BucketEntry[] tmp = new BucketEntry[s];
+      final int l = buckets.length();
+      if(size < l) return;
 
-    final int l = buckets.length;
-    for(int i = 0; i < l; ++i) {
-      BucketEntry e = buckets[i];
-      buckets[i] = null;
-      while(e != null) {
-        final BucketEntry next = e.next;
-        final int p = indexFor(e.hash, tmp.length);
-        e.next = tmp[p];
-        tmp[p] = e;
-        e = next;
+      final int s = l << 1;
+      final AtomicReferenceArray<BucketEntry> tmp =
+          new AtomicReferenceArray<BucketEntry>(s);
+      int sz = 0;
+      for(int i = 0; i < l; ++i) {
+        for(BucketEntry e = buckets.get(i); e != null; e = e.next) {
+          final IndexEntry entry = e.get();
+          if(entry == null) continue;
+          final int p = indexFor(e.hash, s);
+          tmp.set(p, new BucketEntry(e.hash, tmp.get(p), entry, queue));
+          sz++;
+        }
       }
+      size = sz;
+      buckets = tmp;
     }
-    buckets = tmp;
-  }
-
-  /**
-   * Returns buckets index for a hash code.
-   * @param h hash code
-   * @param n number of available buckets
-   * @return index of a buckets
-   */
-  private static int indexFor(final int h, final int n) {
-    return h & n - 1;
   }
 
   /**
@@ -217,11 +273,11 @@ public final class IndexCache {
    * each buckets. It also stores the hash of the current entry for better
    * performance.
    */
-  private static class BucketEntry extends SoftReference<IndexEntry> {
+  private static final class BucketEntry extends SoftReference<IndexEntry> {
     /** Hash code of the stored cache entry key. */
     final int hash;
     /** Next buckets entry or {@code null} if the last one for this buckets. */
-    BucketEntry next;
+    volatile BucketEntry next;
 
     /**
      * Constructor.
@@ -230,7 +286,7 @@ public final class IndexCache {
      * @param v stored cache entry
      * @param rq reference queue
      */
-    public BucketEntry(final int h, final BucketEntry n, final IndexEntry v,
+    BucketEntry(final int h, final BucketEntry n, final IndexEntry v,
         final ReferenceQueue<IndexEntry> rq) {
       super(v, rq);
       hash = h;
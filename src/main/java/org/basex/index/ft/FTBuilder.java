@@ -27,8 +27,16 @@ public final class FTBuilder extends IndexBuilder {
   private final FTLexer lex;
   /** Current lexer position. */
   int pos;
+  /** Indexed reference: id of the current text if ids are stored, or its pre value. */
+  private int ref;
   /** Number of indexed tokens. */
   private long ntok;
+  /** Number of indexed texts. */
+  private int ntxt;
+  /** Total length of indexed texts. */
+  private long ltxt;
+  /** Builder of the whole database ({@code null} if this is the main builder). */
+  private final FTBuilder main;
 
   /**
    * Constructor.
@@ -53,20 +61,43 @@ public final class FTBuilder extends IndexBuilder {
       throw new BaseXException(NO_STEMMER_X, fto.ln);
 
     lex = new FTLexer(fto);
+    main = null;
   }
 
   /**
-   * Extracts and indexes words from the specified data reference.
-   * @throws IOException I/O Exception
+   * Constructor for partitions.
+   * @param p parent builder
+   * @param s first pre value
+   * @param e pre value after the last node
    */
-  private void index() throws IOException {
-    // delete old index
-    abort();
+  private FTBuilder(final FTBuilder p, final int s, final int e) {
+    super(p, s, e);
+    tree = new FTIndexTrees(p.data.meta.maxlen);
+    lex = new FTLexer(p.lex.ftOpt());
+    main = p;
+  }
 
-    final Performance perf = Prop.debug ? new Performance() : null;
-    Util.debug(det());
+  @Override
+  protected void partition() throws IOException {
+    index();
+    synchronized(main) {
+      main.ntxt += ntxt;
+      main.ltxt += ltxt;
+    }
+    writeIndex();
+  }
+
+  @Override
+  protected FTBuilder partition(final int s, final int e) {
+    return new FTBuilder(this, s, e);
+  }
 
-    for(pre = 0; pre < size; ++pre) {
+  /**
+   * Extracts and indexes words from the assigned nodes.
+   * @throws IOException I/O Exception
+   */
+  private void index() throws IOException {
+    for(pre = start; pre < end; ++pre) {
       if((pre & 0xFFFF) == 0) check();
 
       final int k = data.kind(pre);
@@ -74,7 +105,11 @@ public final class FTBuilder extends IndexBuilder {
 
       pos = -1;
       final StopWords sw = lex.ftOpt().sw;
-      lex.init(data.text(pre, true));
+      final byte[] text = data.text(pre, true);
+      ntxt++;
+      ltxt += text.length;
+      ref = data.meta.updindex ? data.id(pre) : pre;
+      lex.init(text);
       while(lex.hasNext()) {
         final byte[] tok = lex.nextToken();
         ++pos;
@@ -82,25 +117,40 @@ public final class FTBuilder extends IndexBuilder {
         if(tok.length <= data.meta.maxlen && (sw.isEmpty() || !sw.contains(tok))) {
           // check if main memory is exhausted
           if((ntok++ & 0xFFF) == 0 && memFull()) {
-            writeIndex(csize++);
+            writeIndex();
             Performance.gc(singlegc ? 1 : 2);
           }
           index(tok);
         }
       }
     }
+  }
+
+  @Override
+  public FTIndex build() throws IOException {
+    // delete old index
+    abort();
 
+    final Performance perf = Prop.debug ? new Performance() : null;
+    Util.debug(det());
+
+    final int ps = partitions();
+    if(ps > 1) {
+      // index partitions in parallel
+      parallel(ps);
+    } else {
+      index();
+      writeIndex();
+    }
     // write tokens
     write();
 
+    // write empty delta segment for updatable index structures
+    if(data.meta.updindex) UpdatableFTIndex.init(data, ntxt, ltxt);
+
     data.meta.ftxtindex = true;
     Util.memory(perf);
-  }
-
-  @Override
-  public FTIndex build() throws IOException {
-    index();
-    return new FTIndex(data);
+    return FTIndex.get(data);
   }
 
   /**
@@ -108,15 +158,14 @@ public final class FTBuilder extends IndexBuilder {
    * @param tok token to be indexed
    */
   void index(final byte[] tok) {
-    tree.index(tok, pre, pos, csize);
+    tree.index(tok, ref, pos, csize);
   }
 
   /**
-   * Writes the index data to disk.
+   * Merges temporary index structures.
    * @throws IOException I/O exception
    */
-  public void write() throws IOException {
-    writeIndex(csize++);
+  private void write() throws IOException {
     if(!merge) return;
 
     // merges temporary index files
@@ -126,8 +175,9 @@ public final class FTBuilder extends IndexBuilder {
     final IntList ind = new IntList();
 
     // open all temporary sorted lists
-    final FTList[] v = new FTList[csize];
-    for(int b = 0; b < csize; ++b) v[b] = new FTList(data, b);
+    final int cs = runs.size();
+    final FTList[] v = new FTList[cs];
+    for(int b = 0; b < cs; ++b) v[b] = new FTList(data, runs.get(b));
 
     final IntList il = new IntList();
     while(check(v)) {
@@ -135,7 +185,7 @@ public final class FTBuilder extends IndexBuilder {
       il.reset();
       il.add(m);
       // find next token to write on disk
-      for(int i = 0; i < csize; ++i) {
+      for(int i = 0; i < cs; ++i) {
         if(m == i || v[i].tok.length == 0) continue;
         final int l = v[i].tok.length - v[m].tok.length;
         final int d = diff(v[m].tok, v[i].tok);
@@ -160,7 +210,10 @@ public final class FTBuilder extends IndexBuilder {
       // merge and write data size
       outY.write4(merge(outZ, il, v));
     }
-    writeInd(outX, ind, ind.get(ind.size() - 2) + 1, (int) outY.size());
+    // partitions may contain no tokens at all
+    final int ls = ind.isEmpty() ? 0 : ind.get(ind.size() - 2);
+    writeInd(outX, ind, ls + 1, (int) outY.size());
+    writeStats(outX, ntxt, ltxt);
 
     outX.close();
     outY.close();
@@ -175,7 +228,7 @@ public final class FTBuilder extends IndexBuilder {
    * @param lp last offset
    * @throws IOException I/O exception
    */
-  private static void writeInd(final DataOutput outX, final IntList il,
+  static void writeInd(final DataOutput outX, final IntList il,
       final int ls, final int lp) throws IOException {
 
     final int is = il.size();
@@ -188,13 +241,28 @@ public final class FTBuilder extends IndexBuilder {
     outX.write4(lp);
   }
 
+  /**
+   * Writes statistics on the indexed texts, which are used for scoring.
+   * @param outX output
+   * @param t number of indexed texts
+   * @param l total length of indexed texts
+   * @throws IOException I/O exception
+   */
+  static void writeStats(final DataOutput outX, final int t, final long l)
+      throws IOException {
+    outX.writeNum(t);
+    outX.write5(l);
+    // references are stored in blocks
+    outX.writeNum(FTPostings.BLOCK);
+  }
+
   /**
    * Writes the current index to disk.
-   * @param cs current file pointer
    * @throws IOException I/O exception
    */
-  protected void writeIndex(final int cs) throws IOException {
-    final String s = DATAFTX + (merge ? cs : "");
+  private void writeIndex() throws IOException {
+    final int cs = csize++;
+    final String s = DATAFTX + (merge ? id() : "");
     final DataOutput outX = new DataOutput(data.meta.dbfile(s + 'x'));
     final DataOutput outY = new DataOutput(data.meta.dbfile(s + 'y'));
     final DataOutput outZ = new DataOutput(data.meta.dbfile(s + 'z'));
@@ -219,14 +287,20 @@ public final class FTBuilder extends IndexBuilder {
       // write pointer on full-text data
       outY.write5(dr);
       // write full-text data size (number of pre values)
-      outY.write4(t.nextNumPre());
-      // write compressed pre and pos arrays
-      writeFTData(outZ, t.nextPres(), t.nextPoss());
+      final int np = t.nextNumPre();
+      outY.write4(np);
+      if(merge) {
+        // write compressed pre and pos arrays of temporary index
+        writeFTData(outZ, t.nextPres(), t.nextPoss());
+      } else {
+        FTPostings.write(outZ, ints(t.nextPres(), np), ints(t.nextPoss(), np), np);
+      }
 
       dr = outZ.size();
       tr = (int) outY.size();
     }
     writeInd(outX, ind, ++j, tr);
+    if(!merge) writeStats(outX, ntxt, ltxt);
 
     outX.close();
     outY.close();
@@ -245,30 +319,35 @@ public final class FTBuilder extends IndexBuilder {
   private static int merge(final DataOutput out, final IntList il, final FTList[] v)
       throws IOException {
 
-    int s = 0;
-    final TokenBuilder tbp = new TokenBuilder();
-    final TokenBuilder tbo = new TokenBuilder();
-    tbp.add(new byte[4]);
-    tbo.add(new byte[4]);
+    final IntList pr = new IntList(), po = new IntList();
     // merge full-text data of all sorted lists with the same token
     for(int j = 0; j < il.size(); ++j) {
       final int m = il.get(j);
-      for(final int p : v[m].prv) tbp.add(Num.num(p));
-      for(final int p : v[m].pov) tbo.add(Num.num(p));
-      s += v[m].size;
+      for(final int p : v[m].prv) pr.add(p);
+      for(final int p : v[m].pov) po.add(p);
       v[m].next();
     }
-    // write compressed pre and pos arrays
-    final byte[] pr = tbp.finish();
-    Num.size(pr, pr.length);
-    final byte[] po = tbo.finish();
-    Num.size(po, po.length);
-
     // write full-text data
-    writeFTData(out, pr, po);
+    final int s = pr.size();
+    FTPostings.write(out, pr.toArray(), po.toArray(), s);
     return s;
   }
 
+  /**
+   * Decodes compressed values.
+   * @param vals compressed values
+   * @param s number of values
+   * @return values
+   */
+  private static int[] ints(final byte[] vals, final int s) {
+    final int[] ints = new int[s];
+    for(int i = 0, p = 4; i < s; i++) {
+      ints[i] = Num.get(vals, p);
+      p += Num.length(vals, p);
+    }
+    return ints;
+  }
+
   /**
    * Writes full-text data for a single token to disk.<br/>
    * Format: {@code score? pre1 pos1 pre2 pos2 ... (0 score)? pre...}
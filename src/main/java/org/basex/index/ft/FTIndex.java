@@ -27,10 +27,17 @@ import org.basex.util.list.*;
  * {@link DataText#DATAFTX} and have the following format:</p>
  *
  * <ul>
- * <li>File <b>x</b> contains an entry for each token length:<br/>
- * Structure: {@code [l, p] ...}<br/>
+ * <li>File <b>x</b> contains an entry for each token length, and statistics
+ * on the indexed texts:<br/>
+ * Structure: {@code n, [l, p] ..., t, s, b}<br/>
+ * {@code n} is the number of entries [{@link Num}].<br/>
  * {@code l} is the length of a token [byte].<br/>
- * {@code p} is the pointer of the first token with length {@code l} [int].
+ * {@code p} is the pointer of the first token with length {@code l} [int].<br/>
+ * {@code t} is the number of indexed texts [{@link Num}].<br/>
+ * {@code s} is the total length of all indexed texts [long].<br/>
+ * {@code b} is the number of references per block in file <b>z</b> [{@link Num}].
+ * <br/>
+ * Indexes of older versions contain no statistics and no block size.
  * </li>
  * <li>File <b>y</b> contains the tokens and references:<br/>
  * Structure: {@code [t0, t1, ... tl, z, s]}<br/>
@@ -38,28 +45,38 @@ import org.basex.util.list.*;
  * {@code z} is the pointer on the data entries of the token [long]<br/>
  * {@code s} is the number of pre values, saved in data [int]
  * </li>
- * <li>File <b>z</b> contains the {@code id/pos} references.
- *   The values are ordered, but not distinct:<br/>
+ * <li>File <b>z</b> contains the {@code pre/pos} references.
+ *   The values are ordered, but not distinct. They are split into
+ *   bit-packed blocks, which can be skipped (see {@link FTPostings}).
+ *   Indexes of older versions store plain values:<br/>
  *   {@code pre1/pos1, pre2/pos2, pre3/pos3, ...} [{@link Num}]</li>
  * </ul>
  *
+ * <p>If the database keeps track of node ids (see {@link MetaData#updindex}),
+ * the references contain ids instead of pre values, and the index can be updated
+ * (see {@link UpdatableFTIndex}).</p>
+ *
+ * <p>Lookups can be performed by concurrent threads: the files are only accessed
+ * via positional read operations, and the token positions of file <b>x</b> are
+ * kept in an array that is not changed after construction.</p>
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
-public final class FTIndex implements Index {
+public class FTIndex implements Index {
   /** Entry size. */
-  private static final int ENTRY = 9;
+  static final int ENTRY = 9;
+  /** No tokens. */
+  private static final byte[][] NOTOKENS = {};
 
   /** Cached texts. Increases used memory, but speeds up repeated queries. */
   private final IntMap<byte[]> ctext = new IntMap<byte[]>();
-  /** Levenshtein reference. */
-  private final Levenshtein ls = new Levenshtein();
   /** Data reference. */
-  private final Data data;
+  final Data data;
 
   /** Index storing each unique token length and pointer
    * on the first token with this length. */
-  private final DataAccess inX;
+  final DataAccess inX;
   /** Index storing each token, its data size and pointer on the data. */
   final DataAccess inY;
   /** Storing pre and pos values for each token. */
@@ -67,15 +84,21 @@ public final class FTIndex implements Index {
 
   /** Cache for number of hits and data reference per token. */
   final IndexCache cache = new IndexCache();
-  /** Token positions. */
+  /** Token positions (read-only after construction). */
   final int[] tp;
+  /** Indicates if the references are stored in blocks. */
+  final boolean blocks;
+  /** Number of indexed texts ({@code -1} if statistics have not been computed yet). */
+  private volatile long texts = -1;
+  /** Average length of the indexed texts. */
+  private double avg;
 
   /**
    * Constructor, initializing the index structure.
    * @param d data reference
    * @throws IOException I/O Exception
    */
-  public FTIndex(final Data d) throws IOException {
+  FTIndex(final Data d) throws IOException {
     data = d;
 
     // cache token length index
@@ -99,13 +122,36 @@ public final class FTIndex implements Index {
       tp[p] = r;
     }
     tp[tp.length - 1] = (int) inY.length();
+
+    // skip last entry and read statistics
+    inX.readNum();
+    inX.read4();
+    boolean b = false;
+    if(inX.more()) {
+      final int t = inX.readNum();
+      stats(t, inX.read5());
+      b = inX.more() && inX.readNum() == FTPostings.BLOCK;
+    }
+    blocks = b;
+  }
+
+  /**
+   * Opens the full-text index of the specified database.
+   * @param d data reference
+   * @return index
+   * @throws IOException I/O Exception
+   */
+  public static FTIndex get(final Data d) throws IOException {
+    if(d.meta.updindex) UpdatableFTIndex.recover(d.meta);
+    return d.meta.updindex && d.meta.dbfile(DATAFTX + 'd').exists() ?
+        new UpdatableFTIndex(d) : new FTIndex(d);
   }
 
   @Override
-  public synchronized void init() { }
+  public void init() { }
 
   @Override
-  public synchronized int count(final IndexToken it) {
+  public int count(final IndexToken it) {
     final byte[] tok = it.get();
     if(tok.length > data.meta.maxlen) return Integer.MAX_VALUE;
 
@@ -113,11 +159,11 @@ public final class FTIndex implements Index {
     final FTOpt opt = ((FTLexer) it).ftOpt();
     if(opt.is(FZ) || opt.is(WC)) return Math.max(1, data.meta.size / 10);
 
-    return entry(tok).size;
+    return entry(tok).size + changes(tok);
   }
 
   @Override
-  public synchronized IndexIterator iter(final IndexToken it) {
+  public IndexIterator iter(final IndexToken it) {
     final byte[] tok = it.get();
 
     // wildcard search
@@ -131,8 +177,22 @@ public final class FTIndex implements Index {
     }
 
     // return cached or new result
-    final IndexEntry e = entry(tok);
-    return e.size > 0 ? iter(e.pointer, e.size, inZ) : FTIndexIterator.FTEMPTY;
+    return iter(tok);
+  }
+
+  /**
+   * Returns an iterator for the references of a single token.
+   * @param token token
+   * @return iterator
+   */
+  FTIndexIterator iter(final byte[] token) {
+    final IndexEntry e = entry(token);
+    if(e.size == 0) return FTIndexIterator.FTEMPTY;
+    // block-compressed references are decoded on demand
+    if(blocks) return iter(new FTPostings(inZ, e.pointer, e.size));
+    final IntList pr = new IntList(), ps = new IntList(), runs = new IntList();
+    postings(e.pointer, e.size, pr, ps, runs);
+    return iter(new FTCache(pr, ps, runs));
   }
 
   /**
@@ -140,7 +200,7 @@ public final class FTIndex implements Index {
    * @param token token to be found or cached
    * @return cache entry
    */
-  private IndexEntry entry(final byte[] token) {
+  final IndexEntry entry(final byte[] token) {
     final IndexEntry e = cache.get(token);
     if(e != null) return e;
 
@@ -162,8 +222,8 @@ public final class FTIndex implements Index {
           // loop through all entries with the same character length
           final byte[] entry = inY.readBytes(i, ti);
           if(startsWith(entry, prefix)) {
-            final long poi = inY.read5();
-            nr = inY.read4();
+            final long poi = pointer(i, ti);
+            nr = size(i, ti);
             if(prefix.length != 0) cache.add(entry, nr, poi);
             i += ti + ENTRY;
             return entry;
@@ -206,10 +266,15 @@ public final class FTIndex implements Index {
     while(l <= h) {
       final int m = l + h >>> 1;
       final int p = i + m * tl;
-      byte[] txt = ctext.get(p);
+      byte[] txt;
+      synchronized(ctext) {
+        txt = ctext.get(p);
+      }
       if(txt == null) {
         txt = inY.readBytes(p, ti);
-        ctext.add(p, txt);
+        synchronized(ctext) {
+          ctext.add(p, txt);
+        }
       }
       final int d = diff(txt, token);
       if(d == 0) return i + m * tl;
@@ -220,7 +285,7 @@ public final class FTIndex implements Index {
   }
 
   @Override
-  public synchronized byte[] info() {
+  public byte[] info() {
     final TokenBuilder tb = new TokenBuilder();
     tb.add(LI_STRUCTURE + FUZZY + NL);
     tb.addExt("- %: %" + NL, STEMMING, Util.flag(data.meta.stemming));
@@ -238,7 +303,7 @@ public final class FTIndex implements Index {
   }
 
   @Override
-  public synchronized void close() {
+  public void close() {
     inX.close();
     inY.close();
     inZ.close();
@@ -301,7 +366,7 @@ public final class FTIndex implements Index {
    * @param lt length of the token
    * @return int pointer on ftdata
    */
-  private long pointer(final long pt, final int lt) {
+  final long pointer(final long pt, final int lt) {
     return inY.read5(pt + lt);
   }
 
@@ -311,7 +376,7 @@ public final class FTIndex implements Index {
    * @param lt length of the token
    * @return size of the ftdata
    */
-  private int size(final long pt, final int lt) {
+  final int size(final long pt, final int lt) {
     return inY.read4(pt + lt + 5);
   }
 
@@ -321,26 +386,29 @@ public final class FTIndex implements Index {
    * @param k number of errors allowed
    * @return iterator
    */
-  private synchronized IndexIterator fuzzy(final byte[] token, final int k) {
-    FTIndexIterator it = FTIndexIterator.FTEMPTY;
+  private IndexIterator fuzzy(final byte[] token, final int k) {
+    final IntList pr = new IntList(), ps = new IntList(), runs = new IntList();
+    final Levenshtein ls = new Levenshtein();
+    final boolean am = ls.init(token, k);
     final int tl = token.length;
-    final int e = Math.min(tp.length - 1, tl + k);
-    int s = Math.max(1, tl - k) - 1;
-
-    while(++s <= e) {
-      int p = tp[s];
+    final int e = Math.min(tp.length - 2, tl + k);
+    for(int s = Math.max(1, tl - k); s <= e; s++) {
+      final int p = tp[s];
       if(p == -1) continue;
-      int i = s + 1;
-      int r = -1;
-      while(i < tp.length && r == -1) r = tp[i++];
-      while(p < r) {
-        if(ls.similar(inY.readBytes(p, s), token, k)) {
-          it = FTIndexIterator.union(iter(pointer(p, s), size(p, s), inZ), it);
+      final int r = end(s);
+      if(am) {
+        collect(ls, s, p, r, pr, ps, runs);
+      } else {
+        // too short or too long tokens are compared one by one
+        for(int i = p; i < r; i += s + ENTRY) {
+          if(ls.similar(inY.readBytes(i, s), token, k)) postings(i, s, pr, ps, runs);
         }
-        p += s + ENTRY;
       }
     }
-    return it;
+    for(final byte[] t : added()) {
+      if(ls.similar(t, token, k)) added(t, pr, ps, runs);
+    }
+    return iter(new FTCache(pr, ps, runs));
   }
 
   /**
@@ -348,56 +416,217 @@ public final class FTIndex implements Index {
    * @param token token to look for
    * @return iterator
    */
-  private synchronized IndexIterator wc(final byte[] token) {
-    final FTIndexIterator it = FTIndexIterator.FTEMPTY;
+  private IndexIterator wc(final byte[] token) {
     final FTWildcard wc = new FTWildcard(token);
-    if(!wc.parse()) return it;
+    if(!wc.parse()) return FTIndexIterator.FTEMPTY;
 
-    final IntList pr = new IntList();
-    final IntList ps = new IntList();
+    final IntList pr = new IntList(), ps = new IntList(), runs = new IntList();
+    final boolean am = wc.automaton();
     final byte[] pref = wc.prefix();
-    final int l = Math.min(tp.length - 1, wc.max());
+    final int l = Math.min(tp.length - 2, wc.max());
     for(int ti = pref.length; ti <= l; ti++) {
       int i = tp[ti];
       if(i == -1) continue;
-      int c = ti + 1;
-      int e = -1;
-      while(c < tp.length && e == -1) e = tp[c++];
+      // limit search to the tokens starting with the prefix
+      final int e = end(ti);
       i = find(pref, i, e, ti);
-
-      while(i < e) {
-        final byte[] t = inY.readBytes(i, ti);
-        if(!startsWith(t, pref)) break;
-        if(wc.match(t)) {
-          inZ.cursor(pointer(i, ti));
-          final int s = size(i, ti);
-          for(int d = 0; d < s; d++) {
-            pr.add(inZ.readNum());
-            ps.add(inZ.readNum());
-          }
+      final int r = skip(pref, i, e, ti);
+      if(am) {
+        collect(wc, ti, i, r, pr, ps, runs);
+      } else {
+        for(; i < r; i += ti + ENTRY) {
+          if(wc.match(inY.readBytes(i, ti))) postings(i, ti, pr, ps, runs);
         }
-        i += ti + ENTRY;
       }
     }
-    return iter(new FTCache(pr, ps));
+    for(final byte[] t : added()) {
+      if(wc.match(t)) added(t, pr, ps, runs);
+    }
+    return iter(new FTCache(pr, ps, runs));
   }
 
   /**
-   * Returns an iterator for an index entry.
-   * @param off offset on entries
-   * @param size number of id/pos entries
-   * @param da data source
-   * @return iterator
+   * Walks through the sorted tokens with the specified length and collects the
+   * positions of all tokens that are accepted by the automaton. The states of
+   * prefixes that are shared with the previous token are reused, and all tokens
+   * starting with a rejected prefix are skipped.
+   * @param am automaton
+   * @param ti token length
+   * @param i start position
+   * @param e end position
+   * @param pr pre values
+   * @param ps positions
+   * @param runs offsets of the sorted position runs
+   */
+  private void collect(final Automaton am, final int ti, final int i, final int e,
+      final IntList pr, final IntList ps, final IntList runs) {
+
+    final int tl = ti + ENTRY;
+    // byte offsets after the characters for which states have been computed
+    final int[] ends = new int[ti + 1];
+    byte[] prev = null;
+    // length of the rejected prefix of the previous token
+    int rej = 0, n = 0;
+    for(int p = i; p < e;) {
+      final byte[] t = inY.readBytes(p, ti);
+      int c = 0;
+      if(prev != null) while(c < ti && t[c] == prev[c]) c++;
+      if(rej != 0 && c >= rej) {
+        p = skip(substring(t, 0, rej), p + tl, e, ti);
+        continue;
+      }
+      while(ends[n] > c) n--;
+
+      int b = ends[n];
+      while(b < ti && am.step(n, cp(t, b))) {
+        b = Math.min(ti, b + cl(t, b));
+        ends[++n] = b;
+      }
+      prev = t;
+      rej = b < ti ? Math.min(ti, b + cl(t, b)) : 0;
+      if(rej == 0 && am.accept(n)) postings(p, ti, pr, ps, runs);
+      p += tl;
+    }
+  }
+
+  /**
+   * Skips all tokens that start with the specified prefix. An exponential search
+   * is followed by a binary search.
+   * @param prefix prefix
+   * @param i start position (the token at this position must not be smaller
+   *   than the prefix)
+   * @param e end position
+   * @param ti token length
+   * @return position of the first token that does not start with the prefix
    */
-  private FTIndexIterator iter(final long off, final int size, final DataAccess da) {
-    da.cursor(off);
-    final IntList pr = new IntList(size);
-    final IntList ps = new IntList(size);
-    for(int c = 0; c < size; c++) {
-      pr.add(da.readNum());
-      ps.add(da.readNum());
+  private int skip(final byte[] prefix, final int i, final int e, final int ti) {
+    final int pl = prefix.length;
+    if(pl == 0) return e;
+
+    final int tl = ti + ENTRY, n = (e - i) / tl;
+    int l = 0, h = 1;
+    while(h <= n && eq(inY.readBytes(i + (h - 1) * tl, pl), prefix)) {
+      l = h;
+      h <<= 1;
+    }
+    h = Math.min(h - 1, n);
+    while(l < h) {
+      final int m = l + h >>> 1;
+      if(eq(inY.readBytes(i + m * tl, pl), prefix)) l = m + 1;
+      else h = m;
     }
-    return iter(new FTCache(pr, ps));
+    return i + l * tl;
+  }
+
+  /**
+   * Returns the end position of the tokens with the specified length.
+   * @param ti token length
+   * @return end position
+   */
+  final int end(final int ti) {
+    int c = ti + 1, e;
+    do e = tp[c++]; while(e == -1);
+    return e;
+  }
+
+  /**
+   * Adds the pre and pos values of a token as new sorted run.
+   * @param i token position
+   * @param ti token length
+   * @param pr pre values
+   * @param ps positions
+   * @param runs offsets of the sorted position runs
+   */
+  private void postings(final int i, final int ti, final IntList pr,
+      final IntList ps, final IntList runs) {
+    postings(pointer(i, ti), size(i, ti), pr, ps, runs);
+  }
+
+  /**
+   * Adds the pre and pos values of a token as new sorted run.
+   * @param off pointer on the pre and pos values
+   * @param size number of pre/pos pairs
+   * @param pr pre values
+   * @param ps positions
+   * @param runs offsets of the sorted position runs
+   */
+  void postings(final long off, final int size, final IntList pr,
+      final IntList ps, final IntList runs) {
+    final int[] v = pairs(off, size);
+    runs.add(pr.size());
+    for(int d = 0; d < v.length; d += 2) {
+      pr.add(v[d]);
+      ps.add(v[d + 1]);
+    }
+  }
+
+  /**
+   * Returns the references of a token.
+   * @param off pointer on the references
+   * @param size number of pairs
+   * @return pairs (references and positions in alternating order)
+   */
+  final int[] pairs(final long off, final int size) {
+    return blocks ? new FTPostings(inZ, off, size).pairs() :
+      inZ.readNums(off, size << 1);
+  }
+
+  /**
+   * Returns the difference between the number of pre/pos pairs of a token that
+   * have been added and removed since the index structures were written.
+   * @param token token
+   * @return difference
+   */
+  int changes(@SuppressWarnings("unused") final byte[] token) {
+    return 0;
+  }
+
+  /**
+   * Returns all tokens that have been added since the index structures were written.
+   * @return tokens
+   */
+  byte[][] added() {
+    return NOTOKENS;
+  }
+
+  /**
+   * Adds the pre and pos values of a token that have been added since the index
+   * structures were written as new sorted run.
+   * @param token token
+   * @param pr pre values
+   * @param ps positions
+   * @param runs offsets of the sorted position runs
+   */
+  @SuppressWarnings("unused")
+  void added(final byte[] token, final IntList pr, final IntList ps,
+      final IntList runs) {
+  }
+
+  /**
+   * Assigns statistics on the indexed texts.
+   * @param t number of texts
+   * @param l total length of all texts
+   */
+  final void stats(final long t, final long l) {
+    // assign average first: the number of texts is checked without synchronization
+    avg = t == 0 ? 1 : (double) l / t;
+    texts = t;
+  }
+
+  /**
+   * Computes the statistics on the indexed texts, if they have not been stored
+   * in the index.
+   */
+  private synchronized void stats() {
+    if(texts != -1) return;
+    long t = 0, l = 0;
+    final int s = data.meta.size;
+    for(int p = 0; p < s; p++) {
+      if(data.kind(p) != Data.TEXT) continue;
+      t++;
+      l += data.textLen(p, true);
+    }
+    stats(t, l);
   }
 
   /**
@@ -405,25 +634,71 @@ public final class FTIndex implements Index {
    * @param ftc id cache
    * @return iterator
    */
-  private synchronized FTIndexIterator iter(final FTCache ftc) {
+  final FTIndexIterator iter(final FTCache ftc) {
     final int size = ftc.pre.size();
 
     return new FTIndexIterator() {
       final FTMatches all = new FTMatches(toknum);
-      int pre, c;
+      /** Number of texts and maximum number of matches per text. */
+      int df = -1, mtf;
+      int pre, c, tf;
 
       @Override
       public synchronized boolean more() {
         if(c == size) return false;
         all.reset(toknum);
+        final int s = c;
         pre = ftc.pre.get(ftc.order[c]);
         all.or(ftc.pos.get(ftc.order[c++]));
         while(c < size && pre == ftc.pre.get(ftc.order[c])) {
           all.or(ftc.pos.get(ftc.order[c++]));
         }
+        tf = c - s;
         return true;
       }
 
+      @Override
+      public synchronized boolean skip(final int p) {
+        // binary search for the first entry with the specified pre value
+        int l = c, h = size;
+        while(l < h) {
+          final int m = l + h >>> 1;
+          if(ftc.pre.get(ftc.order[m]) < p) l = m + 1;
+          else h = m;
+        }
+        c = l;
+        return more();
+      }
+
+      @Override
+      public synchronized double score() {
+        freqs();
+        return Scoring.bm25(tf, df, texts, data.textLen(pre, true), avg);
+      }
+
+      @Override
+      public synchronized double maxScore() {
+        freqs();
+        return Scoring.bm25Max(mtf, df, texts);
+      }
+
+      /**
+       * Computes the frequencies of the token.
+       */
+      private void freqs() {
+        if(df != -1) return;
+        if(texts == -1) stats();
+        int d = 0, m = 0;
+        for(int i = 0; i < size;) {
+          final int p = ftc.pre.get(ftc.order[i]), s = i;
+          while(++i < size && ftc.pre.get(ftc.order[i]) == p);
+          m = Math.max(m, i - s);
+          d++;
+        }
+        df = d;
+        mtf = m;
+      }
+
       @Override
       public synchronized FTMatches matches() {
         return all;
@@ -446,6 +721,102 @@ public final class FTIndex implements Index {
     };
   }
 
+  /**
+   * Returns an iterator for block-compressed references. Blocks are only decoded
+   * if they may contain requested pre values.
+   * @param fp references
+   * @return iterator
+   */
+  private FTIndexIterator iter(final FTPostings fp) {
+    return new FTIndexIterator() {
+      final FTMatches all = new FTMatches(toknum);
+      /** Pre values and positions of the current block. */
+      final int[] prs = new int[FTPostings.BLOCK], pss = new int[FTPostings.BLOCK];
+      /** Current block, number of its pairs, and current pair. */
+      int b = -1, bs, c;
+      int pre, tf;
+
+      @Override
+      public synchronized boolean more() {
+        if(c == bs && !block(b + 1)) return false;
+        all.reset(toknum);
+        pre = prs[c];
+        tf = 0;
+        // pairs of a pre value may span several blocks
+        do {
+          all.or(pss[c++]);
+          tf++;
+        } while(c < bs ? prs[c] == pre : block(b + 1) && prs[c] == pre);
+        return true;
+      }
+
+      @Override
+      public synchronized boolean skip(final int p) {
+        if(c == bs || prs[bs - 1] < p) {
+          // jump to the first block that may contain the pre value
+          if(!block(fp.find(p, b + 1))) return false;
+        }
+        // binary search for the first entry with the specified pre value
+        int l = c, h = bs;
+        while(l < h) {
+          final int m = l + h >>> 1;
+          if(prs[m] < p) l = m + 1;
+          else h = m;
+        }
+        c = l;
+        return more();
+      }
+
+      /**
+       * Decodes the specified block.
+       * @param n block
+       * @return {@code false} if no more blocks exist
+       */
+      private boolean block(final int n) {
+        b = n;
+        if(n >= fp.blocks()) {
+          c = bs;
+          return false;
+        }
+        bs = fp.decode(n, prs, pss);
+        c = 0;
+        return true;
+      }
+
+      @Override
+      public synchronized double score() {
+        if(texts == -1) stats();
+        return Scoring.bm25(tf, fp.df, texts, data.textLen(pre, true), avg);
+      }
+
+      @Override
+      public synchronized double maxScore() {
+        if(texts == -1) stats();
+        return Scoring.bm25Max(fp.mtf, fp.df, texts);
+      }
+
+      @Override
+      public synchronized FTMatches matches() {
+        return all;
+      }
+
+      @Override
+      public synchronized int next() {
+        return pre;
+      }
+
+      @Override
+      public synchronized int size() {
+        return fp.size;
+      }
+
+      @Override
+      public String toString() {
+        return Integer.toString(fp.size);
+      }
+    };
+  }
+
   /**
    * Full-text cache.
    */
@@ -458,17 +829,61 @@ public final class FTIndex implements Index {
     final IntList pos;
 
     /**
-     * Constructor.
+     * Constructor. The sorted runs of pre/pos values are merged via a heap.
      * @param pr pre values
      * @param ps positions
+     * @param runs offsets of the sorted runs
      */
-    FTCache(final IntList pr, final IntList ps) {
-      final int s = pr.size();
-      final double[] v = new double[s];
-      for(int i = 0; i < s; i++) v[i] = (long) pr.get(i) << 32 | ps.get(i);
-      order = Array.createOrder(v, true);
+    FTCache(final IntList pr, final IntList ps, final IntList runs) {
       pre = pr;
       pos = ps;
+      final int s = pr.size(), rs = runs.size();
+      order = new int[s];
+
+      // current and end offsets of all runs
+      final int[] off = new int[rs], end = new int[rs], heap = new int[rs];
+      int hs = 0;
+      for(int r = 0; r < rs; r++) {
+        off[r] = runs.get(r);
+        end[r] = r + 1 < rs ? runs.get(r + 1) : s;
+        if(off[r] < end[r]) heap[hs++] = r;
+      }
+      for(int h = hs >> 1; --h >= 0;) down(heap, h, hs, off);
+      for(int o = 0; hs > 0; o++) {
+        final int r = heap[0];
+        order[o] = off[r]++;
+        if(off[r] == end[r]) heap[0] = heap[--hs];
+        down(heap, 0, hs, off);
+      }
+    }
+
+    /**
+     * Moves a heap entry down to its final position.
+     * @param heap heap with run indexes
+     * @param h heap entry
+     * @param hs heap size
+     * @param off current offsets of all runs
+     */
+    private void down(final int[] heap, final int h, final int hs, final int[] off) {
+      final int r = heap[h];
+      int p = h;
+      for(int c; (c = (p << 1) + 1) < hs; p = c) {
+        if(c + 1 < hs && less(off[heap[c + 1]], off[heap[c]])) c++;
+        if(!less(off[heap[c]], off[r])) break;
+        heap[p] = heap[c];
+      }
+      heap[p] = r;
+    }
+
+    /**
+     * Compares the pre and pos values at the specified offsets.
+     * @param a first offset
+     * @param b second offset
+     * @return {@code true} if the first entry is smaller
+     */
+    private boolean less(final int a, final int b) {
+      final int c = pre.get(a) - pre.get(b);
+      return c < 0 || c == 0 && pos.get(a) < pos.get(b);
     }
   }
 }
@@ -125,9 +125,9 @@ final class FTList {
 
     final byte[] t = str.readBytes(ptok, ctl);
     // skip pointer
-    size = str.read4(str.cursor() + 5);
-    // position will always fit in an integer...
-    ptok = (int) str.cursor();
+    size = str.read4(ptok + ctl + 5);
+    // skip size; position will always fit in an integer...
+    ptok += ctl + 9;
     return t;
   }
 }
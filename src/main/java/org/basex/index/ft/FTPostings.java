@@ -0,0 +1,285 @@
+package org.basex.index.ft;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.io.out.DataOutput;
+import org.basex.io.random.*;
+import org.basex.util.*;
+
+/**
+ * This class provides access to the references of a token in file <b>z</b> of the
+ * full-text index. The {@code pre/pos} or {@code id/pos} pairs are ordered and
+ * split into blocks with a fixed number of pairs. A skip table with the last
+ * reference of each block allows iterators to jump over blocks without decoding
+ * them. Structure:<br/>
+ * {@code d, m, [r, e]..., [w1, w2, [v]..., [p]...]...}<br/>
+ * {@code d} is the number of distinct references [{@link Num}].<br/>
+ * {@code m} is the maximum number of pairs per reference [{@link Num}].<br/>
+ * {@code r} is the last reference of a block [int].<br/>
+ * {@code e} is the end offset of a block, relative to the first block [int].<br/>
+ * {@code w1} and {@code w2} are the bit widths of the packed values of a block [byte].
+ * <br/>
+ * {@code v} are the differences between the references [{@code w1} bits].<br/>
+ * {@code p} are the positions [{@code w2} bits].
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+final class FTPostings {
+  /** Number of pairs per block. */
+  static final int BLOCK = 128;
+
+  /** Data access. */
+  private final DataAccess da;
+  /** Number of pairs. */
+  final int size;
+  /** Number of distinct references. */
+  final int df;
+  /** Maximum number of pairs per reference. */
+  final int mtf;
+  /** Last references of all blocks. */
+  private final int[] last;
+  /** End offsets of all blocks. */
+  private final int[] ends;
+  /** Offset of the first block. */
+  private final long start;
+
+  /**
+   * Constructor, reading the skip table.
+   * @param d data access
+   * @param off pointer on the references
+   * @param s number of pairs
+   */
+  FTPostings(final DataAccess d, final long off, final int s) {
+    da = d;
+    size = s;
+    long o = off;
+    df = d.readNum(o);
+    o += Num.length(df);
+    mtf = d.readNum(o);
+    o += Num.length(mtf);
+
+    final int bs = (s + BLOCK - 1) / BLOCK;
+    final byte[] t = d.readBytes(o, bs << 3);
+    last = new int[bs];
+    ends = new int[bs];
+    for(int b = 0; b < bs; b++) {
+      last[b] = int4(t, b << 3);
+      ends[b] = int4(t, (b << 3) + 4);
+    }
+    start = o + (bs << 3);
+  }
+
+  /**
+   * Returns the number of blocks.
+   * @return number of blocks
+   */
+  int blocks() {
+    return last.length;
+  }
+
+  /**
+   * Returns the index of the first block, starting from the specified block, that
+   * may contain the specified reference.
+   * @param ref reference
+   * @param b first block to be checked
+   * @return block, or {@link #blocks()} if the reference is larger than all references
+   */
+  int find(final int ref, final int b) {
+    int l = b, h = last.length;
+    while(l < h) {
+      final int m = l + h >>> 1;
+      if(last[m] < ref) l = m + 1;
+      else h = m;
+    }
+    return l;
+  }
+
+  /**
+   * Decodes a block.
+   * @param b block
+   * @param refs array for the references (must have at least {@link #BLOCK} entries)
+   * @param pos array for the positions (must have at least {@link #BLOCK} entries)
+   * @return number of decoded pairs
+   */
+  int decode(final int b, final int[] refs, final int[] pos) {
+    final int s = b == 0 ? 0 : ends[b - 1];
+    final byte[] d = da.readBytes(start + s, ends[b] - s);
+    final int c = Math.min(BLOCK, size - b * BLOCK);
+    unpack(d, unpack(d, 2, d[0], refs, c), d[1], pos, c);
+    int r = b == 0 ? 0 : last[b - 1];
+    for(int i = 0; i < c; i++) {
+      r += refs[i];
+      refs[i] = r;
+    }
+    return c;
+  }
+
+  /**
+   * Decodes all pairs.
+   * @return pairs (references and positions in alternating order)
+   */
+  int[] pairs() {
+    final int[] pairs = new int[size << 1], refs = new int[BLOCK], pos = new int[BLOCK];
+    for(int b = 0, p = 0; b < last.length; b++) {
+      final int c = decode(b, refs, pos);
+      for(int i = 0; i < c; i++) {
+        pairs[p++] = refs[i];
+        pairs[p++] = pos[i];
+      }
+    }
+    return pairs;
+  }
+
+  /**
+   * Writes the specified pairs to disk. The pairs will be sorted if necessary.
+   * @param out output
+   * @param refs references
+   * @param pos positions
+   * @param s number of pairs
+   * @throws IOException I/O exception
+   */
+  static void write(final DataOutput out, final int[] refs, final int[] pos,
+      final int s) throws IOException {
+
+    if(!sorted(refs, pos, s)) sort(refs, pos, s);
+
+    // count distinct references and maximum number of pairs per reference
+    int d = 0, m = 0;
+    for(int i = 0; i < s;) {
+      final int f = i;
+      while(++i < s && refs[i] == refs[f]);
+      m = Math.max(m, i - f);
+      d++;
+    }
+    out.writeNum(d);
+    out.writeNum(m);
+
+    // pack blocks, write skip table and blocks
+    final int bs = (s + BLOCK - 1) / BLOCK;
+    final byte[][] blocks = new byte[bs][];
+    final int[] diffs = new int[BLOCK];
+    for(int b = 0, e = 0; b < bs; b++) {
+      final int f = b * BLOCK, c = Math.min(BLOCK, s - f);
+      int r = b == 0 ? 0 : refs[f - 1], w1 = 0, w2 = 0;
+      for(int i = 0; i < c; i++) {
+        diffs[i] = refs[f + i] - r;
+        r = refs[f + i];
+        w1 |= diffs[i];
+        w2 |= pos[f + i];
+      }
+      w1 = bits(w1);
+      w2 = bits(w2);
+      final byte[] block = new byte[2 + (c * w1 + 7 >>> 3) + (c * w2 + 7 >>> 3)];
+      block[0] = (byte) w1;
+      block[1] = (byte) w2;
+      pack(pos, f, c, w2, block, pack(diffs, 0, c, w1, block, 2));
+      blocks[b] = block;
+      e += block.length;
+      out.write4(r);
+      out.write4(e);
+    }
+    for(final byte[] block : blocks) out.writeBytes(block);
+  }
+
+  /**
+   * Packs values with the specified bit width.
+   * @param vals values
+   * @param f offset of the first value
+   * @param c number of values
+   * @param w bit width
+   * @param d target array
+   * @param o offset in the target array
+   * @return offset after the packed values
+   */
+  private static int pack(final int[] vals, final int f, final int c, final int w,
+      final byte[] d, final int o) {
+
+    int p = o, bits = 0;
+    long buf = 0;
+    for(int i = 0; i < c; i++) {
+      buf |= (vals[f + i] & 0xFFFFFFFFL) << bits;
+      for(bits += w; bits >= 8; bits -= 8) {
+        d[p++] = (byte) buf;
+        buf >>>= 8;
+      }
+    }
+    if(bits > 0) d[p++] = (byte) buf;
+    return p;
+  }
+
+  /**
+   * Unpacks values with the specified bit width.
+   * @param d source array
+   * @param o offset in the source array
+   * @param w bit width
+   * @param vals values
+   * @param c number of values
+   * @return offset after the packed values
+   */
+  private static int unpack(final byte[] d, final int o, final int w, final int[] vals,
+      final int c) {
+
+    final long mask = (1L << w) - 1;
+    int p = o, bits = 0;
+    long buf = 0;
+    for(int i = 0; i < c; i++) {
+      for(; bits < w; bits += 8) buf |= (d[p++] & 0xFFL) << bits;
+      vals[i] = (int) (buf & mask);
+      buf >>>= w;
+      bits -= w;
+    }
+    return p;
+  }
+
+  /**
+   * Returns the number of bits that are needed to represent the specified value.
+   * @param v value
+   * @return number of bits
+   */
+  private static int bits(final int v) {
+    return 32 - Integer.numberOfLeadingZeros(v);
+  }
+
+  /**
+   * Reads an integer from the specified array.
+   * @param a array
+   * @param o offset
+   * @return integer
+   */
+  private static int int4(final byte[] a, final int o) {
+    return (a[o] & 0xFF) << 24 | (a[o + 1] & 0xFF) << 16 | (a[o + 2] & 0xFF) << 8 |
+        a[o + 3] & 0xFF;
+  }
+
+  /**
+   * Checks if the specified pairs are sorted.
+   * @param refs references
+   * @param pos positions
+   * @param s number of pairs
+   * @return result of check
+   */
+  private static boolean sorted(final int[] refs, final int[] pos, final int s) {
+    for(int i = 1; i < s; i++) {
+      if(refs[i] < refs[i - 1] || refs[i] == refs[i - 1] && pos[i] < pos[i - 1])
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Sorts the specified pairs.
+   * @param refs references
+   * @param pos positions
+   * @param s number of pairs
+   */
+  private static void sort(final int[] refs, final int[] pos, final int s) {
+    final long[] keys = new long[s];
+    for(int i = 0; i < s; i++) keys[i] = (long) refs[i] << 32 | pos[i];
+    Arrays.sort(keys);
+    for(int i = 0; i < s; i++) {
+      refs[i] = (int) (keys[i] >>> 32);
+      pos[i] = (int) keys[i];
+    }
+  }
+}
@@ -0,0 +1,531 @@
+package org.basex.index.ft;
+
+import static org.basex.core.Text.*;
+import static org.basex.data.DataText.*;
+import static org.basex.util.Token.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.core.*;
+import org.basex.data.*;
+import org.basex.index.*;
+import org.basex.index.query.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.util.*;
+import org.basex.util.ft.*;
+import org.basex.util.hash.*;
+import org.basex.util.list.*;
+
+/**
+ * This class provides an updatable full-text index. The main index structures,
+ * which are described in {@link FTIndex}, reference node ids and are not changed
+ * by updates. Instead, the tokens of added texts are indexed in a small delta
+ * segment, and the ids of texts that have been removed from the main index
+ * structures are recorded as tombstones. Lookups merge the pre/pos values of
+ * both segments and skip all tombstones.
+ *
+ * <p>The delta segment is written to file <b>d</b> when the database is flushed:
+ * {@code i, c, t, s, [d...], r, [k, [id, pos]...]...}<br/>
+ * {@code i} is the largest id referenced by the main index structures [{@link Num}].<br/>
+ * {@code c} is the number of changed texts [{@link Num}].<br/>
+ * {@code t} is the number of indexed texts [{@link Num}].<br/>
+ * {@code s} is the total length of all indexed texts [long].<br/>
+ * {@code d} are the tombstones [{@link Num}].<br/>
+ * {@code r} are the number of removed pre/pos values per token [{@link TokenIntMap}].
+ * <br/>
+ * {@code k} are the tokens of the delta segment, followed by their id/pos pairs.
+ * </p>
+ *
+ * <p>If the number of changed texts exceeds a threshold, the delta segment is
+ * merged into new main index structures. The old files are only replaced after
+ * all new files have been written. If the replacement is interrupted, it will be
+ * completed or rolled back when the index is opened again.</p>
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+public final class UpdatableFTIndex extends FTIndex {
+  /** Minimum number of changed texts that triggers a merge. */
+  private static final int MERGE = 1 << 12;
+  /** File prefix of merged index structures. */
+  private static final String MERGED = DATAFTX + 'm';
+  /** File prefix of index structures that are replaced by merged structures. */
+  private static final String OLD = DATAFTX + 'o';
+  /** Suffixes of the files that are replaced by a merge. */
+  private static final char[] FILES = { 'x', 'y', 'z', 'd' };
+
+  /** Lexer for indexed texts. */
+  private final FTLexer lex;
+  /** Largest id referenced by the main index structures. */
+  private final int maxid;
+  /** Ids of texts that have been removed from the main index structures. */
+  private final IntSet tombs = new IntSet();
+  /** Number of pre/pos values per token that have been removed from the main index. */
+  private final TokenIntMap removed;
+  /** Delta segment: id/pos pairs of the tokens of added texts. */
+  private final TokenObjMap<IntList> delta = new TokenObjMap<IntList>();
+  /** Number of changed texts since the main index structures have been written. */
+  private int changed;
+  /** Number of indexed texts. */
+  private int ntxt;
+  /** Total length of indexed texts. */
+  private long ltxt;
+  /** Indicates if the delta segment has been changed since it has been written. */
+  private boolean dirty;
+
+  /**
+   * Constructor, initializing the index structure.
+   * @param d data reference
+   * @throws IOException I/O Exception
+   */
+  UpdatableFTIndex(final Data d) throws IOException {
+    super(d);
+    final DataInput in = new DataInput(d.meta.dbfile(DATAFTX + 'd'));
+    try {
+      maxid = in.readNum();
+      changed = in.readNum();
+      ntxt = in.readNum();
+      ltxt = in.read8();
+      for(final int id : in.readNums()) tombs.add(id);
+      removed = new TokenIntMap(in);
+      for(int s = in.readNum(); --s >= 0;) {
+        delta.add(in.readToken(), new IntList(in.readNums()));
+      }
+    } finally {
+      in.close();
+    }
+    stats(ntxt, ltxt);
+
+    final FTOpt fto = new FTOpt().copy(d.meta);
+    fto.sw = new StopWords();
+    fto.sw.comp(d);
+    lex = new FTLexer(fto);
+  }
+
+  /**
+   * Writes an empty delta segment for main index structures that have just been
+   * written.
+   * @param d data reference
+   * @param t number of indexed texts
+   * @param l total length of indexed texts
+   * @throws IOException I/O Exception
+   */
+  static void init(final Data d, final int t, final long l) throws IOException {
+    init(d, t, l, d.meta.dbfile(DATAFTX + 'd'));
+  }
+
+  /**
+   * Writes an empty delta segment to the specified file.
+   * @param d data reference
+   * @param t number of indexed texts
+   * @param l total length of indexed texts
+   * @param file file
+   * @throws IOException I/O Exception
+   */
+  private static void init(final Data d, final int t, final long l, final IOFile file)
+      throws IOException {
+    final DataOutput out = new DataOutput(file);
+    try {
+      out.writeNum(d.meta.lastid);
+      out.writeNum(0);
+      out.writeNum(t);
+      out.write8(l);
+      out.writeNums(new int[0]);
+      new TokenIntMap().write(out);
+      out.writeNum(0);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Indexes the tokens of an added text node.
+   * @param id node id
+   * @param text text
+   */
+  public void add(final int id, final byte[] text) {
+    int pos = -1;
+    lex.init(text);
+    while(lex.hasNext()) {
+      final byte[] tok = lex.nextToken();
+      ++pos;
+      if(!indexed(tok)) continue;
+      IntList il = delta.get(tok);
+      if(il == null) {
+        il = new IntList(2);
+        delta.add(tok, il);
+      }
+      il.add(id);
+      il.add(pos);
+    }
+    ntxt++;
+    ltxt += text.length;
+    changed();
+  }
+
+  /**
+   * Removes the tokens of a deleted text node. If the text is referenced by the
+   * main index structures, a tombstone will be added for its id. Otherwise, it
+   * will be removed from the delta segment.
+   * @param id node id
+   * @param text old text
+   */
+  public void delete(final int id, final byte[] text) {
+    final boolean main = id <= maxid && tombs.add(id) > 0;
+    lex.init(text);
+    while(lex.hasNext()) {
+      final byte[] tok = lex.nextToken();
+      if(!indexed(tok)) continue;
+      if(main) {
+        removed.add(tok, Math.max(0, removed.value(tok)) + 1);
+      } else {
+        final IntList il = delta.get(tok);
+        if(il != null) delta.add(tok, remove(il, id));
+      }
+    }
+    ntxt--;
+    ltxt -= text.length;
+    changed();
+  }
+
+  /**
+   * Writes the delta segment to disk. If the number of changed texts exceeds a
+   * threshold, or if a merge is enforced, the delta segment will be merged into new
+   * main index structures, and a new index instance will be returned.
+   * @param merge enforce merge
+   * @return index
+   * @throws IOException I/O Exception
+   */
+  public UpdatableFTIndex flush(final boolean merge) throws IOException {
+    if(changed != 0 && (merge || changed > Math.max(MERGE, ntxt >> 3))) return merge();
+    if(dirty) write();
+    return this;
+  }
+
+  @Override
+  public void close() {
+    try {
+      if(dirty) write();
+    } catch(final IOException ex) {
+      Util.stack(ex);
+    }
+    super.close();
+  }
+
+  @Override
+  FTIndexIterator iter(final byte[] token) {
+    // ids are mapped to pre values, and the results are cached
+    final IntList pr = new IntList(), ps = new IntList(), runs = new IntList();
+    final IndexEntry e = entry(token);
+    if(e.size > 0) postings(e.pointer, e.size, pr, ps, runs);
+    added(token, pr, ps, runs);
+    return pr.isEmpty() ? FTIndexIterator.FTEMPTY : iter(new FTCache(pr, ps, runs));
+  }
+
+  @Override
+  void postings(final long off, final int size, final IntList pr, final IntList ps,
+      final IntList runs) {
+    run(pairs(off, size), true, pr, ps, runs);
+  }
+
+  @Override
+  int changes(final byte[] token) {
+    final IntList il = delta.get(token);
+    return (il == null ? 0 : il.size() >> 1) - Math.max(0, removed.value(token));
+  }
+
+  @Override
+  byte[][] added() {
+    return delta.keys();
+  }
+
+  @Override
+  void added(final byte[] token, final IntList pr, final IntList ps,
+      final IntList runs) {
+    final IntList il = delta.get(token);
+    if(il != null && !il.isEmpty()) run(il.toArray(), false, pr, ps, runs);
+  }
+
+  @Override
+  public EntryIterator entries(final IndexEntries entries) {
+    if(changed == 0) return super.entries(entries);
+
+    // combine the numbers of entries of the main index structures and the delta segment
+    final TokenIntMap counts = new TokenIntMap();
+    final EntryIterator ei = super.entries(entries);
+    for(byte[] t; (t = ei.next()) != null;) {
+      counts.add(t, ei.count() - Math.max(0, removed.value(t)));
+    }
+    final byte[] prefix = entries.get();
+    for(final byte[] t : delta) {
+      if(startsWith(t, prefix)) {
+        counts.add(t, Math.max(0, counts.value(t)) + (delta.get(t).size() >> 1));
+      }
+    }
+    final TokenList tl = new TokenList();
+    for(final byte[] t : counts) if(counts.value(t) > 0) tl.add(t);
+    final byte[][] tokens = sort(tl.toArray());
+
+    return new EntryIterator() {
+      int c = -1;
+
+      @Override
+      public byte[] next() {
+        return ++c < tokens.length ? tokens[c] : null;
+      }
+      @Override
+      public int count() {
+        return counts.value(tokens[c]);
+      }
+    };
+  }
+
+  /**
+   * Checks if a token will be indexed.
+   * @param token token
+   * @return result of check
+   */
+  private boolean indexed(final byte[] token) {
+    final StopWords sw = lex.ftOpt().sw;
+    return token.length <= data.meta.maxlen && (sw.isEmpty() || !sw.contains(token));
+  }
+
+  /**
+   * Registers a changed text.
+   */
+  private void changed() {
+    changed++;
+    dirty = true;
+  }
+
+  /**
+   * Adds the id/pos pairs as new run of pre/pos values, which are sorted by
+   * their pre values.
+   * @param ids id/pos pairs
+   * @param main indicates if the pairs are referenced by the main index structures
+   * @param pr pre values
+   * @param ps positions
+   * @param runs offsets of the sorted position runs
+   */
+  private void run(final int[] ids, final boolean main, final IntList pr,
+      final IntList ps, final IntList runs) {
+
+    final int is = ids.length;
+    final long[] keys = new long[is >> 1];
+    int k = 0;
+    for(int i = 0; i < is; i += 2) {
+      if(main && tombs.contains(ids[i])) continue;
+      keys[k++] = (long) data.pre(ids[i]) << 32 | ids[i + 1];
+    }
+    Arrays.sort(keys, 0, k);
+    runs.add(pr.size());
+    for(int i = 0; i < k; i++) {
+      pr.add((int) (keys[i] >>> 32));
+      ps.add((int) keys[i]);
+    }
+  }
+
+  /**
+   * Writes the delta segment to disk.
+   * @throws IOException I/O Exception
+   */
+  private void write() throws IOException {
+    final DataOutput out = new DataOutput(data.meta.dbfile(DATAFTX + 'd'));
+    try {
+      out.writeNum(maxid);
+      out.writeNum(changed);
+      out.writeNum(ntxt);
+      out.write8(ltxt);
+      final int[] ids = new int[tombs.size()];
+      for(int i = 0; i < ids.length; i++) ids[i] = tombs.key(i + 1);
+      out.writeNums(ids);
+      removed.write(out);
+      out.writeNum(delta.size());
+      for(final byte[] t : delta) {
+        out.writeToken(t);
+        out.writeNums(delta.get(t).toArray());
+      }
+    } finally {
+      out.close();
+    }
+    dirty = false;
+  }
+
+  /**
+   * Merges the main index structures and the delta segment into new index structures.
+   * @return new index instance
+   * @throws IOException I/O Exception
+   */
+  private UpdatableFTIndex merge() throws IOException {
+    final MetaData md = data.meta;
+    final DataOutput outX = new DataOutput(md.dbfile(MERGED + 'x'));
+    final DataOutput outY = new DataOutput(md.dbfile(MERGED + 'y'));
+    final DataOutput outZ = new DataOutput(md.dbfile(MERGED + 'z'));
+    try {
+      final IntList ind = new IntList();
+      final byte[][] toks = sort(delta.keys());
+      int d = 0;
+      // loop through the sorted tokens of the main index structures
+      for(int ti = 0; ti < tp.length - 1; ti++) {
+        final int e = tp[ti] == -1 ? -1 : end(ti);
+        for(int i = tp[ti]; i < e; i += ti + ENTRY) {
+          final byte[] tok = inY.readBytes(i, ti);
+          while(d < toks.length && compare(toks[d], tok) < 0) {
+            write(toks[d], toks[d++], -1, 0, ind, outY, outZ);
+          }
+          final byte[] dt = d < toks.length && eq(toks[d], tok) ? toks[d++] : null;
+          write(tok, dt, pointer(i, ti), size(i, ti), ind, outY, outZ);
+        }
+      }
+      while(d < toks.length) write(toks[d], toks[d++], -1, 0, ind, outY, outZ);
+
+      final int ls = ind.isEmpty() ? 0 : ind.get(ind.size() - 2);
+      FTBuilder.writeInd(outX, ind, ls + 1, (int) outY.size());
+      FTBuilder.writeStats(outX, ntxt, ltxt);
+    } finally {
+      outX.close();
+      outY.close();
+      outZ.close();
+    }
+
+    init(data, ntxt, ltxt, md.dbfile(MERGED + 'd'));
+
+    // replace old index structures
+    super.close();
+    try {
+      for(final char c : FILES) rename(md, DATAFTX + c, OLD + c);
+      for(final char c : FILES) rename(md, MERGED + c, DATAFTX + c);
+    } catch(final IOException ex) {
+      // restore old index structures and the current delta segment
+      recover(md);
+      write();
+      throw ex;
+    }
+    for(final char c : FILES) md.dbfile(OLD + c).delete();
+    return new UpdatableFTIndex(data);
+  }
+
+  /**
+   * Renames a database file.
+   * @param md meta data
+   * @param src name of the source file
+   * @param trg name of the target file
+   * @throws IOException I/O Exception
+   */
+  private static void rename(final MetaData md, final String src, final String trg)
+      throws IOException {
+    final IOFile file = md.dbfile(trg);
+    if(!md.dbfile(src).rename(file)) throw new BaseXException(FILE_NOT_STORED_X, file);
+  }
+
+  /**
+   * Completes or rolls back a merge that has been interrupted while the old index
+   * structures were being replaced. The merge is complete if all merged files have
+   * been renamed; otherwise, the old files are restored.
+   * @param md meta data
+   */
+  static void recover(final MetaData md) {
+    boolean merged = false;
+    for(final char c : FILES) merged |= md.dbfile(MERGED + c).exists();
+    for(final char c : FILES) {
+      final IOFile old = md.dbfile(OLD + c);
+      if(!old.exists()) continue;
+      if(merged) {
+        final IOFile file = md.dbfile(DATAFTX + c);
+        file.delete();
+        old.rename(file);
+      } else {
+        old.delete();
+      }
+    }
+    for(final char c : FILES) md.dbfile(MERGED + c).delete();
+  }
+
+  /**
+   * Writes the merged id/pos pairs of a token. Pairs of the main index structures
+   * that have been removed are skipped.
+   * @param tok token
+   * @param dt token of the delta segment ({@code null} if the token is not found
+   *   in the delta segment)
+   * @param off pointer on the id/pos pairs of the main index structures
+   * @param size number of id/pos pairs of the main index structures
+   * @param ind token lengths and offsets
+   * @param outY token output
+   * @param outZ id/pos output
+   * @throws IOException I/O Exception
+   */
+  private void write(final byte[] tok, final byte[] dt, final long off, final int size,
+      final IntList ind, final DataOutput outY, final DataOutput outZ)
+      throws IOException {
+
+    final int[] m = size == 0 ? new int[0] : pairs(off, size);
+    final IntList il = dt == null ? new IntList() : delta.get(dt);
+    final int ml = m.length, dl = il.size(), s = ml + dl >> 1;
+    final int[] ids = new int[s], pos = new int[s];
+    int k = 0;
+    for(int i = 0; i < ml; i += 2) {
+      if(tombs.contains(m[i])) continue;
+      ids[k] = m[i];
+      pos[k++] = m[i + 1];
+    }
+    for(int i = 0; i < dl; i += 2) {
+      ids[k] = il.get(i);
+      pos[k++] = il.get(i + 1);
+    }
+    if(k == 0) return;
+
+    if(ind.isEmpty() || ind.get(ind.size() - 2) < tok.length) {
+      ind.add(tok.length);
+      ind.add((int) outY.size());
+    }
+    outY.writeBytes(tok);
+    outY.write5(outZ.size());
+    outY.write4(k);
+    FTPostings.write(outZ, ids, pos, k);
+  }
+
+  /**
+   * Returns a copy of the list of id/pos pairs without the pairs of the specified id.
+   * @param il id/pos pairs
+   * @param id id to be removed
+   * @return new list
+   */
+  private static IntList remove(final IntList il, final int id) {
+    final int is = il.size();
+    final IntList list = new IntList(is);
+    for(int i = 0; i < is; i += 2) {
+      if(il.get(i) == id) continue;
+      list.add(il.get(i));
+      list.add(il.get(i + 1));
+    }
+    return list;
+  }
+
+  /**
+   * Sorts tokens in the order of the index structures (by length, and lexicographically).
+   * @param tokens tokens
+   * @return sorted tokens
+   */
+  private static byte[][] sort(final byte[][] tokens) {
+    Arrays.sort(tokens, new Comparator<byte[]>() {
+      @Override
+      public int compare(final byte[] a, final byte[] b) {
+        return UpdatableFTIndex.compare(a, b);
+      }
+    });
+    return tokens;
+  }
+
+  /**
+   * Compares two tokens in the order of the index structures.
+   * @param a first token
+   * @param b second token
+   * @return difference
+   */
+  static int compare(final byte[] a, final byte[] b) {
+    final int l = a.length - b.length;
+    return l != 0 ? l : diff(a, b);
+  }
+}
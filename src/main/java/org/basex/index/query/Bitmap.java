@@ -0,0 +1,503 @@
+package org.basex.index.query;
+
+import java.util.*;
+
+import org.basex.util.*;
+
+/**
+ * This class represents a compressed bitmap of non-negative integers, such as
+ * the pre values of index results. Values are grouped in containers, which
+ * share the upper 16 bits. The lower bits of a container are stored in a sorted
+ * array or, if the container is dense, in a bit set (the structure is similar to
+ * Roaring bitmaps). Bitmaps can be intersected and merged without decoding
+ * single values.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+public final class Bitmap {
+  /** Maximum number of values of an array container. */
+  private static final int MAXARRAY = 1 << 12;
+  /** Number of words of a bit set container. */
+  private static final int WORDS = 1 << 10;
+
+  /** Container keys (upper 16 bits of the values). */
+  private int[] keys;
+  /** Array containers ({@code null} for bit set containers). */
+  private char[][] arrays;
+  /** Bit set containers ({@code null} for array containers). */
+  private long[][] sets;
+  /** Number of values of each container. */
+  private int[] cards;
+  /** Number of containers. */
+  private int size;
+  /** Number of values. */
+  private int count;
+
+  /**
+   * Constructor.
+   */
+  public Bitmap() {
+    this(1);
+  }
+
+  /**
+   * Constructor, specifying an initial number of containers.
+   * @param c number of containers
+   */
+  private Bitmap(final int c) {
+    final int s = Math.max(0, c);
+    keys = new int[s];
+    arrays = new char[s][];
+    sets = new long[s][];
+    cards = new int[s];
+  }
+
+  /**
+   * Constructor, reading a bitmap from the specified byte array.
+   * The array must have been created via {@link #toBytes()}.
+   * @param b byte array
+   */
+  public Bitmap(final byte[] b) {
+    this(Num.get(b, 0));
+    final int s = keys.length;
+    int p = Num.length(b, 0);
+    for(int c = 0; c < s; c++) {
+      final int k = Num.get(b, p);
+      p += Num.length(b, p);
+      final int cr = Num.get(b, p);
+      p += Num.length(b, p);
+      if(cr > MAXARRAY) {
+        final long[] set = new long[WORDS];
+        for(int w = 0; w < WORDS; w++) {
+          long l = 0;
+          for(int i = 0; i < 8; i++) l = l << 8 | b[p++] & 0xFF;
+          set[w] = l;
+        }
+        append(k, null, set, cr);
+      } else {
+        final char[] arr = new char[cr];
+        for(int i = 0; i < cr; i++, p += 2) {
+          arr[i] = (char) ((b[p] & 0xFF) << 8 | b[p + 1] & 0xFF);
+        }
+        append(k, arr, null, cr);
+      }
+    }
+  }
+
+  /**
+   * Adds a value. Values can be added in arbitrary order, but adding them in
+   * ascending order is fastest.
+   * @param v value
+   */
+  public void add(final int v) {
+    final int k = v >>> 16;
+    int c = size - 1;
+    if(c < 0 || keys[c] < k) {
+      append(k, new char[4], null, 0);
+      c = size - 1;
+    } else if(keys[c] != k) {
+      c = Arrays.binarySearch(keys, 0, size, k);
+      if(c < 0) {
+        c = -c - 1;
+        insert(c, k);
+      }
+    }
+    if(add(c, (char) v)) count++;
+  }
+
+  /**
+   * Checks if the specified value is contained in the bitmap.
+   * @param v value
+   * @return result of check
+   */
+  public boolean contains(final int v) {
+    final int c = Arrays.binarySearch(keys, 0, size, v >>> 16);
+    if(c < 0) return false;
+    final long[] set = sets[c];
+    final char l = (char) v;
+    return set != null ? (set[l >>> 6] & 1L << l) != 0 :
+      Arrays.binarySearch(arrays[c], 0, cards[c], l) >= 0;
+  }
+
+  /**
+   * Returns the number of values.
+   * @return number of values
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Returns a new bitmap with all values that occur in both bitmaps.
+   * @param bm second bitmap
+   * @return resulting bitmap
+   */
+  public Bitmap and(final Bitmap bm) {
+    final Bitmap r = new Bitmap(Math.min(size, bm.size));
+    for(int i = 0, j = 0; i < size && j < bm.size;) {
+      final int k1 = keys[i], k2 = bm.keys[j];
+      if(k1 < k2) {
+        i++;
+      } else if(k1 > k2) {
+        j++;
+      } else {
+        final long[] s1 = sets[i], s2 = bm.sets[j];
+        if(s1 != null && s2 != null) {
+          r.and(k1, s1, s2);
+        } else if(s1 != null) {
+          r.and(k1, bm.arrays[j], bm.cards[j], s1);
+        } else if(s2 != null) {
+          r.and(k1, arrays[i], cards[i], s2);
+        } else {
+          r.and(k1, arrays[i], cards[i], bm.arrays[j], bm.cards[j]);
+        }
+        i++;
+        j++;
+      }
+    }
+    return r;
+  }
+
+  /**
+   * Returns a new bitmap with all values that occur in one of the bitmaps.
+   * @param bm second bitmap
+   * @return resulting bitmap
+   */
+  public Bitmap or(final Bitmap bm) {
+    final Bitmap r = new Bitmap(size + bm.size);
+    int i = 0, j = 0;
+    while(i < size || j < bm.size) {
+      final int k1 = i < size ? keys[i] : Integer.MAX_VALUE;
+      final int k2 = j < bm.size ? bm.keys[j] : Integer.MAX_VALUE;
+      if(k1 < k2) {
+        r.copy(this, i++);
+      } else if(k1 > k2) {
+        r.copy(bm, j++);
+      } else {
+        final long[] s1 = sets[i], s2 = bm.sets[j];
+        if(s1 != null || s2 != null) {
+          final long[] set = s1 != null ? s1.clone() : s2.clone();
+          if(s1 != null && s2 != null) {
+            for(int w = 0; w < WORDS; w++) set[w] |= s2[w];
+          } else {
+            final char[] arr = s1 != null ? bm.arrays[j] : arrays[i];
+            final int cr = s1 != null ? bm.cards[j] : cards[i];
+            for(int a = 0; a < cr; a++) set[arr[a] >>> 6] |= 1L << arr[a];
+          }
+          r.append(k1, null, set, cardinality(set));
+        } else {
+          r.or(k1, arrays[i], cards[i], bm.arrays[j], bm.cards[j]);
+        }
+        i++;
+        j++;
+      }
+    }
+    return r;
+  }
+
+  /**
+   * Returns an iterator over all values, in ascending order.
+   * @return iterator
+   */
+  public IndexIterator iter() {
+    return new IndexIterator() {
+      /** Current container. */
+      int c;
+      /** Position in the current container. */
+      int p = -1;
+      /** Current value. */
+      int v;
+
+      @Override
+      public boolean more() {
+        while(c < size) {
+          final long[] set = sets[c];
+          if(set != null) {
+            // find next set bit
+            int w = ++p >>> 6;
+            if(w < WORDS) {
+              long l = set[w] & -1L << p;
+              while(l == 0 && ++w < WORDS) l = set[w];
+              if(l != 0) {
+                p = (w << 6) + Long.numberOfTrailingZeros(l);
+                v = keys[c] << 16 | p;
+                return true;
+              }
+            }
+          } else if(++p < cards[c]) {
+            v = keys[c] << 16 | arrays[c][p];
+            return true;
+          }
+          c++;
+          p = -1;
+        }
+        return false;
+      }
+
+      @Override
+      public int next() {
+        return v;
+      }
+
+      @Override
+      public int size() {
+        return count;
+      }
+    };
+  }
+
+  /**
+   * Returns a compact byte representation of the bitmap.
+   * @return byte array
+   */
+  public byte[] toBytes() {
+    int l = Num.length(size);
+    for(int c = 0; c < size; c++) {
+      final int cr = cards[c];
+      // bit sets are only used for containers with more than MAXARRAY values
+      l += Num.length(keys[c]) + Num.length(cr) + (cr > MAXARRAY ? WORDS << 3 : cr << 1);
+    }
+    final byte[] b = new byte[l];
+    Num.set(b, size, 0);
+    int p = Num.length(size);
+    for(int c = 0; c < size; c++) {
+      final int cr = cards[c];
+      Num.set(b, keys[c], p);
+      p += Num.length(keys[c]);
+      Num.set(b, cr, p);
+      p += Num.length(cr);
+      final long[] set = sets[c];
+      if(set != null) {
+        for(final long w : set) {
+          for(int i = 56; i >= 0; i -= 8) b[p++] = (byte) (w >>> i);
+        }
+      } else {
+        final char[] arr = arrays[c];
+        for(int i = 0; i < cr; i++) {
+          b[p++] = (byte) (arr[i] >>> 8);
+          b[p++] = (byte) arr[i];
+        }
+      }
+    }
+    return b;
+  }
+
+  // PRIVATE METHODS ==========================================================
+
+  /**
+   * Adds the lower bits of a value to the specified container.
+   * @param c container
+   * @param l lower bits
+   * @return {@code true} if the value was added
+   */
+  private boolean add(final int c, final char l) {
+    final long[] set = sets[c];
+    if(set != null) {
+      final long w = set[l >>> 6];
+      if((w & 1L << l) != 0) return false;
+      set[l >>> 6] = w | 1L << l;
+      cards[c]++;
+      return true;
+    }
+
+    char[] arr = arrays[c];
+    final int cr = cards[c];
+    int i = cr;
+    if(cr != 0 && arr[cr - 1] >= l) {
+      i = Arrays.binarySearch(arr, 0, cr, l);
+      if(i >= 0) return false;
+      i = -i - 1;
+    }
+    if(cr == MAXARRAY) {
+      // convert dense container to bit set
+      final long[] s = new long[WORDS];
+      for(int a = 0; a < cr; a++) s[arr[a] >>> 6] |= 1L << arr[a];
+      s[l >>> 6] |= 1L << l;
+      sets[c] = s;
+      arrays[c] = null;
+    } else {
+      if(cr == arr.length) {
+        arr = Arrays.copyOf(arr, Math.min(MAXARRAY, cr << 1));
+        arrays[c] = arr;
+      }
+      System.arraycopy(arr, i, arr, i + 1, cr - i);
+      arr[i] = l;
+    }
+    cards[c]++;
+    return true;
+  }
+
+  /**
+   * Adds the intersection of two bit sets.
+   * @param k container key
+   * @param s1 first bit set
+   * @param s2 second bit set
+   */
+  private void and(final int k, final long[] s1, final long[] s2) {
+    final long[] set = new long[WORDS];
+    int cr = 0;
+    for(int w = 0; w < WORDS; w++) {
+      set[w] = s1[w] & s2[w];
+      cr += Long.bitCount(set[w]);
+    }
+    if(cr > MAXARRAY) {
+      append(k, null, set, cr);
+    } else if(cr != 0) {
+      final char[] arr = new char[cr];
+      for(int w = 0, a = 0; w < WORDS; w++) {
+        for(long l = set[w]; l != 0; l &= l - 1) {
+          arr[a++] = (char) ((w << 6) + Long.numberOfTrailingZeros(l));
+        }
+      }
+      append(k, arr, null, cr);
+    }
+  }
+
+  /**
+   * Adds the intersection of an array and a bit set.
+   * @param k container key
+   * @param a1 array
+   * @param c1 number of values of the array
+   * @param s2 bit set
+   */
+  private void and(final int k, final char[] a1, final int c1, final long[] s2) {
+    final char[] arr = new char[c1];
+    int cr = 0;
+    for(int a = 0; a < c1; a++) {
+      final char l = a1[a];
+      if((s2[l >>> 6] & 1L << l) != 0) arr[cr++] = l;
+    }
+    if(cr != 0) append(k, arr, null, cr);
+  }
+
+  /**
+   * Adds the intersection of two arrays.
+   * @param k container key
+   * @param a1 first array
+   * @param c1 number of values of the first array
+   * @param a2 second array
+   * @param c2 number of values of the second array
+   */
+  private void and(final int k, final char[] a1, final int c1, final char[] a2,
+      final int c2) {
+    final char[] arr = new char[Math.min(c1, c2)];
+    int cr = 0;
+    for(int i = 0, j = 0; i < c1 && j < c2;) {
+      final char l1 = a1[i], l2 = a2[j];
+      if(l1 < l2) {
+        i++;
+      } else if(l1 > l2) {
+        j++;
+      } else {
+        arr[cr++] = l1;
+        i++;
+        j++;
+      }
+    }
+    if(cr != 0) append(k, arr, null, cr);
+  }
+
+  /**
+   * Adds the union of two arrays.
+   * @param k container key
+   * @param a1 first array
+   * @param c1 number of values of the first array
+   * @param a2 second array
+   * @param c2 number of values of the second array
+   */
+  private void or(final int k, final char[] a1, final int c1, final char[] a2,
+      final int c2) {
+    final char[] arr = new char[c1 + c2];
+    int cr = 0, i = 0, j = 0;
+    while(i < c1 && j < c2) {
+      final char l1 = a1[i], l2 = a2[j];
+      if(l1 <= l2) {
+        arr[cr++] = l1;
+        i++;
+        if(l1 == l2) j++;
+      } else {
+        arr[cr++] = l2;
+        j++;
+      }
+    }
+    while(i < c1) arr[cr++] = a1[i++];
+    while(j < c2) arr[cr++] = a2[j++];
+
+    if(cr > MAXARRAY) {
+      final long[] set = new long[WORDS];
+      for(int a = 0; a < cr; a++) set[arr[a] >>> 6] |= 1L << arr[a];
+      append(k, null, set, cr);
+    } else {
+      append(k, arr, null, cr);
+    }
+  }
+
+  /**
+   * Appends a copy of a container of another bitmap.
+   * @param bm bitmap
+   * @param c container
+   */
+  private void copy(final Bitmap bm, final int c) {
+    final long[] set = bm.sets[c];
+    final int cr = bm.cards[c];
+    append(bm.keys[c], set != null ? null : Arrays.copyOf(bm.arrays[c], cr),
+        set != null ? set.clone() : null, cr);
+  }
+
+  /**
+   * Appends a container.
+   * @param k container key
+   * @param arr array ({@code null} for bit sets)
+   * @param set bit set ({@code null} for arrays)
+   * @param cr number of values
+   */
+  private void append(final int k, final char[] arr, final long[] set, final int cr) {
+    if(size == keys.length) resize();
+    keys[size] = k;
+    arrays[size] = arr;
+    sets[size] = set;
+    cards[size++] = cr;
+    count += cr;
+  }
+
+  /**
+   * Inserts an empty container.
+   * @param c position
+   * @param k container key
+   */
+  private void insert(final int c, final int k) {
+    if(size == keys.length) resize();
+    final int m = size - c;
+    System.arraycopy(keys, c, keys, c + 1, m);
+    System.arraycopy(arrays, c, arrays, c + 1, m);
+    System.arraycopy(sets, c, sets, c + 1, m);
+    System.arraycopy(cards, c, cards, c + 1, m);
+    keys[c] = k;
+    arrays[c] = new char[4];
+    sets[c] = null;
+    cards[c] = 0;
+    size++;
+  }
+
+  /**
+   * Resizes the container arrays.
+   */
+  private void resize() {
+    final int s = Array.newSize(size);
+    keys = Arrays.copyOf(keys, s);
+    arrays = Arrays.copyOf(arrays, s);
+    sets = Arrays.copyOf(sets, s);
+    cards = Arrays.copyOf(cards, s);
+  }
+
+  /**
+   * Returns the number of bits set in a bit set.
+   * @param set bit set
+   * @return number of bits
+   */
+  private static int cardinality(final long[] set) {
+    int cr = 0;
+    for(final long w : set) cr += Long.bitCount(w);
+    return cr;
+  }
+}
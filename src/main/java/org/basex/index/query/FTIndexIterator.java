@@ -1,6 +1,10 @@
 package org.basex.index.query;
 
+import java.util.*;
+
 import org.basex.data.*;
+import org.basex.util.*;
+import org.basex.util.ft.*;
 
 /**
  * This interface provides methods for returning index results.
@@ -30,6 +34,34 @@ public abstract class FTIndexIterator extends IndexIterator {
    */
   public abstract FTMatches matches();
 
+  /**
+   * Returns the score of the current match. Scores of index entries are calculated
+   * with the BM25 model (see {@link Scoring#bm25}) and are not normalized.
+   * @return score, or {@code -1} if no index score is available
+   */
+  public double score() {
+    return -1;
+  }
+
+  /**
+   * Returns an upper bound for the scores of all matches.
+   * @return upper bound, or {@link Double#POSITIVE_INFINITY} if it is unknown
+   */
+  public double maxScore() {
+    return Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Skips all matches with pre values smaller than the specified one.
+   * The iterator is advanced at least once.
+   * @param pre pre value
+   * @return {@code true} if a match with the same or a larger pre value was found
+   */
+  public boolean skip(final int pre) {
+    while(more()) if(next() >= pre) return true;
+    return false;
+  }
+
   /**
    * Sets the unique token number. Used for visualization.
    * @param tn number of tokens
@@ -67,6 +99,16 @@ public abstract class FTIndexIterator extends IndexIterator {
         return m;
       }
 
+      @Override
+      public double score() {
+        return c == 0 ? sum(r.score(), s.score()) : n.score();
+      }
+
+      @Override
+      public double maxScore() {
+        return i1.maxScore() + i2.maxScore();
+      }
+
       @Override
       public int next() {
         return n.next();
@@ -91,7 +133,8 @@ public abstract class FTIndexIterator extends IndexIterator {
   }
 
   /**
-   * Merges two index array iterators.
+   * Merges two index array iterators. The iterator that is behind skips all
+   * pre values that are smaller than the current pre value of the other iterator.
    * @param i1 first index array iterator to merge
    * @param i2 second index array iterator to merge
    * @param dis word distance. Ignored if {@code 0}
@@ -101,29 +144,53 @@ public abstract class FTIndexIterator extends IndexIterator {
       final FTIndexIterator i2, final int dis) {
 
     return new FTIndexIterator() {
-      FTIndexIterator r, s;
-
       @Override
       public boolean more() {
-        int c = 0;
+        return i1.more() && i2.more() && find();
+      }
+
+      @Override
+      public boolean skip(final int pre) {
+        return i1.skip(pre) && i2.skip(pre) && find();
+      }
+
+      /**
+       * Advances the iterators until they point to the same pre value.
+       * @return {@code true} if a common pre value was found
+       */
+      private boolean find() {
         while(true) {
-          if(c <= 0) r = i1.more() ? i1 : null;
-          if(c >= 0) s = i2.more() ? i2 : null;
-          if(r == null || s == null) return false;
-          c = r.next() - s.next();
-          if(c == 0 && (dis == 0 || r.matches().phrase(s.matches(), dis)))
+          final int p1 = i1.next(), p2 = i2.next();
+          if(p1 < p2) {
+            if(!i1.skip(p2)) return false;
+          } else if(p1 > p2) {
+            if(!i2.skip(p1)) return false;
+          } else if(dis == 0 || i1.matches().phrase(i2.matches(), dis)) {
             return true;
+          } else if(!i1.more() || !i2.more()) {
+            return false;
+          }
         }
       }
 
       @Override
       public FTMatches matches() {
-        return r.matches();
+        return i1.matches();
+      }
+
+      @Override
+      public double score() {
+        return sum(i1.score(), i2.score());
+      }
+
+      @Override
+      public double maxScore() {
+        return i1.maxScore() + i2.maxScore();
       }
 
       @Override
       public int next() {
-        return r.next();
+        return i1.next();
       }
 
       @Override
@@ -143,4 +210,225 @@ public abstract class FTIndexIterator extends IndexIterator {
       }
     };
   }
+
+  /**
+   * Returns the matches with the highest scores, ordered by their pre values.
+   * The scores of matches with the same pre value are summed up.
+   * The matches are found with the MaxScore algorithm: iterators are sorted by their
+   * upper score bounds. An iterator only provides new candidates as long as the
+   * bounds of all iterators with smaller bounds would not suffice to exceed the
+   * lowest score of the currently best matches. Otherwise, it is only consulted
+   * for the candidates of the remaining iterators, and only if the candidate can
+   * still make it into the best matches.
+   * @param iters iterators
+   * @param k maximum number of returned matches
+   * @return iterator
+   */
+  public static FTIndexIterator top(final FTIndexIterator[] iters, final int k) {
+    return new FTIndexIterator() {
+      /** Pre values of the best matches. */
+      int[] pres;
+      /** Scores of the best matches. */
+      double[] scores;
+      /** Best matches. */
+      FTMatches[] all;
+      /** Number of best matches. */
+      int size;
+      /** Current match. */
+      int c = -1;
+
+      @Override
+      public boolean more() {
+        if(pres == null) init();
+        return ++c < size;
+      }
+
+      @Override
+      public int next() {
+        return pres[c];
+      }
+
+      @Override
+      public FTMatches matches() {
+        return all[c];
+      }
+
+      @Override
+      public double score() {
+        return scores[c];
+      }
+
+      @Override
+      public void tokenNum(final byte tn) {
+        toknum = tn;
+        for(final FTIndexIterator it : iters) it.tokenNum(tn);
+      }
+
+      @Override
+      public synchronized int size() {
+        if(pres == null) init();
+        return size;
+      }
+
+      /**
+       * Finds the best matches.
+       */
+      private void init() {
+        // sort iterators by their upper bounds, and accumulate the bounds
+        final int n = iters.length;
+        final double[] max = new double[n];
+        for(int i = 0; i < n; i++) max[i] = iters[i].maxScore();
+        final int[] order = Array.createOrder(max, true);
+        final FTIndexIterator[] its = new FTIndexIterator[n];
+        final double[] bounds = new double[n];
+        final int[] cur = new int[n];
+        double b = 0;
+        for(int i = 0; i < n; i++) {
+          its[i] = iters[order[i]];
+          b += max[order[i]];
+          bounds[i] = b;
+          cur[i] = its[i].more() ? its[i].next() : Integer.MAX_VALUE;
+        }
+
+        // heap with the best matches; the root is the match with the lowest score
+        final int[] hp = new int[k];
+        final double[] hs = new double[k];
+        final FTMatches[] hm = new FTMatches[k];
+        int hl = 0;
+        // first iterator that provides new candidates
+        int e = 0;
+        while(true) {
+          int pre = Integer.MAX_VALUE;
+          for(int i = e; i < n; i++) pre = Math.min(pre, cur[i]);
+          if(pre == Integer.MAX_VALUE) break;
+
+          final FTMatches m = new FTMatches(toknum);
+          double sc = 0;
+          for(int i = e; i < n; i++) {
+            if(cur[i] != pre) continue;
+            sc += add(its[i], m);
+            cur[i] = its[i].more() ? its[i].next() : Integer.MAX_VALUE;
+          }
+          for(int i = e - 1; i >= 0 && (hl < k || sc + bounds[i] > hs[0]); i--) {
+            if(cur[i] < pre) {
+              cur[i] = its[i].skip(pre) ? its[i].next() : Integer.MAX_VALUE;
+            }
+            if(cur[i] == pre) sc += add(its[i], m);
+          }
+
+          if(hl < k) {
+            // add new match
+            hp[hl] = pre;
+            hs[hl] = sc;
+            hm[hl] = m;
+            up(hp, hs, hm, hl++);
+          } else if(sc > hs[0]) {
+            // replace match with lowest score
+            hp[0] = pre;
+            hs[0] = sc;
+            hm[0] = m;
+            down(hp, hs, hm, hl);
+          }
+          if(hl == k) while(e < n && bounds[e] <= hs[0]) e++;
+        }
+
+        // sort best matches by their pre values
+        final int[] po = Array.createOrder(Arrays.copyOf(hp, hl), true);
+        pres = new int[hl];
+        scores = new double[hl];
+        all = new FTMatches[hl];
+        for(int i = 0; i < hl; i++) {
+          pres[i] = hp[po[i]];
+          scores[i] = hs[po[i]];
+          all[i] = hm[po[i]];
+        }
+        size = hl;
+      }
+    };
+  }
+
+  /**
+   * Adds the current matches of an iterator and returns its score.
+   * @param it iterator
+   * @param m matches
+   * @return score (scores that are not available are treated as {@code 0})
+   */
+  static double add(final FTIndexIterator it, final FTMatches m) {
+    for(final FTMatch sm : it.matches()) m.add(sm);
+    return Math.max(0, it.score());
+  }
+
+  /**
+   * Sums up two scores.
+   * @param s1 first score
+   * @param s2 second score
+   * @return sum, or {@code -1} if one of the scores is not available
+   */
+  static double sum(final double s1, final double s2) {
+    return s1 == -1 || s2 == -1 ? -1 : s1 + s2;
+  }
+
+  /**
+   * Moves a heap entry up to its final position.
+   * @param hp pre values
+   * @param hs scores
+   * @param hm matches
+   * @param h heap entry
+   */
+  static void up(final int[] hp, final double[] hs, final FTMatches[] hm, final int h) {
+    for(int c = h, p; c > 0 && lower(hp, hs, c, p = c - 1 >> 1); c = p) {
+      swap(hp, hs, hm, c, p);
+    }
+  }
+
+  /**
+   * Moves the root of a heap down to its final position.
+   * @param hp pre values
+   * @param hs scores
+   * @param hm matches
+   * @param hl heap size
+   */
+  static void down(final int[] hp, final double[] hs, final FTMatches[] hm,
+      final int hl) {
+    for(int p = 0, c; (c = (p << 1) + 1) < hl; p = c) {
+      if(c + 1 < hl && lower(hp, hs, c + 1, c)) c++;
+      if(!lower(hp, hs, c, p)) break;
+      swap(hp, hs, hm, c, p);
+    }
+  }
+
+  /**
+   * Checks if the first heap entry ranks lower than the second. Of two matches with
+   * the same score, the match with the larger pre value ranks lower.
+   * @param hp pre values
+   * @param hs scores
+   * @param a first entry
+   * @param b second entry
+   * @return result of check
+   */
+  private static boolean lower(final int[] hp, final double[] hs, final int a,
+      final int b) {
+    return hs[a] < hs[b] || hs[a] == hs[b] && hp[a] > hp[b];
+  }
+
+  /**
+   * Swaps two heap entries.
+   * @param hp pre values
+   * @param hs scores
+   * @param hm matches
+   * @param a first entry
+   * @param b second entry
+   */
+  private static void swap(final int[] hp, final double[] hs, final FTMatches[] hm,
+      final int a, final int b) {
+    final int p = hp[a];
+    hp[a] = hp[b];
+    hp[b] = p;
+    final double s = hs[a];
+    hs[a] = hs[b];
+    hs[b] = s;
+    final FTMatches m = hm[a];
+    hm[a] = hm[b];
+    hm[b] = m;
+  }
 }
@@ -78,14 +78,14 @@ public class DiskValues implements Index {
     tb.add(LI_STRUCTURE + SORTED_LIST + NL);
     final IndexStats stats = new IndexStats(data.meta.prop.num(Prop.MAXSTAT));
 
-    synchronized(monitor) {
-      final long l = idxl.length() + idxr.length();
-      tb.add(LI_SIZE + Performance.format(l, true) + NL);
-      final int s = size.get();
-      for(int m = 0; m < s; ++m) {
-        final long pos = idxr.read5(m * 5L);
-        final int oc = idxl.readNum(pos);
-        if(stats.adding(oc)) stats.add(data.text(pre(idxl.readNum()), text));
+    final long l = idxl.length() + idxr.length();
+    tb.add(LI_SIZE + Performance.format(l, true) + NL);
+    final int s = size.get();
+    for(int m = 0; m < s; ++m) {
+      final long pos = idxr.read5(m * 5L);
+      final int oc = idxl.readNum(pos);
+      if(stats.adding(oc)) {
+        stats.add(data.text(pre(idxl.readNum(pos + Num.length(oc))), text));
       }
     }
 
@@ -109,6 +109,25 @@ public class DiskValues implements Index {
     return iter(e.size, e.pointer);
   }
 
+  /**
+   * Returns the sorted pre values for the specified token as bitmap.
+   * Bitmaps of frequent keys are directly read from disk.
+   * <p><em>Important:</em> This method is thread-safe.</p>
+   * @param it index token
+   * @return bitmap
+   */
+  public Bitmap bitmap(final IndexToken it) {
+    if(!(it instanceof StringRange || it instanceof NumericRange)) {
+      final IndexEntry e = entry(it.get());
+      final Bitmap bm = bitmap(e.pointer, e.size);
+      if(bm != null) return bm;
+    }
+    final Bitmap bm = new Bitmap();
+    final IndexIterator ii = iter(it);
+    while(ii.more()) bm.add(ii.next());
+    return bm;
+  }
+
   /**
    * Returns a cache entry.
    * <p><em>Important:</em> This method is thread-safe.</p>
@@ -122,18 +141,11 @@ public class DiskValues implements Index {
     final long p = get(tok);
     if(p < 0) return new IndexEntry(tok, 0, 0);
 
-    final int count;
-    final long pointer;
-
-    synchronized(monitor) {
-      // get position in heap file
-      final long pos = idxr.read5(p * 5L);
-      // the first heap entry represents the number of hits
-      count = idxl.readNum(pos);
-      pointer = idxl.cursor();
-    }
-
-    return cache.add(tok, count, pointer);
+    // get position in heap file
+    final long pos = idxr.read5(p * 5L);
+    // the first heap entry represents the number of hits
+    final int count = idxl.readNum(pos);
+    return cache.add(tok, count, pos + Num.length(count));
   }
 
   @Override
@@ -182,12 +194,10 @@ public class DiskValues implements Index {
       @Override
       public byte[] next() {
         if(++ix < s) {
-          synchronized(monitor) {
-            final IndexEntry entry = readKeyAt(ix);
-            if(startsWith(entry.key, prefix)) {
-              count = entry.size;
-              return entry.key;
-            }
+          final IndexEntry entry = readKeyAt(ix);
+          if(startsWith(entry.key, prefix)) {
+            count = entry.size;
+            return entry.key;
           }
         }
         count = -1;
@@ -215,11 +225,9 @@ public class DiskValues implements Index {
       @Override
       public byte[] next() {
         if(++ix <= last) {
-          synchronized(monitor) {
-            final IndexEntry entry = readKeyAt(ix);
-            count = entry.size;
-            return entry.key;
-          }
+          final IndexEntry entry = readKeyAt(ix);
+          count = entry.size;
+          return entry.key;
         }
         count = -1;
         return null;
@@ -246,11 +254,9 @@ public class DiskValues implements Index {
       @Override
       public byte[] next() {
         if(--ix >= first) {
-          synchronized(monitor) {
-            final IndexEntry entry = readKeyAt(ix);
-            count = entry.size;
-            return entry.key;
-          }
+          final IndexEntry entry = readKeyAt(ix);
+          count = entry.size;
+          return entry.key;
         }
         count = -1;
         return null;
@@ -265,7 +271,7 @@ public class DiskValues implements Index {
 
   /**
    * Read a key at the given position.
-   * <p><em>Important:</em> This method is NOT thread-safe, since it is used in loops.</p>
+   * <p><em>Important:</em> This method is thread-safe.</p>
    * @param index key position
    * @return key
    */
@@ -281,7 +287,7 @@ public class DiskValues implements Index {
     // read and ignore the number of ids in the list
     final int cnt = idxl.readNum(pos);
     if(key == null) {
-      final int id = idxl.readNum();
+      final int id = idxl.readNum(pos + Num.length(cnt));
       key = data.text(pre(id), text);
     }
 
@@ -296,16 +302,49 @@ public class DiskValues implements Index {
    * @return iterator
    */
   private IndexIterator iter(final int s, final long ps) {
+    final Bitmap bm = bitmap(ps, s);
+    if(bm != null) return bm.iter();
     final IntList pres = new IntList(s);
-    long p = ps;
-    synchronized(monitor) {
-      for(int i = 0, id = 0; i < s; i++) {
-        id += idxl.readNum(p);
-        p = idxl.cursor();
-        pres.add(pre(id));
-      }
+    pres(ps, s, pres);
+    // ids are only unsorted if they have been converted to pre values
+    return iter(data.meta.updindex ? pres.sort() : pres);
+  }
+
+  /**
+   * Returns the bitmap of an id list.
+   * <p><em>Important:</em> This method is thread-safe.</p>
+   * @param ps position of the first id
+   * @param s number of ids
+   * @return bitmap, or {@code null} if the ids are stored as list
+   */
+  private Bitmap bitmap(final long ps, final int s) {
+    if(s < ValueIndexBuilder.BITMAP || data.meta.updindex) return null;
+    // a bitmap is indicated by a zero after the first id
+    final long p = ps + Num.length(idxl.readNum(ps));
+    if(idxl.readNum(p) != 0) return null;
+    final int l = idxl.readNum(p + 1);
+    return new Bitmap(idxl.readBytes(p + 1 + Num.length(l), l));
+  }
+
+  /**
+   * Adds the {@code pre} values of an id list to the specified list.
+   * <p><em>Important:</em> This method is thread-safe.</p>
+   * @param ps position of the first id
+   * @param s number of ids
+   * @param pres list of pre values
+   */
+  private void pres(final long ps, final int s, final IntList pres) {
+    final Bitmap bm = bitmap(ps, s);
+    if(bm != null) {
+      for(final IndexIterator ii = bm.iter(); ii.more();) pres.add(ii.next());
+      return;
+    }
+    // read all distances with a single access
+    final int[] ids = idxl.readNums(ps, s);
+    for(int i = 0, id = 0; i < s; i++) {
+      id += ids[i];
+      pres.add(pre(id));
     }
-    return iter(pres.sort());
   }
 
   /**
@@ -317,23 +356,19 @@ public class DiskValues implements Index {
   private IndexIterator idRange(final StringRange tok) {
     // check if min and max are positive integers with the same number of digits
     final IntList pres = new IntList();
-    synchronized(monitor) {
-      final int i = get(tok.min);
-      final int s = size.get();
-      for(int l = i < 0 ? -i - 1 : tok.mni ? i : i + 1; l < s; l++) {
-        final int ps = idxl.readNum(idxr.read5(l * 5L));
-        int id = idxl.readNum();
-        final int pre = pre(id);
-
-        // value is too large: skip traversal
-        final int d = diff(data.text(pre, text), tok.max);
-        if(d > 0 || !tok.mxi && d == 0) break;
-        // add pre values
-        for(int p = 0; p < ps; ++p) {
-          pres.add(pre(id));
-          id += idxl.readNum();
-        }
-      }
+    final int i = get(tok.min);
+    final int s = size.get();
+    for(int l = i < 0 ? -i - 1 : tok.mni ? i : i + 1; l < s; l++) {
+      final long pos = idxr.read5(l * 5L);
+      final int ps = idxl.readNum(pos);
+      final long p = pos + Num.length(ps);
+      final int pre = pre(idxl.readNum(p));
+
+      // value is too large: skip traversal
+      final int d = diff(data.text(pre, text), tok.max);
+      if(d > 0 || !tok.mxi && d == 0) break;
+      // add pre values
+      pres(p, ps, pres);
     }
     return iter(pres.sort());
   }
@@ -354,26 +389,22 @@ public class DiskValues implements Index {
         token(min).length == len;
 
     final IntList pres = new IntList();
-    synchronized(monitor) {
-      final int s = size.get();
-      for(int l = 0; l < s; ++l) {
-        final int ds = idxl.readNum(idxr.read5(l * 5L));
-        int id = idxl.readNum();
-        final int pre = pre(id);
-
-        final double v = data.textDbl(pre, text);
-        if(v >= min && v <= max) {
-          // value is in range
-          for(int d = 0; d < ds; ++d) {
-            pres.add(pre(id));
-            id += idxl.readNum();
-          }
-        } else if(simple && v > max && data.textLen(pre, text) == len) {
-          // if limits are integers, if min, max and current value have the same
-          // string length, and if current value is larger than max, test can be
-          // skipped, as all remaining values will be bigger
-          break;
-        }
+    final int s = size.get();
+    for(int l = 0; l < s; ++l) {
+      final long pos = idxr.read5(l * 5L);
+      final int ds = idxl.readNum(pos);
+      final long p = pos + Num.length(ds);
+      final int pre = pre(idxl.readNum(p));
+
+      final double v = data.textDbl(pre, text);
+      if(v >= min && v <= max) {
+        // value is in range
+        pres(p, ds, pres);
+      } else if(simple && v > max && data.textLen(pre, text) == len) {
+        // if limits are integers, if min, max and current value have the same
+        // string length, and if current value is larger than max, test can be
+        // skipped, as all remaining values will be bigger
+        break;
       }
     }
     return iter(pres.sort());
@@ -435,15 +466,13 @@ public class DiskValues implements Index {
    */
   protected int get(final byte[] key, final int first, final int last) {
     int l = first, h = last;
-    synchronized(monitor) {
-      while(l <= h) {
-        final int m = l + h >>> 1;
-        final byte[] txt = readKeyAt(m).key;
-        final int d = diff(txt, key);
-        if(d == 0) return m;
-        if(d < 0) l = m + 1;
-        else h = m - 1;
-      }
+    while(l <= h) {
+      final int m = l + h >>> 1;
+      final byte[] txt = readKeyAt(m).key;
+      final int d = diff(txt, key);
+      if(d == 0) return m;
+      if(d < 0) l = m + 1;
+      else h = m - 1;
     }
     return -(l + 1);
   }
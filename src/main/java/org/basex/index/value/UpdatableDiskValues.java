@@ -102,7 +102,8 @@ public final class UpdatableDiskValues extends DiskValues {
    */
   private void appendIds(final int ix, final byte[] key, final int[] nids) {
     final long oldpos = idxr.read5(ix * 5L);
-    final int numold = idxl.readNum(oldpos);
+    idxl.cursor(oldpos);
+    final int numold = idxl.readNum();
     final int[] ids = new int[numold + nids.length];
 
     // read the old ids
@@ -150,7 +151,8 @@ public final class UpdatableDiskValues extends DiskValues {
    */
   private int deleteIds(final int ix, final byte[] key, final int[] ids) {
     final long pos = idxr.read5(ix * 5L);
-    final int numold = idxl.readNum(pos);
+    idxl.cursor(pos);
+    final int numold = idxl.readNum();
 
     if(numold == ids.length) {
       // all ids should be detected: the key itself will be deleted, too
@@ -238,7 +240,8 @@ public final class UpdatableDiskValues extends DiskValues {
     } else {
       // add id to the list of ids in the index node
       final long pos = idxr.read5(ix * 5L);
-      final int num = idxl.readNum(pos);
+      idxl.cursor(pos);
+      final int num = idxl.readNum();
 
       final int[] ids = new int[num + 1];
       boolean notadded = true;
@@ -0,0 +1,248 @@
+package org.basex.index.value;
+
+import java.util.*;
+
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * This class collects index keys and ids in packed arrays. In contrast to the
+ * {@link org.basex.index.IndexTree}, no objects are created for single entries:
+ * keys are appended to a single byte array, and repeated keys are shared via a
+ * small hash cache. Before the entries are written to disk, they are sorted by
+ * their keys with a multi-key quicksort.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+final class ValueIndexBuffer {
+  /** Maximum number of key bytes. */
+  private static final int MAXBYTES = 1 << 30;
+  /** Maximum number of entries. */
+  private static final int MAXSIZE = 1 << 28;
+  /** Number of slots of the key cache (must be a power of two). */
+  private static final int CACHE = 1 << 12;
+  /** Ranges smaller than this value are sorted by insertion sort. */
+  private static final int SMALL = 8;
+
+  /** Keys, each prefixed by its compressed length. */
+  private byte[] keys = new byte[1 << 16];
+  /** Number of key bytes. */
+  private int bytes;
+  /** Key offsets of all entries. */
+  private int[] offs = new int[1 << 12];
+  /** Ids of all entries. */
+  private int[] ids = new int[1 << 12];
+  /** Number of entries. */
+  private int size;
+  /** Offsets of recently added keys (incremented by one), indexed by their hash. */
+  private final int[] cache = new int[CACHE];
+
+  /** Entries, sorted by their keys ({@code null} if not sorted yet). */
+  private int[] order;
+  /** Number of distinct keys. */
+  private int distinct;
+  /** Current iterator position. */
+  private int pos;
+
+  /**
+   * Adds a key and its id.
+   * @param key key
+   * @param id id
+   */
+  void add(final byte[] key, final int id) {
+    final int h = Token.hash(key) & CACHE - 1;
+    int o = cache[h] - 1;
+    if(o < 0 || !eq(o, key)) {
+      // append new key
+      o = bytes;
+      final int kl = key.length, nl = Num.length(kl);
+      if(bytes + nl + kl > keys.length) {
+        keys = Arrays.copyOf(keys, Math.max(bytes + nl + kl, Array.newSize(keys.length)));
+      }
+      Num.set(keys, kl, bytes);
+      System.arraycopy(key, 0, keys, bytes + nl, kl);
+      bytes += nl + kl;
+      cache[h] = o + 1;
+    }
+    if(size == offs.length) {
+      final int s = Array.newSize(size);
+      offs = Arrays.copyOf(offs, s);
+      ids = Arrays.copyOf(ids, s);
+    }
+    offs[size] = o;
+    ids[size++] = id;
+  }
+
+  /**
+   * Returns the number of entries.
+   * @return number of entries
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Checks if the maximum capacity of the buffer has been reached.
+   * @return result of check
+   */
+  boolean full() {
+    return bytes >= MAXBYTES || size >= MAXSIZE;
+  }
+
+  /**
+   * Sorts the entries and initializes the iterator.
+   * @return number of distinct keys
+   */
+  int sort() {
+    if(order == null) {
+      order = new int[size];
+      for(int i = 0; i < size; i++) order[i] = i;
+      sort(0, size, 0);
+      distinct = size == 0 ? 0 : 1;
+      for(int i = 1; i < size; i++) if(!eq(order[i - 1], order[i])) distinct++;
+    }
+    pos = 0;
+    return distinct;
+  }
+
+  /**
+   * Checks if the iterator returns more keys.
+   * @return result of check
+   */
+  boolean more() {
+    return pos < size;
+  }
+
+  /**
+   * Returns the next key and adds its ids to the specified list.
+   * @param il id list
+   * @return key
+   */
+  byte[] next(final IntList il) {
+    final int e = order[pos++];
+    il.add(ids[e]);
+    while(pos < size && eq(e, order[pos])) il.add(ids[order[pos++]]);
+    final int o = offs[e];
+    final int s = o + Num.length(keys, o);
+    return Arrays.copyOfRange(keys, s, s + Num.get(keys, o));
+  }
+
+  // PRIVATE METHODS ==========================================================
+
+  /**
+   * Sorts the specified range of entries with a multi-key quicksort.
+   * All keys of the range are known to have the same first characters.
+   * @param s start position
+   * @param e end position (exclusive)
+   * @param d number of equal characters
+   */
+  private void sort(final int s, final int e, final int d) {
+    final int[] ord = order;
+    int st = s, en = e, dp = d;
+    while(en - st > 1) {
+      if(en - st < SMALL) {
+        // insertion sort
+        for(int i = st + 1; i < en; i++) {
+          for(int j = i; j > st && diff(ord[j - 1], ord[j], dp) > 0; j--) swap(j, j - 1);
+        }
+        return;
+      }
+      // three-way partitioning around the character of a median entry
+      final int m = st + (en - st >>> 1);
+      final int p = ch(ord[med(st, m, en - 1, dp)], dp);
+      int lt = st, gt = en - 1, i = st;
+      while(i <= gt) {
+        final int c = ch(ord[i], dp);
+        if(c < p) swap(lt++, i++);
+        else if(c > p) swap(i, gt--);
+        else i++;
+      }
+      sort(st, lt, dp);
+      sort(gt + 1, en, dp);
+      // all remaining keys are equal if the end of the keys has been reached
+      if(p == -1) return;
+      st = lt;
+      en = gt + 1;
+      dp++;
+    }
+  }
+
+  /**
+   * Returns the position of the entry with the median character.
+   * @param a first position
+   * @param b second position
+   * @param c third position
+   * @param d character position
+   * @return position
+   */
+  private int med(final int a, final int b, final int c, final int d) {
+    final int ca = ch(order[a], d), cb = ch(order[b], d), cc = ch(order[c], d);
+    return ca < cb ? cb < cc ? b : ca < cc ? c : a : cb > cc ? b : ca > cc ? c : a;
+  }
+
+  /**
+   * Returns the character at the specified position of a key.
+   * @param e entry
+   * @param d character position
+   * @return character, or {@code -1} if the key is shorter
+   */
+  private int ch(final int e, final int d) {
+    final int o = offs[e];
+    return d < Num.get(keys, o) ? keys[o + Num.length(keys, o) + d] & 0xFF : -1;
+  }
+
+  /**
+   * Compares the keys of two entries, starting from the specified position.
+   * @param e1 first entry
+   * @param e2 second entry
+   * @param d character position
+   * @return difference
+   */
+  private int diff(final int e1, final int e2, final int d) {
+    final int o1 = offs[e1], o2 = offs[e2];
+    if(o1 == o2) return 0;
+    final int l1 = Num.get(keys, o1), l2 = Num.get(keys, o2);
+    final int s1 = o1 + Num.length(keys, o1), s2 = o2 + Num.length(keys, o2);
+    final int l = Math.min(l1, l2);
+    for(int i = d; i < l; i++) {
+      final int c = (keys[s1 + i] & 0xFF) - (keys[s2 + i] & 0xFF);
+      if(c != 0) return c;
+    }
+    return l1 - l2;
+  }
+
+  /**
+   * Checks if the keys of two entries are equal.
+   * @param e1 first entry
+   * @param e2 second entry
+   * @return result of check
+   */
+  private boolean eq(final int e1, final int e2) {
+    return diff(e1, e2, 0) == 0;
+  }
+
+  /**
+   * Checks if the key at the specified offset equals the specified key.
+   * @param o key offset
+   * @param key key
+   * @return result of check
+   */
+  private boolean eq(final int o, final byte[] key) {
+    final int kl = key.length;
+    if(Num.get(keys, o) != kl) return false;
+    final int s = o + Num.length(keys, o);
+    for(int i = 0; i < kl; i++) if(keys[s + i] != key[i]) return false;
+    return true;
+  }
+
+  /**
+   * Swaps two sorted entries.
+   * @param a first position
+   * @param b second position
+   */
+  private void swap(final int a, final int b) {
+    final int t = order[a];
+    order[a] = order[b];
+    order[b] = t;
+  }
+}
@@ -9,6 +9,7 @@ import java.io.*;
 import org.basex.core.*;
 import org.basex.data.*;
 import org.basex.index.*;
+import org.basex.index.query.*;
 import org.basex.io.out.DataOutput;
 import org.basex.io.random.*;
 import org.basex.util.*;
@@ -23,7 +24,12 @@ import org.basex.util.list.*;
  * <li> {@code DATATXT/ATV + 'l'}: contains the index values, which are dense id
  *   lists to all text nodes/attribute values, stored in the {@link Num} format:
  *   [size0, id1, id2, ...]. The number of index keys is stored in the first 4
- *   bytes of the file.</li>
+ *   bytes of the file. If the index is not updatable, and if a key occurs at
+ *   least {@link #BITMAP} times, the ids are stored as compressed {@link Bitmap}:
+ *   [size0, id1, 0, length, bitmap]. As ids are distinct, the second value
+ *   of a normal list can never be 0. Bitmaps have been introduced with index
+ *   version 7.6 (see {@link DataText#ISTORAGE}): older versions will report
+ *   outdated indexes.</li>
  * <li> {@code DATATXT/ATV + 'r'}: contains 5-byte references to the id lists
  *   for all keys. To save space, the keys itself are not stored in the index
  *   structure. Instead, they can be found by following the id references to
@@ -31,14 +37,25 @@ import org.basex.util.list.*;
  * </li>
  * </ul>
  *
+ * <p>Keys and ids are either collected in a {@link IndexTree}, or, if
+ * {@link Prop#INDEXSORT} is enabled, in a {@link ValueIndexBuffer}, which
+ * avoids the creation of objects for single entries.</p>
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
 public final class ValueIndexBuilder extends IndexBuilder {
-  /** Temporary value tree. */
-  private IndexTree index = new IndexTree();
+  /** Minimum number of ids that will be stored as bitmap. */
+  static final int BITMAP = 1 << 12;
+
+  /** Temporary value tree ({@code null} if sorted buffers are used). */
+  private IndexTree index;
+  /** Temporary value buffer ({@code null} if value trees are used). */
+  private ValueIndexBuffer buffer;
   /** Index type (attributes/texts). */
   private final boolean text;
+  /** Flag for using sorted buffers. */
+  private final boolean sort;
 
   /**
    * Constructor.
@@ -48,6 +65,19 @@ public final class ValueIndexBuilder extends IndexBuilder {
   public ValueIndexBuilder(final Data d, final boolean txt) {
     super(d);
     text = txt;
+    sort = d.meta.prop.is(Prop.INDEXSORT);
+  }
+
+  /**
+   * Constructor for partitions.
+   * @param p parent builder
+   * @param s first pre value
+   * @param e pre value after the last node
+   */
+  private ValueIndexBuilder(final ValueIndexBuilder p, final int s, final int e) {
+    super(p, s, e);
+    text = p.text;
+    sort = p.sort;
   }
 
   @Override
@@ -59,26 +89,18 @@ public final class ValueIndexBuilder extends IndexBuilder {
     Util.debug(det());
 
     final String f = text ? DATATXT : DATAATV;
-    final int k = text ? Data.TEXT : Data.ATTR;
-
-    for(pre = 0; pre < size; ++pre) {
-      if((pre & 0x0FFF) == 0) {
-        check();
-        // check if main memory is exhausted
-        if(memFull()) {
-          write(f + csize++, false);
-          index = new IndexTree();
-          Performance.gc(singlegc ? 1 : 2);
-        }
-      }
-      // skip too long values
-      if(data.kind(pre) == k && data.textLen(pre, text) <= data.meta.maxlen)
-        index.index(data.text(pre, text), data.meta.updindex ? data.id(pre) : pre);
+    final int ps = partitions();
+    if(ps > 1) {
+      // index partitions in parallel
+      parallel(ps);
+    } else {
+      index();
     }
 
     if(merge) {
-      write(f + csize++, false);
+      if(index != null || buffer != null) write(f + id(), false);
       index = null;
+      buffer = null;
       if(!singlegc) Performance.gc(1);
       merge();
     } else {
@@ -93,6 +115,60 @@ public final class ValueIndexBuilder extends IndexBuilder {
         new UpdatableDiskValues(data, text) : new DiskValues(data, text);
   }
 
+  @Override
+  protected void partition() throws IOException {
+    index();
+    write((text ? DATATXT : DATAATV) + id(), false);
+    index = null;
+    buffer = null;
+  }
+
+  @Override
+  protected ValueIndexBuilder partition(final int s, final int e) {
+    return new ValueIndexBuilder(this, s, e);
+  }
+
+  /**
+   * Indexes the values of the assigned nodes.
+   * @throws IOException I/O exception
+   */
+  private void index() throws IOException {
+    final String f = text ? DATATXT : DATAATV;
+    final int k = text ? Data.TEXT : Data.ATTR;
+
+    init();
+    for(pre = start; pre < end; ++pre) {
+      if((pre & 0x0FFF) == 0) {
+        check();
+        // check if main memory is exhausted, or if the buffer is full
+        final boolean full = buffer != null && buffer.full();
+        if(memFull() || full) {
+          write(f + id(), false);
+          merge = true;
+          init();
+          if(!full) Performance.gc(singlegc ? 1 : 2);
+        }
+      }
+      // skip too long values
+      if(data.kind(pre) == k && data.textLen(pre, text) <= data.meta.maxlen) {
+        final byte[] key = data.text(pre, text);
+        final int id = data.meta.updindex ? data.id(pre) : pre;
+        if(sort) buffer.add(key, id);
+        else index.index(key, id);
+      }
+    }
+  }
+
+  /**
+   * Initializes new temporary index structures.
+   */
+  private void init() {
+    index = null;
+    buffer = null;
+    if(sort) buffer = new ValueIndexBuffer();
+    else index = new IndexTree();
+  }
+
   /**
    * Merges cached index files.
    * @throws IOException I/O exception
@@ -106,8 +182,9 @@ public final class ValueIndexBuilder extends IndexBuilder {
     // initialize cached index iterators
     final IntList ml = new IntList();
     final IntList il = new IntList();
+    csize = runs.size();
     final ValueIndexMerger[] vm = new ValueIndexMerger[csize];
-    for(int i = 0; i < csize; ++i) vm[i] = new ValueIndexMerger(data, text, i);
+    for(int i = 0; i < csize; ++i) vm[i] = new ValueIndexMerger(data, text, runs.get(i));
     int sz = 0;
 
     // parse through all values
@@ -165,6 +242,11 @@ public final class ValueIndexBuilder extends IndexBuilder {
    * @throws IOException I/O exception
    */
   private void write(final String name, final boolean all) throws IOException {
+    if(buffer != null) {
+      writeBuffer(name, all);
+      return;
+    }
+
     // write id arrays and references
     final DataOutput outL = new DataOutput(data.meta.dbfile(name + 'l'));
     final DataOutput outR = new DataOutput(data.meta.dbfile(name + 'r'));
@@ -201,6 +283,41 @@ public final class ValueIndexBuilder extends IndexBuilder {
     }
   }
 
+  /**
+   * Writes the sorted entries of the current value buffer to disk.
+   * @param name name
+   * @param all writes the final structure
+   * @throws IOException I/O exception
+   */
+  private void writeBuffer(final String name, final boolean all) throws IOException {
+    final DataOutput outL = new DataOutput(data.meta.dbfile(name + 'l'));
+    final DataOutput outR = new DataOutput(data.meta.dbfile(name + 'r'));
+    final DataOutput outT = all ? null : new DataOutput(data.meta.dbfile(name + 't'));
+    outL.write4(buffer.sort());
+
+    final IntList il = new IntList();
+    while(buffer.more()) {
+      final byte[] key = buffer.next(il);
+      if(all) {
+        // write final structure to disk
+        write(outL, outR, il);
+      } else {
+        // write temporary structure to disk: number of bytes, absolute values
+        final int is = il.size();
+        int vs = 4;
+        for(int i = 0; i < is; i++) vs += Num.length(il.get(i));
+        outR.write5(outL.size());
+        outL.write4(vs);
+        for(int i = 0; i < is; i++) outL.writeNum(il.get(i));
+        outT.writeToken(key);
+        il.reset();
+      }
+    }
+    outL.close();
+    outR.close();
+    if(outT != null) outT.close();
+  }
+
   /**
    * Writes the final value structure to disk.
    * @param outL index values
@@ -208,7 +325,7 @@ public final class ValueIndexBuilder extends IndexBuilder {
    * @param il values
    * @throws IOException I/O exception
    */
-  private static void write(final DataOutput outL, final DataOutput outR,
+  private void write(final DataOutput outL, final DataOutput outR,
       final IntList il) throws IOException {
 
     // sort values before writing
@@ -216,6 +333,18 @@ public final class ValueIndexBuilder extends IndexBuilder {
     final int is = il.size();
     outR.write5(outL.size());
     outL.writeNum(is);
+    if(is >= BITMAP && !data.meta.updindex) {
+      // write bitmap, preceded by the first id and a marker
+      final Bitmap bm = new Bitmap();
+      for(int i = 0; i < is; i++) bm.add(il.get(i));
+      final byte[] b = bm.toBytes();
+      outL.writeNum(il.get(0));
+      outL.writeNum(0);
+      outL.writeNum(b.length);
+      outL.writeBytes(b);
+      il.reset();
+      return;
+    }
     for(int i = 0, o = 0; i < is; i++) {
       final int v = il.get(i);
       outL.writeNum(v - o);
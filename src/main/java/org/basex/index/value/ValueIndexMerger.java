@@ -65,7 +65,9 @@ final class ValueIndexMerger {
    * @return compressed values
    */
   private byte[] nextValues() {
-    return dv.idxr.cursor() >= dv.idxr.length() ? EMPTY :
-      dv.idxl.readBytes(dv.idxr.read5(), dv.idxl.read4());
+    if(dv.idxr.cursor() >= dv.idxr.length()) return EMPTY;
+    // the first four bytes of the values contain their total size
+    final long p = dv.idxr.read5();
+    return dv.idxl.readBytes(p, dv.idxl.read4(p));
   }
 }
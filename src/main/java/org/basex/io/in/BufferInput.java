@@ -153,6 +153,15 @@ public class BufferInput extends InputStream {
     return read + bpos;
   }
 
+  /**
+   * Returns the number of buffered bytes, which can be read without blocking.
+   * @return number of bytes
+   */
+  @Override
+  public int available() {
+    return bsize - bpos;
+  }
+
   /**
    * Returns the input length (may be {@code -1}).
    * @return input length
@@ -37,6 +37,15 @@ public final class ArrayOutput extends PrintOutput {
     size = s + 1;
   }
 
+  @Override
+  public void write(final byte[] b, final int off, final int len) {
+    final int s = (int) size, l = (int) Math.min(len, max - s);
+    if(l <= 0) return;
+    if(s + l > buf.length) buf = Arrays.copyOf(buf, Math.max(s + l, s << 1));
+    System.arraycopy(b, off, buf, s, l);
+    size = s + l;
+  }
+
   /**
    * Returns the output as byte array.
    * @return byte array
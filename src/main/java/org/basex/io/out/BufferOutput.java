@@ -55,6 +55,20 @@ public final class BufferOutput extends OutputStream {
     buffer[pos++] = (byte) b;
   }
 
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    if(len > bufsize - pos) {
+      flush();
+      // large arrays are written directly
+      if(len >= bufsize) {
+        os.write(b, off, len);
+        return;
+      }
+    }
+    System.arraycopy(b, off, buffer, pos, len);
+    pos += len;
+  }
+
   @Override
   public void flush() throws IOException {
     os.write(buffer, 0, pos);
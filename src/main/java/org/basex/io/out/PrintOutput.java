@@ -61,6 +61,13 @@ public class PrintOutput extends OutputStream {
     if(size++ < max) os.write(b);
   }
 
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    final long l = Math.min(len, max - size);
+    if(l > 0) os.write(b, off, (int) l);
+    size += len;
+  }
+
   /**
    * Writes a character as UTF8.
    * @param ch character to be printed
@@ -119,7 +126,7 @@ public class PrintOutput extends OutputStream {
    * @throws IOException I/O exception
    */
   public final void print(final byte[] token) throws IOException {
-    for(final byte t : token) write(t);
+    write(token, 0, token.length);
   }
 
   /**
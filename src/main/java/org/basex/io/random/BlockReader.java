@@ -0,0 +1,223 @@
+package org.basex.io.random;
+
+import java.io.*;
+
+import org.basex.io.*;
+import org.basex.util.*;
+
+/**
+ * This class provides positional read access to a database file. It is used by
+ * {@link DataAccess} to process concurrent read operations: each reader has its own
+ * file handle, buffers and cursor, and it must only be used by one thread at a time.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+final class BlockReader {
+  /** Minimum number of buffers. */
+  private static final int MIN = 1 << 2;
+
+  /** Path to the file. */
+  private final String path;
+  /** File handle. */
+  private final RandomAccessFile file;
+  /** Buffer manager. */
+  private Buffers bm;
+  /** Version of the file contents that are reflected by the buffers. */
+  private int version;
+  /** File length. */
+  private long len;
+  /** Offset. */
+  private int off;
+
+  /**
+   * Constructor.
+   * @param pth path to the file
+   * @param v version of the file contents
+   * @throws IOException I/O Exception
+   */
+  BlockReader(final String pth, final int v) throws IOException {
+    path = pth;
+    file = new RandomAccessFile(pth, "r");
+    bm = new Buffers(pth, MIN);
+    version = v;
+  }
+
+  /**
+   * Prepares the reader for the next read operation.
+   * Buffered blocks will be discarded if the file contents have changed.
+   * @param v version of the file contents
+   * @param l file length
+   */
+  void init(final int v, final long l) {
+    if(v != version) {
+      bm.close();
+      bm = new Buffers(path, MIN);
+      version = v;
+    }
+    len = l;
+  }
+
+  /**
+   * Closes the reader.
+   */
+  void close() {
+    try {
+      file.close();
+    } catch(final IOException ex) {
+      Util.stack(ex);
+    }
+    bm.close();
+  }
+
+  /**
+   * Reads a byte value from the specified position.
+   * @param p position
+   * @return byte value
+   */
+  byte read1(final long p) {
+    cursor(p);
+    return (byte) read();
+  }
+
+  /**
+   * Reads an integer value from the specified position.
+   * @param p position
+   * @return integer value
+   */
+  int read4(final long p) {
+    cursor(p);
+    return (read() << 24) + (read() << 16) + (read() << 8) + read();
+  }
+
+  /**
+   * Reads a 5-byte value from the specified position.
+   * @param p position
+   * @return long value
+   */
+  long read5(final long p) {
+    cursor(p);
+    return ((long) read() << 32) + ((long) read() << 24) +
+      (read() << 16) + (read() << 8) + read();
+  }
+
+  /**
+   * Reads a {@link Num} value from the specified position.
+   * @param p position
+   * @return read num
+   */
+  int readNum(final long p) {
+    cursor(p);
+    return readNum();
+  }
+
+  /**
+   * Reads a number of {@link Num} values from the specified position.
+   * @param p position
+   * @param n number of values
+   * @return values
+   */
+  int[] readNums(final long p, final int n) {
+    cursor(p);
+    final int[] v = new int[n];
+    for(int i = 0; i < n; i++) v[i] = readNum();
+    return v;
+  }
+
+  /**
+   * Reads a token from the specified position.
+   * @param p position
+   * @return text as byte array
+   */
+  byte[] readToken(final long p) {
+    cursor(p);
+    return readBytes(readNum());
+  }
+
+  /**
+   * Reads a number of bytes from the specified position.
+   * @param p position
+   * @param l length
+   * @return byte array
+   */
+  byte[] readBytes(final long p, final int l) {
+    cursor(p);
+    return readBytes(l);
+  }
+
+  // PRIVATE METHODS ==========================================================
+
+  /**
+   * Sets the cursor.
+   * @param p read position
+   */
+  private void cursor(final long p) {
+    off = (int) (p & IO.BLOCKSIZE - 1);
+    final long b = p - off;
+    if(!bm.cursor(b)) return;
+
+    final Buffer bf = bm.current();
+    bf.pos = b;
+    try {
+      if(b < len) {
+        file.seek(b);
+        file.readFully(bf.data, 0, (int) Math.min(len - b, IO.BLOCKSIZE));
+      }
+    } catch(final IOException ex) {
+      Util.stack(ex);
+    }
+  }
+
+  /**
+   * Returns the current buffer, or the next one if the end of the current buffer
+   * has been reached.
+   * @return buffer
+   */
+  private Buffer buffer() {
+    if(off == IO.BLOCKSIZE) cursor(bm.current().pos + IO.BLOCKSIZE);
+    return bm.current();
+  }
+
+  /**
+   * Reads the next byte.
+   * @return next byte
+   */
+  private int read() {
+    final Buffer bf = buffer();
+    return bf.data[off++] & 0xFF;
+  }
+
+  /**
+   * Reads the next compressed number and returns it as integer.
+   * @return next integer
+   */
+  private int readNum() {
+    final int v = read();
+    switch(v & 0xC0) {
+    case 0:
+      return v;
+    case 0x40:
+      return (v - 0x40 << 8) + read();
+    case 0x80:
+      return (v - 0x80 << 24) + (read() << 16) + (read() << 8) + read();
+    default:
+      return (read() << 24) + (read() << 16) + (read() << 8) + read();
+    }
+  }
+
+  /**
+   * Reads a number of bytes.
+   * @param n length
+   * @return byte array
+   */
+  private byte[] readBytes(final int n) {
+    final byte[] b = new byte[n];
+    for(int o = 0; o < n;) {
+      final Buffer bf = buffer();
+      final int l = Math.min(n - o, IO.BLOCKSIZE - off);
+      System.arraycopy(bf.data, off, b, o, l);
+      off += l;
+      o += l;
+    }
+    return b;
+  }
+}
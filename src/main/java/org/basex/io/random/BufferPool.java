@@ -0,0 +1,226 @@
+package org.basex.io.random;
+
+import java.lang.ref.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import org.basex.io.*;
+
+/**
+ * This class manages the memory that is shared by the buffers of all opened
+ * database files. Every file is assigned a minimum number of buffers. Additional
+ * buffers are only assigned to files whose blocks are repeatedly requested,
+ * as long as the maximum size of the pool has not been reached.
+ *
+ * If a file is denied an additional buffer, no other file may grow beyond its fair
+ * share of the pool, and files exceeding their share return clean buffers until
+ * the waiting file has been served. The buffers of all files are only weakly
+ * referenced: the additional buffers of a file that has not been closed are
+ * returned to the pool when its buffers have been garbage collected.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+public final class BufferPool {
+  /** Users of the pool (buffers of all opened files). */
+  private static final ArrayList<User> USERS = new ArrayList<User>();
+  /** Queue with the users whose buffers have been garbage collected. */
+  private static final ReferenceQueue<Buffers> COLLECTED = new ReferenceQueue<Buffers>();
+  /** Number of assigned additional buffers. */
+  private static final AtomicInteger USED = new AtomicInteger();
+  /** Maximum number of additional buffers. */
+  private static volatile int max = blocks(64);
+  /** Number of users. */
+  private static volatile int users;
+  /** User that has recently been denied an additional buffer (may be {@code null}). */
+  private static volatile User denied;
+
+  /** Private constructor. */
+  private BufferPool() { }
+
+  /**
+   * Sets the size of the buffer pool.
+   * @param mb size in megabytes
+   */
+  public static void size(final int mb) {
+    max = blocks(mb);
+  }
+
+  /**
+   * Returns the number of additional buffers that are currently assigned to files.
+   * @return number of buffers
+   */
+  public static int used() {
+    expunge();
+    return USED.get();
+  }
+
+  /**
+   * Returns the maximum number of additional buffers.
+   * @return number of buffers
+   */
+  public static int max() {
+    return max;
+  }
+
+  /**
+   * Returns buffer statistics for the specified file.
+   * @param file file
+   * @return statistics (hits, misses, number of buffers), or {@code null} if the file
+   * is currently not opened
+   */
+  public static long[] stats(final IOFile file) {
+    final String path = file.path();
+    long[] stats = null;
+    expunge();
+    synchronized(USERS) {
+      for(final User u : USERS) {
+        final Buffers b = u.get();
+        if(b == null || !b.path.equals(path)) continue;
+        if(stats == null) stats = new long[3];
+        stats[0] += b.hits;
+        stats[1] += b.misses;
+        stats[2] += b.size();
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * Registers the buffers of an opened file.
+   * @param b buffers
+   * @return user reference
+   */
+  static User register(final Buffers b) {
+    expunge();
+    final User u = new User(b);
+    synchronized(USERS) {
+      USERS.add(u);
+      users = USERS.size();
+    }
+    return u;
+  }
+
+  /**
+   * Unregisters the buffers of a closed file and releases its additional buffers.
+   * @param u user reference
+   */
+  static void unregister(final User u) {
+    u.clear();
+    remove(u);
+  }
+
+  /**
+   * Tries to acquire an additional buffer.
+   * @param u user reference
+   * @return success flag
+   */
+  static boolean acquire(final User u) {
+    // do not exceed the fair share while another user is waiting
+    final User d = denied;
+    if(d != null && d != u && u.extra >= share()) return false;
+    if(!reserve()) {
+      denied = u;
+      return false;
+    }
+    if(d == u) denied = null;
+    u.extra++;
+    return true;
+  }
+
+  /**
+   * Checks if the specified user should return an additional buffer to the pool.
+   * This is the case if another user is waiting for a buffer, and if the
+   * specified user exceeds its fair share of the pool.
+   * @param u user reference
+   * @return result of check
+   */
+  static boolean shrink(final User u) {
+    final User d = denied;
+    return d != null && d != u && u.extra > share();
+  }
+
+  /**
+   * Returns an additional buffer to the pool.
+   * @param u user reference
+   */
+  static void release(final User u) {
+    u.extra--;
+    USED.decrementAndGet();
+  }
+
+  /**
+   * Reserves an additional buffer. The buffers of garbage collected users are
+   * released if the pool is exhausted.
+   * @return success flag
+   */
+  private static boolean reserve() {
+    for(int i = 0; i < 2; i++) {
+      if(USED.incrementAndGet() <= max) return true;
+      USED.decrementAndGet();
+      if(!expunge()) break;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the fair share of additional buffers per user.
+   * @return number of buffers
+   */
+  private static int share() {
+    return max / Math.max(1, users);
+  }
+
+  /**
+   * Removes all users whose buffers have been garbage collected.
+   * @return {@code true} if buffers have been released
+   */
+  private static boolean expunge() {
+    boolean released = false;
+    for(Reference<? extends Buffers> r; (r = COLLECTED.poll()) != null;) {
+      released |= remove((User) r);
+    }
+    return released;
+  }
+
+  /**
+   * Removes a user and releases its additional buffers.
+   * @param u user reference
+   * @return {@code true} if the user was registered
+   */
+  private static boolean remove(final User u) {
+    synchronized(USERS) {
+      if(!USERS.remove(u)) return false;
+      users = USERS.size();
+    }
+    if(denied == u) denied = null;
+    USED.addAndGet(-u.extra);
+    return true;
+  }
+
+  /**
+   * Returns the number of blocks for the specified number of megabytes.
+   * @param mb megabytes
+   * @return number of blocks
+   */
+  private static int blocks(final int mb) {
+    final long b = ((long) Math.max(0, mb) << 20) / IO.BLOCKSIZE;
+    return (int) Math.min(Integer.MAX_VALUE, b);
+  }
+
+  /**
+   * Weak reference to the buffers of a file, storing the number of additional
+   * buffers that have been assigned to the file.
+   */
+  static final class User extends WeakReference<Buffers> {
+    /** Number of additional buffers. */
+    volatile int extra;
+
+    /**
+     * Constructor.
+     * @param b buffers
+     */
+    private User(final Buffers b) {
+      super(b, COLLECTED);
+    }
+  }
+}
@@ -1,24 +1,108 @@
 package org.basex.io.random;
 
+import java.util.*;
+
 /**
- * This class provides a simple, clock-based buffer management.
+ * This class provides a scan-resistant buffer management, based on the 2Q algorithm
+ * (Johnson and Shasha, VLDB 1994):
+ *
+ * <ul>
+ * <li>Blocks that are requested for the first time are placed in a FIFO queue. If
+ *   they are evicted from this queue, their positions are remembered in a queue
+ *   of ghost entries.</li>
+ * <li>Blocks that are requested again while being registered as ghost entries are
+ *   considered to be hot, and they are placed in an LRU queue.</li>
+ * </ul>
+ *
+ * A sequential scan will thus only replace blocks of the FIFO queue, whereas frequently
+ * accessed blocks (such as index pages) will be kept in the LRU queue.
+ *
+ * Each instance starts with a minimum number of buffers. If a ghost entry is requested,
+ * an additional buffer will be taken from the global {@link BufferPool}, as long as
+ * its size limit has not been reached. If requested by the pool, clean buffers are
+ * returned when a buffer is chosen for replacement.
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
 final class Buffers {
-  /** Number of buffers (must be 1 << n). */
-  private static final int BUFFERS = 1 << 4;
+  /** Minimum number of buffers. */
+  static final int MIN = 1 << 4;
+  /** Queue of blocks that have been requested once. */
+  private static final int IN = 0;
+  /** Queue of hot blocks. */
+  private static final int HOT = 1;
+
+  /** Path to the buffered file (used for statistics). */
+  final String path;
+  /** Minimum number of buffers. */
+  final int min;
+  /** Number of block requests answered from the buffers. */
+  long hits;
+  /** Number of block requests that required a block to be read. */
+  long misses;
+
   /** Buffers. */
-  private final Buffer[] buf = new Buffer[BUFFERS];
+  private Buffer[] buf;
+  /** Block positions of the buffers (-1: unused buffer). */
+  private long[] keys;
+  /** Queue of each buffer. */
+  private byte[] queue;
+  /** Previous buffers in the queues. */
+  private int[] prev;
+  /** Next buffers in the queues. */
+  private int[] next;
+  /** Number of buffers. */
+  private int size;
+  /** Number of unused buffers. */
+  private int unused;
+  /** Most recently added buffers of the queues. */
+  private final int[] head = { -1, -1 };
+  /** Least recently used buffers of the queues. */
+  private final int[] tail = { -1, -1 };
+  /** Number of buffers in the queues. */
+  private final int[] count = new int[2];
+  /** Index on the block positions of the buffers. */
+  private final Index index;
+
+  /** Block positions of ghost entries (ring buffer; -1: no entry). */
+  private long[] ghosts;
+  /** Current offset in the ghost entries. */
+  private int goff;
+  /** Index on the ghost entries. */
+  private Index gindex;
+
   /** Current buffer offset. */
   private int off;
+  /** Reference in the buffer pool. */
+  private final BufferPool.User user;
+
+  /**
+   * Constructor, assigning {@link #MIN} buffers.
+   * @param pth path to the buffered file
+   */
+  Buffers(final String pth) {
+    this(pth, MIN);
+  }
 
   /**
    * Constructor.
+   * @param pth path to the buffered file
+   * @param mn minimum number of buffers (must be a power of two)
    */
-  Buffers() {
-    for(int b = 0; b < BUFFERS; ++b) buf[b] = new Buffer();
+  Buffers(final String pth, final int mn) {
+    path = pth;
+    min = mn;
+    buf = new Buffer[mn];
+    keys = new long[mn];
+    queue = new byte[mn];
+    prev = new int[mn];
+    next = new int[mn];
+    for(int b = 0; b < mn; ++b) add();
+    unused = mn;
+    index = new Index(keys);
+    ghosts();
+    user = BufferPool.register(this);
   }
 
   /**
@@ -26,7 +110,15 @@ final class Buffers {
    * @return buffers
    */
   Buffer[] all() {
-    return buf;
+    return size == buf.length ? buf : Arrays.copyOf(buf, size);
+  }
+
+  /**
+   * Returns the number of buffers.
+   * @return number of buffers
+   */
+  int size() {
+    return size;
   }
 
   /**
@@ -43,11 +135,293 @@ final class Buffers {
    * @return true if cursor has changed
    */
   boolean cursor(final long p) {
-    final int o = off;
-    do {
-      if(buf[off].pos == p) return false;
-    } while((off = off + 1 & BUFFERS - 1) != o);
-    off = o + 1 & BUFFERS - 1;
+    if(keys[off] == p) return false;
+
+    int b = index.get(p);
+    if(b != -1) {
+      // block is buffered: move hot buffers to the head of their queue
+      ++hits;
+      if(queue[b] == HOT) {
+        unlink(b);
+        push(HOT, b);
+      }
+      off = b;
+      return false;
+    }
+
+    // block has to be read: check if it has recently been evicted
+    ++misses;
+    final int g = gindex.get(p);
+    if(g != -1) {
+      gindex.remove(g);
+      ghosts[g] = -1;
+    }
+    b = g != -1 && unused == 0 && BufferPool.acquire(user) ? add() : victim();
+    keys[b] = p;
+    index.put(b);
+    push(g != -1 ? HOT : IN, b);
+    off = b;
     return true;
   }
+
+  /**
+   * Returns all additional buffers to the buffer pool.
+   * Must be called when the file is closed.
+   */
+  void close() {
+    BufferPool.unregister(user);
+  }
+
+  // PRIVATE METHODS ==========================================================
+
+  /**
+   * Adds a new, unused buffer and returns its offset.
+   * @return buffer offset
+   */
+  private int add() {
+    if(size == buf.length) {
+      final int s = size << 1;
+      buf = Arrays.copyOf(buf, s);
+      keys = Arrays.copyOf(keys, s);
+      queue = Arrays.copyOf(queue, s);
+      prev = Arrays.copyOf(prev, s);
+      next = Arrays.copyOf(next, s);
+      index.resize(keys);
+      ghosts();
+    }
+    final int b = size++;
+    buf[b] = new Buffer();
+    keys[b] = -1;
+    return b;
+  }
+
+  /**
+   * Chooses a buffer to be reused, and removes it from its queue.
+   * @return buffer offset
+   */
+  private int victim() {
+    // choose unused buffer
+    if(unused > 0) return size - unused--;
+
+    // choose buffer from FIFO queue if it exceeds its quota, or from hot queue
+    final int b;
+    if(count[IN] > Math.max(1, size >>> 2) || count[HOT] == 0) {
+      b = tail[IN];
+      ghost(keys[b]);
+    } else {
+      b = tail[HOT];
+    }
+    unlink(b);
+    index.remove(b);
+
+    // return a clean buffer to the pool if another file is waiting for buffers
+    if(size > min && BufferPool.shrink(user)) {
+      final int c = clean();
+      if(c != -1) {
+        BufferPool.release(user);
+        return drop(c, b);
+      }
+    }
+    return b;
+  }
+
+  /**
+   * Returns the least recently used buffer of one of the queues that has not
+   * been modified.
+   * @return buffer offset, or {@code -1}
+   */
+  private int clean() {
+    for(int q = IN; q <= HOT; q++) {
+      final int t = tail[q];
+      if(t != -1 && !buf[t].dirty) return t;
+    }
+    return -1;
+  }
+
+  /**
+   * Removes a buffer. The last buffer is moved to its offset.
+   * @param c offset of the buffer to be removed
+   * @param v offset of the chosen victim, which is not contained in any queue
+   * @return new offset of the victim
+   */
+  private int drop(final int c, final int v) {
+    if(queue[c] == IN) ghost(keys[c]);
+    unlink(c);
+    index.remove(c);
+
+    final int l = --size;
+    int r = v;
+    if(l != c) {
+      buf[c] = buf[l];
+      keys[c] = keys[l];
+      if(l == v) {
+        r = c;
+      } else {
+        index.remove(l);
+        index.put(c);
+        final int q = queue[l], p = prev[l], n = next[l];
+        queue[c] = (byte) q;
+        prev[c] = p;
+        next[c] = n;
+        if(p != -1) next[p] = c;
+        else head[q] = c;
+        if(n != -1) prev[n] = c;
+        else tail[q] = c;
+      }
+      if(off == l) off = c;
+    }
+    buf[l] = null;
+    keys[l] = -1;
+    return r;
+  }
+
+  /**
+   * Registers a ghost entry.
+   * @param p block position
+   */
+  private void ghost(final long p) {
+    final int g = goff;
+    if(ghosts[g] != -1) gindex.remove(g);
+    ghosts[g] = p;
+    gindex.put(g);
+    goff = g + 1 == ghosts.length ? 0 : g + 1;
+  }
+
+  /**
+   * Creates or resizes the queue of ghost entries. It contains at least twice as many
+   * entries as the number of buffers, which allows repeated requests to be detected
+   * even if a file has only few buffers.
+   */
+  private void ghosts() {
+    final int gl = Math.max(min << 6, buf.length << 1);
+    final long[] old = ghosts;
+    if(old != null && old.length == gl) return;
+
+    final int og = goff;
+    ghosts = new long[gl];
+    Arrays.fill(ghosts, -1);
+    gindex = new Index(ghosts);
+    goff = 0;
+    // adopt existing entries, starting with the oldest one
+    if(old != null) {
+      final int ol = old.length;
+      for(int o = 0; o < ol; o++) {
+        final long p = old[(og + o) % ol];
+        if(p != -1) ghost(p);
+      }
+    }
+  }
+
+  /**
+   * Adds a buffer to the head of the specified queue.
+   * @param q queue
+   * @param b buffer offset
+   */
+  private void push(final int q, final int b) {
+    queue[b] = (byte) q;
+    prev[b] = -1;
+    next[b] = head[q];
+    if(head[q] != -1) prev[head[q]] = b;
+    else tail[q] = b;
+    head[q] = b;
+    ++count[q];
+  }
+
+  /**
+   * Removes a buffer from its queue.
+   * @param b buffer offset
+   */
+  private void unlink(final int b) {
+    final int q = queue[b];
+    final int p = prev[b];
+    final int n = next[b];
+    if(p != -1) next[p] = n;
+    else head[q] = n;
+    if(n != -1) prev[n] = p;
+    else tail[q] = p;
+    --count[q];
+  }
+
+  /**
+   * Hash index on block positions, using linear probing.
+   */
+  private static final class Index {
+    /** Indexed block positions. */
+    private long[] keys;
+    /** Hash table, storing offsets + 1 ({@code 0}: empty slot). */
+    private int[] table;
+
+    /**
+     * Constructor.
+     * @param k indexed block positions
+     */
+    Index(final long[] k) {
+      keys = k;
+      table = new int[k.length << 1];
+    }
+
+    /**
+     * Returns the offset of the specified block position.
+     * @param p block position
+     * @return offset, or {@code -1}
+     */
+    int get(final long p) {
+      final int m = table.length - 1;
+      for(int h = hash(p) & m;; h = h + 1 & m) {
+        final int e = table[h];
+        if(e == 0) return -1;
+        if(keys[e - 1] == p) return e - 1;
+      }
+    }
+
+    /**
+     * Indexes the block position at the specified offset.
+     * @param o offset
+     */
+    void put(final int o) {
+      final int m = table.length - 1;
+      int h = hash(keys[o]) & m;
+      while(table[h] != 0) h = h + 1 & m;
+      table[h] = o + 1;
+    }
+
+    /**
+     * Removes the block position at the specified offset from the index.
+     * @param o offset
+     */
+    void remove(final int o) {
+      final int m = table.length - 1;
+      int h = hash(keys[o]) & m;
+      while(table[h] != o + 1) h = h + 1 & m;
+      // shift subsequent entries back to the free slot
+      for(int j = h + 1 & m; table[j] != 0; j = j + 1 & m) {
+        final int k = hash(keys[table[j] - 1]) & m;
+        if(h <= j ? h < k && k <= j : h < k || k <= j) continue;
+        table[h] = table[j];
+        h = j;
+      }
+      table[h] = 0;
+    }
+
+    /**
+     * Resizes the index.
+     * @param k new array with block positions
+     */
+    void resize(final long[] k) {
+      final int[] tbl = table;
+      keys = k;
+      table = new int[k.length << 1];
+      for(final int e : tbl) if(e != 0) put(e - 1);
+    }
+
+    /**
+     * Computes the hash value of a block position.
+     * @param p block position
+     * @return hash value
+     */
+    private static int hash(final long p) {
+      final int h = (int) (p ^ p >>> 32) * 0x9E3779B9;
+      return h ^ h >>> 16;
+    }
+  }
 }
@@ -1,6 +1,7 @@
 package org.basex.io.random;
 
 import java.io.*;
+import java.util.concurrent.atomic.*;
 
 import org.basex.io.*;
 import org.basex.util.*;
@@ -8,12 +9,28 @@ import org.basex.util.*;
 /**
  * This class allows positional read and write access to a database file.
  *
+ * Read operations with an explicit file position do not change the cursor. As long
+ * as the file has no unflushed changes, they will be performed by separate
+ * {@link BlockReader} instances and can thus be called in parallel. All other
+ * operations are synchronized or, in the case of write operations, must be
+ * protected by the caller.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
 public final class DataAccess {
+  /** Maximum number of cached readers (must be a power of two). */
+  private static final int READERS = 1 << 4;
+
+  /** Cached readers for positional read operations. */
+  private final AtomicReferenceArray<BlockReader> readers =
+      new AtomicReferenceArray<BlockReader>(READERS);
+  /** Version of the file contents, incremented whenever changes have been flushed. */
+  private volatile int version;
+  /** Indicates if the file has unflushed changes. */
+  private volatile boolean dirty;
   /** Buffer manager. */
-  private final Buffers bm = new Buffers();
+  private final Buffers bm;
   /** Reference to the data input stream. */
   private final RandomAccessFile file;
   /** File length. */
@@ -30,6 +47,7 @@ public final class DataAccess {
    */
   public DataAccess(final IOFile f) throws IOException {
     file = new RandomAccessFile(f.file(), "rw");
+    bm = new Buffers(f.path());
     len = file.length();
     cursor(0);
   }
@@ -44,6 +62,10 @@ public final class DataAccess {
         file.setLength(len);
         changed = false;
       }
+      if(dirty) {
+        ++version;
+        dirty = false;
+      }
     } catch(final IOException ex) {
       Util.stack(ex);
     }
@@ -59,6 +81,11 @@ public final class DataAccess {
     } catch(final IOException ex) {
       Util.stack(ex);
     }
+    bm.close();
+    for(int r = 0; r < READERS; r++) {
+      final BlockReader br = readers.getAndSet(r, null);
+      if(br != null) br.close();
+    }
   }
 
   /**
@@ -74,7 +101,10 @@ public final class DataAccess {
    * @param l file length
    */
   synchronized void length(final long l) {
-    changed |= l != len;
+    if(l != len) {
+      changed = true;
+      dirty = true;
+    }
     len = l;
   }
 
@@ -99,9 +129,17 @@ public final class DataAccess {
    * @param p position
    * @return integer value
    */
-  public synchronized byte read1(final long p) {
-    cursor(p);
-    return read1();
+  public byte read1(final long p) {
+    final BlockReader br = reader();
+    if(br == null) synchronized(this) {
+      cursor(p);
+      return read1();
+    }
+    try {
+      return br.read1(p);
+    } finally {
+      release(br);
+    }
   }
 
   /**
@@ -117,9 +155,17 @@ public final class DataAccess {
    * @param p position
    * @return integer value
    */
-  public synchronized int read4(final long p) {
-    cursor(p);
-    return read4();
+  public int read4(final long p) {
+    final BlockReader br = reader();
+    if(br == null) synchronized(this) {
+      cursor(p);
+      return read4();
+    }
+    try {
+      return br.read4(p);
+    } finally {
+      release(br);
+    }
   }
 
   /**
@@ -135,9 +181,17 @@ public final class DataAccess {
    * @param p position
    * @return long value
    */
-  public synchronized long read5(final long p) {
-    cursor(p);
-    return read5();
+  public long read5(final long p) {
+    final BlockReader br = reader();
+    if(br == null) synchronized(this) {
+      cursor(p);
+      return read5();
+    }
+    try {
+      return br.read5(p);
+    } finally {
+      release(br);
+    }
   }
 
   /**
@@ -154,9 +208,38 @@ public final class DataAccess {
    * @param p text position
    * @return read num
    */
-  public synchronized int readNum(final long p) {
-    cursor(p);
-    return readNum();
+  public int readNum(final long p) {
+    final BlockReader br = reader();
+    if(br == null) synchronized(this) {
+      cursor(p);
+      return readNum();
+    }
+    try {
+      return br.readNum(p);
+    } finally {
+      release(br);
+    }
+  }
+
+  /**
+   * Reads a number of {@link Num} values from the specified position.
+   * @param p position
+   * @param n number of values
+   * @return values
+   */
+  public int[] readNums(final long p, final int n) {
+    final BlockReader br = reader();
+    if(br == null) synchronized(this) {
+      cursor(p);
+      final int[] v = new int[n];
+      for(int i = 0; i < n; i++) v[i] = readNum();
+      return v;
+    }
+    try {
+      return br.readNums(p, n);
+    } finally {
+      release(br);
+    }
   }
 
   /**
@@ -164,9 +247,17 @@ public final class DataAccess {
    * @param p text position
    * @return text as byte array
    */
-  public synchronized byte[] readToken(final long p) {
-    cursor(p);
-    return readToken();
+  public byte[] readToken(final long p) {
+    final BlockReader br = reader();
+    if(br == null) synchronized(this) {
+      cursor(p);
+      return readToken();
+    }
+    try {
+      return br.readToken(p);
+    } finally {
+      release(br);
+    }
   }
 
   /**
@@ -184,9 +275,17 @@ public final class DataAccess {
    * @param l length
    * @return byte array
    */
-  public synchronized byte[] readBytes(final long p, final int l) {
-    cursor(p);
-    return readBytes(l);
+  public byte[] readBytes(final long p, final int l) {
+    final BlockReader br = reader();
+    if(br == null) synchronized(this) {
+      cursor(p);
+      return readBytes(l);
+    }
+    try {
+      return br.readBytes(p, l);
+    } finally {
+      release(br);
+    }
   }
 
   /**
@@ -346,6 +445,7 @@ public final class DataAccess {
       final int l = Math.min(last - o, IO.BLOCKSIZE - off);
       System.arraycopy(buf, o, bf.data, off, l);
       bf.dirty = true;
+      dirty = true;
       off += l;
       o += l;
     }
@@ -382,7 +482,8 @@ public final class DataAccess {
    */
   public long free(final long pos, final int size) {
     // old text size (available space)
-    int os = readNum(pos) + (int) (cursor() - pos);
+    cursor(pos);
+    int os = readNum() + (int) (cursor() - pos);
 
     // extend available space by subsequent zero-bytes
     cursor(pos + os);
@@ -413,6 +514,44 @@ public final class DataAccess {
 
   // PRIVATE METHODS ==========================================================
 
+  /**
+   * Returns a reader for a positional read operation, or {@code null} if the file
+   * has unflushed changes. The reader must be returned via {@link #release}.
+   * @return reader or {@code null}
+   */
+  private BlockReader reader() {
+    if(dirty) return null;
+    final int v = version;
+    // start with a slot that depends on the current thread
+    final int s = (int) Thread.currentThread().getId();
+    BlockReader br = null;
+    for(int r = 0; r < READERS && br == null; r++) {
+      final int i = s + r & READERS - 1;
+      final BlockReader b = readers.get(i);
+      if(b != null && readers.compareAndSet(i, b, null)) br = b;
+    }
+    try {
+      if(br == null) br = new BlockReader(bm.path, v);
+    } catch(final IOException ex) {
+      Util.debug(ex);
+      return null;
+    }
+    br.init(v, len);
+    return br;
+  }
+
+  /**
+   * Returns a reader to the cache, or closes it if all slots are occupied.
+   * @param br reader
+   */
+  private void release(final BlockReader br) {
+    final int s = (int) Thread.currentThread().getId();
+    for(int r = 0; r < READERS; r++) {
+      if(readers.compareAndSet(s + r & READERS - 1, null, br)) return;
+    }
+    br.close();
+  }
+
   /**
    * Writes the specified block to disk.
    * @param bf buffer to write
@@ -440,6 +579,7 @@ public final class DataAccess {
   private void write(final int b) {
     final Buffer bf = buffer(off == IO.BLOCKSIZE);
     bf.dirty = true;
+    if(!dirty) dirty = true;
     bf.data[off++] = (byte) b;
     final long nl = bf.pos + off;
     if(nl > len) length(nl);
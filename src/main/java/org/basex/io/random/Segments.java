@@ -0,0 +1,135 @@
+package org.basex.io.random;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.basex.util.*;
+
+/**
+ * This class provides read-only access to a file, which is mapped into memory
+ * in segments of fixed size. All read operations are positional and lock-free;
+ * they can be called by an arbitrary number of threads.
+ *
+ * Values to be read must not cross segment boundaries. The segments are
+ * explicitly unmapped by {@link #unmap()}, as mapped files would otherwise remain
+ * locked until the buffers are garbage collected.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+final class Segments {
+  /** Segment size (must be 1 << n and a multiple of the block size). */
+  private static final int POWER = 30;
+  /** Segment mask. */
+  private static final long MASK = (1L << POWER) - 1;
+  /** Unsafe instance (Java 9 and later; otherwise {@code null}). */
+  private static final Object UNSAFE;
+  /** Method for releasing a mapped buffer (Java 9 and later). */
+  private static final Method CLEANER;
+
+  static {
+    Object unsafe = null;
+    Method cleaner = null;
+    try {
+      final Class<?> c = Class.forName("sun.misc.Unsafe");
+      cleaner = c.getMethod("invokeCleaner", ByteBuffer.class);
+      final Field f = c.getDeclaredField("theUnsafe");
+      f.setAccessible(true);
+      unsafe = f.get(null);
+    } catch(final Throwable ex) {
+      // older Java versions: buffers will be released via their cleaners
+      cleaner = null;
+    }
+    UNSAFE = unsafe;
+    CLEANER = cleaner;
+  }
+  /** Mapped segments. */
+  private final ByteBuffer[] segs;
+  /** Mapped file length. */
+  final long length;
+
+  /**
+   * Constructor, mapping the current contents of the specified file.
+   * @param file file to be mapped
+   * @throws IOException I/O exception
+   */
+  Segments(final RandomAccessFile file) throws IOException {
+    final FileChannel fc = file.getChannel();
+    length = fc.size();
+    final int sl = (int) (length + MASK >>> POWER);
+    segs = new ByteBuffer[sl];
+    for(int s = 0; s < sl; s++) {
+      final long p = (long) s << POWER;
+      segs[s] = fc.map(MapMode.READ_ONLY, p, Math.min(MASK + 1, length - p));
+    }
+  }
+
+  /**
+   * Unmaps all segments. The instance must not be accessed anymore, as subsequent
+   * read operations would access unmapped memory.
+   */
+  void unmap() {
+    for(final ByteBuffer b : segs) {
+      try {
+        if(UNSAFE != null) {
+          CLEANER.invoke(UNSAFE, b);
+        } else {
+          final Method m = b.getClass().getMethod("cleaner");
+          m.setAccessible(true);
+          final Object c = m.invoke(b);
+          if(c != null) c.getClass().getMethod("clean").invoke(c);
+        }
+      } catch(final Throwable ex) {
+        // buffer will be released by the garbage collector
+        Util.debug(ex);
+      }
+    }
+  }
+
+  /**
+   * Reads a byte value and returns it as an integer value.
+   * @param p file position
+   * @return integer value
+   */
+  int read1(final long p) {
+    return segs[(int) (p >>> POWER)].get((int) (p & MASK)) & 0xFF;
+  }
+
+  /**
+   * Reads a short value and returns it as an integer value.
+   * @param p file position
+   * @return integer value
+   */
+  int read2(final long p) {
+    final ByteBuffer b = segs[(int) (p >>> POWER)];
+    final int o = (int) (p & MASK);
+    return ((b.get(o) & 0xFF) << 8) + (b.get(o + 1) & 0xFF);
+  }
+
+  /**
+   * Reads an integer value.
+   * @param p file position
+   * @return integer value
+   */
+  int read4(final long p) {
+    final ByteBuffer b = segs[(int) (p >>> POWER)];
+    final int o = (int) (p & MASK);
+    return ((b.get(o) & 0xFF) << 24) + ((b.get(o + 1) & 0xFF) << 16) +
+      ((b.get(o + 2) & 0xFF) << 8) + (b.get(o + 3) & 0xFF);
+  }
+
+  /**
+   * Reads a 5-byte value and returns it as a long value.
+   * @param p file position
+   * @return long value
+   */
+  long read5(final long p) {
+    final ByteBuffer b = segs[(int) (p >>> POWER)];
+    final int o = (int) (p & MASK);
+    return ((long) (b.get(o) & 0xFF) << 32) + ((long) (b.get(o + 1) & 0xFF) << 24) +
+      ((b.get(o + 2) & 0xFF) << 16) + ((b.get(o + 3) & 0xFF) << 8) +
+      (b.get(o + 4) & 0xFF);
+  }
+}
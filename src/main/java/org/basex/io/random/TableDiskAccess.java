@@ -16,7 +16,13 @@ import org.basex.util.*;
 /**
  * This class stores the table on disk and reads it block-wise.
  *
- * NOTE: this class is not thread-safe.
+ * If {@link Prop#MMAP} is enabled, the table file will additionally be mapped
+ * into memory. As long as the table has not been modified, all read operations
+ * will then be answered from the mapped segments, which can be accessed by
+ * concurrent threads without locking. Write operations invalidate the mapping;
+ * it will be recreated when the table is flushed.
+ *
+ * NOTE: write operations are not thread-safe.
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
@@ -24,13 +30,15 @@ import org.basex.util.*;
  */
 public final class TableDiskAccess extends TableAccess {
   /** Buffer manager. */
-  private final Buffers bm = new Buffers();
+  private final Buffers bm;
   /** File storing all blocks. */
   private final RandomAccessFile file;
   /** Bitmap storing free (=0) and occupied (=1) pages. */
   private final BitArray freePages;
   /** File lock. */
   private FileLock fl;
+  /** Memory-mapped table segments ({@code null} if mapping is disabled or invalid). */
+  private volatile Segments mapped;
 
   /** FirstPre values (sorted ascending; length: {@link #blocks}). */
   private int[] fpres;
@@ -78,10 +86,13 @@ public final class TableDiskAccess extends TableAccess {
     in.close();
 
     // initialize data file
-    file = new RandomAccessFile(meta.dbfile(DATATBL).file(), "rw");
+    final IOFile tbl = meta.dbfile(DATATBL);
+    file = new RandomAccessFile(tbl.file(), "rw");
+    bm = new Buffers(tbl.path());
     if(lock) exclusiveLock();
     else sharedLock();
     if(fl == null) throw new BaseXException(Text.DB_PINNED_X, md.name);
+    map();
   }
 
   /**
@@ -113,7 +124,11 @@ public final class TableDiskAccess extends TableAccess {
   @Override
   public synchronized void flush() throws IOException {
     for(final Buffer b : bm.all()) if(b.dirty) writeBlock(b);
-    if(!dirty) return;
+    // in-place writes invalidate the mapping without changing the directory
+    if(!dirty) {
+      map();
+      return;
+    }
 
     final DataOutput out = new DataOutput(meta.dbfile(DATATBL + 'i'));
     out.writeNum(blocks);
@@ -128,12 +143,15 @@ public final class TableDiskAccess extends TableAccess {
     out.writeLongs(freePages.toArray());
     out.close();
     dirty = false;
+    map();
   }
 
   @Override
   public synchronized void close() throws IOException {
     flush();
+    unmap();
     file.close();
+    bm.close();
   }
 
   @Override
@@ -185,37 +203,32 @@ public final class TableDiskAccess extends TableAccess {
   }
 
   @Override
-  public synchronized int read1(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return b[o] & 0xFF;
+  public int read1(final int pre, final int off) {
+    final Segments m = mapped;
+    return m != null ? m.read1(position(pre) + off) : bread1(pre, off);
   }
 
   @Override
-  public synchronized int read2(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((b[o] & 0xFF) << 8) + (b[o + 1] & 0xFF);
+  public int read2(final int pre, final int off) {
+    final Segments m = mapped;
+    return m != null ? m.read2(position(pre) + off) : bread2(pre, off);
   }
 
   @Override
-  public synchronized int read4(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((b[o] & 0xFF) << 24) + ((b[o + 1] & 0xFF) << 16) +
-      ((b[o + 2] & 0xFF) << 8) + (b[o + 3] & 0xFF);
+  public int read4(final int pre, final int off) {
+    final Segments m = mapped;
+    return m != null ? m.read4(position(pre) + off) : bread4(pre, off);
   }
 
   @Override
-  public synchronized long read5(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((long) (b[o] & 0xFF) << 32) + ((long) (b[o + 1] & 0xFF) << 24) +
-      ((b[o + 2] & 0xFF) << 16) + ((b[o + 3] & 0xFF) << 8) + (b[o + 4] & 0xFF);
+  public long read5(final int pre, final int off) {
+    final Segments m = mapped;
+    return m != null ? m.read5(position(pre) + off) : bread5(pre, off);
   }
 
   @Override
   public void write1(final int pre, final int off, final int v) {
+    unmap();
     final int o = off + cursor(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
@@ -225,6 +238,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public void write2(final int pre, final int off, final int v) {
+    unmap();
     final int o = off + cursor(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
@@ -235,6 +249,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public void write4(final int pre, final int off, final int v) {
+    unmap();
     final int o = off + cursor(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
@@ -247,6 +262,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public void write5(final int pre, final int off, final long v) {
+    unmap();
     final int o = off + cursor(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
@@ -260,6 +276,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   protected void copy(final byte[] entries, final int pre, final int last) {
+    unmap();
     for(int o = 0, i = pre; i < last; ++i, o += IO.NODESIZE) {
       final int off = cursor(i);
       final Buffer bf = bm.current();
@@ -272,6 +289,7 @@ public final class TableDiskAccess extends TableAccess {
   public void delete(final int pre, final int nr) {
     if(nr == 0) return;
     dirty = true;
+    unmap();
 
     // get first block
     cursor(pre);
@@ -347,6 +365,7 @@ public final class TableDiskAccess extends TableAccess {
     final int nnew = entries.length;
     if(nnew == 0) return;
     dirty = true;
+    unmap();
 
     // number of records to be inserted
     final int nr = nnew >>> IO.NODEPOWER;
@@ -463,6 +482,112 @@ public final class TableDiskAccess extends TableAccess {
 
   // PRIVATE METHODS ==========================================================
 
+  /**
+   * Reads a byte value from the buffered blocks.
+   * @param pre pre value
+   * @param off offset
+   * @return integer value
+   */
+  private synchronized int bread1(final int pre, final int off) {
+    final int o = off + cursor(pre);
+    final byte[] b = bm.current().data;
+    return b[o] & 0xFF;
+  }
+
+  /**
+   * Reads a short value from the buffered blocks.
+   * @param pre pre value
+   * @param off offset
+   * @return integer value
+   */
+  private synchronized int bread2(final int pre, final int off) {
+    final int o = off + cursor(pre);
+    final byte[] b = bm.current().data;
+    return ((b[o] & 0xFF) << 8) + (b[o + 1] & 0xFF);
+  }
+
+  /**
+   * Reads an integer value from the buffered blocks.
+   * @param pre pre value
+   * @param off offset
+   * @return integer value
+   */
+  private synchronized int bread4(final int pre, final int off) {
+    final int o = off + cursor(pre);
+    final byte[] b = bm.current().data;
+    return ((b[o] & 0xFF) << 24) + ((b[o + 1] & 0xFF) << 16) +
+      ((b[o + 2] & 0xFF) << 8) + (b[o + 3] & 0xFF);
+  }
+
+  /**
+   * Reads a 5-byte value from the buffered blocks.
+   * @param pre pre value
+   * @param off offset
+   * @return long value
+   */
+  private synchronized long bread5(final int pre, final int off) {
+    final int o = off + cursor(pre);
+    final byte[] b = bm.current().data;
+    return ((long) (b[o] & 0xFF) << 32) + ((long) (b[o + 1] & 0xFF) << 24) +
+      ((b[o + 2] & 0xFF) << 16) + ((b[o + 3] & 0xFF) << 8) + (b[o + 4] & 0xFF);
+  }
+
+  /**
+   * Checks if read operations are currently answered from the memory-mapped table.
+   * @return result of check
+   */
+  public boolean mapped() {
+    return mapped != null;
+  }
+
+  /**
+   * Unmaps the table file. Read operations will be answered from the buffers
+   * until the file is mapped again.
+   */
+  private void unmap() {
+    final Segments m = mapped;
+    if(m == null) return;
+    mapped = null;
+    m.unmap();
+  }
+
+  /**
+   * Maps the table file into memory if {@link Prop#MMAP} is enabled, and if
+   * all blocks have been written to disk.
+   */
+  private void map() {
+    if(!meta.prop.is(Prop.MMAP) || mapped != null) return;
+    try {
+      final Segments m = new Segments(file);
+      long max = 0;
+      for(int u = 0; u < used; u++) max = Math.max(max, pages[u] + 1L);
+      if(max * IO.BLOCKSIZE <= m.length) mapped = m;
+      else m.unmap();
+    } catch(final IOException ex) {
+      // mapping may fail, e.g. if the virtual address space is exhausted
+      Util.debug(ex);
+    }
+  }
+
+  /**
+   * Returns the file position of the entry with the specified pre value.
+   * In contrast to {@link #cursor(int)}, this method does not change the state
+   * of the instance and can be called by concurrent readers.
+   * @param pre pre value
+   * @return file position
+   */
+  private long position(final int pre) {
+    final int[] fp = fpres;
+    int l = 0;
+    int h = used - 1;
+    while(l < h) {
+      final int m = h + l + 1 >>> 1;
+      if(pre < fp[m]) h = m - 1;
+      else l = m;
+    }
+    return (long) pages[l] * IO.BLOCKSIZE + (pre - fp[l] << IO.NODEPOWER);
+  }
+
   /**
    * Searches for the block containing the entry for the specified pre value.
    * Reads the block and returns its offset inside the block.
@@ -65,6 +65,10 @@ public abstract class OutputSerializer extends Serializer {
 
   /** UTF8 flag. */
   private final boolean utf8;
+  /** Indicates if newlines are written without being converted. */
+  private final boolean lf;
+  /** Indicates if tokens without special characters are written unchanged. */
+  private final boolean direct;
 
   // project specific properties
 
@@ -117,6 +121,7 @@ public abstract class OutputSerializer extends Serializer {
     wrap    = wPre.length != 0;
     final String eol = p.check(S_NEWLINE, S_NL, S_CR, S_CRNL);
     nl = utf8(token(eol.equals(S_NL) ? "\n" : eol.equals(S_CR) ? "\r" : "\r\n"), enc);
+    lf = eol.equals(S_NL);
     String s = p.get(S_ITEM_SEPARATOR);
     if(s.equals(UNDEFINED)) s = p.get(S_SEPARATOR);
     itemsep = s.equals(UNDEFINED) ? null : token(s.indexOf('\\') != -1 ?
@@ -129,6 +134,8 @@ public abstract class OutputSerializer extends Serializer {
     content = p.yes(S_INCLUDE_CONTENT_TYPE);
     undecl  = p.yes(S_UNDECLARE_PREFIXES);
     indent  = p.yes(S_INDENT) && format;
+    direct  = utf8 && format &&
+        (this instanceof XMLSerializer || this instanceof XHTMLSerializer);
 
     if(!maps.isEmpty()) SERMAP.thrwSerial(maps);
 
@@ -243,6 +250,11 @@ public abstract class OutputSerializer extends Serializer {
     print(' ');
     print(n);
     print(ATT1);
+    if(direct && plain(v, true)) {
+      print(v);
+      print(ATT2);
+      return;
+    }
     for(int k = 0; k < v.length; k += cl(v, k)) {
       final int ch = cp(v, k);
       if(!format) {
@@ -261,7 +273,8 @@ public abstract class OutputSerializer extends Serializer {
   @Override
   protected void finishText(final byte[] b) throws IOException {
     if(cdata.isEmpty() || tags.isEmpty() || !cdata.contains(tags.peek())) {
-      for(int k = 0; k < b.length; k += cl(b, k)) code(cp(b, k));
+      if(direct && plain(b, false)) print(b);
+      else for(int k = 0; k < b.length; k += cl(b, k)) code(cp(b, k));
     } else {
       print(CDATA_O);
       int c = 0;
@@ -477,7 +490,7 @@ public abstract class OutputSerializer extends Serializer {
   protected final void print(final byte[] token) throws IOException {
     // comparison by reference
     if(utf8) {
-      for(final byte b : token) out.write(b);
+      out.print(token);
     } else {
       out.write(string(token).getBytes(encoding));
     }
@@ -497,6 +510,27 @@ public abstract class OutputSerializer extends Serializer {
     }
   }
 
+  /**
+   * Checks if the specified UTF8 token contains no characters that need to be
+   * encoded or converted by {@link #code(int)} or {@link #printChar(int)}.
+   * @param token token
+   * @param att attribute flag
+   * @return result of check
+   */
+  private boolean plain(final byte[] token, final boolean att) {
+    for(final byte b : token) {
+      if(b >= ' ') {
+        if(b == '&' || b == '<' || b == '>' || att && b == '"') return false;
+      } else if(b < 0) {
+        // characters 0x80-0x9F are encoded as hex entities
+        if(b == (byte) 0xC2) return false;
+      } else if(att || b != '\t' && (b != '\n' || !lf)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Prints the content type declaration.
    * @param empty empty flag
@@ -0,0 +1,204 @@
+package org.basex.query;
+
+import java.util.*;
+import java.util.Map.Entry;
+
+import org.basex.core.*;
+import org.basex.data.*;
+
+/**
+ * This class caches compiled queries of client sessions, which can then be evaluated
+ * repeatedly without being parsed and compiled again. A query is identified by its
+ * string, the names and types of the bound variables, the options and the user of the
+ * session. It will be discarded if one of the opened databases has been updated,
+ * or if its indexes have been changed.
+ *
+ * Queries are only cached if they perform no updates, open no main-memory
+ * instances, and have no side effects on the session.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+public final class QueryCache {
+  /** Cached queries, in the order of their last access. */
+  private final LinkedHashMap<String, Cached> queries =
+      new LinkedHashMap<String, Cached>(16, 0.75f, true);
+  /** Number of cache hits. */
+  private long hits;
+  /** Number of cache misses. */
+  private long misses;
+
+  /**
+   * Returns a compiled query from the cache. The query will be removed from the cache
+   * until it is passed back via {@link #put}. External variables must be bound again.
+   * @param query query string
+   * @param vars names and types of the bound variables
+   * @param ctx database context of the session
+   * @return compiled query, or {@code null}
+   */
+  public QueryProcessor get(final String query, final String vars, final Context ctx) {
+    if(ctx.mprop.num(MainProp.QUERYCACHE) <= 0) return null;
+
+    final Cached c;
+    synchronized(this) {
+      c = queries.remove(key(query, vars, ctx));
+      if(c != null && c.valid(ctx)) {
+        hits++;
+        c.qp.ctx.reset();
+        return c.qp;
+      }
+      misses++;
+    }
+    if(c != null) c.qp.close();
+    return null;
+  }
+
+  /**
+   * Passes back a query that has been successfully evaluated. The query will be closed
+   * if it cannot be cached.
+   * @param query query string
+   * @param vars names and types of the bound variables
+   * @param qp query processor
+   */
+  public void put(final String query, final String vars, final QueryProcessor qp) {
+    final QueryContext qc = qp.ctx;
+    final Context ctx = qc.context;
+    final int max = ctx.mprop.num(MainProp.QUERYCACHE);
+    if(max <= 0 || !qc.cached || !cacheable(qc)) {
+      qp.close();
+      return;
+    }
+
+    final ArrayList<QueryProcessor> closed = new ArrayList<QueryProcessor>();
+    synchronized(this) {
+      final Cached old = queries.put(key(query, vars, ctx), new Cached(qp));
+      if(old != null) closed.add(old.qp);
+      final Iterator<Cached> it = queries.values().iterator();
+      for(int s = queries.size(); s > max; s--) {
+        closed.add(it.next().qp);
+        it.remove();
+      }
+    }
+    for(final QueryProcessor c : closed) c.close();
+  }
+
+  /**
+   * Discards all cached queries that access the specified database.
+   * This function is called before a database is closed, dropped or overwritten.
+   * @param db name of database
+   */
+  public void release(final String db) {
+    final ArrayList<QueryProcessor> closed = new ArrayList<QueryProcessor>();
+    synchronized(this) {
+      final Iterator<Cached> it = queries.values().iterator();
+      while(it.hasNext()) {
+        final Cached c = it.next();
+        for(final Data d : c.data) {
+          if(d.meta.name.equals(db)) {
+            closed.add(c.qp);
+            it.remove();
+            break;
+          }
+        }
+      }
+    }
+    for(final QueryProcessor c : closed) c.close();
+  }
+
+  /**
+   * Discards all cached queries of the specified session.
+   * @param ctx database context of the session
+   */
+  public void remove(final Context ctx) {
+    final ArrayList<QueryProcessor> closed = new ArrayList<QueryProcessor>();
+    synchronized(this) {
+      final Iterator<Entry<String, Cached>> it = queries.entrySet().iterator();
+      while(it.hasNext()) {
+        final QueryProcessor qp = it.next().getValue().qp;
+        if(qp.ctx.context == ctx) {
+          closed.add(qp);
+          it.remove();
+        }
+      }
+    }
+    for(final QueryProcessor c : closed) c.close();
+  }
+
+  /**
+   * Returns cache statistics.
+   * @return number of cached queries, hits and misses
+   */
+  public synchronized long[] stats() {
+    return new long[] { queries.size(), hits, misses };
+  }
+
+  /**
+   * Checks if an evaluated query can be cached.
+   * @param qc query context
+   * @return result of check
+   */
+  private static boolean cacheable(final QueryContext qc) {
+    if(qc.updating || qc.ctxItem != null || qc.http != null || qc.ftpos != null ||
+       qc.jdbc != null || qc.sessions != null || !qc.dbOptions.isEmpty() ||
+       qc.nodes != null && !qc.nodes.root) return false;
+    for(final Data d : qc.resource.datas()) if(d.inMemory()) return false;
+    return true;
+  }
+
+  /**
+   * Creates a key for the specified query.
+   * @param query query string
+   * @param vars names and types of the bound variables
+   * @param ctx database context of the session
+   * @return key
+   */
+  private static String key(final String query, final String vars, final Context ctx) {
+    return new StringBuilder().append(System.identityHashCode(ctx)).append(' ').
+        append(ctx.user.name).append(' ').append(ctx.user.perm).append(' ').
+        append(ctx.prop).append('\n').append(vars).append('\n').append(query).toString();
+  }
+
+  /** Cached query. */
+  private static final class Cached {
+    /** Query processor. */
+    final QueryProcessor qp;
+    /** Opened databases. */
+    final Data[] data;
+    /** Number of changes of the opened databases. */
+    final int[] changes;
+
+    /**
+     * Constructor.
+     * @param q query processor
+     */
+    Cached(final QueryProcessor q) {
+      qp = q;
+      data = q.ctx.resource.datas();
+      final int ds = data.length;
+      changes = new int[ds];
+      for(int d = 0; d < ds; d++) changes[d] = data[d].meta.changes;
+    }
+
+    /**
+     * Checks if the query can be evaluated again by the specified session.
+     * @param ctx database context of the session
+     * @return result of check
+     */
+    boolean valid(final Context ctx) {
+      final QueryContext qc = qp.ctx;
+      if(qc.context != ctx) return false;
+      // compare initial context
+      final Nodes nodes = ctx.current();
+      if(nodes == null ? qc.nodes != null : qc.nodes == null ||
+          nodes.data != qc.nodes.data || !nodes.root) return false;
+      // compare database states
+      final int ds = data.length;
+      for(int d = 0; d < ds; d++) if(data[d].meta.changes != changes[d]) return false;
+      try {
+        qp.checkStop();
+        return true;
+      } catch(final ProgressException ex) {
+        return false;
+      }
+    }
+  }
+}
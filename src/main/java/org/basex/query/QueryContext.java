@@ -5,6 +5,7 @@ import static org.basex.query.QueryText.*;
 import static org.basex.query.util.Err.*;
 import static org.basex.util.Token.*;
 
+import java.io.*;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.regex.*;
@@ -51,7 +52,7 @@ public final class QueryContext extends Progress {
   public final UserFuncs funcs = new UserFuncs();
 
   /** Query resources. */
-  public final QueryResources resource = new QueryResources(this);
+  public final QueryResources resource;
   /** Database context. */
   public final Context context;
 
@@ -104,6 +105,8 @@ public final class QueryContext extends Progress {
   public boolean leaf;
   /** Compilation flag: GFLWOR clause performs grouping. */
   public boolean grouping;
+  /** Compilation flag: compiled query may be cached and evaluated repeatedly. */
+  public boolean cached;
 
   /** Number of successive tail calls. */
   public int tailCalls;
@@ -127,8 +130,12 @@ public final class QueryContext extends Progress {
   JDBCConnections jdbc;
   /** Opened connections to relational databases. */
   ClientSessions sessions;
+  /** Temporary resources, which will be closed with the query context. */
+  private ArrayList<Closeable> closeables;
   /** Root expression of the query. */
   Expr root;
+  /** Parent context, or {@code null} (see {@link #QueryContext(QueryContext)}). */
+  public final QueryContext parent;
 
   /** String container for verbose query info. */
   private final TokenBuilder info = new TokenBuilder();
@@ -140,6 +147,10 @@ public final class QueryContext extends Progress {
   private boolean evalInfo;
   /** Indicates if the query context has been closed. */
   private boolean closed;
+  /** Context value after compilation (assigned if the query may be cached). */
+  private Value cvalue;
+  /** Size of the query info after compilation (assigned if the query may be cached). */
+  private int csize;
 
   /**
    * Constructor.
@@ -147,6 +158,8 @@ public final class QueryContext extends Progress {
    */
   public QueryContext(final Context ctx) {
     context = ctx;
+    resource = new QueryResources(this);
+    parent = null;
     nodes = ctx.current();
     inf = ctx.prop.is(Prop.QUERYINFO) || Prop.debug;
     final String path = ctx.prop.get(Prop.QUERYPATH);
@@ -156,6 +169,37 @@ public final class QueryContext extends Progress {
     sc.xquery3 = ctx.prop.is(Prop.XQUERY3);
   }
 
+  /**
+   * Creates a context for evaluating parts of a query in a separate thread.
+   * The static context, the query resources and all global and local variables
+   * of the parent context are shared, and the dynamic context is copied.
+   * @param qc parent context
+   */
+  public QueryContext(final QueryContext qc) {
+    context = qc.context;
+    resource = qc.resource;
+    modules = qc.modules;
+    parent = qc;
+    sc = qc.sc;
+    nodes = qc.nodes;
+    inf = qc.inf;
+    maxCalls = qc.maxCalls;
+    http = qc.http;
+    stop = qc.stop;
+    thes = qc.thes;
+    value = qc.value;
+    pos = qc.pos;
+    size = qc.size;
+    ftOpt = qc.ftOpt;
+    date = qc.date;
+    dtm = qc.dtm;
+    time = qc.time;
+    zone = qc.zone;
+    serProp = qc.serProp;
+    root = qc.root;
+    vars.add(qc.vars);
+  }
+
   /**
    * Parses the specified query.
    * @param qu input query
@@ -210,6 +254,31 @@ public final class QueryContext extends Progress {
 
     // dump resulting query
     if(inf && compInfo) info.add(NL + OPTIMIZED_QUERY_C + NL + funcs + root + NL);
+
+    if(cached) {
+      cvalue = value;
+      csize = info.size();
+    }
+  }
+
+  /**
+   * Prepares a cached query for another evaluation: resets the dynamic context
+   * and discards the lazily evaluated values of global variables.
+   */
+  void reset() {
+    value = cvalue;
+    pos = 1;
+    size = 1;
+    tailCalls = 0;
+    date = null;
+    dtm = null;
+    time = null;
+    zone = null;
+    vars.size(0);
+    final VarStack gl = vars.globals();
+    for(int g = 0; g < gl.size; g++) gl.vars[g].discard();
+    info.size(csize);
+    evalInfo = false;
   }
 
   /**
@@ -409,6 +478,22 @@ public final class QueryContext extends Progress {
     updating = up;
   }
 
+  /**
+   * Registers a temporary resource, which will be closed with the query context.
+   * Resources of thread contexts are registered in the parent context.
+   * @param c resource
+   */
+  public void closeable(final Closeable c) {
+    if(parent != null) {
+      parent.closeable(c);
+      return;
+    }
+    synchronized(this) {
+      if(closeables == null) closeables = new ArrayList<Closeable>();
+      closeables.add(c);
+    }
+  }
+
   /**
    * Closes the query context.
    */
@@ -429,6 +514,16 @@ public final class QueryContext extends Progress {
     if(sessions != null) sessions.close();
     // close dynamically loaded JAR files
     modules.close();
+    // close temporary resources
+    if(closeables != null) {
+      for(final Closeable c : closeables) {
+        try {
+          c.close();
+        } catch(final IOException ex) {
+          Util.debug(ex);
+        }
+      }
+    }
   }
 
   @Override
@@ -572,10 +667,13 @@ public final class QueryContext extends Progress {
     final Var gl = vars.globals().get(qnm);
     if(gl == null) {
       // assign new variable
-      vars.updateGlobal(Var.create(this, null, qnm, null, null).bind(val, this));
+      final Var v = Var.create(this, null, qnm, null, null).bind(val, this);
+      v.external = true;
+      vars.updateGlobal(v);
     } else {
       // reset declaration state and bind new expression
       gl.declared = false;
+      gl.external = true;
       gl.bind(gl.type == null ? val :
         gl.type.type.cast(val.item(this, null), this, null), this);
     }
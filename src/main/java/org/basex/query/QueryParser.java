@@ -817,6 +817,7 @@ public class QueryParser extends InputParser {
     (old != null ? old : v).declared = true;
 
     if(wsConsumeWs(EXTERNAL)) {
+      (old != null ? old : v).external = true;
       // bind value with new type
       if(old != null && v.type != null) old.reset(v.type, ctx);
       // bind default value
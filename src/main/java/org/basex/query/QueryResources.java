@@ -18,6 +18,8 @@ import org.basex.util.list.*;
 
 /**
  * This class provides access to resources used by an XQuery expression.
+ * The methods that are called during evaluation are synchronized, as the
+ * resources are shared by all threads evaluating a query.
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
@@ -69,6 +71,14 @@ public final class QueryResources {
     addData(d);
   }
 
+  /**
+   * Returns the opened databases.
+   * @return databases
+   */
+  Data[] datas() {
+    return Arrays.copyOf(data, datas);
+  }
+
   /**
    * Closes all opened data references that have not been added by the global context.
    */
@@ -86,7 +96,8 @@ public final class QueryResources {
    * @return database instance
    * @throws QueryException query exception
    */
-  public Data data(final String name, final InputInfo info) throws QueryException {
+  public synchronized Data data(final String name, final InputInfo info)
+      throws QueryException {
     // check if a database with the same name has already been opened
     for(int d = 0; d < datas; ++d) {
       if(data[d].meta.name.equalsIgnoreCase(name)) return data[d];
@@ -110,7 +121,8 @@ public final class QueryResources {
    * @return document
    * @throws QueryException query exception
    */
-  public DBNode doc(final QueryInput qi, final InputInfo info) throws QueryException {
+  public synchronized DBNode doc(final QueryInput qi, final InputInfo info)
+      throws QueryException {
     // check currently opened databases
     for(int d = 0; d < datas; ++d) {
       final Data dt = data[d];
@@ -134,7 +146,7 @@ public final class QueryResources {
    * @return collection
    * @throws QueryException query exception
    */
-  public Value collection(final InputInfo info) throws QueryException {
+  public synchronized Value collection(final InputInfo info) throws QueryException {
     if(colls == 0) NODEFCOLL.thrw(info);
     return coll[0];
   }
@@ -147,7 +159,7 @@ public final class QueryResources {
    * @return collection
    * @throws QueryException query exception
    */
-  public Value collection(final String input, final InputInfo info)
+  public synchronized Value collection(final String input, final InputInfo info)
       throws QueryException {
 
     // merge input with base directory
@@ -654,6 +654,14 @@ public interface QueryText {
   byte[] INF = token("inf");
   /** Query Plan. */
   byte[] COUNT = token("count");
+  /** Query Plan. */
+  byte[] JOIN = token("join");
+  /** Query Plan. */
+  byte[] LIMIT = token("limit");
+  /** Query Plan. */
+  byte[] AGGREGATE = token("aggregate");
+  /** Query Plan. */
+  byte[] THREADS = token("threads");
 
   /** Example for a Date format. */
   String XDATE = "2000-12-31";
@@ -709,6 +717,18 @@ public interface QueryText {
   /** Optimization info. */
   String OPTWHERE = "rewriting where clause to predicate(s)";
   /** Optimization info. */
+  String OPTHASHJOIN = "applying hash join for %";
+  /** Optimization info. */
+  String OPTINDEXJOIN = "applying index join for %";
+  /** Optimization info. */
+  String OPTTOPK = "sorting only the first % tuples";
+  /** Optimization info. */
+  String OPTFTTOPK = "retrieving only % full-text results with the highest scores";
+  /** Optimization info. */
+  String OPTAGGR = "computing running aggregates: %";
+  /** Optimization info. */
+  String OPTPARALLEL = "evaluating iterations of % with % threads";
+  /** Optimization info. */
   String OPTPRED = "rewriting % to predicate(s)";
   /** Optimization info. */
   String OPTCAST = "removing redundant % cast.";
@@ -112,6 +112,8 @@ public final class CmpG extends Cmp {
   private ValueAccess[] va = {};
   /** Flag for atomic evaluation. */
   private boolean atomic;
+  /** Lookup structure for a large constant second operand. */
+  private CmpLookup lookup;
 
   /**
    * Constructor.
@@ -186,6 +188,7 @@ public final class CmpG extends Cmp {
     // check if both arguments will always yield one result
     atomic = e1.type().zeroOrOne() && e2.type().zeroOrOne();
     if(atomic) ctx.compInfo(OPTATOMIC, this);
+    lookup();
     return this;
   }
 
@@ -216,6 +219,15 @@ public final class CmpG extends Cmp {
     if(is1 == 0) return Bln.FALSE;
     final boolean s1 = is1 == 1;
 
+    // compare items with the lookup structure of a constant second operand
+    if(lookup != null) {
+      for(Item it; (it = ir1.next()) != null;) {
+        if(lookup.accepts(it) ? lookup.eval(it) : eval(it, expr[1].iter(ctx)))
+          return Bln.TRUE;
+      }
+      return Bln.FALSE;
+    }
+
     // evaluate single items
     if(s1 && expr[1].size() == 1)
       return Bln.get(eval(ir1.next(), expr[1].item(ctx, info)));
@@ -251,13 +263,42 @@ public final class CmpG extends Cmp {
       ir2 = vb;
     }
 
+    // switch to a lookup structure if the second operand yields many items
+    boolean build = ir2.size() >= CmpLookup.MIN;
+    CmpLookup cl = null;
     while((it1 = ir1.next()) != null) {
-      ir2.reset();
-      while((it2 = ir2.next()) != null) if(eval(it1, it2)) return Bln.TRUE;
+      if(build) {
+        ir2.reset();
+        cl = CmpLookup.get(ir2, op.op, info);
+        build = false;
+      }
+      if(cl != null && cl.accepts(it1) ? cl.eval(it1) : eval(it1, ir2)) return Bln.TRUE;
     }
     return Bln.FALSE;
   }
 
+  /**
+   * Compares a single item with all items of an iterator.
+   * @param it1 item to be compared
+   * @param ir2 iterator (will be reset)
+   * @return result of check
+   * @throws QueryException query exception
+   */
+  private boolean eval(final Item it1, final Iter ir2) throws QueryException {
+    ir2.reset();
+    for(Item it2; (it2 = ir2.next()) != null;) if(eval(it1, it2)) return true;
+    return false;
+  }
+
+  /**
+   * Creates a lookup structure if the second operand is a large value.
+   * @throws QueryException query exception
+   */
+  private void lookup() throws QueryException {
+    lookup = expr[1].isValue() && expr[1].size() >= CmpLookup.MIN ?
+      CmpLookup.get(((Value) expr[1]).iter(), op.op, info) : null;
+  }
+
   /**
    * Compares a single item.
    * @param a first item to be compared
@@ -274,6 +315,14 @@ public final class CmpG extends Cmp {
     throw XPTYPECMP.thrw(info, ta, tb);
   }
 
+  /**
+   * Checks if this is an equality comparison.
+   * @return result of check
+   */
+  public boolean eq() {
+    return op == OpG.EQ;
+  }
+
   @Override
   public CmpG invert() {
     return expr[0].size() != 1 || expr[1].size() != 1 ? this :
@@ -291,6 +340,7 @@ public final class CmpG extends Cmp {
     if(op != g.op || !expr[0].sameAs(g.expr[0])) return false;
     expr[1] = new List(info, expr[1], g.expr[1]).compile(ctx);
     atomic = atomic && expr[1].type().zeroOrOne();
+    lookup();
     return true;
   }
 
@@ -327,18 +377,21 @@ public final class CmpG extends Cmp {
 
     // loop through all items
     final Iter ir = arg.iter(ic.ctx);
+    final ValueBuilder vb = new ValueBuilder();
     Item it;
     ic.costs(0);
     while((it = ir.next()) != null) {
       if(!it.type.isStringOrUntyped()) return false;
 
       final int is = ic.data.count(new StringToken(ind, it.string(info)));
-      // add only expressions that yield results
+      // add only items that yield results
       if(is != 0) {
-        va = Array.add(va, new ValueAccess(info, it, ind, ic));
+        vb.add(it);
         ic.addCosts(is);
       }
     }
+    // access all items at once: allows merging of index results
+    if(vb.size() != 0) va = Array.add(va, new ValueAccess(info, vb.value(), ind, ic));
     return true;
   }
 
@@ -0,0 +1,168 @@
+package org.basex.query.expr;
+
+import java.util.*;
+
+import org.basex.query.*;
+import org.basex.query.expr.CmpV.OpV;
+import org.basex.query.iter.*;
+import org.basex.query.value.item.*;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+import org.basex.util.list.*;
+
+/**
+ * Lookup structure for general comparisons with large operands. The items of
+ * the second operand are indexed once, and each item of the first operand can
+ * then be compared in constant or logarithmic time:
+ * <ul>
+ * <li>{@code =}: strings and untyped values are hashed, and integers and
+ *     doubles are sorted and found via binary search</li>
+ * <li>{@code !=}: the first item is remembered, and it is checked if all
+ *     items are equal</li>
+ * <li>{@code <}, {@code <=}, {@code >}, {@code >=}: the largest or smallest
+ *     item is remembered</li>
+ * </ul>
+ * All items of the second operand must either be numbers, or strings and
+ * untyped values. Items of the first operand are only accepted if they belong
+ * to the same class, as all other items may need to be promoted or cast.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+final class CmpLookup {
+  /** Minimum number of items for which lookup structures are created. */
+  static final int MIN = 32;
+
+  /** Comparator. */
+  private final OpV op;
+  /** Input info. */
+  private final InputInfo info;
+  /** Indicates if the items are numbers. */
+  private final boolean num;
+
+  /** Hashed strings ({@code =}). */
+  private TokenSet strings;
+  /** Sorted integers ({@code =}). */
+  private long[] ints;
+  /** Sorted doubles, excluding NaN ({@code =}). */
+  private double[] dbls;
+  /** First item ({@code !=}), or largest or smallest item. */
+  private Item item;
+  /** Indicates if all items are equal ({@code !=}). */
+  private boolean same = true;
+
+  /**
+   * Constructor.
+   * @param o comparator
+   * @param n numeric items
+   * @param ii input info
+   */
+  private CmpLookup(final OpV o, final boolean n, final InputInfo ii) {
+    op = o;
+    num = n;
+    info = ii;
+  }
+
+  /**
+   * Returns a lookup structure for the items of the specified iterator.
+   * @param ir iterator
+   * @param op comparator
+   * @param ii input info
+   * @return lookup structure, or {@code null} if the items cannot be indexed
+   * @throws QueryException query exception
+   */
+  static CmpLookup get(final Iter ir, final OpV op, final InputInfo ii)
+      throws QueryException {
+
+    Item it = ir.next();
+    if(it == null) return null;
+    final int k = kind(it);
+    if(k == 0) return null;
+    final CmpLookup cl = new CmpLookup(op, k == 2, ii);
+    if(op == OpV.EQ && !cl.num) {
+      cl.strings = new TokenSet();
+      do {
+        if(kind(it) != k) return null;
+        cl.strings.add(it.string(ii));
+      } while((it = ir.next()) != null);
+    } else if(op == OpV.EQ) {
+      // index integers or doubles
+      final boolean itr = it instanceof Int;
+      long[] il = new long[ElementList.CAP];
+      double[] dl = new double[ElementList.CAP];
+      int s = 0;
+      do {
+        if(itr ? !(it instanceof Int) : !(it instanceof Dbl)) return null;
+        if(itr) {
+          if(s == il.length) il = Arrays.copyOf(il, Array.newSize(s));
+          il[s++] = it.itr(ii);
+        } else {
+          // NaN is never equal, and -0 equals 0
+          final double d = it.dbl(ii);
+          if(Double.isNaN(d)) continue;
+          if(s == dl.length) dl = Arrays.copyOf(dl, Array.newSize(s));
+          dl[s++] = d == 0 ? 0 : d;
+        }
+      } while((it = ir.next()) != null);
+      if(itr) {
+        cl.ints = Arrays.copyOf(il, s);
+        Arrays.sort(cl.ints);
+      } else {
+        cl.dbls = Arrays.copyOf(dl, s);
+        Arrays.sort(cl.dbls);
+      }
+    } else if(op == OpV.NE) {
+      cl.item = it;
+      while((it = ir.next()) != null) {
+        if(kind(it) != k) return null;
+        if(cl.same) cl.same = OpV.EQ.eval(ii, it, cl.item);
+      }
+    } else {
+      // remember largest item for "<" and "<=", smallest item for ">" and ">="
+      final OpV ext = op == OpV.LT || op == OpV.LE ? OpV.GT : OpV.LT;
+      do {
+        if(kind(it) != k) return null;
+        if(cl.num && Double.isNaN(it.dbl(ii))) continue;
+        if(cl.item == null || ext.eval(ii, it, cl.item)) cl.item = it;
+      } while((it = ir.next()) != null);
+    }
+    return cl;
+  }
+
+  /**
+   * Checks if the specified item can be compared by the lookup structure.
+   * @param it item
+   * @return result of check
+   */
+  boolean accepts(final Item it) {
+    if(kind(it) != (num ? 2 : 1)) return false;
+    return ints != null ? it instanceof Int :
+      dbls == null || it instanceof Dbl || it instanceof Int;
+  }
+
+  /**
+   * Compares the specified item with the indexed items. The item must have been
+   * accepted by {@link #accepts}.
+   * @param it item
+   * @return result of check
+   * @throws QueryException query exception
+   */
+  boolean eval(final Item it) throws QueryException {
+    if(strings != null) return strings.contains(it.string(info));
+    if(ints != null) return Arrays.binarySearch(ints, it.itr(info)) >= 0;
+    if(dbls != null) {
+      final double d = it.dbl(info);
+      return !Double.isNaN(d) && Arrays.binarySearch(dbls, d == 0 ? 0 : d) >= 0;
+    }
+    if(op == OpV.NE) return !same || op.eval(info, it, item);
+    return item != null && op.eval(info, it, item);
+  }
+
+  /**
+   * Returns the kind of an item.
+   * @param it item
+   * @return 1 for strings and untyped values, 2 for numbers, 0 otherwise
+   */
+  private static int kind(final Item it) {
+    return it instanceof AStr || it.type.isUntyped() ? 1 : it instanceof ANum ? 2 : 0;
+  }
+}
@@ -31,6 +31,8 @@ public abstract class Expr extends ExprInfo {
     /** Performs updates. Example: insert expression. */     UPD,
     /** References a variable. Example: {@link VarRef}. */   VAR,
     /** Based on XQuery 3.0. Example: group by statement. */ X30,
+    /** Keeps evaluation state. Example: full-text. */       STA,
+    /** Depends on environment. Example: db:list(). */       ENV,
   }
 
   /**
@@ -1,6 +1,7 @@
 package org.basex.query.expr;
 
 import org.basex.query.*;
+import org.basex.query.flwor.*;
 import org.basex.query.iter.*;
 import org.basex.query.path.*;
 import org.basex.query.util.*;
@@ -87,6 +88,10 @@ public class Filter extends Preds {
       type = SeqType.get(t.type, t.zeroOrOne() ? Occ.ZERO_ONE : Occ.ZERO_MORE);
     }
 
+    // only the first results of an ordered FLWOR expression will be needed
+    if(preds[0] instanceof Pos && root instanceof GFLWOR)
+      ((GFLWOR) root).limit(((Pos) preds[0]).max, ctx);
+
     // no numeric predicates.. use simple iterator
     if(!super.uses(Use.POS)) return new IterFilter(this);
 
@@ -1,5 +1,7 @@
 package org.basex.query.expr;
 
+import org.basex.data.*;
+import org.basex.index.query.*;
 import org.basex.query.*;
 import org.basex.query.iter.*;
 import org.basex.query.value.item.*;
@@ -22,6 +24,19 @@ public final class InterSect extends Set {
     super(ii, l);
   }
 
+  /**
+   * Constructor for intersecting the results of index accesses. If the flag is
+   * set, the results will be materialized, and database nodes will be intersected
+   * via bitmaps.
+   * @param ii input info
+   * @param l expression list
+   * @param index index flag
+   */
+  public InterSect(final InputInfo ii, final Expr[] l, final boolean index) {
+    this(ii, l);
+    iterable = !index;
+  }
+
   @Override
   public Expr compile(final QueryContext ctx) throws QueryException {
     super.compile(ctx);
@@ -33,21 +48,57 @@ public final class InterSect extends Set {
     NodeSeqBuilder nc = new NodeSeqBuilder();
 
     for(Item it; (it = iter[0].next()) != null;) nc.add(checkNode(it));
-    final boolean db = nc.dbnodes();
+    // intersect database nodes via bitmaps
+    if(nc.dbnodes()) return and(nc, iter);
 
     for(int e = 1; e != expr.length && nc.size() != 0; ++e) {
       final NodeSeqBuilder nt = new NodeSeqBuilder().check();
       final Iter ir = iter[e];
       for(Item it; (it = ir.next()) != null;) {
         final ANode n = checkNode(it);
-        final int i = nc.indexOf(n, db);
-        if(i != -1) nt.add(n);
+        if(nc.indexOf(n, false) != -1) nt.add(n);
       }
       nc = nt;
     }
     return nc;
   }
 
+  /**
+   * Intersects database nodes with the results of the remaining iterators.
+   * The pre values of all operands are intersected via bitmaps; the nodes of the
+   * first operand are returned, as they may contain additional information
+   * (such as full-text scores).
+   * @param nc database nodes of the first operand
+   * @param iter iterators
+   * @return resulting nodes
+   * @throws QueryException query exception
+   */
+  private NodeSeqBuilder and(final NodeSeqBuilder nc, final Iter[] iter)
+      throws QueryException {
+
+    final ANode[] nodes = nc.nodes;
+    final int s = (int) nc.size();
+    final Data data = ((DBNode) nodes[0]).data;
+    Bitmap bm = new Bitmap();
+    for(int n = 0; n < s; n++) bm.add(((DBNode) nodes[n]).pre);
+
+    for(int e = 1; e != expr.length && bm.size() != 0; ++e) {
+      final Bitmap b = new Bitmap();
+      for(Item it; (it = iter[e].next()) != null;) {
+        final ANode n = checkNode(it);
+        // other nodes cannot be contained in the first operand
+        if(n instanceof DBNode && ((DBNode) n).data == data) b.add(((DBNode) n).pre);
+      }
+      bm = bm.and(b);
+    }
+
+    final NodeSeqBuilder res = new NodeSeqBuilder().check();
+    for(int n = 0; n < s; n++) {
+      if(bm.contains(((DBNode) nodes[n]).pre)) res.add(nodes[n]);
+    }
+    return res;
+  }
+
   @Override
   protected NodeIter iter(final Iter[] iter) {
     return new SetIter(iter) {
@@ -6,6 +6,7 @@ import static org.basex.util.Token.*;
 import org.basex.data.*;
 import org.basex.index.*;
 import org.basex.index.query.*;
+import org.basex.index.value.*;
 import org.basex.query.*;
 import org.basex.query.func.*;
 import org.basex.query.iter.*;
@@ -43,19 +44,44 @@ public final class ValueAccess extends IndexAccess {
 
   @Override
   public NodeIter iter(final QueryContext ctx) throws QueryException {
-    NodeIter[] iter = {};
+    final TokenList terms = new TokenList();
     final Iter ir = ctx.iter(expr);
-    for(Item it; (it = ir.next()) != null;) {
-      final int s = iter.length;
-      final NodeIter[] tmp = new NodeIter[s + 1];
-      System.arraycopy(iter, 0, tmp, 0, s);
-      iter = tmp;
-      iter[s] = index(it.string(info));
-    }
-    return iter.length == 0 ? AxisMoreIter.EMPTY : iter.length == 1 ? iter[0] :
+    for(Item it; (it = ir.next()) != null;) terms.add(it.string(info));
+
+    // merge bitmaps of disk-based indexes
+    final Bitmap bm = bitmap(terms);
+    if(bm != null) return iter(bm.iter());
+
+    final int ts = terms.size();
+    final NodeIter[] iter = new NodeIter[ts];
+    for(int t = 0; t < ts; t++) iter[t] = index(terms.get(t));
+    return ts == 0 ? AxisMoreIter.EMPTY : ts == 1 ? iter[0] :
       new Union(info, expr).eval(iter);
   }
 
+  /**
+   * Returns a bitmap with the pre values of all specified terms.
+   * @param terms terms to be found
+   * @return bitmap, or {@code null} if the index cannot be used for all terms,
+   *   or if less than two terms are specified
+   */
+  private Bitmap bitmap(final TokenList terms) {
+    final Data data = ictx.data;
+    final boolean text = itype == IndexType.TEXT;
+    final Index index = text ? data.txtindex : data.atvindex;
+    if(terms.size() < 2 || !(index instanceof DiskValues) ||
+        !(text ? data.meta.textindex : data.meta.attrindex)) return null;
+    for(final byte[] term : terms) if(term.length > data.meta.maxlen) return null;
+
+    final DiskValues dv = (DiskValues) index;
+    Bitmap bm = null;
+    for(final byte[] term : terms) {
+      final Bitmap b = dv.bitmap(new StringToken(itype, term));
+      bm = bm == null ? b : bm.or(b);
+    }
+    return bm;
+  }
+
   /**
    * Returns an index iterator.
    * @param term term to be found
@@ -66,10 +92,18 @@ public final class ValueAccess extends IndexAccess {
 
     // access index if term is not too long, and if index exists.
     // otherwise, scan data sequentially
-    final IndexIterator ii = term.length <= data.meta.maxlen &&
+    return iter(term.length <= data.meta.maxlen &&
       (itype == IndexType.TEXT ? data.meta.textindex : data.meta.attrindex) ?
-      data.iter(new StringToken(itype, term)) : scan(term);
+      data.iter(new StringToken(itype, term)) : scan(term));
+  }
 
+  /**
+   * Returns a node iterator for the specified index iterator.
+   * @param ii index iterator
+   * @return node iterator
+   */
+  private AxisIter iter(final IndexIterator ii) {
+    final Data data = ictx.data;
     return new AxisIter() {
       final byte kind = itype == IndexType.TEXT ? Data.TEXT : Data.ATTR;
 
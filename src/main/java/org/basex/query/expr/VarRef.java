@@ -45,6 +45,9 @@ public final class VarRef extends ParseExpr {
     // return if variable expression has not yet been assigned
     Expr e = v.expr();
     if(e == null) return this;
+    // keep references to external variables, which are re-bound in cached queries,
+    // and to global variables whose values depend on the query environment
+    if(v.global && ctx.cached && (v.external || e.uses(Use.ENV))) return this;
 
     /* Choose expressions to be pre-evaluated.
      * If a variable is pre-evaluated, it may not be available for further
@@ -0,0 +1,79 @@
+package org.basex.query.flwor;
+
+import static org.basex.query.flwor.GroupAggr.*;
+
+import org.basex.query.*;
+import org.basex.query.expr.*;
+import org.basex.query.func.*;
+import org.basex.query.iter.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.seq.*;
+import org.basex.util.*;
+
+/**
+ * Running aggregates of a non-grouping variable in a single group. Partial
+ * results are computed by applying the aggregate function to the previous
+ * result and the new items.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+final class Accumulator {
+  /** Number of items. */
+  private long count;
+  /** Partial results of sum, min and max. */
+  private final Item[] part = new Item[FUNCS.length];
+  /** Errors raised by sum, min and max. */
+  private final QueryException[] error = new QueryException[FUNCS.length];
+
+  /**
+   * Adds the items of the non-grouping variable.
+   * @param v value
+   * @param ga aggregate functions
+   * @param calls function calls for computing partial results
+   * @param ctx query context
+   * @throws QueryException query exception
+   */
+  void add(final Value v, final GroupAggr ga, final StandardFunc[] calls,
+      final QueryContext ctx) throws QueryException {
+
+    if(v.isEmpty()) return;
+    count += v.size();
+    for(int f = SUM; f <= MAX; f++) {
+      if(f == AVG || !ga.needs(f) || error[f] != null) continue;
+      Value arg = v;
+      if(part[f] != null) {
+        final ValueBuilder vb = new ValueBuilder();
+        vb.add(part[f]);
+        vb.add(v);
+        arg = vb.value();
+      }
+      final StandardFunc call = calls[f];
+      call.expr[0] = arg;
+      try {
+        part[f] = call.item(ctx, call.info);
+      } catch(final QueryException ex) {
+        // errors will only be raised if the result is requested
+        error[f] = ex;
+        part[f] = null;
+      }
+    }
+  }
+
+  /**
+   * Returns the result of an aggregate function.
+   * @param f function index
+   * @param ii input info
+   * @return result
+   * @throws QueryException query exception
+   */
+  Value result(final int f, final InputInfo ii) throws QueryException {
+    if(f == COUNT) return Int.get(count);
+    final int p = f == AVG ? SUM : f;
+    if(error[p] != null) throw error[p];
+    final Item it = part[p];
+    if(f == SUM) return it != null ? it : Int.get(0);
+    if(it == null) return Empty.SEQ;
+    return f == AVG ? Calc.DIV.ev(ii, it, Int.get(count)) : it;
+  }
+}
@@ -2,10 +2,12 @@ package org.basex.query.flwor;
 
 import static org.basex.query.QueryText.*;
 
+import org.basex.core.*;
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.iter.*;
 import org.basex.query.util.*;
+import org.basex.query.value.*;
 import org.basex.query.value.item.*;
 import org.basex.util.*;
 
@@ -40,11 +42,31 @@ public final class FLWR extends GFLWOR {
         return fl[0].expr;
       }
     }
+
+    // evaluate iterations of the first for clause in parallel. non-deterministic
+    // and updating code, node constructors and stateful expressions are excluded
+    final int t = ctx.context.prop.num(Prop.QUERYTHREADS);
+    final int threads = t > 0 ? t : Runtime.getRuntime().availableProcessors();
+    if(threads > 1 && fl[0] instanceof For && !uses(Use.NDT) && !uses(Use.UPD) &&
+        !uses(Use.CNS) && !uses(Use.STA)) {
+      ctx.compInfo(OPTPARALLEL, fl[0].var, threads);
+      ((For) fl[0]).threads = threads;
+    }
     return this;
   }
 
   @Override
-  public Iter iter(final QueryContext ctx) {
+  public Iter iter(final QueryContext ctx) throws QueryException {
+    // nested expressions are evaluated sequentially
+    final int threads = fl[0] instanceof For ? ((For) fl[0]).threads : 1;
+    Value in = null;
+    if(threads > 1 && ctx.parent == null) {
+      in = ctx.value(fl[0].expr);
+      if(in.size() > 1) return Parallel.value(this, in, threads, ctx).iter();
+    }
+    // input of the first clause, if it has already been evaluated
+    final Value input = in;
+
     return new Iter() {
       private Iter[] iter;
       private Iter rtrn;
@@ -91,7 +113,10 @@ public final class FLWR extends GFLWOR {
       private void init() throws QueryException {
         if(iter != null) return;
         iter = new Iter[fl.length];
-        for(int f = 0; f < fl.length; ++f) iter[f] = ctx.iter(fl[f]);
+        for(int f = 0; f < fl.length; ++f) {
+          iter[f] = f == 0 && input != null ? ((For) fl[0]).iter(input, ctx) :
+            ctx.iter(fl[f]);
+        }
       }
     };
   }
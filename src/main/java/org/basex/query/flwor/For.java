@@ -6,6 +6,7 @@ import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.iter.*;
 import org.basex.query.util.*;
+import org.basex.query.value.*;
 import org.basex.query.value.item.*;
 import org.basex.query.value.node.*;
 import org.basex.query.value.type.*;
@@ -23,6 +24,12 @@ public final class For extends ForLet {
   final Var pos;
   /** Full-text score. */
   final Var score;
+  /** Hash join ({@code null} if the clause is evaluated as nested loop). */
+  private HashJoin join;
+  /** Indicates if the clause input is an index access that depends on outer clauses. */
+  boolean index;
+  /** Number of threads for evaluating the iterations (see {@link Parallel}). */
+  int threads = 1;
 
   /**
    * Constructor.
@@ -68,6 +75,16 @@ public final class For extends ForLet {
 
   @Override
   public Iter iter(final QueryContext ctx) {
+    return iter(null, ctx);
+  }
+
+  /**
+   * Returns an iterator over the bound items.
+   * @param in input, if it has already been evaluated (may be {@code null})
+   * @param ctx query context
+   * @return iterator
+   */
+  Iter iter(final Value in, final QueryContext ctx) {
     final Var v = var.copy();
     final Var p = pos != null ? pos.copy() : null;
     final Var s = score != null ? score.copy() : null;
@@ -79,6 +96,8 @@ public final class For extends ForLet {
       private Iter ir;
       /** Counter. */
       private int c;
+      /** Hash table, built by the first evaluation of a hash join. */
+      private HashJoin.Table table;
 
       @Override
       public Item next() throws QueryException {
@@ -91,7 +110,7 @@ public final class For extends ForLet {
 
       @Override
       public long size() {
-        return expr.size();
+        return join != null ? -1 : expr.size();
       }
 
       @Override
@@ -118,7 +137,14 @@ public final class For extends ForLet {
       private void init() throws QueryException {
         if(ir == null) {
           vs = ctx.vars.size();
-          ir = ctx.iter(expr);
+          if(in != null) {
+            ir = in.iter();
+          } else if(join != null) {
+            if(table == null) table = join.table(expr, ctx);
+            ir = join.iter(table, ctx);
+          } else {
+            ir = ctx.iter(expr);
+          }
           ctx.vars.add(v);
           if(p != null) ctx.vars.add(p);
           if(s != null) ctx.vars.add(s);
@@ -146,6 +172,16 @@ public final class For extends ForLet {
     return pos == null && score == null && (!one || type.one() || size == 1);
   }
 
+  /**
+   * Evaluates the clause as hash join.
+   * @param j hash join
+   */
+  void join(final HashJoin j) {
+    join = j;
+    size = -1;
+    type = SeqType.get(type.type, Occ.ZERO_MORE);
+  }
+
   @Override
   public boolean declares(final Var v) {
     return var.is(v) || pos != null && pos.is(v) || score != null && score.is(v);
@@ -163,7 +199,10 @@ public final class For extends ForLet {
 
   @Override
   public void plan(final FElem plan) {
-    addPlan(plan, planElem(VAR, var, POS, pos, SCORE, score), expr);
+    final byte[] j = join != null ? HASH : index ? INDEX : null;
+    final Integer t = threads > 1 ? threads : null;
+    addPlan(plan, planElem(VAR, var, POS, pos, SCORE, score, JOIN, j, THREADS, t),
+        expr, join);
   }
 
   @Override
@@ -171,6 +210,8 @@ public final class For extends ForLet {
     final StringBuilder sb = new StringBuilder(FOR + ' ' + var + ' ');
     if(pos != null) sb.append(AT + ' ' + pos + ' ');
     if(score != null) sb.append(SCORE + ' ' + score + ' ');
-    return sb.append(IN + ' ' + expr).toString();
+    sb.append(IN + ' ' + expr);
+    if(join != null) sb.append(" (: hash join: " + join + " :)");
+    return sb.toString();
   }
 }
@@ -7,6 +7,7 @@ import java.util.*;
 import org.basex.core.*;
 import org.basex.query.*;
 import org.basex.query.expr.*;
+import org.basex.query.expr.Context;
 import org.basex.query.func.*;
 import org.basex.query.iter.*;
 import org.basex.query.path.*;
@@ -158,6 +159,9 @@ public class GFLWOR extends ParseExpr {
       }
     }
 
+    compJoin(ctx);
+    if(group != null) ret = group.aggregate(ret, order, ctx);
+
     // compute number of results to speed up count() operations
     if(where == null && group == null) {
       size = ret.size();
@@ -287,6 +291,178 @@ public class GFLWOR extends ParseExpr {
     where = null;
   }
 
+  /**
+   * Detects for clauses that are joined with outer clauses by an equality
+   * comparison. Index accesses that depend on outer clauses are evaluated as
+   * index nested-loop joins. Otherwise, the comparison is removed from the
+   * input of the clause, which is then evaluated only once and probed with
+   * the values of the outer clauses. Example:
+   * for $o in //order for $c in //customer[@id = $o/@cid] return ...
+   * @param ctx query context
+   */
+  private void compJoin(final QueryContext ctx) {
+    for(int f = 1; f < fl.length; f++) {
+      if(!(fl[f] instanceof For)) continue;
+      final For fr = (For) fl[f];
+      final Expr ex = fr.expr;
+      if(!outer(ex, f) || ex.uses(Use.NDT) || ex.uses(Use.CNS)) continue;
+
+      // choose predicates of the last step of a path, or of a filter
+      final Preds pr;
+      final Type ct;
+      if(ex instanceof AxisPath) {
+        final AxisPath path = (AxisPath) ex;
+        if(path.root instanceof IndexAccess || path.root instanceof InterSect) {
+          ctx.compInfo(OPTINDEXJOIN, fr.var);
+          fr.index = true;
+          continue;
+        }
+        pr = path.step(path.steps.length - 1);
+        ct = NodeType.NOD;
+      } else if(ex instanceof Filter) {
+        pr = (Filter) ex;
+        ct = ((Filter) ex).root.type().type;
+      } else {
+        continue;
+      }
+
+      // check predicates from right to left, stopping at positional predicates
+      for(int p = pr.preds.length - 1; p >= 0; p--) {
+        final Expr pred = pr.preds[p];
+        Expr rest = null;
+        HashJoin hj = join(pred, f, ct);
+        if(hj == null && pred instanceof And) {
+          // join comparison may be part of an and expression
+          final Expr[] ops = ((And) pred).expr;
+          for(int o = 0; o < ops.length && hj == null; o++) {
+            hj = join(ops[o], f, ct);
+            if(hj == null) continue;
+            final Expr[] rs = Array.delete(ops.clone(), o);
+            if(rs.length > 1) {
+              rest = new And(info, rs);
+            } else {
+              // wrap with boolean function if value may be numeric
+              final Expr r = rs[0];
+              rest = r.type().mayBeNumber() ? Function.BOOLEAN.get(info, r) : r;
+            }
+          }
+        }
+
+        if(hj != null) {
+          // remove comparison; remaining input must not depend on outer clauses
+          final Expr[] old = pr.preds;
+          if(rest == null) {
+            pr.preds = Array.delete(old.clone(), p);
+          } else {
+            pr.preds = old.clone();
+            pr.preds[p] = rest;
+          }
+          final Expr in = pr.preds.length == 0 && pr instanceof Filter ?
+              ((Filter) pr).root : ex;
+          if(!outer(in, f)) {
+            ctx.compInfo(OPTHASHJOIN, fr.var);
+            fr.expr = in;
+            fr.join(hj);
+            break;
+          }
+          pr.preds = old;
+        }
+        if(pred.uses(Use.POS)) break;
+      }
+    }
+  }
+
+  /**
+   * Returns a hash join for the specified predicate, or {@code null} if the
+   * predicate is no equality comparison between a key, which is independent of
+   * the outer clauses, and a probe expression, which depends on them.
+   * @param pred predicate
+   * @param f index of the current clause
+   * @param ct type of the context items
+   * @return hash join or {@code null}
+   */
+  private HashJoin join(final Expr pred, final int f, final Type ct) {
+    if(!(pred instanceof CmpG) || !((CmpG) pred).eq()) return null;
+    final Expr[] ops = ((CmpG) pred).expr;
+    for(int o = 0; o < 2; o++) {
+      final Expr key = ops[o], probe = ops[1 - o];
+      final Type kt = key instanceof Context ? ct : key.type().type;
+      if(kt.isStringOrUntyped() && joinable(key) && joinable(probe) &&
+          !outer(key, f) && outer(probe, f) && !probe.uses(Use.CTX))
+        return new HashJoin(key, probe, info);
+    }
+    return null;
+  }
+
+  /**
+   * Checks if the specified expression can be used as join key or probe. Only
+   * strings and untyped values are accepted, as they are compared by their
+   * string values.
+   * @param e expression
+   * @return result of check
+   */
+  private static boolean joinable(final Expr e) {
+    return (e instanceof Context || e.type().type.isStringOrUntyped()) &&
+        !e.uses(Use.POS) && !e.uses(Use.NDT) && !e.uses(Use.UPD);
+  }
+
+  /**
+   * Checks if the specified expression uses variables that are declared by
+   * the clauses before the specified index.
+   * @param e expression
+   * @param f index of the current clause
+   * @return result of check
+   */
+  private boolean outer(final Expr e, final int f) {
+    for(int o = 0; o < f; o++) {
+      for(final Var v : fl[o].vars()) if(e.count(v) != 0) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Indicates that only the first results of this expression will be requested.
+   * If the tuples are ordered, a bounded heap will be used instead of sorting
+   * all tuples. Example: (for $i in //item order by $i/price return $i)[1]
+   * If full-text search results are ordered by their BM25 scores, only the results
+   * with the highest scores will be retrieved from the index.
+   * @param max maximum number of results
+   * @param ctx query context
+   */
+  public final void limit(final long max, final QueryContext ctx) {
+    if(order == null || group != null || max >= order.limit) return;
+    ctx.compInfo(OPTTOPK, max);
+    order.limit = max;
+
+    if(fl.length == 1 && where == null && max <= Integer.MAX_VALUE &&
+        fl[0].expr.isFunction(Function._FT_SEARCH) && !ret.type().mayBeZero() &&
+        scored() && ctx.context.prop.is(Prop.BM25)) {
+      ctx.compInfo(OPTFTTOPK, max);
+      ((FNFt) fl[0].expr).limit((int) max);
+    }
+  }
+
+  /**
+   * Checks if the tuples are ordered by the descending scores of the items that
+   * are bound by the first clause, and if no positional variable is declared.
+   * @return result of check
+   */
+  private boolean scored() {
+    if(!(fl[0] instanceof For) || order.ob.length != 2) return false;
+    final For f = (For) fl[0];
+    final OrderBy ob = order.ob[0];
+    if(f.pos != null || !(ob instanceof OrderByExpr) || !ob.desc) return false;
+
+    final Expr e = ((OrderByExpr) ob).expr;
+    if(e.isFunction(Function._FT_SCORE)) {
+      // order by ft:score($x) descending
+      final Expr a = ((StandardFunc) e).expr[0];
+      return a instanceof VarRef && ((VarRef) a).var.is(f.var);
+    }
+    // for $x score $s ... order by $s descending
+    return f.score != null && e instanceof VarRef && ((VarRef) e).var.is(f.score);
+  }
+
   @Override
   public Iter iter(final QueryContext ctx) throws QueryException {
     final Iter[] iter = new Iter[fl.length];
@@ -294,21 +470,20 @@ public class GFLWOR extends ParseExpr {
     for(int f = 0; f < fl.length; ++f) iter[f] = ctx.iter(fl[f]);
 
     // evaluate pre grouping tuples
-    ArrayList<Item[]> keys = null;
-    ValueList vals = null;
-    if(order != null) {
-      keys = new ArrayList<Item[]>();
-      vals = new ValueList();
-    }
-    if(group != null) group.init(order);
-    iter(ctx, iter, 0, keys, vals);
+    // order != null, otherwise it would have been handled in group
+    final OrderSorter sorter = order != null ? new OrderSorter(order, ctx) : null;
+    final GroupPartition gp = group != null ? group.init(ctx) : null;
+    iter(ctx, iter, 0, sorter, gp);
     ctx.vars.size(vs);
 
     for(final ForLet f : fl) ctx.vars.add(f.var);
 
-    // order != null, otherwise it would have been handled in group
-    final Iter ir = group != null ?
-        group.gp.ret(ctx, ret, keys, vals) : ctx.iter(order.set(keys, vals));
+    ValueBuilder vb = null;
+    if(gp != null) {
+      if(sorter == null) vb = new ValueBuilder();
+      gp.ret(ctx, ret, sorter, vb);
+    }
+    final Iter ir = sorter != null ? sorter.iter() : vb;
     ctx.vars.size(vs);
     return ir;
   }
@@ -318,23 +493,23 @@ public class GFLWOR extends ParseExpr {
    * @param ctx query context
    * @param it iterator
    * @param p variable position
-   * @param ks sort keys
-   * @param vs values to sort
+   * @param sorter tuples to sort (if no group by clause is specified)
+   * @param gp grouping partition (if a group by clause is specified)
    * @throws QueryException query exception
    */
   private void iter(final QueryContext ctx, final Iter[] it, final int p,
-      final ArrayList<Item[]> ks, final ValueList vs) throws QueryException {
+      final OrderSorter sorter, final GroupPartition gp) throws QueryException {
 
     final boolean more = p + 1 != fl.length;
     while(it[p].next() != null) {
       if(more) {
-        iter(ctx, it, p + 1, ks, vs);
+        iter(ctx, it, p + 1, sorter, gp);
       } else if(where == null || where.ebv(ctx, info).bool(info)) {
-        if(group != null) {
-          group.gp.add(ctx);
-        } else if(order != null) {
+        if(gp != null) {
+          gp.add(ctx);
+        } else {
           // order by will be handled in group by otherwise
-          order.add(ctx, ret, ks, vs);
+          sorter.add(ret);
         }
       }
     }
@@ -22,8 +22,8 @@ public final class Group extends ParseExpr {
   private final GroupSpec[] groupby;
   /** Non-grouping variables. */
   private final Var[][] nongroup;
-  /** Grouping partition. **/
-  GroupPartition gp;
+  /** Aggregated non-grouping variables, or {@code null}. */
+  private GroupAggr[] aggr;
 
   /**
    * Constructor.
@@ -38,11 +38,12 @@ public final class Group extends ParseExpr {
   }
 
   /**
-   * Initializes the grouping partition.
-   * @param ob order by specifier
+   * Creates a new grouping partition.
+   * @param ctx query context
+   * @return grouping partition
    */
-  void init(final Order ob) {
-    gp = new GroupPartition(groupby, nongroup, ob, info);
+  GroupPartition init(final QueryContext ctx) {
+    return new GroupPartition(groupby, nongroup, aggr, info, ctx);
   }
 
   @Override
@@ -61,6 +62,50 @@ public final class Group extends ParseExpr {
     return this;
   }
 
+  /**
+   * Checks if the non-grouping variables are only used as arguments of
+   * aggregate functions. If this is the case, the function calls are replaced
+   * with references to variables, which will be bound to the running
+   * aggregates of each group. Example:
+   * for $l in //log group by $u := $l/@user return ($u, count($l))
+   * @param ret return expression
+   * @param order order by clause (may be {@code null})
+   * @param ctx query context
+   * @return return expression
+   */
+  Expr aggregate(final Expr ret, final Order order, final QueryContext ctx) {
+    final Var[] ng = nongroup[1];
+    for(final Var v : ng) {
+      if(!GroupAggr.check(ret, v)) return ret;
+      if(order != null) {
+        for(final OrderBy o : order.ob) {
+          if(o instanceof OrderByExpr && !GroupAggr.check(((OrderByExpr) o).expr, v))
+            return ret;
+        }
+      }
+    }
+
+    Expr r = ret;
+    aggr = new GroupAggr[ng.length];
+    for(int i = 0; i < ng.length; i++) {
+      final Var v = ng[i];
+      if(r.count(v) == 0 && (order == null || order.count(v) == 0)) continue;
+      final GroupAggr ga = new GroupAggr(v);
+      r = ga.rewrite(r, ctx);
+      if(order != null) {
+        for(final OrderBy o : order.ob) {
+          if(o instanceof OrderByExpr) {
+            final OrderByExpr obe = (OrderByExpr) o;
+            obe.expr = ga.rewrite(obe.expr, ctx);
+          }
+        }
+      }
+      ctx.compInfo(OPTAGGR, ga);
+      aggr[i] = ga;
+    }
+    return r;
+  }
+
   @Override
   public Iter iter(final QueryContext ctx) {
     throw Util.notexpected(this);
@@ -102,7 +147,7 @@ public final class Group extends ParseExpr {
 
   @Override
   public void plan(final FElem plan) {
-    addPlan(plan, planElem(), groupby);
+    addPlan(plan, aggr != null ? planElem(AGGREGATE, Token.TRUE) : planElem(), groupby);
   }
 
   @Override
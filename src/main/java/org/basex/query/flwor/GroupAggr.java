@@ -0,0 +1,130 @@
+package org.basex.query.flwor;
+
+import org.basex.query.*;
+import org.basex.query.expr.*;
+import org.basex.query.func.*;
+import org.basex.query.util.*;
+
+/**
+ * Aggregate functions that are applied to a non-grouping variable. If a
+ * non-grouping variable is only passed on to the functions {@code count},
+ * {@code sum}, {@code avg}, {@code min} and {@code max}, the function calls are
+ * replaced with references to new variables, and only the running aggregates
+ * of each group need to be kept in main memory.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+final class GroupAggr {
+  /** Supported functions. */
+  static final Function[] FUNCS = {
+    Function.COUNT, Function.SUM, Function.AVG, Function.MIN, Function.MAX
+  };
+  /** Index of the count function. */
+  static final int COUNT = 0;
+  /** Index of the sum function. */
+  static final int SUM = 1;
+  /** Index of the avg function. */
+  static final int AVG = 2;
+  /** Index of the min function. */
+  static final int MIN = 3;
+  /** Index of the max function. */
+  static final int MAX = 4;
+
+  /** Non-grouping variable. */
+  private final Var var;
+  /** Variables bound to the function results ({@code null} if not used). */
+  final Var[] vars = new Var[FUNCS.length];
+
+  /**
+   * Constructor.
+   * @param v non-grouping variable
+   */
+  GroupAggr(final Var v) {
+    var = v;
+  }
+
+  /**
+   * Checks if the result of the specified function needs to be computed.
+   * @param f function index
+   * @return result of check
+   */
+  boolean needs(final int f) {
+    return vars[f] != null || f == SUM && vars[AVG] != null;
+  }
+
+  /**
+   * Checks if the specified variable is only referenced as argument of a
+   * supported function. Conditional expressions are not entered, as an
+   * aggregate may raise an error even if it would not be evaluated.
+   * @param e expression
+   * @param v variable
+   * @return result of check
+   */
+  static boolean check(final Expr e, final Var v) {
+    if(e.count(v) == 0 || func(e, v) != -1) return true;
+    if(e instanceof Arr && !(e instanceof If || e instanceof Logical)) {
+      for(final Expr ex : ((Arr) e).expr) if(!check(ex, v)) return false;
+      return true;
+    }
+    return (e instanceof Cast || e instanceof Castable || e instanceof Treat ||
+        e instanceof Instance) && check(((Single) e).expr, v);
+  }
+
+  /**
+   * Replaces all function calls on the variable with references to new
+   * variables. {@link #check} must have been called before.
+   * @param e expression
+   * @param ctx query context
+   * @return resulting expression
+   */
+  Expr rewrite(final Expr e, final QueryContext ctx) {
+    if(e.count(var) == 0) return e;
+    final int f = func(e, var);
+    if(f != -1) {
+      final ParseExpr call = (ParseExpr) e;
+      if(vars[f] == null) {
+        vars[f] = Var.create(ctx, call.info, var.name, null, null);
+        vars[f].ret = call.type();
+      }
+      final VarRef ref = new VarRef(call.info, vars[f]);
+      ref.type = call.type();
+      return ref;
+    }
+    if(e instanceof Arr) {
+      final Expr[] ex = ((Arr) e).expr;
+      for(int i = 0; i < ex.length; i++) ex[i] = rewrite(ex[i], ctx);
+    } else {
+      final Single s = (Single) e;
+      s.expr = rewrite(s.expr, ctx);
+    }
+    return e;
+  }
+
+  /**
+   * Returns the index of the supported function that is called with the
+   * specified variable as single argument.
+   * @param e expression
+   * @param v variable
+   * @return function index, or {@code -1}
+   */
+  private static int func(final Expr e, final Var v) {
+    for(int f = 0; f < FUNCS.length; f++) {
+      if(!e.isFunction(FUNCS[f])) continue;
+      final Expr[] args = ((Arr) e).expr;
+      return args.length == 1 && args[0] instanceof VarRef &&
+          ((VarRef) args[0]).var.is(v) ? f : -1;
+    }
+    return -1;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    for(int f = 0; f < FUNCS.length; f++) {
+      if(vars[f] == null) continue;
+      if(sb.length() != 0) sb.append(", ");
+      sb.append(FUNCS[f].args(var));
+    }
+    return sb.toString();
+  }
+}
@@ -2,14 +2,21 @@ package org.basex.query.flwor;
 
 import static org.basex.query.util.Err.*;
 
+import java.io.*;
 import java.util.*;
 
+import org.basex.core.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
 import org.basex.query.*;
 import org.basex.query.expr.*;
+import org.basex.query.func.*;
 import org.basex.query.iter.*;
 import org.basex.query.util.*;
 import org.basex.query.value.*;
 import org.basex.query.value.item.*;
+import org.basex.query.value.seq.*;
 import org.basex.util.*;
 import org.basex.util.hash.*;
 import org.basex.util.list.*;
@@ -17,42 +24,99 @@ import org.basex.util.list.*;
 /**
  * Stores the grouping for a group by clause.
  *
+ * If the non-grouping variables are only used by aggregate functions (see
+ * {@link GroupAggr}), only the running aggregates of each group are stored.
+ * If the number of groups exceeds {@link Prop#GROUPBUFFER}, or if main memory
+ * gets scarce, the tuples of all new groups are distributed to temporary
+ * partitions by their hash values. The partitions are grouped one by one
+ * after the groups in main memory have been returned.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Michael Seiferle
  */
 final class GroupPartition {
+  /** Number of partitions. */
+  private static final int PARTS = 16;
+  /** Maximum number of partitioning levels. */
+  private static final int LEVELS = 8;
+  /** Number of groups after which the memory consumption is checked. */
+  private static final int CHECK = 1 << 12;
+
   /** Input information. */
   private final InputInfo info;
-  /** Order by specifier. */
-  private final Order order;
 
   /** Grouping variables. */
   private final GroupSpec[] gv;
   /** Non-grouping variables. */
   private final Var[][] ngv;
+  /** Aggregated non-grouping variables ({@code null} if not aggregated). */
+  private final GroupAggr[] aggr;
 
   /** Group partitioning. */
   private final ArrayList<GroupNode> part = new ArrayList<GroupNode>();
   /** Resulting sequence for non-grouping variables. */
   private final ArrayList<ValueBuilder[]> items;
+  /** Running aggregates of non-grouping variables. */
+  private final ArrayList<Accumulator[]> accs;
   /** HashValue, position (with overflow bucket). */
-  private final IntMap<IntList> hashes = new IntMap<IntList>();
+  private IntMap<IntList> hashes = new IntMap<IntList>();
+
+  /** Function calls for computing partial aggregates. */
+  private StandardFunc[] calls;
+  /** Partitioning level. */
+  private final int level;
+  /** Maximum number of groups in main memory (0: no limit). */
+  private final int max;
+  /** Runtime for memory consumption. */
+  private final Runtime rt = Runtime.getRuntime();
+  /** Maximum memory to consume. */
+  private final long maxMem = (long) (rt.maxMemory() * 0.8);
+  /** Indicates if no more groups will be stored in main memory. */
+  private boolean full;
+  /** Store for the items of the partitions. */
+  private final SpillStore store;
+  /** Partitions ({@code null} if no tuples have been written). */
+  private IOFile[] files;
+  /** Output streams of the partitions. */
+  private DataOutput[] outs;
+  /** Number of tuples in the partitions. */
+  private int[] sizes;
 
   /**
    * Sets up an empty partitioning.
-   * Sets up the ordering scheme.
    * @param groupby grouping variables
    * @param ng non-grouping variables
-   * @param ob order by specifier
+   * @param ag aggregated non-grouping variables (may be {@code null})
    * @param ii input info
+   * @param ctx query context
    */
-  GroupPartition(final GroupSpec[] groupby, final Var[][] ng, final Order ob,
-      final InputInfo ii) {
+  GroupPartition(final GroupSpec[] groupby, final Var[][] ng, final GroupAggr[] ag,
+      final InputInfo ii, final QueryContext ctx) {
+    this(groupby, ng, ag, ii, ctx, 0, new SpillStore(ctx));
+  }
+
+  /**
+   * Sets up an empty partitioning.
+   * @param groupby grouping variables
+   * @param ng non-grouping variables
+   * @param ag aggregated non-grouping variables (may be {@code null})
+   * @param ii input info
+   * @param ctx query context
+   * @param lvl partitioning level
+   * @param st store for the items of the partitions
+   */
+  private GroupPartition(final GroupSpec[] groupby, final Var[][] ng,
+      final GroupAggr[] ag, final InputInfo ii, final QueryContext ctx,
+      final int lvl, final SpillStore st) {
     gv = groupby;
     ngv = ng;
-    order = ob;
-    items = ngv[0].length != 0 ? new ArrayList<ValueBuilder[]>() : null;
+    aggr = ag;
     info = ii;
+    level = lvl;
+    store = st;
+    items = ag == null && ngv[0].length != 0 ? new ArrayList<ValueBuilder[]>() : null;
+    accs = ag != null ? new ArrayList<Accumulator[]>() : null;
+    max = ctx.context.prop.num(Prop.GROUPBUFFER);
   }
 
   /**
@@ -75,30 +139,18 @@ final class GroupPartition {
       vals[i] = val;
     }
 
-    final GroupNode gn = new GroupNode(info, vals);
-    final int h = gn.hash();
-    final IntList ps = hashes.get(h);
-    int p = -1;
-    if(ps != null) {
-      for(int i = 0; i < ps.size(); ++i) {
-        final int pp = ps.get(i);
-        if(gn.eq(part.get(pp))) {
-          p = pp;
-          break;
-        }
+    if(aggr != null) {
+      final Value[] ng = new Value[aggr.length];
+      for(int i = 0; i < ng.length; ++i) {
+        if(aggr[i] != null) ng[i] = ctx.value(ctx.vars.get(ngv[0][i]));
       }
+      add(vals, ng, ctx);
+      return;
     }
-    if(p < 0) {
-      p = part.size();
-      part.add(gn);
 
-      IntList pos = hashes.get(h);
-      if(pos == null) {
-        pos = new IntList(1);
-        hashes.add(h, pos);
-      }
-      pos.add(p);
-    }
+    final GroupNode gn = new GroupNode(info, vals);
+    int p = find(gn);
+    if(p < 0) p = insert(gn);
 
     final int ngl = ngv[0].length;
 
@@ -120,19 +172,140 @@ final class GroupPartition {
     }
   }
 
+  /**
+   * Adds a tuple to the running aggregates of its group. If no more groups
+   * fit into main memory, and if the group is new, the tuple is written to
+   * a partition.
+   * @param vals grouping values
+   * @param ng values of the aggregated non-grouping variables
+   * @param ctx query context
+   * @throws QueryException exception
+   */
+  private void add(final Value[] vals, final Value[] ng, final QueryContext ctx)
+      throws QueryException {
+
+    final GroupNode gn = new GroupNode(info, vals);
+    int p = find(gn);
+    if(p < 0) {
+      if(full()) {
+        spill(gn, ng);
+        return;
+      }
+      p = insert(gn);
+      final Accumulator[] acc = new Accumulator[aggr.length];
+      for(int i = 0; i < acc.length; ++i) {
+        if(aggr[i] != null) acc[i] = new Accumulator();
+      }
+      accs.add(acc);
+    }
+
+    if(calls == null) {
+      calls = new StandardFunc[GroupAggr.FUNCS.length];
+      for(int f = 0; f < calls.length; f++) {
+        calls[f] = GroupAggr.FUNCS[f].get(info, Empty.SEQ);
+      }
+    }
+    final Accumulator[] acc = accs.get(p);
+    for(int i = 0; i < acc.length; ++i) {
+      if(acc[i] != null) acc[i].add(ng[i], aggr[i], calls, ctx);
+    }
+  }
+
+  /**
+   * Returns the position of the specified group.
+   * @param gn group node
+   * @return position, or {@code -1}
+   * @throws QueryException exception
+   */
+  private int find(final GroupNode gn) throws QueryException {
+    final IntList ps = hashes.get(gn.hash());
+    if(ps != null) {
+      for(int i = 0; i < ps.size(); ++i) {
+        final int pp = ps.get(i);
+        if(gn.eq(part.get(pp))) return pp;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Adds a new group.
+   * @param gn group node
+   * @return position
+   */
+  private int insert(final GroupNode gn) {
+    final int p = part.size();
+    part.add(gn);
+
+    final int h = gn.hash();
+    IntList pos = hashes.get(h);
+    if(pos == null) {
+      pos = new IntList(1);
+      hashes.add(h, pos);
+    }
+    pos.add(p);
+    return p;
+  }
+
+  /**
+   * Checks if no more groups will be stored in main memory.
+   * @return result of check
+   */
+  private boolean full() {
+    if(!full && level < LEVELS) {
+      final int s = part.size();
+      if(max > 0 && s >= max) {
+        full = true;
+      } else if(s != 0 && s % CHECK == 0 &&
+          rt.totalMemory() - rt.freeMemory() >= maxMem) {
+        // check again after garbage has been collected
+        Performance.gc(2);
+        full = rt.totalMemory() - rt.freeMemory() >= maxMem;
+      }
+    }
+    return full;
+  }
+
+  /**
+   * Writes a tuple to the partition of its group.
+   * @param gn group node
+   * @param ng values of the aggregated non-grouping variables
+   * @throws QueryException exception
+   */
+  private void spill(final GroupNode gn, final Value[] ng) throws QueryException {
+    if(files == null) {
+      files = new IOFile[PARTS];
+      outs = new DataOutput[PARTS];
+      sizes = new int[PARTS];
+    }
+    // choose different hash bits on each level
+    final int p = gn.hash() * 0x9E3779B9 >>> (level << 2) & PARTS - 1;
+    try {
+      if(files[p] == null) {
+        files[p] = store.create();
+        outs[p] = new DataOutput(files[p]);
+      }
+      final DataOutput out = outs[p];
+      for(final Value v : gn.vals) store.write(out, v.isEmpty() ? null : (Item) v);
+      for(int i = 0; i < ng.length; ++i) if(aggr[i] != null) store.write(out, ng[i]);
+      sizes[p]++;
+    } catch(final IOException ex) {
+      IOERR.thrw(info, ex);
+    }
+  }
+
   /**
    * Returns grouped variables.
    * @param ctx query context
    * @param ret return expression
-   * @param ks key list
-   * @param vs value list
-   * @return iterator on the result set
+   * @param sorter tuples to sort (may be {@code null})
+   * @param vb value builder for unsorted results (may be {@code null})
    * @throws QueryException query exception
    */
-  Iter ret(final QueryContext ctx, final Expr ret, final ArrayList<Item[]> ks,
-      final ValueList vs) throws QueryException {
-    final ValueBuilder vb = new ValueBuilder();
+  void ret(final QueryContext ctx, final Expr ret, final OrderSorter sorter,
+      final ValueBuilder vb) throws QueryException {
 
+    final int vs = ctx.vars.size();
     for(int i = 0; i < part.size(); ++i) {
       final GroupNode gn = part.get(i);
       for(int j = 0; j < gv.length; ++j)
@@ -143,11 +316,57 @@ final class GroupPartition {
         for(int j = 0; j < ii.length; ++j) {
           ctx.vars.add(ngv[1][j].copy().bind(ii[j].value(), ctx));
         }
+      } else if(accs != null) {
+        final Accumulator[] acc = accs.get(i);
+        for(int j = 0; j < acc.length; ++j) {
+          if(acc[j] == null) continue;
+          final Var[] vars = aggr[j].vars;
+          for(int f = 0; f < vars.length; f++) {
+            if(vars[f] == null) continue;
+            ctx.vars.add(vars[f].copy().bind(acc[j].result(f, info), ctx));
+          }
+        }
       }
-      if(order != null) {
-        order.add(ctx, ret, ks, vs);
+      if(sorter != null) {
+        sorter.add(ret);
       } else vb.add(ctx.value(ret));
+      ctx.vars.size(vs);
+    }
+    if(files == null) return;
+
+    // group the tuples of all partitions
+    part.clear();
+    accs.clear();
+    hashes = new IntMap<IntList>();
+    for(int p = 0; p < PARTS; p++) {
+      if(files[p] == null) continue;
+      final GroupPartition gp = new GroupPartition(gv, ngv, aggr, info, ctx,
+          level + 1, store);
+      try {
+        outs[p].close();
+        final DataInput in = store.open(files[p]);
+        try {
+          final Value[] vals = new Value[gv.length];
+          final Value[] ng = new Value[aggr.length];
+          for(int t = 0; t < sizes[p]; t++) {
+            for(int g = 0; g < vals.length; g++) {
+              final Item it = store.read(in);
+              vals[g] = it == null ? Empty.SEQ : it;
+            }
+            for(int i = 0; i < ng.length; ++i) {
+              if(aggr[i] != null) ng[i] = store.readValue(in);
+            }
+            gp.add(vals.clone(), ng, ctx);
+          }
+        } finally {
+          in.close();
+        }
+      } catch(final IOException ex) {
+        IOERR.thrw(info, ex);
+      } finally {
+        store.delete(files[p]);
+      }
+      gp.ret(ctx, ret, sorter, vb);
     }
-    return order != null ? ctx.iter(order.set(ks, vs)) : vb;
   }
 }
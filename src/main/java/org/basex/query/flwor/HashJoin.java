@@ -0,0 +1,155 @@
+package org.basex.query.flwor;
+
+import org.basex.data.*;
+import org.basex.query.*;
+import org.basex.query.expr.*;
+import org.basex.query.iter.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.seq.*;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+import org.basex.util.list.*;
+
+/**
+ * Hash join of a for clause. The input of the clause is evaluated once, and its
+ * items are indexed by the string values of the join key. Instead of filtering
+ * all items for each outer tuple, the probe expression is evaluated and looked
+ * up in the resulting table. Items are returned in their original order.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+final class HashJoin extends ExprInfo {
+  /** Key expression, evaluated for each item of the clause input. */
+  final Expr key;
+  /** Probe expression, depending on the variables of the outer clauses. */
+  final Expr probe;
+  /** Input info. */
+  private final InputInfo info;
+
+  /**
+   * Constructor.
+   * @param k key expression
+   * @param p probe expression
+   * @param ii input info
+   */
+  HashJoin(final Expr k, final Expr p, final InputInfo ii) {
+    key = k;
+    probe = p;
+    info = ii;
+  }
+
+  /**
+   * Evaluates the clause input and builds the hash table.
+   * @param input clause input
+   * @param ctx query context
+   * @return hash table
+   * @throws QueryException query exception
+   */
+  Table table(final Expr input, final QueryContext ctx) throws QueryException {
+    final Table table = new Table();
+    final ValueBuilder items = table.items;
+    final Iter ir = ctx.iter(input);
+    final Value cv = ctx.value;
+    try {
+      for(Item it; (it = ir.next()) != null;) {
+        final int p = (int) items.size();
+        items.add(it);
+        ctx.value = it;
+        final Iter ki = ctx.iter(key);
+        for(Item k; (k = ki.next()) != null;) {
+          final byte[] t = k.string(info);
+          IntList il = table.map.get(t);
+          if(il == null) {
+            il = new IntList(1);
+            table.map.add(t, il);
+          }
+          // skip duplicate keys of the same item
+          if(il.size() == 0 || il.peek() != p) il.add(p);
+        }
+      }
+    } finally {
+      ctx.value = cv;
+    }
+    return table;
+  }
+
+  /**
+   * Returns all items of the table that match the current probe values.
+   * @param table hash table
+   * @param ctx query context
+   * @return iterator
+   * @throws QueryException query exception
+   */
+  Iter iter(final Table table, final QueryContext ctx) throws QueryException {
+    final ValueBuilder items = table.items;
+    if(items.size() == 0) return Empty.ITER;
+
+    IntList res = null;
+    boolean sort = false;
+    final Iter ir = ctx.iter(probe);
+    for(Item it; (it = ir.next()) != null;) {
+      final IntList il = table.map.get(it.string(info));
+      if(il == null) continue;
+      if(res == null) {
+        res = il;
+      } else {
+        // merge positions of several probe values
+        if(!sort) res = new IntList(res.toArray());
+        for(int i = 0; i < il.size(); i++) res.add(il.get(i));
+        sort = true;
+      }
+    }
+    if(res == null) return Empty.ITER;
+
+    final int[] pos = sort ? res.sort().toArray() : res.toArray();
+    int size = pos.length;
+    if(sort) {
+      int s = 1;
+      for(int i = 1; i < size; i++) if(pos[i] != pos[s - 1]) pos[s++] = pos[i];
+      size = s;
+    }
+    final int ps = size;
+    return new Iter() {
+      int c;
+      @Override
+      public Item next() {
+        return c < ps ? items.get(pos[c++]) : null;
+      }
+      @Override
+      public Item get(final long i) {
+        return items.get(pos[(int) i]);
+      }
+      @Override
+      public long size() {
+        return ps;
+      }
+      @Override
+      public boolean reset() {
+        c = 0;
+        return true;
+      }
+    };
+  }
+
+  @Override
+  public void plan(final FElem plan) {
+    addPlan(plan, planElem(), key, probe);
+  }
+
+  @Override
+  public String toString() {
+    return key + " = " + probe;
+  }
+
+  /**
+   * Hash table, which is built once for each evaluation of a for clause.
+   */
+  static final class Table {
+    /** Items of the clause input. */
+    final ValueBuilder items = new ValueBuilder();
+    /** Positions of the items, indexed by their keys. */
+    final TokenObjMap<IntList> map = new TokenObjMap<IntList>();
+  }
+}
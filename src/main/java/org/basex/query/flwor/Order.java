@@ -24,10 +24,8 @@ public final class Order extends ParseExpr {
   /** Sort list. */
   final OrderBy[] ob;
 
-  /** Keys to sort by. */
-  private ArrayList<Item[]> keys;
-  /** Values to sort. */
-  private ValueList values;
+  /** Maximum number of tuples to be returned (see {@link GFLWOR#limit}). */
+  long limit = Long.MAX_VALUE;
 
  /**
    * Constructor.
@@ -52,35 +50,38 @@ public final class Order extends ParseExpr {
 
   @Override
   public Iter iter(final QueryContext ctx) {
-    return new OrderedIter(keys, values);
+    throw Util.notexpected(this);
   }
 
   /**
-   * Sets the key and value lists for this Order instance.
-   * @param ks key list
-   * @param vs value list
-   * @return reference to this object for convenience
+   * Returns the sort keys of the current tuple.
+   * @param ctx query context
+   * @param i position of the tuple
+   * @return sort keys
+   * @throws QueryException query exception
    */
-  Order set(final ArrayList<Item[]> ks, final ValueList vs) {
-    keys = ks;
-    values = vs;
-    return this;
+  Item[] keys(final QueryContext ctx, final int i) throws QueryException {
+    final Item[] k = new Item[ob.length];
+    for(int o = k.length; o-- > 0;) k[o] = ob[o].key(ctx, i);
+    return k;
   }
 
   /**
-   * Adds the items to be sorted.
-   * @param ctx query context
-   * @param e value to add
-   * @param ks key list
-   * @param vs value list
+   * Returns the difference of two entries.
+   * @param sa sort keys of first item
+   * @param sb sort keys of second item
+   * @return result
    * @throws QueryException query exception
    */
-  void add(final QueryContext ctx, final Expr e, final ArrayList<Item[]> ks,
-      final ValueList vs) throws QueryException {
-    final Item[] k = new Item[ob.length];
-    for(int o = k.length; o-- > 0;) k[o] = ob[o].key(ctx, ks.size());
-    ks.add(k);
-    vs.add(ctx.value(e));
+  int diff(final Item[] sa, final Item[] sb) throws QueryException {
+    for(int k = 0; k < ob.length; ++k) {
+      final OrderBy or = ob[k];
+      final Item m = sa[k], n = sb[k];
+      final int c = m == null ? n == null ? 0 : or.lst ? -1 : 1 :
+        n == null ? or.lst ? 1 : -1 : m.diff(info, n);
+      if(c != 0) return or.desc ? -c : c;
+    }
+    return 0;
   }
 
   @Override
@@ -116,7 +117,7 @@ public final class Order extends ParseExpr {
 
   @Override
   public void plan(final FElem plan) {
-    final FElem el = planElem();
+    final FElem el = limit == Long.MAX_VALUE ? planElem() : planElem(LIMIT, limit);
     for(int o = 0; o != ob.length - 1; ++o) ob[o].plan(el);
     addPlan(plan, el);
   }
@@ -155,15 +156,20 @@ public final class Order extends ParseExpr {
       vl = vs;
     }
 
+    /**
+     * Enumerates the sort array and sorts the entries.
+     * @throws QueryException query exception
+     */
+    void init() throws QueryException {
+      end = vl.size();
+      order = new int[end];
+      for(int i = 0; i < end; ++i) order[i] = i;
+      sort(order, 0, end);
+    }
+
     @Override
     public Item next() throws QueryException {
-      if(order == null) {
-        // enumerate sort array and sort entries
-        end = vl.size();
-        order = new int[end];
-        for(int i = 0; i < end; ++i) order[i] = i;
-        sort(order, 0, end);
-      }
+      if(order == null) init();
 
       while(true) {
         if(ir != null) {
@@ -244,14 +250,7 @@ public final class Order extends ParseExpr {
      * @throws QueryException query exception
      */
     private int d(final Item[] sa, final Item[] sb) throws QueryException {
-      for(int k = 0; k < ob.length; ++k) {
-        final OrderBy or = ob[k];
-        final Item m = sa[k], n = sb[k];
-        final int c = m == null ? n == null ? 0 : or.lst ? -1 : 1 :
-          n == null ? or.lst ? 1 : -1 : m.diff(info, n);
-        if(c != 0) return or.desc ? -c : c;
-      }
-      return 0;
+      return diff(sa, sb);
     }
 
     /**
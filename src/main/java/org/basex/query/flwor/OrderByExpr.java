@@ -19,7 +19,7 @@ import org.basex.util.list.*;
  */
 public final class OrderByExpr extends OrderBy {
   /** Order expression. */
-  private Expr expr;
+  Expr expr;
 
   /**
    * Constructor.
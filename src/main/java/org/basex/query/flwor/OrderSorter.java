@@ -0,0 +1,327 @@
+package org.basex.query.flwor;
+
+import static org.basex.query.util.Err.*;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+import org.basex.core.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.query.*;
+import org.basex.query.expr.*;
+import org.basex.query.iter.*;
+import org.basex.query.util.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * Collects and sorts the tuples of an order by clause.
+ * <ul>
+ * <li>If the number of buffered tuples exceeds {@link Prop#SORTBUFFER}, or if
+ *     main memory gets scarce, the buffer is sorted and written to a temporary
+ *     file. If there are more than {@link #FANIN} runs, groups of runs are
+ *     merged into larger runs. The remaining runs are lazily merged while the
+ *     result is iterated.</li>
+ * <li>If only the first tuples will be requested (see {@link Order#limit}),
+ *     the smallest tuples are kept in a bounded heap.</li>
+ * </ul>
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+final class OrderSorter {
+  /** Number of tuples after which the memory consumption is checked. */
+  private static final int CHECK = 1 << 12;
+  /** Maximum number of runs that are merged at the same time. */
+  private static final int FANIN = 64;
+
+  /** Order by clause. */
+  private final Order order;
+  /** Query context. */
+  private final QueryContext ctx;
+  /** Maximum number of buffered tuples (0: no limit). */
+  private final int max;
+  /** Runtime for memory consumption. */
+  private final Runtime rt = Runtime.getRuntime();
+  /** Maximum memory to consume. */
+  private final long maxMem = (long) (rt.maxMemory() * 0.8);
+
+  /** Sort keys of the buffered tuples. */
+  private ArrayList<Item[]> keys = new ArrayList<Item[]>();
+  /** Values of the buffered tuples. */
+  private ValueList values = new ValueList();
+  /** Heap with the smallest tuples (top-k), or {@code null}. */
+  private MinHeap<Item[], Value> heap;
+  /** Number of added tuples. */
+  private int count;
+  /** Number of garbage collections at the time of the last spill. */
+  private long gcs = -1;
+
+  /** Sorted runs. */
+  private final ArrayList<IOFile> runs = new ArrayList<IOFile>();
+  /** Store for the items of the runs. */
+  private final SpillStore store;
+
+  /**
+   * Constructor.
+   * @param o order by clause
+   * @param c query context
+   */
+  OrderSorter(final Order o, final QueryContext c) {
+    order = o;
+    ctx = c;
+    store = new SpillStore(c);
+    max = c.context.prop.num(Prop.SORTBUFFER);
+    if(o.limit <= Integer.MAX_VALUE && (max <= 0 || o.limit <= max)) {
+      // the largest tuple will be removed first
+      heap = new MinHeap<Item[], Value>((int) Math.min(o.limit + 1, ElementList.CAP),
+          comparator(true));
+    }
+  }
+
+  /**
+   * Adds the current tuple.
+   * @param ret return expression
+   * @throws QueryException query exception
+   */
+  void add(final Expr ret) throws QueryException {
+    final Item[] k = order.keys(ctx, count++);
+    final Value v = ctx.value(ret);
+    if(heap != null) {
+      // skip empty values, as they will not be part of the first results
+      if(v.isEmpty()) return;
+      try {
+        heap.insert(k, v);
+        if(heap.size() > order.limit) heap.removeMin();
+      } catch(final QueryRTException ex) {
+        throw ex.wrapped();
+      }
+      return;
+    }
+
+    keys.add(k);
+    values.add(v);
+    final int s = keys.size();
+    if(s == max) {
+      spill();
+    } else if(s % CHECK == 0 && rt.totalMemory() - rt.freeMemory() >= maxMem &&
+        collections() != gcs) {
+      // spilled tuples are released by the next garbage collection:
+      // until then, the memory consumption is not considered again
+      spill();
+      gcs = collections();
+    }
+  }
+
+  /**
+   * Returns the total number of garbage collections.
+   * @return number of collections
+   */
+  private static long collections() {
+    long c = 0;
+    for(final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      c += Math.max(0, gc.getCollectionCount());
+    return c;
+  }
+
+  /**
+   * Returns an iterator on the sorted values.
+   * @return iterator
+   * @throws QueryException query exception
+   */
+  Iter iter() throws QueryException {
+    if(heap != null) {
+      // the largest values are removed first
+      final Value[] vs = new Value[heap.size()];
+      for(int v = vs.length; v-- > 0;) vs[v] = heap.removeMin();
+      final ValueBuilder vb = new ValueBuilder();
+      for(final Value v : vs) vb.add(v);
+      return vb;
+    }
+    if(runs.isEmpty()) return order.new OrderedIter(keys, values);
+
+    // merge sorted runs
+    if(!values.isEmpty()) spill();
+    keys = null;
+    values = null;
+    final MinHeap<Item[], Run> merge = new MinHeap<Item[], Run>(FANIN,
+        comparator(false));
+    try {
+      while(runs.size() > FANIN) merge();
+      open(runs, merge);
+      runs.clear();
+    } catch(final IOException ex) {
+      store.close();
+      IOERR.thrw(order.info, ex);
+    } catch(final QueryRTException ex) {
+      store.close();
+      throw ex.wrapped();
+    }
+
+    return new Iter() {
+      /** Current value. */
+      private Iter ir;
+
+      @Override
+      public Item next() throws QueryException {
+        while(true) {
+          if(ir != null) {
+            final Item it = ir.next();
+            if(it != null) return it;
+            ir = null;
+          }
+          if(merge.size() == 0) return null;
+          final Run run = merge.removeMin();
+          ir = run.value.iter();
+          try {
+            if(run.next()) merge.insert(run.keys, run);
+          } catch(final IOException ex) {
+            store.close();
+            IOERR.thrw(order.info, ex);
+          } catch(final QueryRTException ex) {
+            store.close();
+            throw ex.wrapped();
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Merges the first {@link #FANIN} runs into a new run.
+   * @throws IOException I/O exception
+   */
+  private void merge() throws IOException {
+    final java.util.List<IOFile> group = runs.subList(0, FANIN);
+    final MinHeap<Item[], Run> merge = new MinHeap<Item[], Run>(FANIN,
+        comparator(false));
+    final int size = open(group, merge);
+    group.clear();
+
+    final IOFile file = store.create();
+    runs.add(file);
+    final DataOutput out = new DataOutput(file);
+    try {
+      out.writeNum(size);
+      while(!merge.isEmpty()) {
+        final Run run = merge.removeMin();
+        for(final Item it : run.keys) store.write(out, it);
+        store.write(out, run.value);
+        if(run.next()) merge.insert(run.keys, run);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Opens the specified runs and adds them to a heap.
+   * @param files temporary files
+   * @param merge heap
+   * @return total number of tuples
+   * @throws IOException I/O exception
+   */
+  private int open(final java.util.List<IOFile> files, final MinHeap<Item[], Run> merge)
+      throws IOException {
+    int size = 0;
+    for(final IOFile file : files) {
+      final Run run = new Run(file);
+      size += run.left;
+      if(run.next()) merge.insert(run.keys, run);
+    }
+    return size;
+  }
+
+  /**
+   * Sorts the buffered tuples and writes them to a temporary file.
+   * @throws QueryException query exception
+   */
+  private void spill() throws QueryException {
+    final Order.OrderedIter oi = order.new OrderedIter(keys, values);
+    oi.init();
+    try {
+      final IOFile file = store.create();
+      runs.add(file);
+      final DataOutput out = new DataOutput(file);
+      try {
+        out.writeNum(oi.end);
+        for(final int o : oi.order) {
+          for(final Item it : keys.get(o)) store.write(out, it);
+          store.write(out, values.get(o));
+        }
+      } finally {
+        out.close();
+      }
+    } catch(final IOException ex) {
+      IOERR.thrw(order.info, ex);
+    }
+    keys = new ArrayList<Item[]>();
+    values = new ValueList();
+  }
+
+  /**
+   * Returns a comparator for sort keys.
+   * @param desc descending order
+   * @return comparator
+   */
+  private Comparator<Item[]> comparator(final boolean desc) {
+    return new Comparator<Item[]>() {
+      @Override
+      public int compare(final Item[] a, final Item[] b) {
+        try {
+          return desc ? order.diff(b, a) : order.diff(a, b);
+        } catch(final QueryException ex) {
+          throw new QueryRTException(ex);
+        }
+      }
+    };
+  }
+
+  /**
+   * Sorted run, which is read from a temporary file.
+   */
+  private final class Run {
+    /** Temporary file. */
+    private final IOFile file;
+    /** Input stream. */
+    private final DataInput in;
+    /** Number of remaining tuples. */
+    private int left;
+    /** Sort keys of the current tuple. */
+    Item[] keys;
+    /** Value of the current tuple. */
+    Value value;
+
+    /**
+     * Constructor.
+     * @param f temporary file
+     * @throws IOException I/O exception
+     */
+    Run(final IOFile f) throws IOException {
+      file = f;
+      in = store.open(f);
+      left = in.readNum();
+    }
+
+    /**
+     * Reads the next tuple. The file is deleted if all tuples have been read.
+     * @return {@code true} if a tuple was read
+     * @throws IOException I/O exception
+     */
+    boolean next() throws IOException {
+      if(left-- == 0) {
+        store.delete(file);
+        return false;
+      }
+      final int kl = order.ob.length;
+      keys = new Item[kl];
+      for(int k = 0; k < kl; k++) keys[k] = store.read(in);
+      value = store.readValue(in);
+      return true;
+    }
+  }
+}
@@ -0,0 +1,229 @@
+package org.basex.query.flwor;
+
+import static org.basex.core.Text.*;
+import static org.basex.query.util.Err.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.basex.query.*;
+import org.basex.query.func.*;
+import org.basex.query.iter.*;
+import org.basex.query.util.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.util.*;
+
+/**
+ * Evaluates the iterations of the first for clause of a {@link FLWR} expression
+ * in parallel. The input of the clause is split into chunks, which are fetched
+ * by a number of threads with their own query contexts (see
+ * {@link QueryContext#QueryContext(QueryContext)}). The results of the chunks
+ * are concatenated in their original order.
+ *
+ * The calling thread evaluates chunks as well. The other threads are taken from a
+ * shared pool, which is bounded by the number of available processors. If the
+ * pool is busy, the remaining chunks will be evaluated by the calling thread.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+final class Parallel {
+  /** Number of chunks per thread. */
+  private static final int CHUNKS = 4;
+  /** Shared worker threads (discarded if they have been idle for some time). */
+  private static final ThreadPoolExecutor POOL;
+
+  static {
+    final int n = Runtime.getRuntime().availableProcessors();
+    POOL = new ThreadPoolExecutor(n, n, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable r) {
+        final Thread t = new Thread(r);
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    POOL.allowCoreThreadTimeOut(true);
+  }
+
+  /** FLWR expression. */
+  private final FLWR flwr;
+  /** Query context. */
+  private final QueryContext ctx;
+  /** Input of the first for clause. */
+  private final Value input;
+  /** Number of items per chunk. */
+  private final long chunk;
+  /** Results of the chunks. */
+  private final Value[] results;
+  /** Index of the next chunk to be evaluated. */
+  private final AtomicInteger next = new AtomicInteger();
+  /** Contexts of the threads. */
+  private QueryContext[] ctxs;
+  /** First error (also indicates that all threads should stop). */
+  private volatile Throwable error;
+
+  /**
+   * Constructor.
+   * @param f FLWR expression
+   * @param in input of the first for clause
+   * @param threads maximum number of threads
+   * @param c query context
+   */
+  private Parallel(final FLWR f, final Value in, final int threads,
+      final QueryContext c) {
+    flwr = f;
+    input = in;
+    ctx = c;
+    final long is = in.size();
+    final long cs = Math.min(is, (long) threads * CHUNKS);
+    chunk = (is + cs - 1) / cs;
+    results = new Value[(int) ((is + chunk - 1) / chunk)];
+  }
+
+  /**
+   * Evaluates the specified expression in parallel.
+   * @param f FLWR expression
+   * @param in input of the first for clause (must contain at least two items)
+   * @param threads maximum number of threads
+   * @param ctx query context
+   * @return resulting value
+   * @throws QueryException query exception
+   */
+  static Value value(final FLWR f, final Value in, final int threads,
+      final QueryContext ctx) throws QueryException {
+
+    // the current date and time must be identical in all threads
+    if(ctx.dtm == null) Function.CURRENT_DATETIME.get(f.info).item(ctx, f.info);
+    return new Parallel(f, in, threads, ctx).run(threads);
+  }
+
+  /**
+   * Evaluates the chunks and returns the concatenated results.
+   * @param threads maximum number of threads
+   * @return resulting value
+   * @throws QueryException query exception
+   */
+  private Value run(final int threads) throws QueryException {
+    final int ts = Math.min(threads, results.length);
+    ctxs = new QueryContext[ts];
+    for(int t = 0; t < ts; t++) ctxs[t] = new QueryContext(ctx);
+
+    final ArrayList<Future<?>> tasks = new ArrayList<Future<?>>(ts);
+    for(int t = 1; t < ts; t++) {
+      final QueryContext qc = ctxs[t];
+      tasks.add(POOL.submit(new Runnable() {
+        @Override
+        public void run() {
+          work(qc);
+        }
+      }));
+    }
+    work(ctxs[0]);
+    try {
+      for(final Future<?> f : tasks) f.get();
+    } catch(final InterruptedException ex) {
+      // stop all threads and discard the incomplete results
+      fail(ex);
+      Util.debug(ex);
+      BASX_GENERIC.thrw(flwr.info, INTERRUPTED);
+    } catch(final ExecutionException ex) {
+      // errors are caught by the tasks
+      throw Util.notexpected(ex);
+    }
+
+    final Throwable ex = error;
+    if(ex instanceof QueryException) throw (QueryException) ex;
+    if(ex instanceof RuntimeException) throw (RuntimeException) ex;
+    if(ex instanceof Error) throw (Error) ex;
+    if(ex != null) throw Util.notexpected(ex);
+
+    final ValueBuilder vb = new ValueBuilder();
+    for(final Value v : results) vb.add(v);
+    return vb.value();
+  }
+
+  /**
+   * Evaluates chunks and catches all errors.
+   * @param qc query context of the current thread
+   */
+  void work(final QueryContext qc) {
+    try {
+      chunks(qc);
+    } catch(final Throwable ex) {
+      fail(ex);
+    }
+  }
+
+  /**
+   * Assigns the first error and stops all threads.
+   * @param ex error
+   */
+  private void fail(final Throwable ex) {
+    synchronized(this) {
+      if(error != null) return;
+      error = ex;
+    }
+    for(final QueryContext c : ctxs) c.stop();
+  }
+
+  /**
+   * Evaluates chunks until all of them have been fetched, or until an error
+   * has occurred in one of the threads.
+   * @param qc query context of the current thread
+   * @throws QueryException query exception
+   */
+  private void chunks(final QueryContext qc) throws QueryException {
+    final ForLet[] fl = flwr.fl;
+    final For fr = (For) fl[0];
+    final Var v = fr.var.copy();
+    final Var p = fr.pos != null ? fr.pos.copy() : null;
+    final Var s = fr.score != null ? fr.score.copy() : null;
+    qc.vars.add(v);
+    if(p != null) qc.vars.add(p);
+    if(s != null) qc.vars.add(s);
+
+    // iterators of the remaining clauses will be reset when they are exhausted
+    final Iter[] iter = new Iter[fl.length];
+    for(int f = 1; f < fl.length; f++) iter[f] = qc.iter(fl[f]);
+
+    final long is = input.size();
+    for(int c; (c = next.getAndIncrement()) < results.length;) {
+      final ValueBuilder vb = new ValueBuilder();
+      final long e = Math.min(is, (c + 1) * chunk);
+      for(long i = c * chunk; i < e; i++) {
+        if(error != null) return;
+        ctx.checkStop();
+        final Item it = input.itemAt(i);
+        v.bind(it, qc);
+        if(p != null) p.bind(Int.get(i + 1), qc);
+        if(s != null) s.bind(Dbl.get(it.score()), qc);
+        iter(qc, iter, 1, vb);
+      }
+      results[c] = vb.value();
+    }
+  }
+
+  /**
+   * Performs a recursive iteration on the specified clause.
+   * @param qc query context of the current thread
+   * @param it iterators
+   * @param p clause position
+   * @param vb value builder
+   * @throws QueryException query exception
+   */
+  private void iter(final QueryContext qc, final Iter[] it, final int p,
+      final ValueBuilder vb) throws QueryException {
+
+    if(p == it.length) {
+      final InputInfo info = flwr.info;
+      if(flwr.where == null || flwr.where.ebv(qc, info).bool(info)) {
+        vb.add(qc.value(flwr.ret));
+      }
+    } else {
+      while(it[p].next() != null) iter(qc, it, p + 1, vb);
+    }
+  }
+}
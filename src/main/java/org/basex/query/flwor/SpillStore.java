@@ -0,0 +1,322 @@
+package org.basex.query.flwor;
+
+import java.io.*;
+import java.lang.ref.*;
+import java.math.*;
+import java.util.*;
+
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.query.*;
+import org.basex.query.iter.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.type.*;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+
+/**
+ * Writes items of FLWOR tuples to temporary files and reads them back.
+ * Strings, numbers, booleans, database nodes and constructed nodes without
+ * parent are written to disk. All other items are kept in main memory and
+ * referenced by their position. A constructed node is only read back as a copy
+ * if the original node is not referenced anymore, so its identity is preserved.
+ * Temporary files that have not been deleted yet will be removed when the query
+ * context is closed.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+final class SpillStore implements Closeable {
+  /** Item kind: no item. */
+  private static final int NULL = 0;
+  /** Item kind: string. */
+  private static final int STR = 1;
+  /** Item kind: untyped atomic value. */
+  private static final int ATM = 2;
+  /** Item kind: integer. */
+  private static final int ITR = 3;
+  /** Item kind: double. */
+  private static final int DBL = 4;
+  /** Item kind: float. */
+  private static final int FLT = 5;
+  /** Item kind: decimal. */
+  private static final int DEC = 6;
+  /** Item kind: boolean. */
+  private static final int BLN = 7;
+  /** Item kind: database node. */
+  private static final int NOD = 8;
+  /** Item kind: item kept in main memory. */
+  private static final int REF = 9;
+  /** Item kind: constructed node. */
+  private static final int FRG = 10;
+
+  /** Items that are referenced by the temporary files. */
+  private final ArrayList<Item> items = new ArrayList<Item>();
+  /** Databases of the nodes that are referenced by the temporary files. */
+  private final ArrayList<Data> datas = new ArrayList<Data>();
+  /** Constructed nodes that have been written, or their copies (weakly referenced). */
+  private final IntMap<WeakReference<ANode>> nodes =
+    new IntMap<WeakReference<ANode>>();
+  /** Temporary files, and their input streams if they have been opened. */
+  private final HashMap<IOFile, DataInput> files = new HashMap<IOFile, DataInput>();
+  /** Query context. */
+  private final QueryContext ctx;
+  /** Indicates if the store has been registered in the query context. */
+  private boolean registered;
+
+  /**
+   * Constructor.
+   * @param c query context
+   */
+  SpillStore(final QueryContext c) {
+    ctx = c;
+  }
+
+  /**
+   * Creates a temporary file, which will be deleted when the VM terminates
+   * or when the query context is closed.
+   * @return file reference
+   * @throws IOException I/O exception
+   */
+  IOFile create() throws IOException {
+    final IOFile file = new IOFile(File.createTempFile("flwor", IO.BASEXSUFFIX));
+    file.file().deleteOnExit();
+    if(!registered) {
+      ctx.closeable(this);
+      registered = true;
+    }
+    files.put(file, null);
+    return file;
+  }
+
+  /**
+   * Opens an input stream for the specified temporary file.
+   * @param file file reference
+   * @return input stream
+   * @throws IOException I/O exception
+   */
+  DataInput open(final IOFile file) throws IOException {
+    final DataInput in = new DataInput(file);
+    files.put(file, in);
+    return in;
+  }
+
+  /**
+   * Closes the input stream of the specified temporary file and deletes it.
+   * @param file file reference
+   */
+  void delete(final IOFile file) {
+    final DataInput in = files.remove(file);
+    if(in != null) {
+      try {
+        in.close();
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * Closes all input streams and deletes all temporary files.
+   */
+  @Override
+  public void close() {
+    for(final IOFile file : new ArrayList<IOFile>(files.keySet())) delete(file);
+  }
+
+  /**
+   * Writes an item.
+   * @param out output stream
+   * @param it item (may be {@code null})
+   * @throws IOException I/O exception
+   */
+  void write(final DataOutput out, final Item it) throws IOException {
+    if(it == null) {
+      out.write1(NULL);
+    } else if(it instanceof Str && it.type == AtomType.STR) {
+      out.write1(STR);
+      out.writeToken(((Str) it).string());
+    } else if(it instanceof Atm) {
+      out.write1(ATM);
+      out.writeToken(((Atm) it).string(null));
+    } else if(it instanceof Int) {
+      out.write1(ITR);
+      out.write1(((AtomType) it.type).ordinal());
+      out.write8(((Int) it).itr());
+    } else if(it instanceof Dbl) {
+      out.write1(DBL);
+      out.write8(Double.doubleToRawLongBits(((Dbl) it).dbl()));
+    } else if(it instanceof Flt) {
+      out.write1(FLT);
+      out.write8(Float.floatToRawIntBits(((Flt) it).flt()));
+    } else if(it instanceof Dec && it.type == AtomType.DEC) {
+      out.write1(DEC);
+      out.writeToken(Token.token(((Dec) it).dec(null).toString()));
+    } else if(it instanceof Bln) {
+      out.write1(BLN);
+      out.writeBool(((Bln) it).bool(null));
+    } else if(it.getClass() == DBNode.class && it.score == null) {
+      final DBNode n = (DBNode) it;
+      int d = datas.indexOf(n.data);
+      if(d == -1) {
+        d = datas.size();
+        datas.add(n.data);
+      }
+      out.write1(NOD);
+      out.writeNum(d);
+      out.writeNum(n.pre);
+    } else if(it instanceof FNode && ((FNode) it).parent() == null &&
+        fragment((FNode) it)) {
+      final FNode n = (FNode) it;
+      if(nodes.get(n.id) == null) nodes.add(n.id, new WeakReference<ANode>(n));
+      out.write1(FRG);
+      out.writeNum(n.id);
+      node(out, n);
+    } else {
+      out.write1(REF);
+      out.writeNum(items.size());
+      items.add(it);
+    }
+  }
+
+  /**
+   * Writes a value.
+   * @param out output stream
+   * @param v value
+   * @throws IOException I/O exception
+   */
+  void write(final DataOutput out, final Value v) throws IOException {
+    final long vs = v.size();
+    out.writeNum((int) vs);
+    for(long i = 0; i < vs; i++) write(out, v.itemAt(i));
+  }
+
+  /**
+   * Reads an item.
+   * @param in input stream
+   * @return item (may be {@code null})
+   * @throws IOException I/O exception
+   */
+  Item read(final DataInput in) throws IOException {
+    switch(in.read()) {
+      case NULL: return null;
+      case STR:  return Str.get(in.readToken());
+      case ATM:  return new Atm(in.readToken());
+      case ITR:
+        final Type t = AtomType.values()[in.read()];
+        return Int.get(in.read8(), t);
+      case DBL:  return Dbl.get(Double.longBitsToDouble(in.read8()));
+      case FLT:  return Flt.get(Float.intBitsToFloat((int) in.read8()));
+      case DEC:  return Dec.get(new BigDecimal(Token.string(in.readToken())));
+      case BLN:  return Bln.get(in.readBool());
+      case NOD:
+        final Data data = datas.get(in.readNum());
+        return new DBNode(data, in.readNum());
+      case FRG:
+        final int id = in.readNum();
+        final ANode n = node(in, in.read() - 1);
+        // return the original node, or its first copy, if it is still referenced
+        final ANode o = nodes.get(id).get();
+        if(o != null) return o;
+        nodes.add(id, new WeakReference<ANode>(n));
+        return n;
+      default:   return items.get(in.readNum());
+    }
+  }
+
+  /**
+   * Reads a value.
+   * @param in input stream
+   * @return value
+   * @throws IOException I/O exception
+   */
+  Value readValue(final DataInput in) throws IOException {
+    final int vs = in.readNum();
+    if(vs == 1) return read(in);
+    final ValueBuilder vb = new ValueBuilder();
+    for(int v = 0; v < vs; v++) vb.add(read(in));
+    return vb.value();
+  }
+
+  /**
+   * Checks if the specified constructed node and its descendants can be written
+   * to disk.
+   * @param n node
+   * @return result of check
+   */
+  private static boolean fragment(final ANode n) {
+    if(!(n instanceof FNode) || n.kind() == -1) return false;
+    final AxisIter ai = n.attributes();
+    for(ANode a; (a = ai.next()) != null;) if(!fragment(a)) return false;
+    final AxisIter ci = n.children();
+    for(ANode c; (c = ci.next()) != null;) if(!fragment(c)) return false;
+    return true;
+  }
+
+  /**
+   * Writes a constructed node and its descendants.
+   * @param out output stream
+   * @param n node
+   * @throws IOException I/O exception
+   */
+  private static void node(final DataOutput out, final ANode n) throws IOException {
+    final int k = n.kind();
+    out.write1(k + 1);
+    if(k == Data.DOC) {
+      out.writeToken(n.baseURI());
+    } else if(k == Data.ELEM || k == Data.ATTR || k == Data.PI) {
+      final QNm nm = n.qname();
+      out.writeToken(nm.string());
+      out.writeBool(nm.hasURI());
+      if(nm.hasURI()) out.writeToken(nm.uri());
+    }
+    if(k == Data.DOC || k == Data.ELEM) {
+      if(k == Data.ELEM) {
+        final Atts ns = n.namespaces();
+        out.writeNum(ns.size());
+        for(int i = 0; i < ns.size(); i++) {
+          out.writeToken(ns.name(i));
+          out.writeToken(ns.string(i));
+        }
+        final AxisIter ai = n.attributes();
+        for(ANode a; (a = ai.next()) != null;) node(out, a);
+      }
+      final AxisIter ci = n.children();
+      for(ANode c; (c = ci.next()) != null;) node(out, c);
+      out.write1(0);
+    } else {
+      out.writeToken(n.string());
+    }
+  }
+
+  /**
+   * Reads a constructed node and its descendants.
+   * @param in input stream
+   * @param k node kind
+   * @return node
+   * @throws IOException I/O exception
+   */
+  private static FNode node(final DataInput in, final int k) throws IOException {
+    if(k == Data.DOC) {
+      final FDoc doc = new FDoc(in.readToken());
+      for(int c; (c = in.read()) != 0;) doc.add(node(in, c - 1));
+      return doc;
+    }
+    final QNm nm = k == Data.ELEM || k == Data.ATTR || k == Data.PI ?
+      new QNm(in.readToken(), in.readBool() ? in.readToken() : null) : null;
+    if(k == Data.ELEM) {
+      final Atts ns = new Atts();
+      for(int i = in.readNum(); i > 0; i--) ns.add(in.readToken(), in.readToken());
+      final FElem elem = new FElem(nm, ns);
+      for(int c; (c = in.read()) != 0;) elem.add(node(in, c - 1));
+      return elem;
+    }
+    final byte[] v = in.readToken();
+    return k == Data.TEXT ? new FTxt(v) : k == Data.COMM ? new FComm(v) :
+      k == Data.ATTR ? new FAttr(nm, v) : new FPI(nm, v);
+  }
+}
@@ -2,18 +2,24 @@ package org.basex.query.ft;
 
 import static org.basex.util.Token.*;
 
+import java.util.*;
+
 import org.basex.util.*;
 
 /**
- * Wildcard expression.
+ * Wildcard expression. Tokens can either be matched via {@link #match}, or
+ * incrementally via the {@link Automaton} methods, which are backed by a
+ * nondeterministic automaton.
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  * @author Dimitar Popov
  */
-public final class FTWildcard {
+public final class FTWildcard implements Automaton {
   /** Value encoding the wildcard dot. */
   private static final int DOT = -1;
+  /** Maximum number of automaton states. */
+  private static final int MAXSTATES = 1 << 10;
   /** Original query. */
   private final byte[] query;
   /** Characters. */
@@ -25,6 +31,15 @@ public final class FTWildcard {
   /** Array length. */
   private int size;
 
+  /** Index of the first automaton state of each wildcard entry. */
+  private int[] base;
+  /** Wildcard entries of the automaton states. */
+  private int[] entries;
+  /** Occurrences of the automaton states (counted for wildcard dots). */
+  private int[] occs;
+  /** Automaton states reached after each character (the last one is final). */
+  private boolean[][] states;
+
   /**
    * Constructor.
    * @param qu query
@@ -122,6 +137,93 @@ public final class FTWildcard {
     return tb.finish();
   }
 
+  /**
+   * Initializes the automaton. Must be called after {@link #parse}.
+   * @return {@code false} if the automaton would get too large
+   */
+  public boolean automaton() {
+    // a dot has one state for each number of occurrences. Occurrences beyond
+    // the minimum are not counted if the maximum is unlimited
+    base = new int[size + 1];
+    int st = 0;
+    for(int s = 0; s < size; s++) {
+      base[s] = st;
+      st += wc[s] == DOT ? (max[s] == Integer.MAX_VALUE ? min[s] : max[s]) + 1 : 1;
+      if(st > MAXSTATES) return false;
+    }
+    base[size] = st;
+    entries = new int[st];
+    occs = new int[st];
+    for(int s = 0; s < size; s++) {
+      for(int b = base[s]; b < base[s + 1]; b++) {
+        entries[b] = s;
+        occs[b] = b - base[s];
+      }
+    }
+    states = new boolean[1][st + 1];
+    add(states[0], 0, 0);
+    return true;
+  }
+
+  @Override
+  public boolean step(final int pos, final int cp) {
+    final int ns = base[size] + 1;
+    if(pos + 1 >= states.length) {
+      final boolean[][] tmp = new boolean[pos + 1 << 1][];
+      System.arraycopy(states, 0, tmp, 0, states.length);
+      states = tmp;
+    }
+    boolean[] next = states[pos + 1];
+    if(next == null) {
+      next = new boolean[ns];
+      states[pos + 1] = next;
+    } else {
+      Arrays.fill(next, false);
+    }
+
+    // compute states that are reached by consuming the character
+    final boolean[] curr = states[pos];
+    boolean found = false;
+    for(int st = 0; st < ns - 1; st++) {
+      if(!curr[st]) continue;
+      final int s = entries[st], o = occs[st];
+      if(wc[s] == DOT) {
+        if(max[s] == Integer.MAX_VALUE) {
+          add(next, s, Math.min(o + 1, min[s]));
+        } else if(o < max[s]) {
+          add(next, s, o + 1);
+        } else {
+          continue;
+        }
+      } else if(wc[s] == cp) {
+        add(next, s + 1, 0);
+      } else {
+        continue;
+      }
+      found = true;
+    }
+    return found;
+  }
+
+  @Override
+  public boolean accept(final int length) {
+    return states[length][base[size]];
+  }
+
+  /**
+   * Adds a state and all states that can be reached without consuming characters.
+   * @param st states
+   * @param s wildcard entry
+   * @param o occurrences
+   */
+  private void add(final boolean[] st, final int s, final int o) {
+    final int i = base[s] + o;
+    if(!st[i]) {
+      st[i] = true;
+      if(s < size && wc[s] == DOT && o >= min[s]) add(st, s + 1, 0);
+    }
+  }
+
   /**
    * Checks if the wildcard can match a sub-string in a string.
    * @param t token to search for match
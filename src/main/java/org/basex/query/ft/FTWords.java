@@ -3,6 +3,9 @@ package org.basex.query.ft;
 import static org.basex.query.QueryText.*;
 import static org.basex.util.ft.FTFlag.*;
 
+import java.util.*;
+
+import org.basex.core.*;
 import org.basex.data.*;
 import org.basex.index.query.*;
 import org.basex.query.*;
@@ -46,6 +49,8 @@ public final class FTWords extends FTExpr {
   private int tokNum;
   /** Fast evaluation. */
   private boolean fast;
+  /** Maximum number of index results with the highest scores (0: all results). */
+  private int top;
 
   /**
    * Constructor for scan-based evaluation.
@@ -80,6 +85,16 @@ public final class FTWords extends FTExpr {
     compile(ctx);
   }
 
+  /**
+   * Limits the index-based evaluation to the results with the highest BM25 scores.
+   * @param k maximum number of results
+   * @return self reference
+   */
+  public FTWords top(final int k) {
+    top = k;
+    return this;
+  }
+
   @Override
   public void checkUp() throws QueryException {
     checkNoneUp(occ);
@@ -120,6 +135,8 @@ public final class FTWords extends FTExpr {
       FTIndexIterator iat;
       /** Text length. */
       int len;
+      /** Indicates if index scores will be assigned. */
+      boolean bm25;
 
       @Override
       public FTNode next() throws QueryException {
@@ -130,6 +147,8 @@ public final class FTWords extends FTExpr {
           FTIndexIterator ia;
           // number of distinct tokens
           int t  = 0;
+          // iterators that will be passed on to the top-k evaluation
+          final ArrayList<FTIndexIterator> tops = new ArrayList<FTIndexIterator>();
           // loop through all tokens
           final TokenSet ts = tokens(txt != null ? txt : tokens(ctx), ftt.opt);
           for(final byte[] k : ts) {
@@ -164,14 +183,27 @@ public final class FTWords extends FTExpr {
             } else {
               if(ia.size() == 0) continue;
               len = Math.max(t, len);
-              iat = FTIndexIterator.union(ia, iat);
+              if(top == 0) {
+                iat = FTIndexIterator.union(ia, iat);
+              } else {
+                tops.add(ia);
+                continue;
+              }
             }
             iat.tokenNum(++ctx.ftoknum);
           }
+          if(iat != null && top != 0) {
+            tops.add(iat);
+            final FTIndexIterator[] its = tops.toArray(new FTIndexIterator[tops.size()]);
+            iat = FTIndexIterator.top(its, top);
+            iat.tokenNum(++ctx.ftoknum);
+          }
+          bm25 = top != 0 || ctx.context.prop.is(Prop.BM25);
         }
-        // [CG] XQuery, Full-Text: check scoring in index-based model
-        return iat == null || !iat.more() ? null : new FTNode(iat.matches(),
-            data, iat.next(), len, iat.size(), -1);
+        if(iat == null || !iat.more()) return null;
+        final double s = bm25 ? iat.score() : -1;
+        return new FTNode(iat.matches(), data, iat.next(), len, iat.size(),
+            s == -1 ? -1 : Scoring.norm(s));
       }
     };
   }
@@ -393,6 +425,8 @@ public final class FTWords extends FTExpr {
 
   @Override
   public boolean uses(final Use u) {
+    // evaluation state: token number, matches, tokenizer
+    if(u == Use.STA) return true;
     if(occ != null) for(final Expr o : occ) if(o.uses(u)) return true;
     return query.uses(u);
   }
@@ -70,6 +70,11 @@ public final class FNAdmin extends StandardFunc {
     }
   }
 
+  @Override
+  public boolean environment() {
+    return true;
+  }
+
   /**
    * Lists all log files.
    * @param ctx query context
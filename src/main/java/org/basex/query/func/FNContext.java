@@ -1,5 +1,6 @@
 package org.basex.query.func;
 
+import static org.basex.query.func.Function.*;
 import static org.basex.util.Token.*;
 
 import java.util.*;
@@ -47,6 +48,11 @@ public final class FNContext extends StandardFunc {
     }
   }
 
+  @Override
+  public boolean environment() {
+    return oneOf(sig, CURRENT_DATE, CURRENT_DATETIME, CURRENT_TIME, IMPLICIT_TIMEZONE);
+  }
+
   /**
    * Returns the current date.
    * @param ctx query context
@@ -225,7 +225,7 @@ public final class FNDb extends StandardFunc {
    * @throws QueryException query exception
    */
   private Iter fulltext(final QueryContext ctx) throws QueryException {
-    return FNFt.search(data(0, ctx), ctx.value(expr[1]), null, this, ctx);
+    return FNFt.search(data(0, ctx), ctx.value(expr[1]), null, 0, this, ctx);
   }
 
   /**
@@ -777,6 +777,12 @@ public final class FNDb extends StandardFunc {
     return null;
   }
 
+  @Override
+  public boolean environment() {
+    return oneOf(sig, _DB_LIST, _DB_LIST_DETAILS, _DB_BACKUPS, _DB_SYSTEM, _DB_EXISTS,
+        _DB_IS_XML, _DB_IS_RAW, _DB_CONTENT_TYPE, _DB_RETRIEVE);
+  }
+
   @Override
   public boolean uses(final Use u) {
     final boolean up = oneOf(sig, _DB_ADD, _DB_DELETE, _DB_RENAME, _DB_REPLACE,
@@ -41,6 +41,11 @@ public final class FNFt extends StandardFunc {
   private static final byte[] WILDCARDS = token("wildcards");
   /** Search mode. */
   private static final byte[] MODE = token("mode");
+  /** Maximum number of results with the highest scores. */
+  private static final byte[] TOP = token("top");
+
+  /** Maximum number of results with the highest scores (0: all results). */
+  private int top;
 
   /**
    * Constructor.
@@ -52,6 +57,16 @@ public final class FNFt extends StandardFunc {
     super(ii, f, e);
   }
 
+  /**
+   * Indicates that only the results with the highest scores will be requested.
+   * Called for ordered FLWOR expressions, such as
+   * (for $n in ft:search(...) order by ft:score($n) descending return $n)[1].
+   * @param k maximum number of results
+   */
+  public void limit(final int k) {
+    top = k;
+  }
+
   @Override
   public Item item(final QueryContext ctx, final InputInfo ii) throws QueryException {
     switch(sig) {
@@ -176,7 +191,7 @@ public final class FNFt extends StandardFunc {
     final Value terms = ctx.value(expr[1]);
     final Item opt = expr.length > 2 ? expr[2].item(ctx, info) : null;
     final TokenMap tm = new FuncParams(Q_FTOPTIONS, info).parse(opt);
-    return search(data, terms, tm, this, ctx);
+    return search(data, terms, tm, top, this, ctx);
   }
 
   /**
@@ -184,13 +199,15 @@ public final class FNFt extends StandardFunc {
    * @param data data reference
    * @param terms query terms
    * @param map map with full-text options
+   * @param limit maximum number of results with the highest scores (0: all results)
    * @param fun calling function
    * @param ctx query context
    * @return iterator
    * @throws QueryException query exception
    */
   static Iter search(final Data data, final Value terms, final TokenMap map,
-      final StandardFunc fun, final QueryContext ctx) throws QueryException {
+      final int limit, final StandardFunc fun, final QueryContext ctx)
+      throws QueryException {
 
     final InputInfo info = fun.info;
     final IndexContext ic = new IndexContext(ctx, data, null, true);
@@ -200,6 +217,7 @@ public final class FNFt extends StandardFunc {
     final FTOpt tmp = ctx.ftOpt();
     final FTOpt opt = new FTOpt().copy(data.meta);
     FTMode m = FTMode.ANY;
+    int max = limit;
     if(map != null) {
       for(final byte[] k : map) {
         final byte[] v = map.get(k);
@@ -212,6 +230,10 @@ public final class FNFt extends StandardFunc {
         } else if(eq(k, MODE)) {
           m = FTMode.get(v);
           if(m == null) ELMOPTION.thrw(info, v);
+        } else if(eq(k, TOP)) {
+          final int t = toInt(v);
+          if(t < 1) ELMOPTION.thrw(info, v);
+          max = max == 0 ? t : Math.min(max, t);
         } else {
           ELMOPTION.thrw(info, k);
         }
@@ -220,6 +242,7 @@ public final class FNFt extends StandardFunc {
 
     ctx.ftOpt(opt);
     final FTWords words = new FTWords(info, ic.data, terms, m, ctx).compile(ctx);
+    words.top(max);
     ctx.ftOpt(tmp);
     return new FTIndexAccess(info, words, ic).iter(ctx);
   }
@@ -340,6 +340,12 @@ public final class FNGen extends StandardFunc {
         UNPARSED_TEXT_LINES, UNPARSED_TEXT_AVAILABLE, PARSE_XML, URI_COLLECTION);
   }
 
+  @Override
+  public boolean environment() {
+    return oneOf(sig, DOC_AVAILABLE, UNPARSED_TEXT, UNPARSED_TEXT_LINES,
+        UNPARSED_TEXT_AVAILABLE);
+  }
+
   @Override
   public boolean uses(final Use u) {
     return
@@ -58,6 +58,11 @@ public final class FNInfo extends StandardFunc {
     return oneOf(sig, ENVIRONMENT_VARIABLE, AVAILABLE_ENVIRONMENT_VARIABLES);
   }
 
+  @Override
+  public boolean environment() {
+    return xquery3();
+  }
+
   @Override
   public boolean uses(final Use u) {
     return u == Use.X30 && xquery3() || u == Use.NDT && oneOf(sig, ERROR, TRACE) ||
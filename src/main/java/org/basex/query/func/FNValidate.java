@@ -75,6 +75,11 @@ public final class FNValidate extends StandardFunc {
     }
   }
 
+  @Override
+  public boolean environment() {
+    return true;
+  }
+
   /**
    * Validates a document against an XML Schema.
    * @param ctx query context
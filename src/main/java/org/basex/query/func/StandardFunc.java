@@ -45,7 +45,8 @@ public abstract class StandardFunc extends Arr {
     // compile all arguments
     super.compile(ctx);
     // skip context-based or non-deterministic functions, and non-values
-    return optPre(uses(Use.CTX) || uses(Use.NDT) || !allAreValues() ? comp(ctx) :
+    return optPre(uses(Use.CTX) || uses(Use.NDT) || !allAreValues() ||
+      ctx.cached && environment() ? comp(ctx) :
       sig.ret.zeroOrOne() ? item(ctx, info) : value(ctx), ctx);
   }
 
@@ -68,6 +69,21 @@ public abstract class StandardFunc extends Arr {
     return false;
   }
 
+  @Override
+  public boolean uses(final Use u) {
+    return u == Use.ENV && environment() || super.uses(u);
+  }
+
+  /**
+   * Returns true if the function result depends on the query environment
+   * (current time, file system, list of databases, etc.). Such functions will not
+   * be pre-evaluated if the compiled query may be evaluated repeatedly.
+   * @return result of check
+   */
+  public boolean environment() {
+    return false;
+  }
+
   /**
    * Atomizes the specified item.
    * @param it input item
@@ -27,6 +27,13 @@ import org.basex.util.*;
  * @author Christian Gruen
  */
 public class AxisPath extends Path {
+  /**
+   * Maximum ratio between the costs of an additional index access and the
+   * cheapest index access of a step. If the ratio is exceeded, the predicate
+   * will be evaluated for the results of the cheapest index access.
+   */
+  private static final int INTERSECT = 8;
+
   /** Flag for result caching. */
   private boolean cache;
   /** Cached result. */
@@ -139,6 +146,8 @@ public class AxisPath extends Path {
 
     // cache index access costs
     IndexContext ics = null;
+    // index contexts of the predicates of the cheapest step
+    IndexContext[] icp = null;
     // cheapest predicate and step
     int pmin = 0;
     int smin = 0;
@@ -153,6 +162,7 @@ public class AxisPath extends Path {
       final boolean i = pathNodes(data, s) != null;
 
       // choose cheapest index access
+      final IndexContext[] icps = new IndexContext[stp.preds.length];
       for(int p = 0; p < stp.preds.length; ++p) {
         final IndexContext ic = new IndexContext(ctx, data, stp, i);
         if(!stp.preds[p].indexAccessible(ic)) continue;
@@ -167,8 +177,10 @@ public class AxisPath extends Path {
           ctx.compInfo(OPTNOINDEX, this);
           return Empty.SEQ;
         }
+        icps[p] = ic;
         if(ics == null || ics.costs() > ic.costs()) {
           ics = ic;
+          icp = icps;
           pmin = p;
           smin = s;
         }
@@ -180,7 +192,7 @@ public class AxisPath extends Path {
 
     // replace expressions for index access
     final AxisStep stp = step(smin);
-    final Expr ie = stp.preds[pmin].indexEquivalent(ics);
+    Expr ie = stp.preds[pmin].indexEquivalent(ics);
 
     if(ics.seq) {
       // sequential evaluation; do not invert path
@@ -189,11 +201,37 @@ public class AxisPath extends Path {
       // inverted path, which will be represented as predicate
       AxisStep[] invSteps = {};
 
+      // choose additional index accesses of the same step
+      final int pl = stp.preds.length;
+      final int[] costs = new int[pl];
+      int ps = 0;
+      for(int p = 0; p < pl; ++p) {
+        final IndexContext ic = icp[p];
+        if(p != pmin && ic != null && !ic.seq &&
+            ic.costs() <= (long) ics.costs() * INTERSECT) {
+          costs[p] = ic.costs();
+          ps++;
+        }
+      }
+
       // collect remaining predicates
-      final Expr[] newPreds = new Expr[stp.preds.length - 1];
+      final Expr[] newPreds = new Expr[pl - 1 - ps];
       int c = 0;
-      for(int p = 0; p != stp.preds.length; ++p) {
-        if(p != pmin) newPreds[c++] = stp.preds[p];
+      for(int p = 0; p != pl; ++p) {
+        if(p != pmin && costs[p] == 0) newPreds[c++] = stp.preds[p];
+      }
+
+      // intersect index results, starting with the most selective ones
+      if(ps != 0) {
+        costs[pmin] = ics.costs();
+        final int[] ord = Array.createOrder(costs.clone(), true);
+        final Expr[] ies = new Expr[ps + 1];
+        c = 0;
+        for(final int p : ord) {
+          if(costs[p] == 0) continue;
+          ies[c++] = p == pmin ? ie : stp.preds[p].indexEquivalent(icp[p]);
+        }
+        ie = new InterSect(info, ies, true);
       }
 
       // check if path before index step needs to be inverted and traversed
@@ -269,32 +307,42 @@ public class AxisPath extends Path {
     final Value r = root != null ? ctx.value(root) : cv;
 
     try {
-      /* cache values if:
+      /* use cached values if:
        * - caching is desirable
-       * - the code is called for the first time
-       * - the value has changed and the underlying node is not the same
+       * - the code has been called before
+       * - the value has not changed, or the underlying node is the same
+       * the cache is synchronized, as the path may be evaluated by several threads
        */
-      if(!cache || citer == null || lvalue != r && !(r instanceof ANode &&
-          lvalue instanceof ANode && ((ANode) lvalue).is((ANode) r))) {
-        lvalue = r;
-        citer = new NodeSeqBuilder().check();
-        if(r != null) {
-          final Iter ir = ctx.iter(r);
-          for(Item it; (it = ir.next()) != null;) {
-            // ensure that root only returns nodes
-            if(root != null && !(it instanceof ANode)) PATHNODE.thrw(info, it.type);
-            ctx.value = it;
-            iter(0, citer, ctx);
+      if(cache) {
+        synchronized(this) {
+          if(citer != null && (lvalue == r || r instanceof ANode &&
+              lvalue instanceof ANode && ((ANode) lvalue).is((ANode) r))) {
+            return new NodeSeqBuilder(citer.nodes, (int) citer.size());
           }
-        } else {
-          ctx.value = null;
-          iter(0, citer, ctx);
         }
-        citer.sort();
+      }
+
+      final NodeSeqBuilder nc = new NodeSeqBuilder().check();
+      if(r != null) {
+        final Iter ir = ctx.iter(r);
+        for(Item it; (it = ir.next()) != null;) {
+          // ensure that root only returns nodes
+          if(root != null && !(it instanceof ANode)) PATHNODE.thrw(info, it.type);
+          ctx.value = it;
+          iter(0, nc, ctx);
+        }
       } else {
-        citer.reset();
+        ctx.value = null;
+        iter(0, nc, ctx);
+      }
+      nc.sort();
+      if(cache) {
+        synchronized(this) {
+          lvalue = r;
+          citer = nc;
+        }
       }
-      return citer;
+      return nc;
     } finally {
       ctx.value = cv;
       ctx.size = cs;
@@ -179,8 +179,13 @@ final class DatabaseUpdates {
    * @throws QueryException query exception
    */
   void apply() throws QueryException {
-    // execute database updates
-    createAtomicUpdates(preparePrimitives()).execute(true);
+    // execute database updates; index updates are merged at the end
+    data.bulk(true);
+    try {
+      createAtomicUpdates(preparePrimitives()).execute(true);
+    } finally {
+      data.bulk(false);
+    }
 
     // execute database operations
     Collections.sort(dbops);
@@ -31,6 +31,8 @@ public final class Var extends ParseExpr {
   public boolean global;
   /** Declaration flag. */
   public boolean declared;
+  /** External flag (variable may be bound by the caller). */
+  public boolean external;
   /** Cast flag (default: {@code true}). */
   public boolean cast = true;
 
@@ -38,8 +40,8 @@ public final class Var extends ParseExpr {
   private final StaticContext sc;
   /** Variable ID. */
   private final int id;
-  /** Bound value. */
-  private Value value;
+  /** Bound value (volatile, as it is lazily assigned by {@link #init}). */
+  private volatile Value value;
   /** Bound expression. */
   private Expr expr;
 
@@ -153,6 +155,18 @@ public final class Var extends ParseExpr {
 
   @Override
   public Value value(final QueryContext ctx) throws QueryException {
+    final Value v = value;
+    return v != null ? v : init(ctx);
+  }
+
+  /**
+   * Lazily evaluates the bound expression. The method is synchronized, as global
+   * variables may be requested by several threads.
+   * @param ctx query context
+   * @return value
+   * @throws QueryException query exception
+   */
+  private synchronized Value init(final QueryContext ctx) throws QueryException {
     if(value == null) {
       if(expr == null) VAREMPTY.thrw(info, this);
       final StaticContext s = ctx.sc;
@@ -166,6 +180,14 @@ public final class Var extends ParseExpr {
     return value;
   }
 
+  /**
+   * Discards a lazily evaluated value. The expression of the variable will be
+   * evaluated again when its value is requested next time.
+   */
+  public void discard() {
+    if(expr != null && !expr.isValue()) value = null;
+  }
+
   /**
    * Checks whether the given variable is identical to this one, i.e. has the same ID.
    * @param v variable to check
@@ -194,6 +216,7 @@ public final class Var extends ParseExpr {
   public Var copy() {
     final Var v = new Var(info, name, type, id, ann, sc);
     v.global = global;
+    v.external = external;
     v.value = value;
     v.expr = expr;
     v.type = type;
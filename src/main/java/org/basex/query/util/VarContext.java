@@ -69,6 +69,15 @@ public final class VarContext extends ExprInfo {
     local.add(v);
   }
 
+  /**
+   * Adds the global and local variables of the specified context.
+   * @param vc variable context
+   */
+  public void add(final VarContext vc) {
+    for(int g = 0; g < vc.global.size; g++) global.add(vc.global.vars[g]);
+    for(int l = 0; l < vc.local.size; l++) local.add(vc.local.vars[l]);
+  }
+
   /**
    * Returns a variable with the specified name.
    * @param var variable
@@ -88,7 +88,7 @@ public final class FuncItem extends FItem {
       throws QueryException {
 
     for(int v = closure.size; --v >= 0;) ctx.vars.add(closure.vars[v].copy());
-    for(int v = vars.length; --v >= 0;) ctx.vars.add(vars[v].bind(args[v], ctx).copy());
+    for(int v = vars.length; --v >= 0;) ctx.vars.add(vars[v].copy().bind(args[v], ctx));
   }
 
   @Override
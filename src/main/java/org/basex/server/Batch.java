@@ -0,0 +1,120 @@
+package org.basex.server;
+
+import static org.basex.core.Text.*;
+
+import java.io.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.data.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * Batch of requests for adding, replacing and storing resources. All requests
+ * are applied to the opened database within a single update operation: the
+ * database is locked once, and its buffers are only flushed after the last
+ * request. Updates of the value indexes are buffered and merged at the end
+ * (see {@link Data#bulk(boolean)}). If a request fails, all subsequent requests
+ * are skipped, whereas the preceding requests remain applied. A single response
+ * is returned for the whole batch.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+final class Batch extends Progress {
+  /** Performance. */
+  private final Performance perf = new Performance();
+  /** Database context. */
+  private final Context ctx;
+  /** Data reference. */
+  private Data data;
+  /** Original value of the {@link Prop#AUTOFLUSH} option. */
+  private boolean flush;
+  /** Number of processed requests. */
+  private int count;
+  /** Error message. */
+  private String error;
+
+  /**
+   * Constructor.
+   * @param c database context
+   */
+  Batch(final Context c) {
+    ctx = c;
+    updating = true;
+  }
+
+  /**
+   * Opens the batch. The process is registered, and the database is locked.
+   * Must be called by the same thread as {@link #close()}.
+   * @throws BaseXException database exception
+   */
+  void open() throws BaseXException {
+    final Data d = ctx.data();
+    if(d == null) throw new BaseXException(NO_DB_OPENED);
+    if(!ctx.perm(Perm.WRITE, d.meta))
+      throw new BaseXException(PERM_REQUIRED_X, Perm.WRITE);
+
+    ctx.register(this);
+    if(!d.startUpdate()) {
+      ctx.unregister(this);
+      throw new BaseXException(DB_PINNED_X, d.meta.name);
+    }
+    // suppress flushes of single requests
+    final Prop prop = d.meta.prop;
+    flush = prop.is(Prop.AUTOFLUSH);
+    prop.set(Prop.AUTOFLUSH, false);
+    d.bulk(true);
+    data = d;
+  }
+
+  /**
+   * Processes a request. The request is skipped if a previous request failed.
+   * @param sc server command ({@link ServerCmd#ADD}, {@link ServerCmd#REPLACE}
+   *   or {@link ServerCmd#STORE})
+   * @param path target path
+   * @param input input stream
+   */
+  void add(final ServerCmd sc, final String path, final InputStream input) {
+    if(error != null) return;
+    try {
+      checkStop();
+    } catch(final ProgressException ex) {
+      error = TIMEOUT_EXCEEDED;
+      return;
+    }
+    final Command cmd = sc == ServerCmd.ADD ? new Add(path) :
+      sc == ServerCmd.REPLACE ? new Replace(path) : new Store(path);
+    cmd.setInput(input);
+    if(cmd.run(ctx)) count++;
+    else error = cmd.info();
+  }
+
+  /**
+   * Closes the batch. The database buffers are flushed, and the process is
+   * unregistered. The process is unregistered and the {@link Prop#AUTOFLUSH}
+   * option is restored even if the buffers cannot be flushed.
+   * @return info string
+   * @throws BaseXException database exception, raised by the first failed request
+   */
+  String close() throws BaseXException {
+    try {
+      data.bulk(false);
+    } finally {
+      data.meta.prop.set(Prop.AUTOFLUSH, flush);
+      try {
+        data.finishUpdate();
+      } finally {
+        ctx.unregister(this);
+      }
+    }
+    if(error != null) throw new BaseXException(error);
+    return Util.info(RES_BATCH_X_X, count, perf);
+  }
+
+  @Override
+  protected boolean databases(final StringList db) {
+    db.add("");
+    return true;
+  }
+}
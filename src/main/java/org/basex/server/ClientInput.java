@@ -0,0 +1,191 @@
+package org.basex.server;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+
+import org.basex.io.*;
+import org.basex.util.*;
+
+/**
+ * This class buffers the input of a client session, which is received via a
+ * non-blocking channel. A session will only be passed on to a worker thread if
+ * at least one complete request has been received. If an incomplete request
+ * exceeds {@link #MAX} bytes, the remaining bytes will be read from the blocking
+ * channel by the worker thread.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+final class ClientInput extends InputStream {
+  /** Maximum number of buffered bytes of an incomplete request. */
+  private static final int MAX = 1 << 20;
+
+  /** Socket reference. */
+  private final Socket socket;
+  /** Buffered bytes. */
+  private byte[] buffer = new byte[IO.BLOCKSIZE];
+  /** Number of buffered bytes. */
+  private int size;
+  /** Current read position. */
+  private int pos;
+  /** End of the complete requests. */
+  private int end;
+  /** Indicates if the remaining input is read from the blocking channel. */
+  private boolean stream;
+  /** Indicates if the end of the stream has been reached. */
+  private boolean eof;
+  /** Indicates if the event socket has been registered. */
+  boolean events;
+
+  /**
+   * Constructor.
+   * @param s socket
+   */
+  ClientInput(final Socket s) {
+    socket = s;
+  }
+
+  /**
+   * Reads bytes from the non-blocking channel. This method is called by the
+   * server thread before the session is passed on to a worker thread.
+   * @param auth indicates if the login data is expected
+   * @return {@code true} if the session is ready to be processed
+   */
+  boolean receive(final boolean auth) {
+    if(pos != 0) {
+      // discard bytes that have already been read
+      System.arraycopy(buffer, pos, buffer, 0, size - pos);
+      size -= pos;
+      end -= pos;
+      pos = 0;
+    }
+    stream = false;
+
+    if(size == buffer.length) buffer = Arrays.copyOf(buffer, Array.newSize(size));
+    try {
+      final int r = socket.getChannel().read(ByteBuffer.wrap(buffer, size,
+          buffer.length - size));
+      if(r == -1) eof = true;
+      else size += r;
+    } catch(final IOException ex) {
+      // connection has been closed by the client
+      Util.debug(ex);
+      eof = true;
+    }
+
+    // find the end of the complete requests; login data is a single request
+    while(!auth || end == 0) {
+      final int e = auth ? strings(end, 2) : request(end);
+      if(e == -1) break;
+      end = e;
+    }
+    // skip incomplete request if the stream has been closed
+    if(eof) size = end;
+    stream = size - end > MAX;
+    return end != 0 || eof || stream;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if(pos < limit()) return buffer[pos++] & 0xFF;
+    return eof ? -1 : socket.getInputStream().read();
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+    final int l = Math.min(len, limit() - pos);
+    if(l <= 0) return eof ? -1 : socket.getInputStream().read(b, off, len);
+    System.arraycopy(buffer, pos, b, off, l);
+    pos += l;
+    return l;
+  }
+
+  /**
+   * Returns the number of bytes that can be read without blocking.
+   * @return number of bytes
+   */
+  @Override
+  public int available() {
+    return limit() - pos;
+  }
+
+  /**
+   * Returns the number of bytes that may be read from the buffer.
+   * @return limit
+   */
+  private int limit() {
+    return stream ? size : end;
+  }
+
+  /**
+   * Returns the end offset of the request starting at the specified position.
+   * The requests and their arguments are described in {@link ServerCmd}.
+   * @param p position
+   * @return end offset, or {@code -1} if the request is incomplete
+   */
+  private int request(final int p) {
+    if(p >= size) return -1;
+    final ServerCmd sc = ServerCmd.get(buffer[p] & 0xFF);
+    switch(sc) {
+      case COMMAND:
+        // the first byte is part of the command string
+        return strings(p, 1);
+      case CREATE: case ADD: case REPLACE: case STORE:
+        return input(strings(p + 1, 1));
+      case BATCH:
+        for(int e = p + 1; e < size;) {
+          final ServerCmd bc = ServerCmd.get(buffer[e] & 0xFF);
+          // the batch ends with a zero byte or an invalid request
+          if(buffer[e] == 0 || bc != ServerCmd.ADD && bc != ServerCmd.REPLACE &&
+              bc != ServerCmd.STORE) return e + 1;
+          e = input(strings(e + 1, 1));
+          if(e == -1) break;
+        }
+        return -1;
+      case WATCH:
+        // the first request only consists of the code; the name is sent later
+        return events ? strings(p + 1, 1) : p + 1;
+      case BIND:
+        return strings(p + 1, 4);
+      case CONTEXT:
+        return strings(p + 1, 3);
+      case NEXT:
+        return strings(p + 1, 2);
+      default:
+        return strings(p + 1, 1);
+    }
+  }
+
+  /**
+   * Returns the end offset of the specified number of strings, which are
+   * terminated by zero bytes.
+   * @param p position ({@code -1} if the preceding input is incomplete)
+   * @param n number of strings
+   * @return end offset, or {@code -1} if the strings are incomplete
+   */
+  private int strings(final int p, final int n) {
+    if(p == -1) return -1;
+    int c = n;
+    for(int i = p; i < size; i++) {
+      if(buffer[i] == 0 && --c == 0) return i + 1;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the end offset of an encoded input, which is terminated by a zero
+   * byte. Zero and {@code 0xFF} bytes of the input are prefixed with {@code 0xFF}.
+   * @param p position ({@code -1} if the preceding input is incomplete)
+   * @return end offset, or {@code -1} if the input is incomplete
+   */
+  private int input(final int p) {
+    if(p == -1) return -1;
+    for(int i = p; i < size; i++) {
+      final byte b = buffer[i];
+      if(b == 0) return i + 1;
+      if(b == (byte) 0xFF) i++;
+    }
+    return -1;
+  }
+}
@@ -5,7 +5,9 @@ import static org.basex.util.Token.*;
 
 import java.io.*;
 import java.net.*;
+import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import org.basex.*;
 import org.basex.core.*;
@@ -19,16 +21,19 @@ import org.basex.util.list.*;
 
 /**
  * Server-side client session in the client-server architecture.
+ * A session is not bound to a thread: whenever a new request has been received,
+ * it will be processed by one of the worker threads of the {@link BaseXServer}.
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Andreas Weiler
  * @author Christian Gruen
  */
-public final class ClientListener extends Thread {
-  /** Timer for authentication time out. */
-  public final Timer auth = new Timer();
+public final class ClientListener implements Runnable {
+  /** Session id counter. */
+  private static final AtomicLong IDS = new AtomicLong();
+
   /** Timestamp of last interaction. */
-  public long last;
+  public volatile long last;
 
   /** Active queries. */
   private final HashMap<String, QueryListener> queries =
@@ -41,6 +46,12 @@ public final class ClientListener extends Thread {
   private final BaseXServer server;
   /** Socket reference. */
   private final Socket socket;
+  /** Buffered input of the socket. */
+  private final ClientInput input;
+  /** Session id. */
+  private final long sid = IDS.incrementAndGet();
+  /** Indicates if the session has timed out. */
+  private final AtomicBoolean timeout = new AtomicBoolean();
 
   /** Socket for events. */
   private Socket esocket;
@@ -53,11 +64,13 @@ public final class ClientListener extends Thread {
   /** Output stream. */
   private PrintOutput out;
   /** Current command. */
-  private Command command;
+  private volatile Command command;
+  /** Timestamp sent for authentication ({@code null} if not sent yet). */
+  private String ts;
   /** Query id counter. */
   private int id;
-  /** Indicates if the server thread is running. */
-  private boolean running;
+  /** Indicates if the session is authenticated and running. */
+  private volatile boolean running;
 
   /**
    * Constructor.
@@ -68,98 +81,140 @@ public final class ClientListener extends Thread {
   public ClientListener(final Socket s, final Context c, final BaseXServer srv) {
     context = new Context(c, this);
     socket = s;
+    input = new ClientInput(s);
     server = srv;
     last = System.currentTimeMillis();
-    setDaemon(true);
   }
 
+  /**
+   * Reads the input that has been sent by the client. This method is called by
+   * the server while the session is waiting for input.
+   * @return {@code true} if the session is ready to be processed
+   */
+  public boolean receive() {
+    return input.receive(!running);
+  }
+
+  /**
+   * Processes the next step of the session: sends the login timestamp, evaluates
+   * the login data, or processes all received requests. Afterwards, the session
+   * is passed back to the server, which waits for further input.
+   */
   @Override
   public void run() {
-    if(!authenticate()) return;
+    boolean ok = running ? request() : ts == null ? greet() : authenticate();
+    // process requests that have already been received
+    while(ok && running && (in.available() > 0 || input.available() > 0)) {
+      ok = request();
+    }
+    if(ok) server.idle(this);
+  }
+
+  /**
+   * Returns the session id.
+   * @return session id
+   */
+  public long getId() {
+    return sid;
+  }
+
+  /**
+   * Returns the socket channel of this session.
+   * @return channel
+   */
+  public SocketChannel channel() {
+    return socket.getChannel();
+  }
 
+  /**
+   * Processes a single request.
+   * @return {@code true} if the session is still running
+   */
+  private boolean request() {
+    command = null;
     ServerCmd sc;
     String cmd;
     try {
-      while(running) {
-        command = null;
-        try {
-          final int b = in.read();
-          if(b == -1) {
-            // end of stream: exit session
-            quit();
-            break;
-          }
-
-          last = System.currentTimeMillis();
-          perf.time();
-          sc = ServerCmd.get(b);
-          cmd = null;
-          if(sc == ServerCmd.CREATE) {
-            create();
-          } else if(sc == ServerCmd.ADD) {
-            add();
-          } else if(sc == ServerCmd.WATCH) {
-            watch();
-          } else if(sc == ServerCmd.UNWATCH) {
-            unwatch();
-          } else if(sc == ServerCmd.REPLACE) {
-            replace();
-          } else if(sc == ServerCmd.STORE) {
-            store();
-          } else if(sc != ServerCmd.COMMAND) {
-            query(sc);
-          } else {
-            // database command
-            cmd = new ByteList().add(b).add(in.readBytes()).toString();
-          }
-        } catch(final IOException ex) {
-          // this exception may be thrown if a session is stopped
+      try {
+        final int b = in.read();
+        if(b == -1) {
+          // end of stream: exit session
           quit();
-          break;
+          return false;
         }
-        if(sc != ServerCmd.COMMAND) continue;
 
-        // parse input and create command instance
-        try {
-          command = new CommandParser(cmd, context).parseSingle();
-          log(command, null);
-        } catch(final QueryException ex) {
-          // log invalid command
-          final String msg = ex.getMessage();
-          log(cmd, null);
-          log(msg, false);
-          // send 0 to mark end of potential result
-          out.write(0);
-          // send {INFO}0
-          out.writeString(msg);
-          // send 1 to mark error
-          send(false);
-          continue;
+        last = System.currentTimeMillis();
+        perf.time();
+        sc = ServerCmd.get(b);
+        cmd = null;
+        if(sc == ServerCmd.CREATE) {
+          create();
+        } else if(sc == ServerCmd.ADD) {
+          add();
+        } else if(sc == ServerCmd.WATCH) {
+          watch();
+        } else if(sc == ServerCmd.UNWATCH) {
+          unwatch();
+        } else if(sc == ServerCmd.REPLACE) {
+          replace();
+        } else if(sc == ServerCmd.STORE) {
+          store();
+        } else if(sc == ServerCmd.BATCH) {
+          batch();
+        } else if(sc != ServerCmd.COMMAND) {
+          query(sc);
+        } else {
+          // database command
+          cmd = new ByteList().add(b).add(in.readBytes()).toString();
         }
+      } catch(final IOException ex) {
+        // this exception may be thrown if a session is stopped
+        quit();
+        return false;
+      }
+      if(sc != ServerCmd.COMMAND) return running;
+
+      // parse input and create command instance
+      try {
+        command = new CommandParser(cmd, context).parseSingle();
+        log(command, null);
+      } catch(final QueryException ex) {
+        // log invalid command
+        final String msg = ex.getMessage();
+        log(cmd, null);
+        log(msg, false);
+        // send 0 to mark end of potential result
+        out.write(0);
+        // send {INFO}0
+        out.writeString(msg);
+        // send 1 to mark error
+        send(false);
+        return running;
+      }
 
-        // execute command and send {RESULT}
-        boolean ok = true;
-        String info;
-        try {
-          // run command
-          command.execute(context, new EncodingOutput(out));
-          info = command.info();
-        } catch(final BaseXException ex) {
-          ok = false;
-          info = ex.getMessage();
-          if(info.startsWith(INTERRUPTED)) info = TIMEOUT_EXCEEDED;
-        }
+      // execute command and send {RESULT}
+      boolean ok = true;
+      String info;
+      try {
+        // run command
+        cursors(command);
+        command.execute(context, new EncodingOutput(out));
+        info = command.info();
+      } catch(final BaseXException ex) {
+        ok = false;
+        info = ex.getMessage();
+        if(info.startsWith(INTERRUPTED)) info = TIMEOUT_EXCEEDED;
+      }
 
-        // send 0 to mark end of result
-        out.write(0);
-        // send info
-        info(info, ok);
+      // send 0 to mark end of result
+      out.write(0);
+      // send info
+      info(info, ok);
 
-        // stop console
-        if(command instanceof Exit) {
-          command = null;
-          quit();
-        }
+      // stop console
+      if(command instanceof Exit) {
+        command = null;
+        quit();
       }
     } catch(final IOException ex) {
       log(ex, false);
@@ -167,24 +222,36 @@ public final class ClientListener extends Thread {
       quit();
     }
     command = null;
+    return running;
   }
 
   /**
-   * Initializes a session via cram-md5.
+   * Initializes a session via cram-md5 by sending a timestamp.
    * @return success flag
    */
-  private boolean authenticate() {
+  private boolean greet() {
     try {
-      final String ts = Long.toString(System.nanoTime());
-      final byte[] address = socket.getInetAddress().getAddress();
-
-      // send {TIMESTAMP}0
+      ts = Long.toString(System.nanoTime());
+      in = new BufferInput(input);
       out = PrintOutput.get(socket.getOutputStream());
+      // send {TIMESTAMP}0
       out.print(ts);
       send(true);
+      return true;
+    } catch(final IOException ex) {
+      server.remove(this);
+      close();
+      return false;
+    }
+  }
 
-      // evaluate login data
-      in = new BufferInput(socket.getInputStream());
+  /**
+   * Evaluates the login data.
+   * @return success flag
+   */
+  private boolean authenticate() {
+    try {
+      final byte[] address = socket.getInetAddress().getAddress();
       // receive {USER}0{PASSWORD}0
       final String us = in.readString();
       final String pw = in.readString();
@@ -212,6 +279,7 @@ public final class ClientListener extends Thread {
     }
 
     server.remove(this);
+    if(!running) close();
     return running;
   }
 
@@ -227,6 +295,20 @@ public final class ClientListener extends Thread {
     }
   }
 
+  /**
+   * Exits a session that has been inactive for too long. The session is closed
+   * by a separate thread, as a running command may need to be stopped first.
+   */
+  public void timeout() {
+    if(!timeout.compareAndSet(false, true)) return;
+    new Thread() {
+      @Override
+      public void run() {
+        quit();
+      }
+    }.start();
+  }
+
   /**
    * Exits the session.
    */
@@ -241,6 +323,11 @@ public final class ClientListener extends Thread {
     }
     context.delete(this);
 
+    // release opened queries and cached queries of this session
+    for(final QueryListener ql : queries.values()) ql.close();
+    queries.clear();
+    context.queries.remove(context);
+
     try {
       new Close().run(context);
       socket.close();
@@ -373,6 +460,44 @@ public final class ClientListener extends Thread {
     execute(new Store(in.readString()));
   }
 
+  /**
+   * Processes a batch of requests.
+   * @throws IOException I/O exception
+   */
+  private void batch() throws IOException {
+    log(ServerCmd.BATCH + " [...]", null);
+    final Batch batch = new Batch(context);
+    String info = null, err = null;
+    try {
+      cursors(batch);
+      batch.open();
+    } catch(final BaseXException ex) {
+      err = ex.getMessage();
+    }
+    try {
+      // read all requests; they are skipped if the batch could not be opened
+      for(int b; (b = in.read()) > 0;) {
+        final ServerCmd sc = ServerCmd.get(b);
+        if(sc != ServerCmd.ADD && sc != ServerCmd.REPLACE && sc != ServerCmd.STORE)
+          throw new IOException("Unknown batch request: " + b);
+        final String path = in.readString();
+        final DecodingInput di = new DecodingInput(in);
+        if(err == null) batch.add(sc, path, di);
+        di.flush();
+      }
+    } finally {
+      if(err == null) {
+        try {
+          info = batch.close();
+        } catch(final BaseXException ex) {
+          err = ex.getMessage();
+        }
+      }
+    }
+    if(err == null) success(info);
+    else error(err);
+  }
+
   /**
    * Executes the specified command.
    * @param cmd command to be executed
@@ -383,6 +508,7 @@ public final class ClientListener extends Thread {
     final DecodingInput di = new DecodingInput(in);
     try {
       cmd.setInput(di);
+      cursors(cmd);
       cmd.execute(context);
       success(cmd.info());
     } catch(final BaseXException ex) {
@@ -391,19 +517,35 @@ public final class ClientListener extends Thread {
     }
   }
 
+  /**
+   * Checks if the specified process requests locks that conflict with the locks
+   * held by an open cursor of this session. As cursors are only accessed by their
+   * own session, the process would otherwise be blocked until the cursor is closed
+   * or has timed out.
+   * @param pr process
+   * @throws BaseXException database exception
+   */
+  private void cursors(final Progress pr) throws BaseXException {
+    for(final Map.Entry<String, QueryListener> ql : queries.entrySet()) {
+      final boolean upd = pr instanceof Command ?
+          ((Command) pr).updating(context) : pr.updating;
+      if(ql.getValue().conflicts(pr, upd))
+        throw new BaseXException(CURSOR_CONFLICT_X, ql.getKey());
+    }
+  }
+
   /**
    * Watches an event.
    * @throws IOException I/O exception
    */
   private void watch() throws IOException {
-    server.initEvents();
-
     // initialize server-based event handling
     if(!events) {
       out.writeString(Integer.toString(context.mprop.num(MainProp.EVENTPORT)));
       out.writeString(Long.toString(getId()));
       out.flush();
       events = true;
+      input.events = true;
     }
     final String name = in.readString();
     final Sessions s = context.events.get(name);
@@ -484,10 +626,13 @@ public final class ClientListener extends Thread {
           info.append(val);
           if(!typ.isEmpty()) info.append(" as ").append(typ);
         } else if(sc == ServerCmd.ITER) {
+          cursors(qp.process());
           qp.execute(true, out, true, false);
         } else if(sc == ServerCmd.EXEC) {
+          cursors(qp.process());
           qp.execute(false, out, true, false);
         } else if(sc == ServerCmd.FULL) {
+          cursors(qp.process());
           qp.execute(true, out, true, true);
         } else if(sc == ServerCmd.INFO) {
           out.print(qp.info());
@@ -496,9 +641,10 @@ public final class ClientListener extends Thread {
         } else if(sc == ServerCmd.UPDATING) {
           out.print(Boolean.toString(qp.updating()));
         } else if(sc == ServerCmd.CLOSE) {
-          queries.remove(arg);
+          queries.remove(arg).close();
         } else if(sc == ServerCmd.NEXT) {
-          throw new Exception("Protocol for query iteration is out-of-date.");
+          cursors(qp.process());
+          qp.next(Integer.parseInt(in.readString()), out);
         }
         // send 0 as end marker
         out.write(0);
@@ -514,7 +660,8 @@ public final class ClientListener extends Thread {
       err = Util.message(ex);
       log(sc + "[" + arg + ']', null);
       log(err, false);
-      queries.remove(arg);
+      final QueryListener ql = queries.remove(arg);
+      if(ql != null) ql.close();
     }
     if(err != null) {
       // send 0 as end marker, 1 as error flag, and {MSG}0
@@ -525,6 +672,17 @@ public final class ClientListener extends Thread {
     out.flush();
   }
 
+  /**
+   * Closes the socket of a session that has not been authenticated.
+   */
+  private void close() {
+    try {
+      socket.close();
+    } catch(final IOException ex) {
+      Util.debug(ex);
+    }
+  }
+
   /**
    * Sends a success flag to the client (0: true, 1: false).
    * @param ok success flag
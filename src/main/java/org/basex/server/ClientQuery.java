@@ -71,8 +71,15 @@ public class ClientQuery extends Query {
 
   @Override
   protected void cache() throws IOException {
-    cs.sout.write(ServerCmd.ITER.code);
-    cs.send(id);
+    cs.endBatch();
+    if(page > 0) {
+      cs.sout.write(ServerCmd.NEXT.code);
+      cs.send(id);
+      cs.send(Integer.toString(page));
+    } else {
+      cs.sout.write(ServerCmd.ITER.code);
+      cs.send(id);
+    }
     cs.sout.flush();
     final BufferInput bi = new BufferInput(cs.sin);
     cache(bi);
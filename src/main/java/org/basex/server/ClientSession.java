@@ -44,6 +44,8 @@ public class ClientSession extends Session {
   private final String ehost;
   /** Socket event reference. */
   private Socket esocket;
+  /** Indicates if a batch has been started. */
+  private boolean batch;
 
   /**
    * Constructor, specifying login data.
@@ -131,17 +133,36 @@ public class ClientSession extends Session {
 
   @Override
   public void add(final String path, final InputStream input) throws IOException {
-    send(ServerCmd.ADD, input, path);
+    if(batch) batch(ServerCmd.ADD, input, path);
+    else send(ServerCmd.ADD, input, path);
   }
 
   @Override
   public void replace(final String path, final InputStream input) throws IOException {
-    send(ServerCmd.REPLACE, input, path);
+    if(batch) batch(ServerCmd.REPLACE, input, path);
+    else send(ServerCmd.REPLACE, input, path);
   }
 
   @Override
   public void store(final String path, final InputStream input) throws IOException {
-    send(ServerCmd.STORE, input, path);
+    if(batch) batch(ServerCmd.STORE, input, path);
+    else send(ServerCmd.STORE, input, path);
+  }
+
+  @Override
+  public void beginBatch() throws IOException {
+    endBatch();
+    sout.write(ServerCmd.BATCH.code);
+    batch = true;
+  }
+
+  @Override
+  public void endBatch() throws IOException {
+    if(!batch) return;
+    batch = false;
+    sout.write(0);
+    sout.flush();
+    receive(null);
   }
 
   @Override
@@ -157,6 +178,7 @@ public class ClientSession extends Session {
 
   @Override
   protected void execute(final String cmd, final OutputStream os) throws IOException {
+    endBatch();
     send(cmd);
     sout.flush();
     receive(os);
@@ -176,6 +198,7 @@ public class ClientSession extends Session {
   public void watch(final String name, final EventNotifier notifier)
       throws IOException {
 
+    endBatch();
     sout.write(ServerCmd.WATCH.code);
     if(esocket == null) {
       sout.flush();
@@ -204,6 +227,7 @@ public class ClientSession extends Session {
    * @throws IOException I/O exception
    */
   public void unwatch(final String name) throws IOException {
+    endBatch();
     sout.write(ServerCmd.UNWATCH.code);
     send(name);
     sout.flush();
@@ -239,11 +263,20 @@ public class ClientSession extends Session {
    * @throws IOException I/O exception
    */
   private void send(final InputStream input) throws IOException {
+    encode(input);
+    sout.flush();
+    receive(null);
+  }
+
+  /**
+   * Sends the specified stream to the server without waiting for a response.
+   * @param input input stream
+   * @throws IOException I/O exception
+   */
+  private void encode(final InputStream input) throws IOException {
     final EncodingOutput eo = new EncodingOutput(sout);
     for(int b; (b = input.read()) != -1;) eo.write(b);
     sout.write(0);
-    sout.flush();
-    receive(null);
   }
 
   /**
@@ -279,11 +312,27 @@ public class ClientSession extends Session {
   protected void send(final ServerCmd cmd, final InputStream input,
       final String... strings) throws IOException {
 
+    endBatch();
     sout.write(cmd.code);
     for(final String s : strings) send(s);
     send(input);
   }
 
+  /**
+   * Adds the specified command, string arguments and input to the current batch.
+   * @param cmd command
+   * @param input input stream
+   * @param strings string arguments
+   * @throws IOException I/O exception
+   */
+  private void batch(final ServerCmd cmd, final InputStream input,
+      final String... strings) throws IOException {
+
+    sout.write(cmd.code);
+    for(final String s : strings) send(s);
+    encode(input);
+  }
+
   /**
    * Retrieves data from the server.
    * @param bi buffered server input
@@ -317,6 +366,7 @@ public class ClientSession extends Session {
   protected String exec(final ServerCmd cmd, final String arg, final OutputStream os)
       throws IOException {
 
+    endBatch();
     final OutputStream o = os == null ? new ArrayOutput() : os;
     sout.write(cmd.code);
     send(arg);
@@ -43,7 +43,8 @@ public class LocalQuery extends Query {
   @Override
   protected void cache() throws IOException {
     final ArrayOutput ao = new ArrayOutput();
-    ql.execute(true, ao, true, false);
+    if(page > 0) ql.next(page, ao);
+    else ql.execute(true, ao, true, false);
     cache(new ArrayInput(ao.toArray()));
   }
 
@@ -71,5 +72,6 @@ public class LocalQuery extends Query {
 
   @Override
   public void close() {
+    ql.close();
   }
 }
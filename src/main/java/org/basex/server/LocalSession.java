@@ -17,6 +17,8 @@ import org.basex.util.*;
 public class LocalSession extends Session {
   /** Database context. */
   protected final Context ctx;
+  /** Active batch ({@code null} if no batch has been started). */
+  private Batch batch;
 
   /**
    * Default constructor.
@@ -73,17 +75,36 @@ public class LocalSession extends Session {
 
   @Override
   public void add(final String path, final InputStream input) throws IOException {
-    execute(new Add(path), input);
+    if(batch != null) batch.add(ServerCmd.ADD, path, input);
+    else execute(new Add(path), input);
   }
 
   @Override
   public void replace(final String path, final InputStream input) throws IOException {
-    execute(new Replace(path), input);
+    if(batch != null) batch.add(ServerCmd.REPLACE, path, input);
+    else execute(new Replace(path), input);
   }
 
   @Override
   public void store(final String path, final InputStream input) throws IOException {
-    execute(new Store(path), input);
+    if(batch != null) batch.add(ServerCmd.STORE, path, input);
+    else execute(new Store(path), input);
+  }
+
+  @Override
+  public void beginBatch() throws BaseXException {
+    endBatch();
+    final Batch b = new Batch(ctx);
+    b.open();
+    batch = b;
+  }
+
+  @Override
+  public void endBatch() throws BaseXException {
+    if(batch == null) return;
+    final Batch b = batch;
+    batch = null;
+    info = b.close();
   }
 
   /**
@@ -93,18 +114,25 @@ public class LocalSession extends Session {
    * @throws BaseXException database exception
    */
   private void execute(final Command cmd, final InputStream input) throws BaseXException {
+    endBatch();
     cmd.setInput(input);
     cmd.execute(ctx);
     info = cmd.info();
   }
 
   @Override
-  public LocalQuery query(final String query) {
+  public LocalQuery query(final String query) throws BaseXException {
+    endBatch();
     return new LocalQuery(query, ctx, out);
   }
 
   @Override
   public synchronized void close() {
+    try {
+      endBatch();
+    } catch(final BaseXException ex) {
+      Util.debug(ex);
+    }
     new Close().run(ctx);
   }
 
@@ -119,6 +147,7 @@ public class LocalSession extends Session {
 
   @Override
   protected void execute(final Command cmd, final OutputStream os) throws BaseXException {
+    endBatch();
     cmd.execute(ctx, os);
     info = cmd.info();
   }
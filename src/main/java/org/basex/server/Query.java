@@ -26,6 +26,10 @@ public abstract class Query {
   protected ByteList types;
   /** Cache pointer. */
   protected int pos;
+  /** Number of results fetched per page (0: all results are fetched at once). */
+  protected int page;
+  /** Indicates if the last page has been fetched. */
+  private boolean last;
 
   /**
    * Binds a value to an external variable.
@@ -70,7 +74,7 @@ public abstract class Query {
    * @throws IOException I/O exception
    */
   public boolean more() throws IOException {
-    if(cache == null) cache();
+    if(cache == null || pos == cache.size() && !last) cache();
     if(pos < cache.size()) return true;
     cache = null;
     types = null;
@@ -78,7 +82,17 @@ public abstract class Query {
   }
 
   /**
-   * Caches the query result.
+   * Fetches the results in pages of the specified size. Results will then be
+   * evaluated lazily, and the query will be kept open on the server until all
+   * results have been fetched or the query is closed.
+   * @param n number of results per page (0: fetch all results at once)
+   */
+  public final void page(final int n) {
+    page = Math.max(0, n);
+  }
+
+  /**
+   * Caches the query result, or the next page of results.
    * @throws IOException I/O exception
    */
   protected abstract void cache() throws IOException;
@@ -124,6 +138,8 @@ public abstract class Query {
       types.add(t);
       bl.reset();
     }
+    pos = 0;
+    last = page == 0 || cache.size() < page;
   }
 
   /**
@@ -5,6 +5,7 @@ import static org.basex.io.serial.SerializerProp.*;
 import static org.basex.query.util.Err.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.basex.core.*;
 import org.basex.io.out.*;
@@ -13,6 +14,7 @@ import org.basex.query.*;
 import org.basex.query.iter.*;
 import org.basex.query.value.item.*;
 import org.basex.util.*;
+import org.basex.util.list.*;
 
 /**
  * Server-side query session in the client-server architecture.
@@ -26,10 +28,18 @@ final class QueryListener extends Progress {
   final Performance perf = new Performance();
   /** Query info. */
   private final QueryInfo qi = new QueryInfo();
-  /** Query processor. */
-  private final QueryProcessor qp;
+  /** Bound variables (name, value, type). */
+  private final ArrayList<Object[]> vars = new ArrayList<Object[]>();
+  /** Query string. */
+  private final String query;
   /** Database context. */
   private final Context ctx;
+  /** Query processor. */
+  private QueryProcessor qp;
+  /** Indicates if the compiled query may be cached (only done for client sessions). */
+  private boolean cache;
+  /** Indicates if a cached query is evaluated. */
+  private boolean cached;
 
   /** Query info. */
   private String info = "";
@@ -37,6 +47,8 @@ final class QueryListener extends Progress {
   private SerializerProp options;
   /** Closed flag. */
   private boolean closed;
+  /** Server-side cursor ({@code null} if no results have been fetched in pages). */
+  private Cursor cursor;
 
   /**
    * Constructor.
@@ -45,7 +57,9 @@ final class QueryListener extends Progress {
    */
   QueryListener(final String qu, final Context c) {
     qp = new QueryProcessor(qu, c);
+    query = qu;
     ctx = c;
+    cache = c.listener != null;
   }
 
   /**
@@ -62,6 +76,9 @@ final class QueryListener extends Progress {
     } catch(final QueryException ex) {
       throw new BaseXException(ex);
     }
+    // variables that are bound after parsing are not considered by the cache
+    if(options == null) vars.add(new Object[] { n, v, t });
+    else cache = false;
   }
 
   /**
@@ -72,6 +89,9 @@ final class QueryListener extends Progress {
    */
   void context(final Object v, final String t) throws IOException {
     check();
+    // cached queries have already been compiled with another context
+    if(cached) restart();
+    cache = false;
     try {
       qp.context(v, t);
     } catch(final QueryException ex) {
@@ -119,7 +139,7 @@ final class QueryListener extends Progress {
       final boolean full) throws IOException {
 
     check();
-    boolean init = false;
+    boolean init = false, ok = false;
     try {
       // parses the query
       init();
@@ -163,6 +183,7 @@ final class QueryListener extends Progress {
 
         // generate query info
         info = qi.toString(qp, po, c, ctx.prop.is(Prop.QUERYINFO));
+        ok = true;
 
       } catch(final QueryException ex) {
         throw new BaseXException(ex);
@@ -173,12 +194,67 @@ final class QueryListener extends Progress {
         throw new BaseXException(TIMEOUT_EXCEEDED);
       }
     } finally {
-      // close processor and stop monitoring
-      qp.close();
-      closed = true;
       // unregisters the process
       if(init) ctx.unregister(qp);
+      if(!ok) close();
+    }
+    // pass on query to the cache, or close it
+    closed = true;
+    if(cache) ctx.queries.put(query, vars(), qp);
+    else qp.close();
+  }
+
+  /**
+   * Writes the next page of results to the specified stream. When this method
+   * is called for the first time, a cursor is opened, which evaluates the query
+   * in a separate thread and is suspended until the next page is requested.
+   * An empty page is returned if all results have been fetched.
+   * @param n maximum number of items
+   * @param out output stream
+   * @throws IOException I/O Exception
+   */
+  void next(final int n, final OutputStream out) throws IOException {
+    if(cursor == null) {
+      check();
+      init();
+      cursor = new Cursor();
+      cursor.start();
     }
+    out.write(cursor.next(n));
+  }
+
+  /**
+   * Returns the query processor. The query will be parsed if this has not been
+   * done yet.
+   * @return query processor
+   * @throws IOException I/O Exception
+   */
+  QueryProcessor process() throws IOException {
+    init();
+    return qp;
+  }
+
+  /**
+   * Checks if the specified process requests locks that conflict with the locks
+   * held by the open cursor of this query.
+   * @param pr process
+   * @param upd updating flag of the process
+   * @return result of check
+   */
+  boolean conflicts(final Progress pr, final boolean upd) {
+    final Cursor c = cursor;
+    return c != null && pr != qp && c.open() &&
+        ctx.conflicts(c.locked, qp.updating, ctx.locked(pr), upd);
+  }
+
+  /**
+   * Closes the query if it has not been evaluated yet.
+   */
+  void close() {
+    if(closed) return;
+    closed = true;
+    if(cursor != null) cursor.close();
+    else qp.close();
   }
 
   /**
@@ -190,7 +266,17 @@ final class QueryListener extends Progress {
     try {
       perf.time();
       check();
-      qp.parse();
+      final QueryProcessor cqp = cache ? ctx.queries.get(query, vars(), ctx) : null;
+      if(cqp != null) {
+        // evaluate cached query and bind variables again
+        qp.close();
+        qp = cqp;
+        cached = true;
+        for(final Object[] v : vars) qp.bind((String) v[0], v[1], (String) v[2]);
+      } else {
+        qp.ctx.cached = cache;
+        qp.parse();
+      }
       qi.pars = perf.time();
     } catch(final QueryException ex) {
       throw new BaseXException(ex);
@@ -198,11 +284,221 @@ final class QueryListener extends Progress {
     options = qp.ctx.serParams(false);
   }
 
+  /**
+   * Replaces a cached query with a new instance.
+   * @throws IOException I/O Exception
+   */
+  private void restart() throws IOException {
+    qp.close();
+    qp = new QueryProcessor(query, ctx);
+    cached = false;
+    options = null;
+    try {
+      for(final Object[] v : vars) qp.bind((String) v[0], v[1], (String) v[2]);
+    } catch(final QueryException ex) {
+      throw new BaseXException(ex);
+    }
+  }
+
+  /**
+   * Returns the names and types of the bound variables.
+   * @return string
+   */
+  private String vars() {
+    final StringBuilder sb = new StringBuilder();
+    for(final Object[] v : vars) sb.append(v[0]).append(' ').append(v[2]).append('\n');
+    return sb.toString();
+  }
+
   /**
    * Checks if the query has not been closed yet.
    * @throws IOException I/O Exception
    */
   private void check() throws IOException {
-    if(closed) throw new BaseXException(ALREADY_EXECUTED);
+    if(closed || cursor != null) throw new BaseXException(ALREADY_EXECUTED);
+  }
+
+  /**
+   * Server-side cursor. The query is registered, compiled and iterated by a
+   * separate thread, as the locks of a process are bound to the thread by which
+   * they have been acquired. The thread serializes pages of the requested size
+   * and waits for the next request. It is stopped if no page is requested for
+   * {@link MainProp#CURSORTIMEOUT} seconds. If results are wrapped, they are
+   * returned as a single item, as it is done by {@link #execute}.
+   */
+  private final class Cursor extends Thread {
+    /** Databases locked by the cursor ({@code null}: all databases). */
+    final StringList locked = ctx.locked(qp);
+    /** Number of requested items (0: no request, -1: cursor was closed). */
+    private int requested;
+    /** Serialized items of the current page ({@code null} if not available). */
+    private byte[] page;
+    /** Error message. */
+    private String error;
+    /** Indicates if the thread has terminated. */
+    private boolean done;
+
+    /**
+     * Constructor.
+     */
+    Cursor() {
+      setDaemon(true);
+    }
+
+    /**
+     * Requests the next page and waits until it is available.
+     * @param n maximum number of items
+     * @return serialized items
+     * @throws IOException I/O Exception
+     */
+    synchronized byte[] next(final int n) throws IOException {
+      if(!done) {
+        requested = Math.max(1, n);
+        notifyAll();
+      }
+      try {
+        while(page == null && !done) wait();
+      } catch(final InterruptedException ex) {
+        throw new BaseXException(ex);
+      }
+      if(error != null) throw new BaseXException(error);
+      final byte[] p = page == null ? new byte[0] : page;
+      page = null;
+      return p;
+    }
+
+    /**
+     * Indicates if the cursor is still evaluating the query.
+     * @return result of check
+     */
+    synchronized boolean open() {
+      return !done;
+    }
+
+    /**
+     * Closes the cursor.
+     */
+    synchronized void close() {
+      if(done) return;
+      requested = -1;
+      notifyAll();
+      qp.stop();
+    }
+
+    @Override
+    public void run() {
+      boolean init = false, ok = false;
+      try {
+        // registers the process
+        ctx.register(qp);
+        init = true;
+
+        qp.compile();
+        qi.cmpl = perf.time();
+        final Iter ir = qp.iter();
+        qi.evlt = perf.time();
+        final boolean wrap = !options.get(S_WRAP_PREFIX).isEmpty();
+
+        final ArrayOutput ao = new ArrayOutput();
+        final PrintOutput po = PrintOutput.get(new EncodingOutput(ao));
+        if(wrap) po.write(1);
+        final Serializer ser = Serializer.get(po, options);
+        int c = 0;
+        while(!ok) {
+          final int n = await();
+          if(n < 0) return;
+          // serialize next page (wrapped results are returned in a single page)
+          int i = 0;
+          for(Item it; (wrap || i < n) && (it = ir.next()) != null; i++) {
+            if(!wrap) {
+              po.write(it.typeId());
+              ser.reset();
+            }
+            ser.serialize(it);
+            if(!wrap) {
+              po.flush();
+              ao.write(0);
+            }
+          }
+          c += i;
+          if(wrap || i < n) {
+            // generate query info
+            ser.close();
+            if(wrap) {
+              po.flush();
+              ao.write(0);
+            }
+            qi.srlz = perf.time();
+            info = qi.toString(qp, po, c, ctx.prop.is(Prop.QUERYINFO));
+            ok = true;
+          }
+          publish(ao.toArray());
+          ao.reset();
+        }
+      } catch(final QueryException ex) {
+        fail(ex.getMessage());
+      } catch(final StackOverflowError ex) {
+        Util.debug(ex);
+        fail(CIRCLDECL.desc);
+      } catch(final ProgressException ex) {
+        fail(TIMEOUT_EXCEEDED);
+      } catch(final Throwable ex) {
+        fail(Util.message(ex));
+      } finally {
+        // unregisters the process
+        if(init) ctx.unregister(qp);
+        final boolean keep;
+        synchronized(this) {
+          keep = ok && cache && requested >= 0;
+          done = true;
+          notifyAll();
+        }
+        // pass on query to the cache, or close it
+        if(keep) ctx.queries.put(query, vars(), qp);
+        else qp.close();
+      }
+    }
+
+    /**
+     * Waits for the next request.
+     * @return number of requested items, or {@code -1} if the cursor was closed
+     */
+    private synchronized int await() {
+      final long ms = ctx.mprop.num(MainProp.CURSORTIMEOUT) * 1000L;
+      final long end = System.currentTimeMillis() + ms;
+      try {
+        while(requested == 0) {
+          if(ms == 0) {
+            wait();
+          } else {
+            final long w = end - System.currentTimeMillis();
+            if(w <= 0) throw new ProgressException();
+            wait(w);
+          }
+        }
+      } catch(final InterruptedException ex) {
+        throw new ProgressException();
+      }
+      final int n = requested;
+      if(n > 0) requested = 0;
+      return n;
+    }
+
+    /**
+     * Passes on a serialized page.
+     * @param p page
+     */
+    private synchronized void publish(final byte[] p) {
+      page = p;
+      notifyAll();
+    }
+
+    /**
+     * Assigns an error message, unless the cursor has been closed.
+     * @param msg error message
+     */
+    private synchronized void fail(final String msg) {
+      if(requested >= 0) error = msg;
+    }
   }
 }
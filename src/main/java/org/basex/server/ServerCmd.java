@@ -9,7 +9,7 @@ package org.basex.server;
 public enum ServerCmd {
   /** Code for creating a query process: {query}0. */
   QUERY(0),
-  /** Code for iterating results (obsolete). */
+  /** Code for returning the next page of results: {id}0{count}0. */
   NEXT(1),
   /** Code for closing the query: {id}0. */
   CLOSE(2),
@@ -37,6 +37,8 @@ public enum ServerCmd {
   STORE(13),
   /** Code for binding a context item: {id}0{val}0{type}0. */
   CONTEXT(14),
+  /** Code for a batch of ADD, REPLACE and STORE requests: ({code}{path}0{input}0)*0. */
+  BATCH(15),
   /** Code for returning the update flag: {id}0. */
   UPDATING(30),
   /** Code for executing a query and returning all information relevant for XQJ: {id}0. */
@@ -95,6 +95,27 @@ public abstract class Session {
   public abstract void store(final String path, final InputStream input)
       throws IOException;
 
+  /**
+   * Starts a batch. Documents that are subsequently passed on to {@link #add},
+   * {@link #replace} and {@link #store} are sent back-to-back, without waiting
+   * for responses, and they are applied to the opened database within a single
+   * update operation. Only these three requests can be batched: no individual
+   * responses are returned, and a single response for the whole batch is
+   * received by {@link #endBatch()}. The batch is finished by calling
+   * {@link #endBatch()}, or by any other request.
+   * @throws IOException I/O exception
+   */
+  public abstract void beginBatch() throws IOException;
+
+  /**
+   * Finishes a batch. Does nothing if no batch has been started.
+   * If a request has failed, all subsequent requests have been skipped.
+   * The batch is no transaction: all requests preceding the failed request
+   * remain applied.
+   * @throws IOException I/O exception, or error of the first failed request
+   */
+  public abstract void endBatch() throws IOException;
+
   /**
    * Returns command info as a string, regardless of whether an output stream
    * was specified.
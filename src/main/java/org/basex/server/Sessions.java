@@ -3,6 +3,7 @@ package org.basex.server;
 import static org.basex.core.Text.*;
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import org.basex.util.*;
 import org.basex.util.list.*;
@@ -14,6 +15,9 @@ import org.basex.util.list.*;
  * @author Christian Gruen
  */
 public final class Sessions extends CopyOnWriteArrayList<ClientListener> {
+  /** Number of client requests that are waiting to be processed by the server. */
+  public final AtomicInteger queued = new AtomicInteger();
+
   /**
    * Returns information about the currently opened sessions.
    * @return data reference
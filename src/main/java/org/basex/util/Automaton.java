@@ -0,0 +1,28 @@
+package org.basex.util;
+
+/**
+ * Automaton for matching tokens. The characters of a token are passed on one by
+ * one, and the states reached after each character are kept. If tokens are
+ * processed in sorted order, the states of common prefixes can be reused, and
+ * all tokens can be skipped that start with a prefix that cannot be accepted.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+public interface Automaton {
+  /**
+   * Consumes a character. The states for the preceding characters of the token
+   * must have been computed by previous calls.
+   * @param pos character position
+   * @param cp codepoint
+   * @return {@code false} if no token with the current prefix can be accepted
+   */
+  boolean step(int pos, int cp);
+
+  /**
+   * Checks if a token is accepted, the characters of which have been consumed
+   * via {@link #step}.
+   * @param length number of characters
+   * @return result of check
+   */
+  boolean accept(int length);
+}
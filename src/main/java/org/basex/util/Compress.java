@@ -19,10 +19,6 @@ public final class Compress {
   private int pc;
   /** Pack offset. */
   private int po;
-  /** Current unpack position. */
-  private int uc;
-  /** Unpack offset. */
-  private int uo;
 
   /**
    * Compresses the specified text.
@@ -94,74 +90,49 @@ public final class Compress {
    */
   public byte[] unpack(final byte[] txt) {
     // initialize decompression
-    final byte[] tmp = bl.get();
-    bl.set(txt);
-    uc = Num.length(txt, 0);
-    uo = 0;
-
-    // read packer bit
-    pull();
-    // choose mapping
-    final byte[] unpack = pull() ? UNPACK1 : UNPACK2;
+    final int tl = txt.length, l = Num.get(txt, 0);
+    int c = Num.length(txt, 0);
+    // bit buffer: bits are consumed from the lowest position,
+    // and a character is encoded with at most 12 bits
+    long buf = 0;
+    int bits = 0;
+    for(; bits <= 56 && c < tl; bits += 8) buf |= (txt[c++] & 0xFFL) << bits;
+
+    // skip packer bit and choose mapping
+    final byte[] unpack = (buf & 2) != 0 ? UNPACK1 : UNPACK2;
+    buf >>>= 2;
+    bits -= 2;
 
     // decompress all characters
-    final int l = Num.get(txt, 0);
     final byte[] res = new byte[l];
     for(int r = 0; r < l; r++) {
-      final int b;
-      if(pull()) { // 1 xxx
-        b = pull(3);
-      } else if(pull()) { // 01 xxx
-        b = pull(3) | 0x08;
-      } else if(pull()) { // 001 xxxx
-        b = pull(4) | 0x10;
-      } else if(pull()) { // 0001 xxxxx
-        b = pull(5) | 0x20;
+      if(bits < 12) {
+        for(; bits <= 56 && c < tl; bits += 8) buf |= (txt[c++] & 0xFFL) << bits;
+      }
+      final int b, s;
+      if((buf & 1) != 0) { // 1 xxx
+        b = (int) (buf >>> 1) & 0x07;
+        s = 4;
+      } else if((buf & 2) != 0) { // 01 xxx
+        b = (int) (buf >>> 2) & 0x07 | 0x08;
+        s = 5;
+      } else if((buf & 4) != 0) { // 001 xxxx
+        b = (int) (buf >>> 3) & 0x0F | 0x10;
+        s = 7;
+      } else if((buf & 8) != 0) { // 0001 xxxxx
+        b = (int) (buf >>> 4) & 0x1F | 0x20;
+        s = 9;
       } else { // 0000 xxxxxxxx
-        b = pull(8);
+        b = (int) (buf >>> 4) & 0xFF;
+        s = 12;
       }
+      buf >>>= s;
+      bits -= s;
       res[r] = (byte) (b >= 128 ? b : unpack[b]);
     }
-    // make sure that the external txt byte array does not remain in this class
-    bl.set(tmp);
     return res;
   }
 
-  /**
-   * Pulls the specified number of bits and returns the result.
-   * @param s number of bytes
-   * @return result
-   */
-  private int pull(final int s) {
-    int oo = uo, cc = uc, x = 0;
-    final byte[] l = bl.get();
-    for(int i = 0; i < s; i++) {
-      if((l[cc] & 1 << oo) != 0) x |= 1 << i;
-      if(++oo == 8) {
-        oo = 0;
-        ++cc;
-      }
-    }
-    uo = oo;
-    uc = cc;
-    return x;
-  }
-
-  /**
-   * Pulls a single bit.
-   * @return result
-   */
-  private boolean pull() {
-    int oo = uo;
-    final boolean b = (bl.get()[uc] & 1 << oo) != 0;
-    if(++oo == 8) {
-      oo = 0;
-      ++uc;
-    }
-    uo = oo;
-    return b;
-  }
-
   /** First mapping for unpacking data. */
   private static final byte[] UNPACK1 = {
     0x20, 0x61, 0x65, 0x6E, 0x69, 0x6F, 0x72, 0x73, // encode via 1 xxx
@@ -8,14 +8,25 @@ import static org.basex.util.Token.*;
  * and deletions of ones, and Damerau (1964): A technique for computer
  * detection and correction of spelling errors.
  *
+ * The class can also be used as {@link Automaton}: a matrix row is computed
+ * for each character of a token, and the rows of common prefixes are reused.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
-public final class Levenshtein {
+public final class Levenshtein implements Automaton {
   /** Maximum token size. */
   private static final int MAX = 50;
   /** Matrix for calculating Levenshtein distance. */
   private int[][] matrix;
+  /** Normalized characters of the compared token. */
+  private final int[] tc = new int[MAX];
+  /** Normalized characters of the sub token. */
+  private final int[] sc = new int[MAX];
+  /** Number of characters of the sub token. */
+  private int sl;
+  /** Maximum number of accepted errors. */
+  private int k;
 
   /**
    * Compares two character arrays for similarity.
@@ -25,57 +36,73 @@ public final class Levenshtein {
    * @return true if the arrays are similar
    */
   public boolean similar(final byte[] token, final byte[] sub, final int err) {
-    int sl = 0, tl = 0;
-    for(int s = 0; s < sub.length; s += cl(sub, s)) ++sl;
+    int tl = 0;
     for(int t = 0; t < token.length; t += cl(token, t)) ++tl;
     if(tl == 0) return false;
 
     // use exact search for too short and too long values
-    if(sl < 4 || tl > MAX || sl > MAX) return sl == tl && same(token, sub);
+    if(!init(sub, err) || tl > MAX) return sl == tl && same(token, sub);
 
     // skip different tokens with too different lengths
-    final int k = err == 0 ? Math.max(1, sl >> 2) : err;
-    return Math.abs(sl - tl) <= k && ls(token, tl, sub, sl, k);
+    if(Math.abs(sl - tl) > k) return false;
+    for(int t = 0, c = 0; t < token.length; t += cl(token, t)) {
+      if(!step(c++, cp(token, t))) return false;
+    }
+    return accept(tl);
   }
 
   /**
-   * Calculates a Levenshtein distance.
-   * @param tk token to be compared
-   * @param tl token length
-   * @param sb sub token to be compared
-   * @param sl string length
-   * @param k maximum number of accepted errors
-   * @return true if the arrays are similar
+   * Initializes the comparison of tokens with the specified sub token
+   * via {@link #step} and {@link #accept}.
+   * @param sub sub token to be compared
+   * @param err number of allowed errors; dynamic calculation if value is 0
+   * @return {@code false} if tokens must be compared via {@link #similar},
+   *   as the sub token is too short or too long
    */
-  private boolean ls(final byte[] tk, final int tl, final byte[] sb, final int sl,
-      final int k) {
+  public boolean init(final byte[] sub, final int err) {
+    sl = 0;
+    for(int s = 0; s < sub.length; s += cl(sub, s)) {
+      if(sl < MAX) sc[sl] = norm(lc(cp(sub, s)));
+      ++sl;
+    }
+    if(sl < 4 || sl > MAX) return false;
 
-    int[][] m = matrix;
-    if(m == null) {
-      m = new int[MAX + 2][MAX + 2];
+    k = err == 0 ? Math.max(1, sl >> 2) : err;
+    if(matrix == null) {
+      final int[][] m = new int[MAX + 2][MAX + 2];
       for(int i = 0; i < m.length; ++i) {
         m[0][i] = i;
         m[i][0] = i;
       }
       matrix = m;
     }
+    return true;
+  }
 
-    int e2 = -1, f2 = -1;
-    for(int t = 0; t < tl; t += cl(tk, t)) {
-      final int e = norm(lc(cp(tk, t)));
-      int d = Integer.MAX_VALUE;
-      for(int s = 0; s < sl; s += cl(sb, s)) {
-        final int f = norm(lc(cp(sb, s)));
-        int c = m(m[t][s + 1] + 1, m[t + 1][s] + 1, m[t][s] + (e == f ? 0 : 1));
-        if(e == f2 && f == e2) c = m[t][s];
-        m[t + 1][s + 1] = c;
-        d = Math.min(d, c);
-        f2 = f;
-      }
-      if(d > k) return false;
-      e2 = e;
+  @Override
+  public boolean step(final int pos, final int cp) {
+    // tokens with too many characters will never be accepted
+    if(pos >= MAX) return false;
+
+    final int[][] m = matrix;
+    final int e = norm(lc(cp)), e2 = pos == 0 ? -1 : tc[pos - 1];
+    int f2 = pos == 0 ? -1 : sc[sl - 1];
+    int d = Integer.MAX_VALUE;
+    for(int s = 0; s < sl; ++s) {
+      final int f = sc[s];
+      int c = m(m[pos][s + 1] + 1, m[pos + 1][s] + 1, m[pos][s] + (e == f ? 0 : 1));
+      if(e == f2 && f == e2) c = m[pos][s];
+      m[pos + 1][s + 1] = c;
+      d = Math.min(d, c);
+      f2 = f;
     }
-    return m[tl][sl] <= k;
+    tc[pos] = e;
+    return d <= k;
+  }
+
+  @Override
+  public boolean accept(final int length) {
+    return length > 0 && Math.abs(sl - length) <= k && matrix[length][sl] <= k;
   }
 
   /**
@@ -13,6 +13,10 @@ public final class Scoring {
   private static final double LOG = Math.E - 1;
   /** Scoring step. */
   private static final double SCORESTEP = 0.8;
+  /** BM25: saturation of the term frequency. */
+  private static final double K1 = 1.2;
+  /** BM25: influence of the text length. */
+  private static final double B = 0.75;
 
   /** Private constructor. */
   private Scoring() { }
@@ -81,6 +85,51 @@ public final class Scoring {
     return max((double) npv / is, log(tokl * npv + 1) / log(tl + 1));
   }
 
+  /**
+   * Calculates the BM25 score of a token in a text node.
+   * @param tf number of occurrences of the token in the text
+   * @param df number of texts containing the token
+   * @param n total number of texts
+   * @param dl text length
+   * @param avg average text length
+   * @return score value (not normalized)
+   */
+  public static double bm25(final int tf, final int df, final long n, final int dl,
+      final double avg) {
+    return idf(df, n) * tf * (K1 + 1) / (tf + K1 * (1 - B + B * dl / avg));
+  }
+
+  /**
+   * Returns an upper bound for the BM25 scores of a token.
+   * @param tf maximum number of occurrences of the token in a text
+   * @param df number of texts containing the token
+   * @param n total number of texts
+   * @return upper bound (not normalized)
+   */
+  public static double bm25Max(final int tf, final int df, final long n) {
+    return idf(df, n) * tf * (K1 + 1) / (tf + K1 * (1 - B));
+  }
+
+  /**
+   * Returns the inverse document frequency of a token.
+   * @param df number of texts containing the token
+   * @param n total number of texts
+   * @return inverse document frequency
+   */
+  private static double idf(final int df, final long n) {
+    return log(1 + (n - df + 0.5) / (df + 0.5));
+  }
+
+  /**
+   * Normalizes an unbounded score value to the range {@code [0, 1)}.
+   * The order of the values is preserved.
+   * @param s score value
+   * @return normalized value
+   */
+  public static double norm(final double s) {
+    return s / (1 + s);
+  }
+
   /**
    * Returns a score for a single step.
    * @param sc current score value
@@ -128,6 +128,55 @@ public final class AddDeleteTest extends SandboxTest {
     assertEquals(NFLDR, docs());
   }
 
+  /**
+   * Adds folders with multiple threads ({@link Prop#PARSETHREADS}) and compares
+   * the resulting documents.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void addFolderParallel() throws IOException {
+    final IOFile dir = new IOFile(sandbox(), "files");
+    for(int f = 0; f < 100; f++) {
+      final String doc = "<x xmlns:p='p" + f % 3 + "' a='" + f + "'><!--c--><p:y>" + f +
+          "</p:y><?pi " + f + "?></x>";
+      final IOFile sub = new IOFile(dir, "sub" + f % 7);
+      sub.md();
+      new IOFile(sub, f + IO.XMLSUFFIX).write(Token.token(doc));
+    }
+    final String query = "for $d in db:open('" + NAME + "') return (base-uri($d), $d)";
+    try {
+      final String[] results = new String[3];
+      for(int t = 0; t < results.length; t++) {
+        new Set(Prop.PARSETHREADS, t * 2 + 1).execute(context);
+        new CreateDB(NAME).execute(context);
+        new Add("", FLDR).execute(context);
+        new Add("target", dir.path()).execute(context);
+        results[t] = new XQuery(query).execute(context);
+      }
+      assertEquals(NFLDR + 100, docs());
+      assertEquals(results[0], results[1]);
+      assertEquals(results[0], results[2]);
+
+      // skip corrupt file, or reject it
+      new IOFile(dir, "sub3/corrupt.xml").write(Token.token("<x"));
+      new Set(Prop.SKIPCORRUPT, true).execute(context);
+      final CreateDB cmd = new CreateDB(NAME, dir.path());
+      cmd.execute(context);
+      assertTrue(cmd.info().contains("corrupt.xml"));
+      assertTrue(cmd.info().contains("100 file(s)"));
+      assertEquals(100, docs());
+      new Set(Prop.SKIPCORRUPT, false).execute(context);
+      try {
+        new CreateDB(NAME, dir.path()).execute(context);
+        fail("Broken file was added to the database.");
+      } catch(final BaseXException ex) { }
+    } finally {
+      new Set(Prop.PARSETHREADS, 1).execute(context);
+      new Set(Prop.SKIPCORRUPT, false).execute(context);
+      dir.delete();
+    }
+  }
+
   /**
    * Adds/deletes with target.
    * @throws BaseXException exception
@@ -0,0 +1,220 @@
+package org.basex.test.data;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.io.out.*;
+import org.basex.io.random.*;
+import org.basex.test.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * This class tests the memory-mapped read access to the database table
+ * ({@link Prop#MMAP}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+public final class MappedTableTest extends SandboxTest {
+  /** Test file. */
+  private static final String FILE = "src/test/resources/xmark.xml";
+  /** Number of reading threads. */
+  private static final int THREADS = 8;
+
+  /**
+   * Drops the test database and resets the options.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void tearDown() throws BaseXException {
+    new DropDB(NAME).execute(context);
+    context.prop.set(Prop.MMAP, false);
+  }
+
+  /**
+   * Compares mapped with buffered table entries.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void read() throws BaseXException {
+    context.prop.set(Prop.MMAP, true);
+    new CreateDB(NAME, FILE).execute(context);
+    final long[] mapped = entries(context.data());
+
+    reopen(false);
+    assertArrayEquals(entries(context.data()), mapped);
+  }
+
+  /**
+   * Checks that updates are visible to subsequent mapped reads.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void update() throws BaseXException {
+    context.prop.set(Prop.MMAP, true);
+    new CreateDB(NAME, FILE).execute(context);
+    new XQuery("for $i in 1 to 1000 return insert node <new a='b'/> into /site").
+      execute(context);
+    new XQuery("delete node //item").execute(context);
+    final long[] mapped = entries(context.data());
+    assertEquals("1000", new XQuery("count(//new)").execute(context));
+
+    reopen(false);
+    assertArrayEquals(entries(context.data()), mapped);
+    reopen(true);
+    assertArrayEquals(entries(context.data()), mapped);
+  }
+
+  /**
+   * Checks that the table is mapped again after in-place writes have been flushed.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void remap() throws IOException {
+    context.prop.set(Prop.MMAP, true);
+    new CreateDB(NAME, FILE).execute(context);
+    final MetaData md = context.data().meta;
+    new Close().execute(context);
+
+    final TableDiskAccess tda = new TableDiskAccess(md, true);
+    try {
+      assertTrue(tda.mapped());
+      final int v = tda.read1(1, 0);
+      tda.write1(1, 0, v);
+      assertFalse(tda.mapped());
+      tda.flush();
+      assertTrue(tda.mapped());
+      assertEquals(v, tda.read1(1, 0));
+    } finally {
+      tda.close();
+    }
+  }
+
+  /**
+   * Reads the mapped table with concurrent threads.
+   * @throws Exception exception
+   */
+  @Test
+  public void concurrent() throws Exception {
+    context.prop.set(Prop.MMAP, true);
+    new CreateDB(NAME, FILE).execute(context);
+    final Data data = context.data();
+    final long[] expected = entries(data);
+
+    final ExecutorService es = Executors.newFixedThreadPool(THREADS);
+    final List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+    for(int t = 0; t < THREADS; t++) {
+      results.add(es.submit(new Callable<long[]>() {
+        @Override
+        public long[] call() {
+          return entries(data);
+        }
+      }));
+    }
+    for(final Future<long[]> f : results) assertArrayEquals(expected, f.get());
+    es.shutdown();
+  }
+
+  /**
+   * Benchmark: compares the throughput of concurrent table reads with and without
+   * memory mapping. A database with a table of around 2 GB will be created.
+   * @throws Exception exception
+   */
+  @Test
+  @Ignore("Benchmark; requires around 5 GB of free disk space")
+  public void benchmark() throws Exception {
+    // create a large input document
+    final int elems = 1 << 26;
+    final IOFile input = new IOFile(sandbox(), NAME + IO.XMLSUFFIX);
+    final PrintOutput po = new PrintOutput(input.path());
+    po.print("<root>");
+    for(int e = 0; e < elems; e++) po.print("<a n='" + e + "'>" + (e & 0xFF) + "</a>");
+    po.print("</root>");
+    po.close();
+
+    context.prop.set(Prop.TEXTINDEX, false);
+    context.prop.set(Prop.ATTRINDEX, false);
+    new CreateDB(NAME, input.path()).execute(context);
+    input.delete();
+    try {
+      for(final boolean mmap : new boolean[] { false, true, false, true }) {
+        reopen(mmap);
+        final Data data = context.data();
+        for(int threads = 1; threads <= 2 * THREADS; threads <<= 1) {
+          final Performance perf = new Performance();
+          final ExecutorService es = Executors.newFixedThreadPool(threads);
+          final List<Future<Long>> results = new ArrayList<Future<Long>>();
+          for(int t = 0; t < threads; t++) {
+            final int seed = t;
+            results.add(es.submit(new Callable<Long>() {
+              @Override
+              public Long call() {
+                return random(data, seed, 1 << 22);
+              }
+            }));
+          }
+          for(final Future<Long> f : results) f.get();
+          es.shutdown();
+          Util.outln("MMAP: % , threads: %: %", mmap, threads, perf);
+        }
+      }
+    } finally {
+      context.prop.set(Prop.TEXTINDEX, true);
+      context.prop.set(Prop.ATTRINDEX, true);
+    }
+  }
+
+  /**
+   * Reopens the test database.
+   * @param mmap memory mapping flag
+   * @throws BaseXException database exception
+   */
+  private static void reopen(final boolean mmap) throws BaseXException {
+    new Close().execute(context);
+    context.prop.set(Prop.MMAP, mmap);
+    new Open(NAME).execute(context);
+  }
+
+  /**
+   * Returns the kind, size, distance and name of all table entries.
+   * @param data data reference
+   * @return entries
+   */
+  static long[] entries(final Data data) {
+    final int size = data.meta.size;
+    final long[] entries = new long[size];
+    for(int pre = 0; pre < size; pre++) {
+      final int k = data.kind(pre);
+      entries[pre] = (long) data.name(pre) << 40 ^ (long) data.dist(pre, k) << 8 ^
+          data.size(pre, k) << 3 ^ k;
+    }
+    return entries;
+  }
+
+  /**
+   * Reads random table entries.
+   * @param data data reference
+   * @param seed random seed
+   * @param n number of reads
+   * @return checksum
+   */
+  static long random(final Data data, final int seed, final int n) {
+    final Random rnd = new Random(seed);
+    final int size = data.meta.size;
+    long sum = 0;
+    for(int i = 0; i < n; i++) {
+      final int pre = rnd.nextInt(size);
+      final int k = data.kind(pre);
+      sum += data.name(pre) + data.dist(pre, k) + data.size(pre, k);
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,147 @@
+package org.basex.test.index;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.index.query.*;
+import org.basex.test.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * This class tests the compressed {@link Bitmap} and its use in value indexes.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+public final class BitmapTest extends SandboxTest {
+  /**
+   * Drops the test database.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new DropDB(NAME).execute(context);
+    context.prop.set(Prop.UPDINDEX, false);
+    context.prop.set(Prop.QUERYINFO, false);
+  }
+
+  /** Adds values in random order and checks the results. */
+  @Test
+  public void add() {
+    final Random rnd = new Random(0);
+    for(final int max : new int[] { 100, 1 << 16, 1 << 20, Integer.MAX_VALUE }) {
+      final TreeSet<Integer> set = new TreeSet<Integer>();
+      final Bitmap bm = new Bitmap();
+      for(int i = 0; i < 20000; i++) {
+        final int v = rnd.nextInt(max);
+        set.add(v);
+        bm.add(v);
+      }
+      check(set, bm);
+      check(set, new Bitmap(bm.toBytes()));
+      for(final int v : set) assertTrue(bm.contains(v));
+    }
+  }
+
+  /** Intersects and merges bitmaps with sparse and dense containers. */
+  @Test
+  public void andOr() {
+    final Random rnd = new Random(0);
+    for(final int max : new int[] { 1 << 13, 1 << 16, 1 << 18, 1 << 24 }) {
+      final TreeSet<Integer> set1 = new TreeSet<Integer>(), set2 = new TreeSet<Integer>();
+      final Bitmap bm1 = new Bitmap(), bm2 = new Bitmap();
+      for(int i = 0; i < 50000; i++) {
+        final int v1 = rnd.nextInt(max), v2 = rnd.nextInt(max >>> 2);
+        set1.add(v1);
+        bm1.add(v1);
+        set2.add(v2);
+        bm2.add(v2);
+      }
+      final TreeSet<Integer> and = new TreeSet<Integer>(set1);
+      final TreeSet<Integer> or = new TreeSet<Integer>(set1);
+      and.retainAll(set2);
+      or.addAll(set2);
+      check(and, bm1.and(bm2));
+      check(and, bm2.and(bm1));
+      check(or, bm1.or(bm2));
+      check(or, bm2.or(bm1));
+      check(set1, bm1.or(new Bitmap()));
+      check(new TreeSet<Integer>(), bm1.and(new Bitmap()));
+    }
+  }
+
+  /**
+   * Compares index results of frequent values, which are stored as bitmaps.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void index() throws BaseXException {
+    final TokenBuilder tb = new TokenBuilder("<root>");
+    for(int i = 0; i < 30000; i++) {
+      tb.addExt("<x a='%'>%</x><y>%</y>", i % 3, i % 5 == 0 ? "true" : "false", i % 2);
+    }
+    final String doc = tb.add("</root>").toString();
+    final String[] queries = {
+      "count(//x[text() = 'true'])", "sum(//x[text() = 'false']/@a)",
+      "count(//*[text() = ('true', '1')])", "sum(//x[@a = ('0', '2')]/@a)",
+      "for $v in ('true', '1', 'x') return count(//*[text() = $v])",
+      "count(//x[@a = ('1', '2')][text() = ('true', 'false')])",
+      "count(//x[@a = '1' and text() = 'true'])"
+    };
+
+    context.prop.set(Prop.TEXTINDEX, false);
+    context.prop.set(Prop.ATTRINDEX, false);
+    new CreateDB(NAME, doc).execute(context);
+    final String[] results = new String[queries.length];
+    for(int q = 0; q < queries.length; q++) {
+      results[q] = new XQuery(queries[q]).execute(context);
+    }
+    context.prop.set(Prop.TEXTINDEX, true);
+    context.prop.set(Prop.ATTRINDEX, true);
+
+    for(final boolean upd : new boolean[] { false, true }) {
+      context.prop.set(Prop.UPDINDEX, upd);
+      new CreateDB(NAME, doc).execute(context);
+      for(int q = 0; q < queries.length; q++) {
+        assertEquals(queries[q], results[q], new XQuery(queries[q]).execute(context));
+      }
+    }
+  }
+
+  /**
+   * Intersects the index results of two frequent values.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void indexAnd() throws BaseXException {
+    final TokenBuilder tb = new TokenBuilder("<root>");
+    for(int i = 0; i < 30000; i++) {
+      tb.addExt("<x a='%'>%</x>", i % 3, i % 5 == 0 ? "true" : "false");
+    }
+    new CreateDB(NAME, tb.add("</root>").toString()).execute(context);
+    context.prop.set(Prop.QUERYINFO, true);
+    final XQuery xq = new XQuery("count(//x[@a = '1' and text() = 'true'])");
+    assertEquals("2000", xq.execute(context));
+    final String info = xq.info();
+    assertTrue(info, info.contains("intersect"));
+    assertFalse(info, info.contains("[@"));
+  }
+
+  /**
+   * Checks if a bitmap contains all values of the specified set.
+   * @param set set
+   * @param bm bitmap
+   */
+  private static void check(final TreeSet<Integer> set, final Bitmap bm) {
+    assertEquals(set.size(), bm.size());
+    final IndexIterator ii = bm.iter();
+    for(final int v : set) {
+      assertTrue(ii.more());
+      assertEquals(v, ii.next());
+    }
+    assertFalse(ii.more());
+  }
+}
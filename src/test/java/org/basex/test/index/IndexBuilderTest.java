@@ -0,0 +1,308 @@
+package org.basex.test.index;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.io.out.*;
+import org.basex.test.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * This class tests the parallel construction of value and full-text indexes
+ * ({@link Prop#INDEXTHREADS}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+public final class IndexBuilderTest extends SandboxTest {
+  /** Queries that return the contents of the indexes. */
+  private static final String[] QUERIES = {
+    "string-join(index:texts('" + NAME + "')/concat(., ':', @count), ' ')",
+    "string-join(index:attributes('" + NAME + "')/concat(., ':', @count), ' ')",
+    "string-join(ft:tokens('" + NAME + "')/concat(., ':', @count), ' ')",
+    "string-join(db:text('" + NAME + "', 'w5')/string(db:node-pre(.)), ' ')",
+    "string-join(db:attribute('" + NAME + "', 'v7')/string(db:node-pre(.)), ' ')",
+    "string-join(ft:search('" + NAME + "', 'word5')/string(db:node-pre(.)), ' ')",
+    "string-join(ft:search('" + NAME + "', 'text')/string(db:node-pre(.)), ' ')"
+  };
+
+  /** Initializes the test. */
+  @Before
+  public void init() {
+    context.prop.set(Prop.FTINDEX, true);
+  }
+
+  /**
+   * Resets the options and drops the test database.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new DropDB(NAME).execute(context);
+    context.prop.set(Prop.FTINDEX, false);
+    context.prop.set(Prop.UPDINDEX, false);
+    context.prop.set(Prop.INDEXTHREADS, 0);
+    context.prop.set(Prop.INDEXSORT, true);
+  }
+
+  /**
+   * Compares indexes that have been created by a single and by multiple threads.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void create() throws BaseXException {
+    final String[] single = create(1);
+    assertArrayEquals(single, create(4));
+    assertArrayEquals(single, create(7));
+  }
+
+  /**
+   * Compares updatable indexes that have been created by a single and by
+   * multiple threads.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void updatable() throws BaseXException {
+    context.prop.set(Prop.UPDINDEX, true);
+    final String[] single = create(1);
+    assertArrayEquals(single, create(4));
+  }
+
+  /**
+   * Compares indexes that have been rebuilt by a single and by multiple threads.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void optimize() throws BaseXException {
+    final String[] single = create(1);
+    new XQuery("delete node (//x)[1]").execute(context);
+    new Optimize().execute(context);
+    final String[] updated = results();
+    assertFalse(single[0].equals(updated[0]));
+
+    context.prop.set(Prop.INDEXTHREADS, 4);
+    new XQuery("insert node <x a='v0'>w0 word0 text</x> as first into /root").
+      execute(context);
+    new Optimize().execute(context);
+    assertArrayEquals(single, results());
+  }
+
+  /**
+   * Compares indexes that have been created from value trees and sorted buffers.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void sort() throws BaseXException {
+    context.prop.set(Prop.INDEXSORT, false);
+    final String[] tree = create(1);
+    context.prop.set(Prop.INDEXSORT, true);
+    assertArrayEquals(tree, create(1));
+    assertArrayEquals(tree, create(4));
+
+    // keys with different lengths, common prefixes and non-ASCII characters
+    final Random rnd = new Random(0);
+    final StringBuilder sb = new StringBuilder("<root>");
+    for(int i = 0; i < 20000; i++) {
+      final String k = Integer.toString(rnd.nextInt(1 << rnd.nextInt(20)), 36);
+      sb.append("<x a='").append(k).append("'>").append(k).append('\u00e4');
+      sb.append(k.substring(0, rnd.nextInt(k.length() + 1))).append("</x>");
+    }
+    final String doc = sb.append("</root>").toString();
+    final String query = "concat(" + QUERIES[0] + ", " +
+        "string-join(db:attribute('" + NAME + "', '1')/string(db:node-pre(.)), ' '))";
+    context.prop.set(Prop.INDEXSORT, false);
+    new CreateDB(NAME, doc).execute(context);
+    final String result = new XQuery(query).execute(context);
+    context.prop.set(Prop.INDEXSORT, true);
+    new CreateDB(NAME, doc).execute(context);
+    assertEquals(result, new XQuery(query).execute(context));
+  }
+
+  /**
+   * Compares indexes of a database without any texts.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void empty() throws BaseXException {
+    context.prop.set(Prop.INDEXTHREADS, 4);
+    final StringBuilder sb = new StringBuilder("<root>");
+    for(int i = 0; i < 20000; i++) sb.append("<x a='v").append(i % 10).append("'/>");
+    new CreateDB(NAME, sb.append("</root>").toString()).execute(context);
+    assertEquals("", new XQuery(QUERIES[2]).execute(context));
+    assertEquals("", new XQuery(QUERIES[0]).execute(context));
+  }
+
+  /**
+   * Benchmark: creates the indexes of a large database with different numbers
+   * of threads.
+   * @throws BaseXException database exception
+   */
+  @Test
+  @Ignore("Benchmark")
+  public void benchmark() throws BaseXException {
+    context.prop.set(Prop.TEXTINDEX, false);
+    context.prop.set(Prop.ATTRINDEX, false);
+    context.prop.set(Prop.FTINDEX, false);
+    new CreateDB(NAME, doc(1000000)).execute(context);
+    final int procs = Runtime.getRuntime().availableProcessors();
+    for(int t = 1; t <= procs; t <<= 1) {
+      context.prop.set(Prop.INDEXTHREADS, t);
+      final Performance perf = new Performance();
+      new CreateIndex("text").execute(context);
+      new CreateIndex("attribute").execute(context);
+      new CreateIndex("fulltext").execute(context);
+      Util.outln("Threads: %, separate indexes: %", t, perf);
+      new DropIndex("text").execute(context);
+      new DropIndex("attribute").execute(context);
+      new DropIndex("fulltext").execute(context);
+      context.data().meta.createtext = true;
+      context.data().meta.createattr = true;
+      context.data().meta.createftxt = true;
+      perf.time();
+      new Optimize().execute(context);
+      Util.outln("Threads: %, parallel indexes: %", t, perf);
+    }
+    context.prop.set(Prop.TEXTINDEX, true);
+    context.prop.set(Prop.ATTRINDEX, true);
+  }
+
+  /**
+   * Benchmark: compares the build time and peak heap of text indexes that are created
+   * from value trees and sorted buffers. The test corpus contains 50 million
+   * text nodes, most of which are distinct.
+   * @throws IOException I/O exception
+   */
+  @Test
+  @Ignore("Benchmark")
+  public void sortBenchmark() throws IOException {
+    final int texts = 50000000;
+    final IOFile file = new IOFile(sandbox(), NAME + IO.XMLSUFFIX);
+    final PrintOutput po = new PrintOutput(file.path());
+    try {
+      po.print("<root>");
+      final Random rnd = new Random(0);
+      for(int t = 0; t < texts; t++) {
+        po.print("<x>" + Long.toString(rnd.nextLong() & 0xFFFFFFFFFFL, 36) + "</x>");
+      }
+      po.print("</root>");
+    } finally {
+      po.close();
+    }
+    context.prop.set(Prop.TEXTINDEX, false);
+    context.prop.set(Prop.ATTRINDEX, false);
+    context.prop.set(Prop.FTINDEX, false);
+    context.prop.set(Prop.INDEXTHREADS, 1);
+    new CreateDB(NAME, file.path()).execute(context);
+    file.delete();
+
+    for(final boolean sort : new boolean[] { false, true, false, true }) {
+      context.prop.set(Prop.INDEXSORT, sort);
+      Performance.gc(3);
+      for(final MemoryPoolMXBean mp : ManagementFactory.getMemoryPoolMXBeans()) {
+        mp.resetPeakUsage();
+      }
+      final Performance perf = new Performance();
+      new CreateIndex("text").execute(context);
+      final String time = perf.getTime();
+      long peak = 0;
+      for(final MemoryPoolMXBean mp : ManagementFactory.getMemoryPoolMXBeans()) {
+        if(mp.getType() == MemoryType.HEAP) peak += mp.getPeakUsage().getUsed();
+      }
+      Util.outln("Sorted buffers: %, time: %, peak heap: %", sort, time,
+          Performance.format(peak));
+      new DropIndex("text").execute(context);
+    }
+    context.prop.set(Prop.TEXTINDEX, true);
+    context.prop.set(Prop.ATTRINDEX, true);
+  }
+
+  /**
+   * Benchmark: evaluates phrase queries with frequent and rare tokens on a
+   * corpus with 500,000 texts and reports the size of the full-text index.
+   * The frequencies of the tokens follow a power-law distribution.
+   * @throws IOException I/O exception
+   */
+  @Test
+  @Ignore("Benchmark")
+  public void phraseBenchmark() throws IOException {
+    final IOFile file = new IOFile(sandbox(), NAME + IO.XMLSUFFIX);
+    final PrintOutput po = new PrintOutput(file.path());
+    try {
+      po.print("<root>");
+      final Random rnd = new Random(0);
+      for(int t = 0; t < 500000; t++) {
+        po.print("<x>");
+        for(int w = 0; w < 20; w++) {
+          final int r = (int) Math.pow(100000, rnd.nextDouble()) - 1;
+          po.print("w" + Integer.toString(r, 36) + ' ');
+        }
+        po.print("</x>");
+      }
+      po.print("</root>");
+    } finally {
+      po.close();
+    }
+    new CreateDB(NAME, file.path()).execute(context);
+    file.delete();
+
+    long size = 0;
+    for(final char c : new char[] { 'x', 'y', 'z' }) {
+      size += context.data().meta.dbfile(DataText.DATAFTX + c).length();
+    }
+    Util.outln("Index size: %", Performance.format(size));
+    for(final String phrase : new String[] { "w0 w1", "w1 w0 w2", "w0 wa0",
+        "w3 w5 w0 w1", "wa0 w0 w1" }) {
+      final String query = "count(//x[text() contains text '" + phrase + "'])";
+      final Performance perf = new Performance();
+      String result = null;
+      for(int r = 0; r < 10; r++) result = new XQuery(query).execute(context);
+      Util.outln("Phrase: '%', hits: %, time: %", phrase, result, perf.getTime(10));
+    }
+  }
+
+  /**
+   * Creates the test database with the specified number of threads and returns
+   * the contents of its indexes.
+   * @param threads number of threads
+   * @return query results
+   * @throws BaseXException database exception
+   */
+  private static String[] create(final int threads) throws BaseXException {
+    context.prop.set(Prop.INDEXTHREADS, threads);
+    new CreateDB(NAME, doc(20000)).execute(context);
+    return results();
+  }
+
+  /**
+   * Returns the contents of the indexes.
+   * @return query results
+   * @throws BaseXException database exception
+   */
+  private static String[] results() throws BaseXException {
+    final String[] results = new String[QUERIES.length];
+    for(int q = 0; q < QUERIES.length; q++) {
+      results[q] = new XQuery(QUERIES[q]).execute(context);
+    }
+    return results;
+  }
+
+  /**
+   * Creates a test document.
+   * @param n number of elements
+   * @return document
+   */
+  private static String doc(final int n) {
+    final TokenBuilder tb = new TokenBuilder("<root>");
+    for(int i = 0; i < n; i++) {
+      tb.addExt("<x a='v%'>w% word% text</x>", i % 500, i % 1000, i % 37);
+    }
+    return tb.add("</root>").toString();
+  }
+}
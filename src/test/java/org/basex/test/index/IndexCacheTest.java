@@ -6,6 +6,7 @@ import static org.junit.Assert.*;
 import java.util.*;
 
 import org.basex.index.*;
+import org.basex.util.*;
 import org.junit.*;
 
 /**
@@ -77,6 +78,91 @@ public final class IndexCacheTest {
     assertNull(cache.get(key));
   }
 
+  /**
+   * Concurrently adds, reads and deletes entries.
+   * @throws Exception exception
+   */
+  @Test
+  public void testConcurrent() throws Exception {
+    final int keys = 20000;
+    for(int i = 0; i < keys; i += 2) cache.add(token("key" + i), i, i);
+
+    final Throwable[] errors = new Throwable[1];
+    final Thread[] threads = new Thread[8];
+    for(int t = 0; t < threads.length; t++) {
+      final int n = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for(int i = 0; i < keys; i++) {
+              final byte[] key = token("key" + i);
+              if((i & 1) == 0) {
+                // entries with even keys are never modified
+                assertCacheEntry(key, i, i);
+              } else if(i % threads.length == n) {
+                cache.add(key, i, i);
+                assertCacheEntry(key, i, i);
+                cache.delete(key);
+                assertNull(cache.get(key));
+              } else {
+                final IndexEntry entry = cache.get(key);
+                if(entry != null) assertEquals(i, entry.size);
+              }
+            }
+          } catch(final Throwable ex) {
+            synchronized(errors) {
+              if(errors[0] == null) errors[0] = ex;
+            }
+          }
+        }
+      };
+    }
+    for(final Thread t : threads) t.start();
+    for(final Thread t : threads) t.join();
+    if(errors[0] != null) throw new AssertionError(errors[0]);
+  }
+
+  /**
+   * Benchmark: measures the throughput of concurrent cache lookups and updates
+   * for different numbers of threads.
+   * @throws Exception exception
+   */
+  @Test
+  @Ignore("Benchmark")
+  public void testThroughput() throws Exception {
+    final int keys = 100000, ops = 2000000;
+    final byte[][] tokens = new byte[keys][];
+    for(int i = 0; i < keys; i++) {
+      tokens[i] = token("key" + i);
+      cache.add(tokens[i], i, i);
+    }
+    final int procs = Runtime.getRuntime().availableProcessors();
+    for(int t = 1; t <= procs << 1; t <<= 1) {
+      final Thread[] threads = new Thread[t];
+      for(int n = 0; n < t; n++) {
+        final Random rnd = new Random(n);
+        threads[n] = new Thread() {
+          @Override
+          public void run() {
+            for(int o = 0; o < ops; o++) {
+              final int i = rnd.nextInt(keys);
+              // one update per 16 lookups
+              if((o & 15) == 0) cache.add(tokens[i], i, i);
+              else cache.get(tokens[i]);
+            }
+          }
+        };
+      }
+      final Performance perf = new Performance();
+      for(final Thread th : threads) th.start();
+      for(final Thread th : threads) th.join();
+      final long time = Math.max(1, perf.time() / 1000000);
+      Util.outln("Threads: %, operations: %, time: % ms, ops/ms: %", t,
+          (long) t * ops, time, (long) t * ops / time);
+    }
+  }
+
   /**
    * Test that new records can be continuously added without hitting
    * {@link OutOfMemoryError}.
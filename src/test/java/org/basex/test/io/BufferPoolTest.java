@@ -0,0 +1,208 @@
+package org.basex.test.io;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.basex.io.*;
+import org.basex.io.random.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * Tests for the buffer management of {@link DataAccess} and the {@link BufferPool}.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+public final class BufferPoolTest {
+  /** Number of blocks in the test file. */
+  private static final int BLOCKS = 1024;
+  /** Number of hot blocks. */
+  private static final int HOT = 8;
+
+  /** Temporary file. */
+  private IOFile file;
+  /** Instance under test. */
+  private DataAccess da;
+
+  /**
+   * Set up method.
+   * @throws IOException I/O exception
+   */
+  @Before
+  public void setUp() throws IOException {
+    file = create();
+    da = new DataAccess(file);
+  }
+
+  /**
+   * Tear down method.
+   */
+  @After
+  public void tearDown() {
+    da.close();
+    file.delete();
+    BufferPool.size(64);
+  }
+
+  /**
+   * Checks that hot blocks survive a sequential scan.
+   */
+  @Test
+  public void scanResistance() {
+    // make blocks hot: request them, evict them by a scan, and request them again
+    read(0, HOT);
+    read(HOT, 256);
+    read(0, HOT);
+
+    // scan all remaining blocks: the hot blocks must still be buffered
+    read(256, BLOCKS);
+    final long hits = stats()[0];
+    read(0, HOT);
+    assertEquals(hits + HOT, stats()[0]);
+  }
+
+  /**
+   * Checks that additional buffers are only assigned if the pool is large enough.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void size() throws IOException {
+    BufferPool.size(0);
+    read(0, 1);
+    final long min = stats()[2];
+    read(0, HOT);
+    read(HOT, 256);
+    read(0, HOT);
+    assertEquals(min, stats()[2]);
+    assertEquals(0, BufferPool.used());
+
+    BufferPool.size(64);
+    read(256, 512);
+    read(256, 512);
+    assertTrue(stats()[2] > min);
+    assertTrue(BufferPool.used() > 0);
+
+    // additional buffers are returned when the file is closed
+    final int used = BufferPool.used();
+    final long buffers = stats()[2];
+    da.close();
+    assertNull(BufferPool.stats(file));
+    assertEquals(used - buffers + min, BufferPool.used());
+    da = new DataAccess(file);
+  }
+
+  /**
+   * Checks that buffers are returned to a file that is waiting for buffers.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void redistribution() throws IOException {
+    BufferPool.size(1);
+    final int max = BufferPool.max();
+    read(da, 0, 200);
+    read(da, 0, 200);
+    read(da, 0, 400);
+    read(da, 0, 400);
+    assertEquals(max, BufferPool.used());
+    final long buffers = stats()[2];
+
+    final IOFile file2 = create();
+    final DataAccess da2 = new DataAccess(file2);
+    try {
+      // second file is denied buffers: first file returns buffers
+      read(da2, 0, 200);
+      final long min = BufferPool.stats(file2)[2];
+      read(da2, 0, 200);
+      assertEquals(min, BufferPool.stats(file2)[2]);
+      read(da, 400, BLOCKS);
+      assertTrue(stats()[2] < buffers);
+
+      // second file gets buffers, first file does not exceed its share
+      read(da2, 0, 200);
+      read(da, 0, BLOCKS);
+      read(da, 0, BLOCKS);
+      assertTrue(BufferPool.stats(file2)[2] > min);
+      assertTrue(stats()[2] < buffers);
+      assertTrue(BufferPool.used() <= max);
+    } finally {
+      da2.close();
+      file2.delete();
+    }
+    assertTrue(BufferPool.used() < max);
+  }
+
+  /**
+   * Checks that additional buffers are returned if a file has not been closed.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void collected() throws IOException {
+    final int used = BufferPool.used();
+    DataAccess da2 = new DataAccess(file);
+    read(da2, 0, 128);
+    read(da2, 0, 128);
+    assertTrue(BufferPool.used() > used);
+    da2 = null;
+    for(int i = 0; i < 100 && BufferPool.used() > used; i++) Performance.gc(1);
+    assertEquals(used, BufferPool.used());
+  }
+
+  /**
+   * Checks that modified blocks are correctly written back when they are evicted.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void writeBack() throws IOException {
+    for(int b = 0; b < BLOCKS; b++) da.write4((long) b * IO.BLOCKSIZE, b);
+    for(int b = 0; b < BLOCKS; b++) assertEquals(b, da.read4((long) b * IO.BLOCKSIZE));
+    da.close();
+    da = new DataAccess(file);
+    for(int b = BLOCKS - 1; b >= 0; b--) {
+      assertEquals(b, da.read4((long) b * IO.BLOCKSIZE));
+    }
+  }
+
+  /**
+   * Reads the first byte of the specified blocks.
+   * @param s first block
+   * @param e last block (exclusive)
+   */
+  private void read(final int s, final int e) {
+    read(da, s, e);
+  }
+
+  /**
+   * Reads the first byte of the specified blocks.
+   * @param d data access
+   * @param s first block
+   * @param e last block (exclusive)
+   */
+  private static void read(final DataAccess d, final int s, final int e) {
+    for(int b = s; b < e; b++) d.read1((long) b * IO.BLOCKSIZE);
+  }
+
+  /**
+   * Creates a temporary test file.
+   * @return file
+   * @throws IOException I/O exception
+   */
+  private static IOFile create() throws IOException {
+    final IOFile f = new IOFile(File.createTempFile("buffers", IO.BASEXSUFFIX));
+    final RandomAccessFile raf = new RandomAccessFile(f.file(), "rw");
+    try {
+      raf.setLength((long) BLOCKS * IO.BLOCKSIZE);
+    } finally {
+      raf.close();
+    }
+    return f;
+  }
+
+  /**
+   * Returns the buffer statistics of the test file.
+   * @return statistics
+   */
+  private long[] stats() {
+    return BufferPool.stats(file);
+  }
+}
@@ -0,0 +1,155 @@
+package org.basex.test.io;
+
+import static org.basex.util.Token.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.io.*;
+import org.basex.io.random.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * Tests for concurrent positional read operations of class {@link DataAccess}.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+public final class DataAccessConcurrencyTest {
+  /** Number of tokens in the test file. */
+  private static final int TOKENS = 50000;
+  /** Number of reading threads. */
+  private static final int THREADS = 8;
+
+  /** Temporary file. */
+  private IOFile file;
+  /** Instance under test. */
+  private DataAccess da;
+  /** Offsets of the tokens. */
+  private long[] offsets;
+
+  /**
+   * Set up method.
+   * @throws IOException I/O exception
+   */
+  @Before
+  public void setUp() throws IOException {
+    file = new IOFile(File.createTempFile("concurrent", IO.BASEXSUFFIX));
+    da = new DataAccess(file);
+    offsets = new long[TOKENS];
+    for(int t = 0; t < TOKENS; t++) {
+      offsets[t] = da.length();
+      da.writeToken(offsets[t], token(t));
+    }
+    da.flush();
+  }
+
+  /**
+   * Tear down method.
+   */
+  @After
+  public void tearDown() {
+    da.close();
+    file.delete();
+  }
+
+  /**
+   * Reads tokens with concurrent threads.
+   * @throws Exception exception
+   */
+  @Test
+  public void concurrent() throws Exception {
+    final ExecutorService es = Executors.newFixedThreadPool(THREADS);
+    final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+    for(int t = 0; t < THREADS; t++) {
+      final int seed = t;
+      results.add(es.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+          final Random rnd = new Random(seed);
+          for(int i = 0; i < TOKENS; i++) {
+            final int n = rnd.nextInt(TOKENS);
+            if(!eq(token(n), da.readToken(offsets[n]))) return false;
+          }
+          return true;
+        }
+      }));
+    }
+    for(final Future<Boolean> f : results) assertTrue(f.get());
+    es.shutdown();
+  }
+
+  /**
+   * Checks that changes are visible to positional read operations.
+   */
+  @Test
+  public void update() {
+    final long o = offsets[TOKENS - 1];
+    assertEquals(string(token(TOKENS - 1)), string(da.readToken(o)));
+
+    // unflushed and flushed changes
+    da.writeToken(o, token("abc"));
+    assertEquals("abc", string(da.readToken(o)));
+    da.flush();
+    assertEquals("abc", string(da.readToken(o)));
+    da.writeToken(o, token("xyz"));
+    da.flush();
+    assertEquals("xyz", string(da.readToken(o)));
+    assertEquals(3, da.readNum(o));
+  }
+
+  /**
+   * Benchmark: compares the throughput of concurrent positional reads with reads
+   * that are synchronized on a shared cursor.
+   * @throws Exception exception
+   */
+  @Test
+  @Ignore("Benchmark")
+  public void benchmark() throws Exception {
+    for(final boolean shared : new boolean[] { true, false, true, false }) {
+      for(int threads = 1; threads <= 2 * THREADS; threads <<= 1) {
+        final Performance perf = new Performance();
+        final ExecutorService es = Executors.newFixedThreadPool(threads);
+        final List<Future<Long>> results = new ArrayList<Future<Long>>();
+        for(int t = 0; t < threads; t++) {
+          final int seed = t;
+          results.add(es.submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+              return random(seed, 1 << 20, shared);
+            }
+          }));
+        }
+        for(final Future<Long> f : results) f.get();
+        es.shutdown();
+        Util.outln("Shared cursor: %, threads: %: %", shared, threads, perf);
+      }
+    }
+  }
+
+  /**
+   * Reads random tokens.
+   * @param seed random seed
+   * @param n number of reads
+   * @param shared use shared cursor
+   * @return checksum
+   */
+  long random(final int seed, final int n, final boolean shared) {
+    final Random rnd = new Random(seed);
+    long sum = 0;
+    for(int i = 0; i < n; i++) {
+      final long o = offsets[rnd.nextInt(TOKENS)];
+      if(shared) {
+        synchronized(da) {
+          da.cursor(o);
+          sum += da.readToken().length;
+        }
+      } else {
+        sum += da.readToken(o).length;
+      }
+    }
+    return sum;
+  }
+}
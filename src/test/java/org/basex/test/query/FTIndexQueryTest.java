@@ -1,12 +1,17 @@
 package org.basex.test.query;
 
+import static org.basex.data.DataText.*;
 import static org.basex.query.func.Function.*;
 import static org.junit.Assert.*;
 
 import java.lang.annotation.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
 
 import org.basex.core.*;
 import org.basex.core.cmd.*;
+import org.basex.data.*;
 import org.basex.test.*;
 import org.basex.test.query.simple.*;
 import org.basex.util.*;
@@ -64,6 +69,208 @@ public final class FTIndexQueryTest extends SandboxTest {
     for(final Object[] q : XPathMarkFTTest.QUERIES) assertQuery((String) q[2]);
   }
 
+  /** Fuzzy and wildcard queries, matching multiple index tokens. */
+  @Test
+  @InputData("<x><w>databases database databse datbase dtabase databasing</w>" +
+      "<w>databank datum date dates dated data dätabase databäse</w>" +
+      "<w>hello hallo hell hellooo help helper helps halo hello</w>" +
+      "<w>help hello databases data</w><w>x y z</w></x>")
+  public void testFuzzyWildcards() {
+    for(final String t : new String[] { "database", "databases", "databäse",
+        "hello", "helper", "datum", "xyzxyz" }) {
+      assertQuery("//w[text() contains text '" + t + "' using fuzzy]");
+      assertQuery(_FT_MARK.args(" //w[text() contains text '" + t + "' using fuzzy]"));
+    }
+    for(final String t : new String[] { "dat.*", "d.t.+", "hel.{1,3}", ".*base",
+        "h.llo", ".*l.*", "datab.se", "x", ".+" }) {
+      assertQuery("//w[text() contains text '" + t + "' using wildcards]");
+      assertQuery(_FT_MARK.args(" //w[text() contains text '" + t +
+          "' using wildcards]"));
+    }
+  }
+
+  /**
+   * Runs index-based full-text queries in parallel.
+   * @throws Exception exception
+   */
+  @Test
+  @InputData("<x><w>databases database databse datbase dtabase databasing</w>" +
+      "<w>databank datum date dates dated data dätabase databäse</w>" +
+      "<w>hello hallo hell hellooo help helper helps halo hello</w>" +
+      "<w>help hello databases data</w><w>x y z</w></x>")
+  public void testConcurrent() throws Exception {
+    final String[] queries = {
+      "//w[text() contains text 'database']",
+      "//w[text() contains text 'hello' using fuzzy]",
+      "//w[text() contains text 'dat.*' using wildcards]",
+      "//w[text() contains text 'help' ftand 'data']",
+      _FT_MARK.args(" //w[text() contains text 'hel.*' using wildcards]")
+    };
+    final String[] expected = new String[queries.length];
+    for(int q = 0; q < queries.length; q++) {
+      expected[q] = new XQuery(queries[q]).execute(context);
+    }
+
+    final int threads = 8;
+    final ExecutorService es = Executors.newFixedThreadPool(threads);
+    final List<Future<String>> results = new ArrayList<Future<String>>();
+    for(int t = 0; t < threads; t++) {
+      final int seed = t;
+      results.add(es.submit(new Callable<String>() {
+        @Override
+        public String call() throws BaseXException {
+          for(int i = 0; i < 100; i++) {
+            final int q = (seed + i) % queries.length;
+            final String r = new XQuery(queries[q]).execute(CTX_IX);
+            if(!r.equals(expected[q])) return queries[q];
+          }
+          return null;
+        }
+      }));
+    }
+    es.shutdown();
+    for(final Future<String> f : results) assertNull(f.get());
+  }
+
+  /**
+   * Intersects references that are stored in many blocks.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void testBlocks() throws BaseXException {
+    final Random rnd = new Random(0);
+    final String[] words = { "a", "b", "c", "d" };
+    final StringBuilder sb = new StringBuilder("<x>");
+    for(int i = 0; i < 3000; i++) {
+      sb.append("<w>");
+      for(int j = rnd.nextInt(20); j >= 0; j--) {
+        // word frequencies decrease exponentially
+        sb.append(words[Math.min(3, Integer.numberOfTrailingZeros(
+            rnd.nextInt(1 << 12) | 1 << 11) / 3)]).append(' ');
+      }
+      sb.append("</w>");
+    }
+    final String doc = sb.append("</x>").toString();
+    new CreateDB(NAME, doc).execute(context);
+    new CreateDB(NAME_IX, doc).execute(CTX_IX);
+
+    assertQuery("count(//w[text() contains text 'a' ftand 'd'])");
+    assertQuery("count(//w[text() contains text 'd' ftand 'c' ftand 'a'])");
+    assertQuery("//w[text() contains text 'c d']");
+    assertQuery("//w[text() contains text 'd a b']");
+    assertQuery("//w[text() contains text 'a a a a a a']");
+    assertQuery("//w[text() contains text 'c' ftand 'd' distance at most 2 words]");
+    assertQuery("//w[text() contains text 'a' ftand 'd' ordered]");
+    assertQuery("//w[text() contains text ('d' ftand 'a') ftor ('c' ftand 'b')]");
+  }
+
+  /**
+   * Updates a database with an updatable full-text index.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void testUpdatable() throws BaseXException {
+    CTX_IX.prop.set(Prop.UPDINDEX, true);
+    try {
+      final String doc = "<x><w>databases database databse</w><w>hello help</w>" +
+          "<w>data <b>hello</b> helper</w><w>x y z</w></x>";
+      new CreateDB(NAME, doc).execute(context);
+      new CreateDB(NAME_IX, doc).execute(CTX_IX);
+      final String tokens = _FT_TOKENS.args(NAME_IX);
+
+      update("insert node <w>hello databases world</w> into /x");
+      update("replace value of node //w[1]/text() with 'help data base'");
+      update("delete node //w[2]");
+      update("insert node <w>database dat x</w> as first into /x");
+      update("replace node //w[last()] with <w>hello <b>data</b>bases</w>");
+      update("rename node (//b)[1] as 'c'");
+      assertTrue(CTX_IX.data().meta.ftxtindex);
+      assertUpdatable();
+
+      // merge changes, reopen database
+      final String delta = new XQuery(tokens).execute(CTX_IX);
+      new Optimize().execute(CTX_IX);
+      assertEquals(delta, new XQuery(tokens).execute(CTX_IX));
+      new Close().execute(CTX_IX);
+      new Open(NAME_IX).execute(CTX_IX);
+      assertUpdatable();
+
+      update("delete node //w[text() contains text 'dat']");
+      update("insert node <w>hello helps</w> into /x");
+      new Close().execute(CTX_IX);
+      new Open(NAME_IX).execute(CTX_IX);
+      assertTrue(CTX_IX.data().meta.ftxtindex);
+      assertUpdatable();
+
+      // compare with rebuilt index
+      final String updated = new XQuery(tokens).execute(CTX_IX);
+      new CreateIndex("fulltext").execute(CTX_IX);
+      assertEquals(updated, new XQuery(tokens).execute(CTX_IX));
+    } finally {
+      CTX_IX.prop.set(Prop.UPDINDEX, false);
+    }
+  }
+
+  /**
+   * Opens databases with full-text indexes whose merge was interrupted.
+   * @throws Exception exception
+   */
+  @Test
+  public void testInterruptedMerge() throws Exception {
+    CTX_IX.prop.set(Prop.UPDINDEX, true);
+    try {
+      final String doc = "<x><w>databases database</w><w>hello help</w></x>";
+      new CreateDB(NAME, doc).execute(context);
+      new CreateDB(NAME_IX, doc).execute(CTX_IX);
+      update("insert node <w>hello databases world</w> into /x");
+      final MetaData md = CTX_IX.data().meta;
+      new Close().execute(CTX_IX);
+
+      // old structures were partially renamed: roll back
+      md.dbfile(DATAFTX + 'x').rename(md.dbfile(DATAFTX + "ox"));
+      md.dbfile(DATAFTX + 'y').copyTo(md.dbfile(DATAFTX + "my"));
+      new Open(NAME_IX).execute(CTX_IX);
+      assertTrue(md.dbfile(DATAFTX + 'x').exists());
+      assertFalse(md.dbfile(DATAFTX + "ox").exists());
+      assertFalse(md.dbfile(DATAFTX + "my").exists());
+      assertUpdatable();
+      new Close().execute(CTX_IX);
+
+      // all merged structures were renamed: complete the merge
+      md.dbfile(DATAFTX + 'z').copyTo(md.dbfile(DATAFTX + "oz"));
+      new Open(NAME_IX).execute(CTX_IX);
+      assertFalse(md.dbfile(DATAFTX + "oz").exists());
+      assertUpdatable();
+    } finally {
+      CTX_IX.prop.set(Prop.UPDINDEX, false);
+    }
+  }
+
+  /**
+   * Runs queries on the updated databases.
+   */
+  private static void assertUpdatable() {
+    for(final String t : new String[] { "data", "database", "databases", "hello",
+        "help", "x", "world" }) {
+      assertQuery("//w[text() contains text '" + t + "']");
+      assertQuery("//*[text() contains text '" + t + "' using fuzzy]");
+    }
+    assertQuery("//w[text() contains text 'dat.*' using wildcards]");
+    assertQuery("//w[text() contains text 'hel.+' using wildcards]");
+    assertQuery("//w[text() contains text 'help' ftand 'data']");
+    assertQuery(_FT_MARK.args(" //w[text() contains text 'dat.*' using wildcards]"));
+  }
+
+  /**
+   * Performs an update on both databases.
+   * @param q query
+   * @throws BaseXException database exception
+   */
+  private static void update(final String q) throws BaseXException {
+    new XQuery(q).execute(context);
+    new XQuery(q).execute(CTX_IX);
+  }
+
   /** Word distance test. */
   @Test
   @Ignore("GH-359")
@@ -167,6 +167,24 @@ public final class IndexOptimizeTest extends SandboxTest {
         "//text()[. contains text { $x }] }; local:x('1')", "1");
   }
 
+  /**
+   * Checks if the results of several index accesses are intersected.
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void intersectTest() throws Exception {
+    new CreateDB(NAME, "<xml><a x='y' z='1'>1</a><a x='y'>1</a>" +
+        "<a x='z' z='1'>1</a><a x='y' z='1'>2</a></xml>").execute(context);
+    new Close().execute(context);
+    final String doc = _DB_OPEN.args(NAME);
+    check("data(" + doc + "//a[@x = 'y'][text() = '1']/@z)", "1", 2);
+    check("data(" + doc + "//a[@x = 'y'][@z = '1'][text() = '1'])", "1", 3);
+    check("data(" + doc + "//a[text() = '1'][@z = '1'][@x = ('y', 'z')]/@x)",
+        "y z", 3);
+    check("data(" + doc + "//a[@x = 'y'][@z = '1'][text() contains text '2'])",
+        "2", 3);
+  }
+
   /**
    * Creates a test database.
    * @throws Exception exception
@@ -203,6 +221,17 @@ public final class IndexOptimizeTest extends SandboxTest {
    * @param result expected query result
    */
   private static void check(final String query, final String result) {
+    check(query, result, -1);
+  }
+
+  /**
+   * Checks if specified query was rewritten for the specified number of index
+   * accesses, and checks the query result.
+   * @param query query to be tested
+   * @param result expected query result
+   * @param count expected number of index accesses ({@code -1}: at least one)
+   */
+  private static void check(final String query, final String result, final int count) {
     // compile query
     String plan = null;
     final QueryProcessor qp = new QueryProcessor(query, context);
@@ -217,12 +246,18 @@ public final class IndexOptimizeTest extends SandboxTest {
       plan = qp.plan().serialize().toString();
 
       // check if index is used
-      ao = new QueryProcessor(plan + "/descendant-or-self::*" +
+      ao = new QueryProcessor("count(" + plan + "/descendant-or-self::*" +
           "[self::" + Util.name(ValueAccess.class) +
-          "|self::" + Util.name(FTIndexAccess.class) + "]",
+          "|self::" + Util.name(FTIndexAccess.class) + "])",
           context).execute().serialize();
-      assertFalse("No index used:\nQuery: " + query + "\nInfo: " + info +
-          "\nPlan: " + plan, ao.toString().isEmpty());
+      final int c = Integer.parseInt(ao.toString());
+      if(count == -1) {
+        assertTrue("No index used:\nQuery: " + query + "\nInfo: " + info +
+            "\nPlan: " + plan, c > 0);
+      } else {
+        assertEquals("Index accesses:\nQuery: " + query + "\nInfo: " + info +
+            "\nPlan: " + plan, count, c);
+      }
     } catch(final QueryException ex) {
       fail(Util.message(ex) + "\nQuery: " + query + "\nPlan: " + plan);
     } catch(final IOException ex) {
@@ -17,6 +17,14 @@ public final class SerializerTest extends AdvancedQueryTest {
     query(option + "<html/>", "<html/>");
   }
 
+  /** Test: escaping of texts and attribute values. */
+  @Test
+  public void escape() {
+    query("<a b='x y'>z</a>", "<a b=\"x y\">z</a>");
+    query("<a b='&lt;&quot;&#9;'>&amp;&gt;&#x85;&#xA0;</a>",
+        "<a b=\"&lt;&quot;&#x09;\">&amp;&gt;&#x85;\u00A0</a>");
+  }
+
   /** Test: method=xhtml. */
   @Test
   public void xhtml() {
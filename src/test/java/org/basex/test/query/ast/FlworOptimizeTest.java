@@ -1,6 +1,7 @@
 package org.basex.test.query.ast;
 
 import org.basex.core.*;
+import org.basex.core.cmd.*;
 import org.basex.query.flwor.*;
 import org.basex.util.*;
 import org.junit.*;
@@ -73,4 +74,102 @@ public final class FlworOptimizeTest extends QueryPlanTest {
         "every $for in //For satisfies exactly-one(//Let) << $for"
     );
   }
+
+  /** Tests the evaluation of an equality predicate as hash join. */
+  @Test public void hashJoin() {
+    check("for $i in ('a', 'b', 'c', 'b') " +
+        "for $j in ('b', 'c', 'd', 'b')[string() = $i] " +
+        "return concat($i, $j)",
+
+        "bb bb cc bb bb",
+        "exists(//For[@var eq '$j'][@join eq 'hash'])",
+        "empty(//For[@var eq '$j']/IterFilter)"
+    );
+  }
+
+  /** Tests a hash join of constructed nodes with several probe values. */
+  @Test public void hashJoinProbes() {
+    check("declare variable $d := <r>{ for $i in 1 to 5 return <c id='{ $i }'/> }</r>; " +
+        "for $m in (<m><v>3</v><v>1</v><v>3</v></m>, <m><v>x</v></m>, <m><v>2</v></m>) " +
+        "for $c in $d/c[@id = $m/v] " +
+        "return string($c/@id)",
+
+        "1 3 2",
+        "exists(//For[@var eq '$c'][@join eq 'hash']/HashJoin)"
+    );
+  }
+
+  /** Tests a hash join that is specified in a where clause. */
+  @Test public void hashJoinWhere() {
+    check("for $a in (1 to 20) ! <a v='{ . mod 4 }'/> " +
+        "for $b in ('0', '2', '4') " +
+        "where $b = $a/@v and $b != '0' " +
+        "return $b",
+
+        "2 2 2 2 2",
+        "exists(//For[@var eq '$b'][@join eq 'hash'])"
+    );
+  }
+
+  /** Tests clauses that must not be rewritten to hash joins. */
+  @Test public void noHashJoin() {
+    // positional predicate
+    check("for $i in ('a', 'b') for $j in ('b', 'c', 'b')[string() = $i][1] return $j",
+        "b", "empty(//@join)");
+    // context items of arbitrary types
+    check("for $i in ('a', 'b') for $j in (<x>b</x>, 'c')[. = $i] return $j",
+        "<x>b</x>", "empty(//@join)");
+    // input depends on outer clause
+    check("for $i in ('a', 'b') for $j in ('b', $i)[string() = $i] return $j",
+        "a b b", "empty(//@join)");
+    // key depends on outer clause
+    check("for $i in 1 to 2 for $j in ('1', '2')[concat(., $i) = '22'] return $j",
+        "2", "empty(//@join)");
+  }
+
+  /** Tests the use of a bounded heap for ordered results. */
+  @Test public void topK() {
+    check("(for $i in (5, 1, 4, 2, 3) order by $i descending return $i)[position() <= 2]",
+        "5 4", "exists(//Order[@limit = 2])");
+    check("(for $i in (5, 1, 4, 2, 3) order by $i return $i)[2]",
+        "2", "exists(//Order[@limit = 2])");
+    check("(for $i in (5, 1, 4, 2, 3) order by $i return $i)[position() > 3]",
+        "4 5", "empty(//@limit)");
+  }
+
+  /** Tests the computation of running aggregates in group by clauses. */
+  @Test public void groupAggregate() {
+    check("for $i in 1 to 10 group by $k := $i mod 2 order by $k " +
+        "return ($k, count($i), sum($i))",
+        "0 5 30 1 5 25", "exists(//Group[@aggregate])");
+    check("for $i in 1 to 10 group by $k := $i mod 2 order by $k return $i[1]",
+        "2 1", "empty(//@aggregate)");
+  }
+
+  /** Tests the parallel evaluation of for clauses. */
+  @Test public void parallel() {
+    check("(# db:querythreads 2 #) { for $i in 1 to 5 return $i * 2 }",
+        "2 4 6 8 10", "exists(//For[@threads = 2])");
+    check("(# db:querythreads 2 #) { for $i in 1 to 2 return <a/> }",
+        null, "empty(//@threads)");
+    check("(# db:querythreads 2 #) { for $i in 1 to 2 return $i * random:double() }",
+        null, "empty(//@threads)");
+  }
+
+  /**
+   * Tests the detection of an index nested-loop join.
+   * @throws BaseXException database exception
+   */
+  @Test public void indexJoin() throws BaseXException {
+    new CreateDB(NAME, "<r><c id='1'>A</c><c id='2'>B</c><o c='2'/><o c='1'/></r>").
+      execute(context);
+    try {
+      check("for $o in //o for $c in //c where $o/@c = $c/@id return $c/text()",
+          "BA",
+          "exists(//For[@var eq '$c'][@join eq 'index']//ValueAccess)"
+      );
+    } finally {
+      new DropDB(NAME).execute(context);
+    }
+  }
 }
@@ -0,0 +1,106 @@
+package org.basex.test.query.expr;
+
+import static org.junit.Assert.*;
+
+import org.basex.test.query.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * Tests general comparisons with large operands, which are evaluated via
+ * hashing, binary search or extreme values.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+public final class CmpGTest extends AdvancedQueryTest {
+  /** Comparison operators. */
+  private static final String[] OPS = { "=", "!=", "<", "<=", ">", ">=" };
+  /** First operands. */
+  private static final String[] FIRST = {
+    "('5', '500', 'x')", "(xs:untypedAtomic('7'), <b>8</b>, 'abc')",
+    "(5, 500, -3)", "(-0e0, 7.5, xs:double('NaN'), 150)", "(3.0, 200.5)",
+    "(xs:anyURI('50'), '10')", "('99', 99)", "(99, '99')", "(1, 2)[. > 5]"
+  };
+  /** Second operands. */
+  private static final String[] SECOND = {
+    "(1 to 100) ! string()", "(1 to 100) ! xs:untypedAtomic(.)",
+    "(1 to 100) ! <a>{ . }</a>", "(1 to 100)", "(1 to 100) ! xs:double(.)",
+    "(xs:double('NaN'), -0e0, (1 to 100) ! (. * 1.5))", "(1 to 100) ! (. * 1.5)",
+    "((1 to 50), (1 to 50) ! string())", "(1 to 100) ! 'same'",
+    "((1 to 50) ! xs:double('NaN'))"
+  };
+
+  /** Compares the results of comparisons with constant second operands. */
+  @Test
+  public void constant() {
+    for(final String s : SECOND) {
+      // serialize second operand as sequence of literals
+      final String c = "(" + query("string-join(for $i in " + s + " return " +
+          "if($i instance of xs:string) then concat('\"', $i, '\"') else " +
+          "concat(if($i instance of node() or $i instance of xs:untypedAtomic) " +
+          "then 'xs:untypedAtomic' else " +
+          "if($i instance of xs:integer) then 'xs:integer' else " +
+          "if($i instance of xs:decimal) then 'xs:decimal' else 'xs:double', " +
+          "'(\"', $i, '\")'), ', ')") + ")";
+      for(final String f : FIRST) check(dynamic(f), c);
+    }
+  }
+
+  /** Compares the results of comparisons with a dynamic second operand. */
+  @Test
+  public void dynamic() {
+    for(final String s : SECOND) {
+      for(final String f : FIRST) check(dynamic(f), dynamic(s));
+    }
+  }
+
+  /**
+   * Returns an expression that will not be pre-evaluated.
+   * @param e expression
+   * @return query string
+   */
+  private static String dynamic(final String e) {
+    return "(" + e + ")[random:double() >= 0]";
+  }
+
+  /**
+   * Compares the results of general comparisons and nested loops.
+   * @param f first operand
+   * @param s second operand
+   */
+  private static void check(final String f, final String s) {
+    for(final String op : OPS) {
+      final String cmp = "try { string(" + f + ' ' + op + ' ' + s + ") } " +
+          "catch * { 'error' }";
+      final String loop = "try { string(some $f in " + f + ", $s in " + s +
+          " satisfies $f " + op + " $s) } catch * { 'error' }";
+      // errors may be raised or not, depending on the order of evaluation
+      final String exp = query(loop), res = query(cmp);
+      if(!exp.equals(res) && !(exp + res).matches("trueerror|errortrue")) {
+        assertEquals(f + ' ' + op + ' ' + s, exp, res);
+      }
+    }
+  }
+
+  /** Benchmark: compares the evaluation of large operands with nested loops. */
+  @Test
+  @Ignore("Benchmark")
+  public void benchmark() {
+    final String[][] queries = {
+      { "hashing", "=", "(1 to 20000) ! string()", "(20001 to 40000) ! string()" },
+      { "binary search", "=", "(1 to 20000)", "(20001 to 40000)" },
+      { "extreme value", "<", "(20001 to 40000)", "(1 to 20000)" },
+      { "inequality", "!=", "(1 to 20000) ! 'a'", "(1 to 20000) ! 'a'" },
+    };
+    for(final String[] q : queries) {
+      final String f = dynamic(q[2]), s = dynamic(q[3]);
+      final Performance perf = new Performance();
+      final String r1 = query(f + ' ' + q[1] + ' ' + s);
+      final String t1 = perf.getTime();
+      final String r2 = query("some $f in " + f + ", $s in " + s +
+          " satisfies $f " + q[1] + " $s");
+      Util.outln("%: %, nested loop: %", q[0], t1, perf.getTime());
+      assertEquals(r2, r1);
+    }
+  }
+}
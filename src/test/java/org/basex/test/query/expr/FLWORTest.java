@@ -2,6 +2,8 @@ package org.basex.test.query.expr;
 
 import static org.junit.Assert.*;
 
+import java.io.*;
+
 import org.basex.core.*;
 import org.basex.core.cmd.*;
 import org.basex.test.*;
@@ -22,6 +24,158 @@ public final class FLWORTest extends SandboxTest {
         "<x>1</x>");
   }
 
+  /**
+   * Tests order by clauses with sorted runs that are written to disk
+   * ({@link Prop#SORTBUFFER}), and with bounded heaps.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void orderTest() throws BaseXException {
+    new CreateDB(NAME, "<r>{ (1 to 50) ! <a>{ . mod 7 }</a> }</r>").execute(context);
+    final String[] queries = {
+      "for $i in (1 to 100) ! (. * 37 mod 101) order by $i descending " +
+        "return ($i, 'x'[$i mod 5 = 0])",
+      "for $i in (1 to 30) let $k := if($i mod 3 = 0) then () else $i mod 4 " +
+        "order by $k empty least, $i descending return $i",
+      "for $i in (1 to 20) order by $i mod 3, -$i return " +
+        "($i * 1.5, $i = 3, xs:float($i), xs:decimal($i) div 3, xs:byte($i))",
+      "for $i in (1 to 30) order by string($i) return (xs:untypedAtomic($i), " +
+        "xs:date('2000-01-01'), <a>{ $i }</a>)",
+      "for $a in //a order by $a descending return $a",
+      "(for $i in (1 to 20) order by $i mod 2 return $i)[position() < 4]",
+      "(for $i in (1 to 20) order by $i descending return $i[. mod 3 = 0])[2]",
+      "(for $i in (1 to 20) order by $i mod 2 return ($i, $i))[position() = 3 to 5]",
+      "(for $i in (1 to 20) ! string() order by $i return $i)[1]",
+      "for $i in (1 to 10) order by -$i return <a x='{ $i }' xmlns:p='u'>" +
+        "<p:b>{ $i }</p:b><!--c-->{ processing-instruction p { 'v' } }</a>",
+      "(for $i in (1 to 10) order by -$i return (document { <d>{ $i }</d> }, " +
+        "text { $i }, attribute a { $i }, comment { $i })) ! (name() || '=' || .)",
+      "(for $i in (1 to 5) order by -$i return <a><b>{ $i }</b></a>/b) ! ../name()",
+      "let $n := <n/> return (for $i in (1 to 10) order by -$i return $n) ! (. is $n)",
+      "count((for $i in (1 to 10) order by -$i return <n/>)/.)"
+    };
+    try {
+      final String[] results = new String[queries.length];
+      for(int q = 0; q < queries.length; q++) {
+        results[q] = new XQuery(queries[q]).execute(context);
+      }
+      for(final int max : new int[] { 1, 5, 0 }) {
+        context.prop.set(Prop.SORTBUFFER, max);
+        for(int q = 0; q < queries.length; q++) {
+          assertEquals(queries[q], results[q], new XQuery(queries[q]).execute(context));
+        }
+      }
+    } finally {
+      context.prop.set(Prop.SORTBUFFER, 1000000);
+      new DropDB(NAME).execute(context);
+    }
+    query("(for $i in (1 to 20) order by $i descending return $i[. < 18])[2]", "16");
+    query("(for $i in (5, 1, 3) order by $i return ($i, $i))[position() <= 3]",
+        "1 1 3");
+  }
+
+  /**
+   * Tests order by clauses with more sorted runs than can be merged at once,
+   * and checks that no temporary files are left behind if the result is only
+   * partially consumed.
+   */
+  @Test
+  public void orderMergeTest() {
+    final int files = spilled();
+    context.prop.set(Prop.SORTBUFFER, 1);
+    try {
+      query("let $s := for $i in 1 to 1000 order by $i * 37 mod 1009 descending " +
+        "return $i return ($s[1], $s[500], $s[1000], count($s), sum($s))",
+        "709 968 300 1000 500500");
+      query("(for $i in 1 to 500 order by -$i return $i)[1]", "500");
+      try {
+        new XQuery("for $i in 1 to 500 order by $i return $i idiv ($i - 250)").
+          execute(context);
+        fail("Error expected.");
+      } catch(final BaseXException ex) {
+        assertTrue(Util.message(ex), Util.message(ex).contains("FOAR0001"));
+      }
+      assertEquals(files, spilled());
+    } finally {
+      context.prop.set(Prop.SORTBUFFER, 1000000);
+    }
+  }
+
+  /**
+   * Returns the number of temporary files with spilled FLWOR tuples.
+   * @return number of files
+   */
+  private static int spilled() {
+    final File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles();
+    int c = 0;
+    for(final File f : files) if(f.getName().startsWith("flwor")) c++;
+    return c;
+  }
+
+  /**
+   * Tests group by clauses with running aggregates and partitions that are
+   * written to disk ({@link Prop#GROUPBUFFER}).
+   */
+  @Test
+  public void groupTest() {
+    try {
+      for(final int max : new int[] { 0, 1, 2 }) {
+        context.prop.set(Prop.GROUPBUFFER, max);
+        query("for $i in 1 to 100 group by $k := $i mod 7 order by $k return " +
+          "($k, count($i), sum($i), min($i), max($i))",
+          "0 14 735 7 98 1 15 750 1 99 2 15 765 2 100 3 14 679 3 94 " +
+          "4 14 693 4 95 5 14 707 5 96 6 14 721 6 97");
+        query("for $i in 1 to 40 " +
+          "let $v := if($i mod 5 = 0) then () else ($i, $i * 2) " +
+          "group by $k := $i mod 3 order by $k return (count($v), sum($v))",
+          "22 684 22 636 20 600");
+        query("for $i in 1 to 30 let $u := xs:untypedAtomic($i) " +
+          "group by $k := $i mod 4 order by $k return avg($u)", "16 15 16 15");
+        query("let $g := for $i in 1 to 10000 group by $k := $i mod 1000 " +
+          "return count($i) return (count($g), distinct-values($g))", "1000 10");
+        query("for $i in () group by $k := $i return count($i)", "");
+        try {
+          new XQuery("for $i in 1 to 20 let $x := ('a', 1)[$i mod 2 + 1] " +
+            "group by $k := $i mod 2 return sum($x)").execute(context);
+          fail("Error expected.");
+        } catch(final BaseXException ex) {
+          assertTrue(Util.message(ex), Util.message(ex).contains("FORG0006"));
+        }
+      }
+    } finally {
+      context.prop.set(Prop.GROUPBUFFER, 1000000);
+    }
+  }
+
+  /**
+   * Tests the parallel evaluation of for clauses ({@link Prop#QUERYTHREADS}).
+   */
+  @Test
+  public void parallelTest() {
+    context.prop.set(Prop.QUERYTHREADS, 4);
+    try {
+      query("for $i in 1 to 10 return $i * $i", "1 4 9 16 25 36 49 64 81 100");
+      query("sum(for $i in 1 to 10000 return $i * 2)", "100010000");
+      query("string-join(for $i in 1 to 1000 return string($i), ',') = " +
+        "string-join((1 to 1000) ! string(), ',')", "true");
+      query("for $i at $p in (1 to 10) ! (. * 3) where $i mod 2 = 0 " +
+        "return ($p, $i)", "2 6 4 12 6 18 8 24 10 30");
+      query("for $i in 1 to 3 for $j in 1 to 2 return $i * 10 + $j",
+        "11 12 21 22 31 32");
+      query("for $i in 1 to 4 return count(for $j in 1 to $i return $j)", "1 2 3 4");
+      query("for $i in () return $i", "");
+      query("for $i in 5 return $i * 2", "10");
+      try {
+        new XQuery("for $i in 1 to 100 return $i idiv (50 - $i)").execute(context);
+        fail("Error expected.");
+      } catch(final BaseXException ex) {
+        assertTrue(Util.message(ex), Util.message(ex).contains("FOAR0001"));
+      }
+    } finally {
+      context.prop.set(Prop.QUERYTHREADS, 1);
+    }
+  }
+
   /**
    * Runs an updating query and matches the result of the second query
    * against the expected output.
@@ -1,11 +1,14 @@
 package org.basex.test.query.func;
 
 import static org.basex.query.func.Function.*;
+import static org.junit.Assert.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.basex.core.*;
 import org.basex.core.cmd.*;
+import org.basex.core.cmd.Set;
 import org.basex.index.*;
 import org.basex.query.util.*;
 import org.basex.test.query.*;
@@ -128,6 +131,74 @@ public final class FNFtTest extends AdvancedQueryTest {
     query(_FT_SCORE.args(_FT_SEARCH.args(" . ", "XML")), "1 0.5");
   }
 
+  /**
+   * Test method.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void scoreBM25() throws BaseXException {
+    new CreateDB(NAME, "<x><t>a b c</t><t>a a a</t><t>a b</t><t>b c d e f g</t>" +
+        "<t>a</t><t>c c</t></x>").execute(context);
+    new CreateIndex(IndexType.FULLTEXT).execute(context);
+    new Set(Prop.BM25, true).execute(context);
+    try {
+      final String search = _FT_SEARCH.args(" .", "a");
+      query("string-join(for $t in " + search +
+          " order by ft:score($t) descending return $t, '|')", "a a a|a|a b|a b c");
+      query("every $s in " + _FT_SCORE.args(search) + " satisfies $s > 0 and $s < 1",
+          true);
+      // top-k results are returned in document order
+      query("string-join(" + _FT_SEARCH.args(" .", "a", " map { 'top':='2' }") +
+          ", '|')", "a a a|a");
+      query("string-join(" + _FT_SEARCH.args(" .", " ('a', 'c')",
+          " map { 'top':='1' }") + ", '|')", "a b c");
+      // top-k results of ordered FLWOR expressions
+      query("string-join((for $t score $s in " + _FT_SEARCH.args(" .", " ('b', 'c')") +
+          " order by $s descending return $t)[position() <= 2], '|')", "a b c|c c");
+      error(_FT_SEARCH.args(" .", "a", " map { 'top':='0' }"), Err.ELMOPTION);
+    } finally {
+      new Set(Prop.BM25, false).execute(context);
+    }
+  }
+
+  /**
+   * Compares the top-k results with the first results of the sorted search results.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void topK() throws BaseXException {
+    final Random rnd = new Random(0);
+    final StringBuilder sb = new StringBuilder("<x>");
+    for(int t = 0; t < 500; t++) {
+      sb.append("<t>");
+      for(int w = rnd.nextInt(20); w >= 0; w--) {
+        sb.append((char) ('a' + rnd.nextInt(15))).append(' ');
+      }
+      sb.append("</t>");
+    }
+    new CreateDB(NAME, sb.append("</x>").toString()).execute(context);
+    new CreateIndex(IndexType.FULLTEXT).execute(context);
+    new Set(Prop.BM25, true).execute(context);
+    try {
+      for(final String terms : new String[] { "'a'", "('a', 'b')", "('c', 'd', 'o')",
+          "('a', 'b', 'c', 'd', 'e', 'f', 'g')" }) {
+        final String search = _FT_SEARCH.args(" .", " " + terms);
+        final String all = query("for $t in " + search +
+            " order by ft:score($t) descending return db:node-pre($t)");
+        for(final int k : new int[] { 1, 3, 10, 100, 1000 }) {
+          final String top = query("(for $t in " + search +
+            " order by ft:score($t) descending return db:node-pre($t))[position() <= " +
+            k + ']');
+          final String[] a = all.split(" "), b = top.split(" ");
+          assertEquals(Math.min(k, a.length), b.length);
+          for(int i = 0; i < b.length; i++) assertEquals(a[i], b[i]);
+        }
+      }
+    } finally {
+      new Set(Prop.BM25, false).execute(context);
+    }
+  }
+
   /**
    * Test method.
    * @throws BaseXException database exception
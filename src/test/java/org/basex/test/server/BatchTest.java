@@ -0,0 +1,107 @@
+package org.basex.test.server;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.basex.*;
+import org.basex.core.cmd.*;
+import org.basex.io.in.*;
+import org.basex.server.*;
+import org.basex.test.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * This class compares the performance of adding documents with single requests
+ * and with batches ({@link Session#beginBatch()}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+public final class BatchTest extends SandboxTest {
+  /** Number of documents. */
+  private static final int DOCS = 100000;
+  /** Size of a document (bytes). */
+  private static final int SIZE = 2048;
+  /** Server reference. */
+  private BaseXServer server;
+
+  /**
+   * Starts the server.
+   * @throws IOException I/O exception
+   */
+  @Before
+  public void start() throws IOException {
+    server = createServer();
+  }
+
+  /**
+   * Stops the server.
+   * @throws IOException I/O exception
+   */
+  @After
+  public void stop() throws IOException {
+    stopServer(server);
+  }
+
+  /**
+   * Adds documents with a client session.
+   * @throws IOException I/O exception
+   */
+  @Test
+  @Ignore("Benchmark")
+  public void client() throws IOException {
+    final ClientSession cs = createClient();
+    try {
+      run(cs);
+    } finally {
+      cs.close();
+    }
+  }
+
+  /**
+   * Adds documents with a local session.
+   * @throws IOException I/O exception
+   */
+  @Test
+  @Ignore("Benchmark")
+  public void local() throws IOException {
+    final LocalSession ls = new LocalSession(context);
+    try {
+      run(ls);
+    } finally {
+      ls.close();
+    }
+  }
+
+  /**
+   * Adds documents with single requests and with a batch.
+   * @param session session
+   * @throws IOException I/O exception
+   */
+  private static void run(final Session session) throws IOException {
+    final byte[] doc = doc();
+    for(final boolean batch : new boolean[] { false, true }) {
+      session.execute(new CreateDB(NAME));
+      final Performance perf = new Performance();
+      if(batch) session.beginBatch();
+      for(int d = 0; d < DOCS; d++) session.add(d + ".xml", new ArrayInput(doc));
+      session.endBatch();
+      Util.outln("% (batch: %): %", session.getClass().getSimpleName(), batch, perf);
+      assertEquals(Integer.toString(DOCS), session.execute(new XQuery("count(/)")));
+      session.execute(new DropDB(NAME));
+    }
+  }
+
+  /**
+   * Returns a document of the specified size.
+   * @return document
+   */
+  private static byte[] doc() {
+    final TokenBuilder tb = new TokenBuilder("<doc>");
+    for(int e = 0; tb.size() < SIZE - 20; e++) {
+      tb.add("<e n='").addExt(e).add("'>text ").addExt(e).add("</e>");
+    }
+    return tb.add("</doc>").finish();
+  }
+}
@@ -5,6 +5,8 @@ import static org.junit.Assert.*;
 import java.io.*;
 
 import org.basex.*;
+import org.basex.core.*;
+import org.basex.server.*;
 import org.basex.util.*;
 import org.junit.*;
 
@@ -46,4 +48,27 @@ public class ClientSessionTest extends SessionTest {
       fail(Util.message(ex));
     }
   }
+
+  /** Updates a database that is locked by an open cursor of the same session.
+   * @throws IOException I/O exception */
+  @Test
+  public void queryPagesConflict() throws IOException {
+    session.execute("create db " + NAME + " <a/>");
+    final Query query = session.query(
+        "for $i in 1 to 10 return db:open('" + NAME + "')");
+    query.page(1);
+    assertEqual("<a/>", query.next());
+    try {
+      session.execute("add to x <b/>");
+      fail("Conflict expected.");
+    } catch(final BaseXException ex) {
+      assertTrue(ex.getMessage().contains("close it first"));
+    }
+    // the cursor is still open, and the database can still be read
+    assertEqual("1", session.query("count(db:open('" + NAME + "'))").execute());
+    assertEqual("<a/>", query.next());
+    query.close();
+    session.execute("add to x <b/>");
+    assertEqual("2", session.query("count(db:open('" + NAME + "'))").execute());
+  }
 }
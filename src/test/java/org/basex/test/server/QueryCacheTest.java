@@ -0,0 +1,220 @@
+package org.basex.test.server;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.query.*;
+import org.basex.server.*;
+import org.basex.test.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * This class tests the caching of compiled client queries ({@link MainProp#QUERYCACHE}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+public final class QueryCacheTest extends SandboxTest {
+  /** Query that accesses the test database. */
+  private static final String QUERY =
+      "declare variable $n external; count(db:open('" + NAME + "')//x[@id = $n])";
+  /** Server reference. */
+  private BaseXServer server;
+  /** Client session. */
+  private ClientSession session;
+
+  /**
+   * Starts the server and creates a test database.
+   * @throws IOException I/O exception
+   */
+  @Before
+  public void start() throws IOException {
+    server = createServer();
+    session = createClient();
+    session.execute(new CreateDB(NAME, "<a><x id='1'/><x id='2'/><x id='2'/></a>"));
+    session.execute(new Close());
+  }
+
+  /**
+   * Stops the server.
+   * @throws IOException I/O exception
+   */
+  @After
+  public void stop() throws IOException {
+    try {
+      session.execute(new DropDB(NAME));
+      session.close();
+    } finally {
+      stopServer(server);
+    }
+  }
+
+  /**
+   * Evaluates a cached query with different variable bindings.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void bind() throws IOException {
+    assertEquals("1", query(QUERY, "1"));
+    assertEquals(0, stats()[1]);
+    assertEquals("2", query(QUERY, "2"));
+    assertEquals("0", query(QUERY, "3"));
+    assertEquals("1", query(QUERY, "1"));
+    assertEquals(1, stats()[0]);
+    assertEquals(3, stats()[1]);
+  }
+
+  /**
+   * Checks that cached queries are discarded if a database is updated.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void update() throws IOException {
+    assertEquals("2", query(QUERY, "2"));
+    session.execute(new XQuery("insert node <x id='2'/> into db:open('" + NAME + "')/a"));
+    assertEquals("3", query(QUERY, "2"));
+    assertEquals(0, stats()[1]);
+    assertEquals("3", query(QUERY, "2"));
+    assertEquals(1, stats()[1]);
+  }
+
+  /**
+   * Checks that databases can be dropped and replaced while queries are cached.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void drop() throws IOException {
+    assertEquals("1", query(QUERY, "1"));
+    session.execute(new DropDB(NAME));
+    session.execute(new CreateDB(NAME, "<a><x id='1'/><x id='1'/></a>"));
+    session.execute(new Close());
+    assertEquals("2", query(QUERY, "1"));
+    assertEquals(0, stats()[1]);
+  }
+
+  /**
+   * Checks that queries of different sessions are cached separately.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void sessions() throws IOException {
+    assertEquals("1", query(QUERY, "1"));
+    final ClientSession cs = createClient();
+    try {
+      final ClientQuery cq = cs.query(QUERY);
+      cq.bind("n", "2");
+      assertEquals("2", cq.execute());
+      cq.close();
+      assertEquals(2, stats()[0]);
+    } finally {
+      cs.close();
+    }
+    // cached queries are discarded if a session is closed
+    for(int i = 0; i < 100 && stats()[0] != 1; i++) Performance.sleep(10);
+    assertEquals(1, stats()[0]);
+  }
+
+  /**
+   * Checks that functions depending on the environment are evaluated again.
+   * @throws Exception exception
+   */
+  @Test
+  public void environment() throws Exception {
+    final String query = "declare variable $n external; current-dateTime()";
+    final String dt = query(query, "1");
+    Thread.sleep(20);
+    assertFalse(dt.equals(query(query, "1")));
+    assertEquals(1, stats()[1]);
+  }
+
+  /**
+   * Checks that global variables are inlined, unless they are external or depend on
+   * the environment.
+   * @throws Exception exception
+   */
+  @Test
+  public void globals() throws Exception {
+    session.execute(new Set(Prop.QUERYINFO, true));
+    final String query = "declare variable $n external; declare variable $id := '2'; " +
+        "count(db:open('" + NAME + "')//x[@id = $id])";
+    for(int i = 0; i < 2; i++) {
+      final ClientQuery cq = session.query(query);
+      try {
+        cq.bind("n", "1");
+        assertEquals("2", cq.execute());
+        final String info = cq.info();
+        assertTrue(info.contains(QueryText.OPTATVINDEX));
+        assertFalse(info.contains("$id"));
+      } finally {
+        cq.close();
+      }
+    }
+    assertEquals(1, stats()[1]);
+
+    final String dt = "declare variable $n external; " +
+        "declare variable $dt := current-dateTime(); $dt";
+    final String result = query(dt, "1");
+    Thread.sleep(20);
+    assertFalse(result.equals(query(dt, "1")));
+    assertEquals(2, stats()[1]);
+  }
+
+  /**
+   * Checks that updating queries are not cached.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void updating() throws IOException {
+    final String query = "declare variable $n external; " +
+        "insert node <x id='{ $n }'/> into db:open('" + NAME + "')/a";
+    query(query, "4");
+    query(query, "4");
+    assertEquals(0, stats()[0]);
+    assertEquals("2", query(QUERY, "4"));
+  }
+
+  /**
+   * Benchmark: compares the evaluation of cached and uncached queries.
+   * @throws IOException I/O exception
+   */
+  @Test
+  @Ignore("Benchmark")
+  public void benchmark() throws IOException {
+    final String query = QUERY + " + sum(for $i in 1 to 100 return $i[string() = $n])";
+    for(final int max : new int[] { 0, 100, 0, 100 }) {
+      server.context.mprop.set(MainProp.QUERYCACHE, max);
+      final Performance perf = new Performance();
+      for(int i = 0; i < 10000; i++) query(query, Integer.toString(i % 3));
+      Util.outln("Query cache: %, 10000 queries: %", max, perf);
+    }
+  }
+
+  /**
+   * Evaluates a query with the specified variable binding.
+   * @param query query
+   * @param value value of variable {@code $n}
+   * @return result
+   * @throws IOException I/O exception
+   */
+  private String query(final String query, final String value) throws IOException {
+    final ClientQuery cq = session.query(query);
+    try {
+      cq.bind("n", value);
+      return cq.execute();
+    } finally {
+      cq.close();
+    }
+  }
+
+  /**
+   * Returns the cache statistics.
+   * @return number of cached queries, hits and misses
+   */
+  private long[] stats() {
+    return server.context.queries.stats();
+  }
+}
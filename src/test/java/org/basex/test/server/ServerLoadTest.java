@@ -0,0 +1,195 @@
+package org.basex.test.server;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.server.*;
+import org.basex.test.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * This class tests the processing of many concurrent client sessions by a server
+ * with a bounded number of worker threads ({@link MainProp#WORKERS},
+ * {@link MainProp#MAXQUEUE}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ */
+public final class ServerLoadTest extends SandboxTest {
+  /** Number of worker threads. */
+  private static final int WORKERS = 4;
+  /** Server reference. */
+  private BaseXServer server;
+
+  /**
+   * Starts the server.
+   * @throws IOException I/O exception
+   */
+  @Before
+  public void start() throws IOException {
+    System.setProperty(Prop.DBPREFIX + "workers", Integer.toString(WORKERS));
+    System.setProperty(Prop.DBPREFIX + "maxqueue", "2");
+    try {
+      server = createServer();
+    } finally {
+      System.clearProperty(Prop.DBPREFIX + "workers");
+      System.clearProperty(Prop.DBPREFIX + "maxqueue");
+    }
+  }
+
+  /**
+   * Stops the server.
+   * @throws IOException I/O exception
+   */
+  @After
+  public void stop() throws IOException {
+    stopServer(server);
+  }
+
+  /**
+   * Checks that idle sessions are not bound to threads.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void idleSessions() throws IOException {
+    final int threads = Thread.activeCount();
+    final List<ClientSession> sessions = open(200);
+    try {
+      assertTrue(Thread.activeCount() < threads + WORKERS + 2);
+      for(final ClientSession cs : sessions) assertEquals("1", cs.query("1").execute());
+    } finally {
+      close(sessions);
+    }
+  }
+
+  /**
+   * Checks that all requests are processed if more requests are sent than
+   * can be queued.
+   * @throws Exception exception
+   */
+  @Test
+  public void backPressure() throws Exception {
+    final int clients = 32;
+    final List<ClientSession> sessions = open(clients);
+    final ExecutorService es = Executors.newFixedThreadPool(clients);
+    try {
+      final List<Future<String>> results = new ArrayList<Future<String>>();
+      for(final ClientSession cs : sessions) {
+        results.add(es.submit(new Callable<String>() {
+          @Override
+          public String call() throws IOException {
+            return cs.execute("xquery prof:sleep(20), 1");
+          }
+        }));
+      }
+      for(final Future<String> f : results) assertEquals("1", f.get());
+      assertEquals(0, server.context.sessions.queued.get());
+    } finally {
+      es.shutdown();
+      close(sessions);
+    }
+  }
+
+  /**
+   * Checks that clients with incomplete requests do not block worker threads.
+   * @throws Exception exception
+   */
+  @Test
+  public void slowClients() throws Exception {
+    final List<Socket> sockets = new ArrayList<Socket>();
+    final ExecutorService es = Executors.newSingleThreadExecutor();
+    try {
+      for(int s = 0; s <= WORKERS; s++) {
+        final Socket socket = new Socket(Text.LOCALHOST, 9999);
+        sockets.add(socket);
+        // send incomplete login data
+        socket.getOutputStream().write(Token.token(Text.ADMIN));
+        socket.getOutputStream().flush();
+      }
+      final Future<String> f = es.submit(new Callable<String>() {
+        @Override
+        public String call() throws IOException {
+          final ClientSession cs = createClient();
+          try {
+            return cs.query("1").execute();
+          } finally {
+            cs.close();
+          }
+        }
+      });
+      assertEquals("1", f.get(5, TimeUnit.SECONDS));
+    } finally {
+      es.shutdownNow();
+      for(final Socket s : sockets) s.close();
+    }
+  }
+
+  /**
+   * Load test: opens 10,000 sessions and sends requests from all of them.
+   * Requires a limit of open files that exceeds 20,000.
+   * @throws Exception exception
+   */
+  @Test
+  @Ignore("Load test; requires a high limit of open files")
+  public void load() throws Exception {
+    final int clients = 10000;
+    final int threads = Thread.activeCount();
+    Performance perf = new Performance();
+    final List<ClientSession> sessions = open(clients);
+    Util.outln("Open % sessions: % (threads: %)", clients, perf,
+        Thread.activeCount() - threads);
+
+    final ExecutorService es = Executors.newFixedThreadPool(64);
+    try {
+      for(int r = 0; r < 3; r++) {
+        perf = new Performance();
+        final List<Future<String>> results = new ArrayList<Future<String>>();
+        for(final ClientSession cs : sessions) {
+          results.add(es.submit(new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+              return cs.execute(new XQuery("count(1 to 100)"));
+            }
+          }));
+        }
+        for(final Future<String> f : results) assertEquals("100", f.get());
+        Util.outln("% requests: % (threads: %)", clients, perf,
+            Thread.activeCount() - threads);
+      }
+    } finally {
+      es.shutdown();
+      perf = new Performance();
+      close(sessions);
+      Util.outln("Close % sessions: %", clients, perf);
+    }
+  }
+
+  /**
+   * Opens the specified number of sessions.
+   * @param n number of sessions
+   * @return sessions
+   * @throws IOException I/O exception
+   */
+  private static List<ClientSession> open(final int n) throws IOException {
+    final List<ClientSession> sessions = new ArrayList<ClientSession>(n);
+    for(int s = 0; s < n; s++) sessions.add(createClient());
+    return sessions;
+  }
+
+  /**
+   * Closes the specified sessions.
+   * @param sessions sessions
+   * @throws IOException I/O exception
+   */
+  private static void close(final List<ClientSession> sessions) throws IOException {
+    for(final ClientSession cs : sessions) cs.close();
+  }
+}
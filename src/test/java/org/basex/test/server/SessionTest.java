@@ -205,6 +205,75 @@ public abstract class SessionTest extends SandboxTest {
     session.execute("drop db " + NAME);
   }
 
+  /**
+   * Adds, replaces and stores documents in a batch.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public final void batch() throws IOException {
+    session.execute("create db " + NAME);
+    session.beginBatch();
+    for(int i = 0; i < 10; i++) session.add("X" + i, new ArrayInput("<X/>"));
+    session.replace("X0", new ArrayInput("<Y/>"));
+    session.store("Z", new ArrayInput("!"));
+    session.endBatch();
+    assertEqual("10", session.query("count(" + _DB_OPEN.args(NAME) + ')').execute());
+    assertEqual("1", session.query("count(" + _DB_OPEN.args(NAME) + "/Y)").execute());
+    assertEqual("true", session.query(_DB_IS_RAW.args(NAME, "Z")).execute());
+  }
+
+  /**
+   * Adds and replaces documents in a batch and checks the updatable indexes.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public final void batchIndex() throws IOException {
+    final String query = "string-join((" + _INDEX_TEXTS.args(NAME) + ", " +
+        _INDEX_ATTRIBUTES.args(NAME) + ")/concat(., ':', @count), ' ') || ' ' || " +
+        "count(" + _DB_TEXT.args(NAME, "t1") + ')';
+    session.execute("set updindex true");
+    try {
+      for(int r = 0; r < 2; r++) {
+        session.execute("create db " + NAME);
+        if(r == 1) session.beginBatch();
+        for(int i = 0; i < 10; i++) {
+          final String doc = "<X a='a" + i % 3 + "'>t" + i % 4 + "</X>";
+          session.add("X" + i, new ArrayInput(doc));
+        }
+        session.replace("X0", new ArrayInput("<Y>t1</Y>"));
+        session.add("X10", new ArrayInput("<X a='a3'>t1</X>"));
+        session.endBatch();
+        assertEqual("t0:2 t1:5 t2:2 t3:2 a0:3 a1:3 a2:3 a3:1 5",
+            session.query(query).execute());
+      }
+    } finally {
+      session.execute("set updindex false");
+    }
+  }
+
+  /**
+   * Runs a batch with an erroneous request, and finishes a batch implicitly.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public final void batchError() throws IOException {
+    session.execute("create db " + NAME);
+    session.beginBatch();
+    session.add("X1", new ArrayInput("<X/>"));
+    session.add("X2", new ArrayInput("<X"));
+    session.add("X3", new ArrayInput("<X/>"));
+    try {
+      session.endBatch();
+      fail("Error expected.");
+    } catch(final BaseXException ex) {
+      // preceding requests remain applied, subsequent requests are skipped
+      assertEqual("X1", session.query(_DB_LIST.args(NAME)).execute());
+    }
+    session.beginBatch();
+    session.add("X4", new ArrayInput("<X/>"));
+    assertEqual("2", session.query("count(" + _DB_OPEN.args(NAME) + ')').execute());
+  }
+
   /** Stores binary content.
    * @throws IOException I/O exception */
   @Test
@@ -323,6 +392,68 @@ public abstract class SessionTest extends SandboxTest {
     query.close();
   }
 
+  /** Runs queries and retrieves their results in pages.
+   * @throws IOException I/O exception */
+  @Test
+  public void queryPages() throws IOException {
+    for(int s = 4; s <= 5; s++) {
+      final Query query = session.query("1 to " + s);
+      query.page(2);
+      int c = 0;
+      while(query.more()) assertEqual(++c, query.next());
+      assertEquals(s, c);
+      assertNull(query.next());
+      query.close();
+    }
+  }
+
+  /** Retrieves the first page of an infinite result.
+   * @throws IOException I/O exception */
+  @Test
+  public void queryPagesLazy() throws IOException {
+    final Query query = session.query("for $i in 1 to 1000000000000 return $i");
+    query.page(3);
+    for(int c = 1; c <= 4; c++) assertEqual(c, query.next());
+    query.close();
+  }
+
+  /** Closes a paged query and updates the database it accessed.
+   * @throws IOException I/O exception */
+  @Test
+  public void queryPagesClose() throws IOException {
+    session.execute("create db " + NAME + " <a/>");
+    final Query query = session.query(
+        "for $i in 1 to 10 return db:open('" + NAME + "')");
+    query.page(1);
+    assertEqual("<a/>", query.next());
+    query.close();
+    session.execute("add to x <b/>");
+    assertEqual("2", session.query("count(db:open('" + NAME + "'))").execute());
+  }
+
+  /** Runs an erroneous paged query.
+   * @throws IOException expected exception*/
+  @Test(expected = BaseXException.class)
+  public void queryPagesError() throws IOException {
+    final Query query = session.query("(1,'a')[. eq 1]");
+    query.page(1);
+    assertEqual("1", query.next());
+    query.next();
+  }
+
+  /** Runs a paged query with wrapped results.
+   * @throws IOException I/O exception */
+  @Test
+  public void queryPagesWrap() throws IOException {
+    final Query query = session.query(WRAPPER + "1 to 2");
+    query.page(1);
+    assertTrue("Result expected.", query.more());
+    assertEqual("<db:results xmlns:db=\"ns\">  <db:result>1</db:result>" +
+        "  <db:result>2</db:result></db:results>", query.next());
+    assertFalse("No result expected.", query.more());
+    query.close();
+  }
+
   /** Queries binary content.
    * @throws IOException I/O exception */
   @Test